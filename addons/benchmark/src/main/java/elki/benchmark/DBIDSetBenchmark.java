@@ -0,0 +1,118 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.*;
+
+/**
+ * Benchmark set operations on DBID collections, for hash sets and arrays.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBIDSetBenchmark {
+  /**
+   * Size of the underlying range.
+   */
+  @Param({ "10000", "1000000" })
+  public int size;
+
+  /**
+   * Sampling rate of each set.
+   */
+  @Param({ "0.01", "0.5" })
+  public double rate;
+
+  /**
+   * Random subsets as hash sets.
+   */
+  private HashSetModifiableDBIDs hash1, hash2;
+
+  /**
+   * Random subsets as arrays.
+   */
+  private ArrayModifiableDBIDs array1, array2;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(size);
+    Random rnd = new Random(0L);
+    DBIDs s1 = DBIDUtil.randomSample(ids, rate, rnd);
+    DBIDs s2 = DBIDUtil.randomSample(ids, rate, rnd);
+    hash1 = DBIDUtil.newHashSet(s1);
+    hash2 = DBIDUtil.newHashSet(s2);
+    array1 = DBIDUtil.newArray(s1);
+    array2 = DBIDUtil.newArray(s2);
+  }
+
+  @Benchmark
+  public int unionHash() {
+    return DBIDUtil.union(hash1, hash2).size();
+  }
+
+  @Benchmark
+  public int intersectionHash() {
+    return DBIDUtil.intersection(hash1, hash2).size();
+  }
+
+  @Benchmark
+  public int intersectionSizeHash() {
+    return DBIDUtil.intersectionSize(hash1, hash2);
+  }
+
+  @Benchmark
+  public int differenceHash() {
+    return DBIDUtil.difference(hash1, hash2).size();
+  }
+
+  @Benchmark
+  public int intersectionArrayHash() {
+    return DBIDUtil.intersection(array1, hash2).size();
+  }
+
+  @Benchmark
+  public int unionArray() {
+    return DBIDUtil.union(array1, array2).size();
+  }
+
+  @Benchmark
+  public int containsArrayInHash() {
+    int c = 0;
+    for(DBIDIter it = array1.iter(); it.valid(); it.advance()) {
+      c += hash2.contains(it) ? 1 : 0;
+    }
+    return c;
+  }
+}
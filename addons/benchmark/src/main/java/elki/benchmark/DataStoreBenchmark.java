@@ -0,0 +1,123 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.datastore.memory.ArrayDoubleStore;
+import elki.database.ids.*;
+
+/**
+ * Benchmark access to array-backed data stores, in sequential and random
+ * order, compared to a plain array.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataStoreBenchmark {
+  /**
+   * Store size.
+   */
+  @Param({ "10000", "1000000" })
+  public int size;
+
+  /**
+   * DBID range.
+   */
+  private DBIDRange ids;
+
+  /**
+   * Shuffled DBIDs, for random access.
+   */
+  private ArrayModifiableDBIDs shuffled;
+
+  /**
+   * Store to benchmark.
+   */
+  private ArrayDoubleStore store;
+
+  /**
+   * Plain array, as reference.
+   */
+  private double[] array;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    ids = DBIDUtil.generateStaticDBIDRange(size);
+    shuffled = DBIDUtil.newArray(ids);
+    DBIDUtil.randomShuffle(shuffled, new Random(0L));
+    store = new ArrayDoubleStore(size, ids);
+    array = new double[size];
+    Random rnd = new Random(0L);
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      double v = rnd.nextDouble();
+      store.putDouble(it, v);
+      array[ids.getOffset(it)] = v;
+    }
+  }
+
+  @Benchmark
+  public double arraySequential() {
+    double sum = 0.;
+    for(int i = 0; i < size; i++) {
+      sum += array[i];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double storeSequential() {
+    double sum = 0.;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      sum += store.doubleValue(it);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double storeRandom() {
+    double sum = 0.;
+    for(DBIDIter it = shuffled.iter(); it.valid(); it.advance()) {
+      sum += store.doubleValue(it);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double storeIncrement() {
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      store.increment(it, 1.);
+    }
+    return store.doubleValue(ids.iter());
+  }
+}
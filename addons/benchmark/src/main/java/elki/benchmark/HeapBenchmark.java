@@ -0,0 +1,134 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNHeap;
+import elki.utilities.datastructures.heap.DoubleIntegerMaxHeap;
+import elki.utilities.datastructures.heap.DoubleMinHeap;
+
+/**
+ * Benchmark heap insertion, both unbounded and bounded to the top k (as used
+ * in kNN search).
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBenchmark {
+  /**
+   * Number of elements to insert.
+   */
+  @Param({ "1000", "100000" })
+  public int size;
+
+  /**
+   * Heap size bound, for top-k heaps.
+   */
+  @Param({ "10", "100" })
+  public int k;
+
+  /**
+   * Random keys.
+   */
+  private double[] keys;
+
+  /**
+   * DBIDs for the kNN heap.
+   */
+  private DBIDRange ids;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    keys = new double[size];
+    for(int i = 0; i < size; i++) {
+      keys[i] = rnd.nextDouble();
+    }
+    ids = DBIDUtil.generateStaticDBIDRange(size);
+  }
+
+  @Benchmark
+  public double doubleMinHeapAddPoll() {
+    DoubleMinHeap heap = new DoubleMinHeap(size);
+    for(double key : keys) {
+      heap.add(key);
+    }
+    double sum = 0.;
+    while(!heap.isEmpty()) {
+      sum += heap.poll();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double doubleMinHeapTopK() {
+    DoubleMinHeap heap = new DoubleMinHeap(k);
+    for(double key : keys) {
+      heap.add(key, k);
+    }
+    return heap.peek();
+  }
+
+  @Benchmark
+  public double doubleIntegerMaxHeapTopK() {
+    DoubleIntegerMaxHeap heap = new DoubleIntegerMaxHeap(k);
+    for(int i = 0; i < keys.length; i++) {
+      heap.add(keys[i], i, k);
+    }
+    return heap.peekKey();
+  }
+
+  @Benchmark
+  public double knnHeapInsert() {
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    int i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      heap.insert(keys[i], it);
+    }
+    return heap.getKNNDistance();
+  }
+
+  @Benchmark
+  public double knnHeapInsertToList() {
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    int i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      heap.insert(keys[i], it);
+    }
+    return heap.toKNNList().getKNNDistance();
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.data.DoubleVector;
+import elki.data.SparseDoubleVector;
+import elki.distance.minkowski.*;
+
+/**
+ * Benchmark the Minkowski distance kernels, for dense and sparse vectors of
+ * varying dimensionality.
+ * <p>
+ * Each invocation computes the distances of one query to a block of vectors,
+ * to reduce the measurement overhead of very cheap low-dimensional kernels.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinkowskiDistanceBenchmark {
+  /**
+   * Number of vectors per invocation.
+   */
+  private static final int BLOCK = 256;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "10", "100", "1000" })
+  public int dim;
+
+  /**
+   * Fraction of non-zero values in the sparse vectors.
+   */
+  @Param({ "0.1" })
+  public double density;
+
+  /**
+   * Dense data.
+   */
+  private DoubleVector[] dense;
+
+  /**
+   * Sparse data.
+   */
+  private SparseDoubleVector[] sparse;
+
+  /**
+   * General Lp distance, for a non-integer p.
+   */
+  private LPNormDistance lp = new LPNormDistance(1.5);
+
+  /**
+   * Sparse general Lp distance.
+   */
+  private SparseLPNormDistance sparselp = new SparseLPNormDistance(1.5);
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    dense = new DoubleVector[BLOCK + 1];
+    sparse = new SparseDoubleVector[BLOCK + 1];
+    for(int i = 0; i <= BLOCK; i++) {
+      double[] d = new double[dim], s = new double[dim];
+      for(int j = 0; j < dim; j++) {
+        d[j] = rnd.nextDouble();
+        s[j] = rnd.nextDouble() < density ? rnd.nextDouble() : 0.;
+      }
+      dense[i] = new DoubleVector(d);
+      sparse[i] = new SparseDoubleVector(s);
+    }
+  }
+
+  @Benchmark
+  public double euclideanDense() {
+    final DoubleVector q = dense[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += EuclideanDistance.STATIC.distance(q, dense[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double squaredEuclideanDense() {
+    final DoubleVector q = dense[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += SquaredEuclideanDistance.STATIC.distance(q, dense[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double manhattanDense() {
+    final DoubleVector q = dense[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += ManhattanDistance.STATIC.distance(q, dense[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double maximumDense() {
+    final DoubleVector q = dense[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += MaximumDistance.STATIC.distance(q, dense[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double lpNormDense() {
+    final DoubleVector q = dense[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += lp.distance(q, dense[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double euclideanSparse() {
+    final SparseDoubleVector q = sparse[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += SparseEuclideanDistance.STATIC.distance(q, sparse[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double squaredEuclideanSparse() {
+    final SparseDoubleVector q = sparse[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += SparseSquaredEuclideanDistance.STATIC.distance(q, sparse[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double manhattanSparse() {
+    final SparseDoubleVector q = sparse[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += SparseManhattanDistance.STATIC.distance(q, sparse[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double maximumSparse() {
+    final SparseDoubleVector q = sparse[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += SparseMaximumDistance.STATIC.distance(q, sparse[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double lpNormSparse() {
+    final SparseDoubleVector q = sparse[BLOCK];
+    double sum = 0.;
+    for(int i = 0; i < BLOCK; i++) {
+      sum += sparselp.distance(q, sparse[i]);
+    }
+    return sum;
+  }
+}
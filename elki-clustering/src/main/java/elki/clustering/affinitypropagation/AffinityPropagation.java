@@ -80,22 +80,22 @@ public class AffinityPropagation<O> implements ClusteringAlgorithm<Clustering<Me
   /**
    * Similarity initialization
    */
-  AffinityPropagationInitialization<O> initialization;
+  protected AffinityPropagationInitialization<O> initialization;
 
   /**
    * Damping factor lambda.
    */
-  double lambda = 0.5;
+  protected double lambda = 0.5;
 
   /**
    * Terminate after 10 iterations with no changes.
    */
-  int convergence = 10;
+  protected int convergence = 10;
 
   /**
    * Maximum number of iterations.
    */
-  int maxiter = 1000;
+  protected int maxiter = 1000;
 
   /**
    * Constructor.
@@ -288,7 +288,7 @@ public class AffinityPropagation<O> implements ClusteringAlgorithm<Clustering<Me
    * @param assignment Assignment index
    * @return Clustering
    */
-  private Clustering<MedoidModel> buildResult(ArrayDBIDs ids, int[] assignment) {
+  protected Clustering<MedoidModel> buildResult(ArrayDBIDs ids, int[] assignment) {
     Int2ObjectOpenHashMap<ModifiableDBIDs> map = makeClusterMap(ids, assignment);
 
     Clustering<MedoidModel> clustering = new Clustering<>();
@@ -346,22 +346,22 @@ public class AffinityPropagation<O> implements ClusteringAlgorithm<Clustering<Me
     /**
      * Initialization function for the similarity matrix.
      */
-    AffinityPropagationInitialization<O> initialization;
+    protected AffinityPropagationInitialization<O> initialization;
 
     /**
      * Dampening parameter.
      */
-    double lambda = .5;
+    protected double lambda = .5;
 
     /**
      * Number of stable iterations for convergence.
      */
-    int convergence;
+    protected int convergence;
 
     /**
      * Maximum number of iterations.
      */
-    int maxiter;
+    protected int maxiter;
 
     @Override
     public void configure(Parameterization config) {
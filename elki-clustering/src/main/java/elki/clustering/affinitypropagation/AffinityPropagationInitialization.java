@@ -46,10 +46,82 @@ public interface AffinityPropagationInitialization<O> {
    */
   double[][] getSimilarityMatrix(Relation<O> relation, ArrayDBIDs ids);
 
+  /**
+   * Compute the initial similarity matrix, and write it into the given target
+   * storage, without materializing a {@code double[][]} matrix.
+   * <p>
+   * The default implementation computes the full similarity matrix first, and
+   * releases each row after copying it; implementations should override this
+   * to save memory.
+   *
+   * @param relation Data relation
+   * @param ids indexed DBIDs
+   * @param target Target storage
+   */
+  default void fillSimilarityMatrix(Relation<O> relation, ArrayDBIDs ids, Target target) {
+    double[][] mat = getSimilarityMatrix(relation, ids);
+    final int size = mat.length;
+    for(int i = 0; i < size; i++) {
+      final double[] mati = mat[i];
+      for(int j = 0; j < size; j++) {
+        target.set(i, j, mati[j]);
+      }
+      mat[i] = null; // Release memory early
+    }
+  }
+
+  /**
+   * Compute sparse similarities, keeping only the k most similar objects of
+   * each object, and the diagonal.
+   * <p>
+   * The default implementation computes the full similarity matrix first;
+   * implementations should override this to save memory.
+   *
+   * @param relation Data relation
+   * @param ids indexed DBIDs
+   * @param k Number of similar objects to keep
+   * @return Sparse similarities
+   */
+  default SparseSimilarities getSparseSimilarities(Relation<O> relation, ArrayDBIDs ids, int k) {
+    double[][] mat = getSimilarityMatrix(relation, ids);
+    final int size = mat.length;
+    SparseSimilarities sparse = new SparseSimilarities(size, k);
+    SparseSimilarities.Row row = new SparseSimilarities.Row(sparse.getK());
+    for(int i = 0; i < size; i++) {
+      final double[] mati = mat[i];
+      row.clear();
+      for(int j = 0; j < size; j++) {
+        if(j != i) {
+          row.add(j, mati[j]);
+        }
+      }
+      sparse.setRow(i, mati[i], row);
+      mat[i] = null; // Release memory early
+    }
+    return sparse;
+  }
+
   /**
    * Get the data type information for the similarity computations.
    * 
    * @return Data type
    */
   TypeInformation getInputTypeRestriction();
+
+  /**
+   * Target storage for the similarity matrix.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  interface Target {
+    /**
+     * Store a similarity.
+     *
+     * @param i Row
+     * @param j Column
+     * @param v Similarity
+     */
+    void set(int i, int j, double v);
+  }
 }
@@ -22,13 +22,18 @@ package elki.clustering.affinitypropagation;
 
 import elki.data.type.TypeInformation;
 import elki.database.ids.ArrayDBIDs;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
 import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DoubleDBIDListIter;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.KNNSearcher;
 import elki.database.relation.Relation;
 import elki.distance.Distance;
 import elki.distance.minkowski.SquaredEuclideanDistance;
-import elki.utilities.datastructures.QuickSelect;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
@@ -37,6 +42,9 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Distance based initialization.
+ * <p>
+ * The preference is a quantile of the negative distances; for large data sets,
+ * it is estimated from a sample (see {@link SimilaritySample}).
  * 
  * @author Erich Schubert
  * @since 0.6.0
@@ -68,28 +76,60 @@ public class DistanceBasedInitializationWithMedian<O> implements AffinityPropaga
 
   @Override
   public double[][] getSimilarityMatrix(Relation<O> relation, ArrayDBIDs ids) {
-    DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
     final int size = ids.size();
     double[][] mat = new double[size][size];
-    double[] flat = new double[(size * (size - 1)) >> 1];
+    fillSimilarityMatrix(relation, ids, (i, j, v) -> mat[i][j] = v);
+    return mat;
+  }
+
+  @Override
+  public void fillSimilarityMatrix(Relation<O> relation, ArrayDBIDs ids, Target target) {
+    DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
+    final int size = ids.size();
+    SimilaritySample sample = new SimilaritySample(size);
     DBIDArrayIter i1 = ids.iter(), i2 = ids.iter();
-    int j = 0;
     for(int i = 0; i < size; i++, i1.advance()) {
-      double[] mati = mat[i];
       i2.seek(i + 1);
       for(int k = i + 1; k < size; k++, i2.advance()) {
-        mati[k] = -dq.distance(i1, i2);
-        mat[k][i] = mati[k]; // symmetry.
-        flat[j++] = mati[k];
+        final double v = -dq.distance(i1, i2);
+        sample.add(v);
+        target.set(i, k, v);
+        target.set(k, i, v); // symmetry.
       }
     }
-    assert j == (size * (size - 1)) >>> 1;
-    double median = QuickSelect.quantile(flat, quantile);
+    double median = sample.quantile(quantile);
     // On the diagonal, we place the median
     for(int i = 0; i < size; i++) {
-      mat[i][i] = median;
+      target.set(i, i, median);
     }
-    return mat;
+  }
+
+  @Override
+  public SparseSimilarities getSparseSimilarities(Relation<O> relation, ArrayDBIDs ids, int k) {
+    final int size = ids.size();
+    SparseSimilarities sparse = new SparseSimilarities(size, k);
+    final int kk = sparse.getK();
+    KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(relation, distance).kNNByDBID(kk + 1);
+    WritableIntegerDataStore index = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      index.putInt(it, it.getOffset());
+    }
+    SparseSimilarities.Row row = new SparseSimilarities.Row(kk);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final int i = it.getOffset();
+      row.clear();
+      for(DoubleDBIDListIter n = knnq.getKNN(it, kk + 1).iter(); n.valid() && row.size() < kk; n.advance()) {
+        final int j = index.intValue(n);
+        if(j != i) {
+          row.add(j, -n.doubleValue());
+        }
+      }
+      sparse.setRow(i, 0., row);
+    }
+    index.destroy();
+    // On the diagonal, we place the median of the retained similarities
+    sparse.setPreference(sparse.quantile(quantile));
+    return sparse;
   }
 
   @Override
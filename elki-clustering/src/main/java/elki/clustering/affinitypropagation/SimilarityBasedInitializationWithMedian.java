@@ -28,7 +28,6 @@ import elki.database.query.similarity.SimilarityQuery;
 import elki.database.relation.Relation;
 import elki.similarity.Similarity;
 import elki.similarity.kernel.LinearKernel;
-import elki.utilities.datastructures.QuickSelect;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
@@ -37,6 +36,9 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
  * Similarity based initialization.
+ * <p>
+ * The preference is a quantile of the centered similarities; for large data
+ * sets, it is estimated from a sample (see {@link SimilaritySample}).
  * 
  * @author Erich Schubert
  * @since 0.6.0
@@ -69,32 +71,65 @@ public class SimilarityBasedInitializationWithMedian<O> implements AffinityPropa
   @Override
   public double[][] getSimilarityMatrix(Relation<O> relation, ArrayDBIDs ids) {
     final int size = ids.size();
-    SimilarityQuery<O> sq = new QueryBuilder<>(relation, similarity).similarityQuery();
     double[][] mat = new double[size][size];
-    double[] flat = new double[(size * (size - 1)) >> 1];
+    fillSimilarityMatrix(relation, ids, (i, j, v) -> mat[i][j] = v);
+    return mat;
+  }
+
+  @Override
+  public void fillSimilarityMatrix(Relation<O> relation, ArrayDBIDs ids, Target target) {
+    final int size = ids.size();
+    SimilarityQuery<O> sq = new QueryBuilder<>(relation, similarity).similarityQuery();
+    SimilaritySample sample = new SimilaritySample(size);
     DBIDArrayIter i1 = ids.iter(), i2 = ids.iter();
     // Compute self-similarities first, for centering:
+    double[] self = new double[size];
     for(int i = 0; i < size; i++, i1.advance()) {
-      mat[i][i] = sq.similarity(i1, i1) * .5;
+      self[i] = sq.similarity(i1, i1) * .5;
     }
     i1.seek(0);
-    int j = 0;
     for(int i = 0; i < size; i++, i1.advance()) {
-      final double[] mati = mat[i]; // Probably faster access.
       i2.seek(i + 1);
       for(int k = i + 1; k < size; k++, i2.advance()) {
-        mati[k] = sq.similarity(i1, i2) - mati[i] - mat[k][k];
-        mat[k][i] = mati[k]; // symmetry.
-        flat[j++] = mati[k];
+        final double v = sq.similarity(i1, i2) - self[i] - self[k];
+        sample.add(v);
+        target.set(i, k, v);
+        target.set(k, i, v); // symmetry.
       }
     }
-    assert j == (size * (size - 1)) >>> 1;
-    double median = QuickSelect.quantile(flat, quantile);
+    double median = sample.quantile(quantile);
     // On the diagonal, we place the median
     for(int i = 0; i < size; i++) {
-      mat[i][i] = median;
+      target.set(i, i, median);
     }
-    return mat;
+  }
+
+  @Override
+  public SparseSimilarities getSparseSimilarities(Relation<O> relation, ArrayDBIDs ids, int k) {
+    final int size = ids.size();
+    SimilarityQuery<O> sq = new QueryBuilder<>(relation, similarity).similarityQuery();
+    SparseSimilarities sparse = new SparseSimilarities(size, k);
+    DBIDArrayIter i1 = ids.iter(), i2 = ids.iter();
+    // Compute self-similarities first, for centering:
+    double[] self = new double[size];
+    for(int i = 0; i < size; i++, i1.advance()) {
+      self[i] = sq.similarity(i1, i1) * .5;
+    }
+    SparseSimilarities.Row row = new SparseSimilarities.Row(sparse.getK());
+    i1.seek(0);
+    for(int i = 0; i < size; i++, i1.advance()) {
+      row.clear();
+      i2.seek(0);
+      for(int j = 0; j < size; j++, i2.advance()) {
+        if(j != i) {
+          row.add(j, sq.similarity(i1, i2) - self[i] - self[j]);
+        }
+      }
+      sparse.setRow(i, 0., row);
+    }
+    // On the diagonal, we place the median of the retained similarities
+    sparse.setPreference(sparse.quantile(quantile));
+    return sparse;
   }
 
   @Override
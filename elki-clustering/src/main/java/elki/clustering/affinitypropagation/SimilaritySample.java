@@ -0,0 +1,94 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.affinitypropagation;
+
+import elki.utilities.datastructures.QuickSelect;
+
+/**
+ * Sample of the off-diagonal similarities, to choose the preference as a
+ * quantile of these.
+ * <p>
+ * Every pair of objects is offered once, in a fixed order. If there are more
+ * than {@link #MAX_SAMPLE} pairs, every n-th pair is kept, so the quantile is
+ * estimated from a deterministic sample of bounded size; otherwise it is exact.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+class SimilaritySample {
+  /**
+   * Maximum sample size.
+   */
+  static final int MAX_SAMPLE = 1 << 20;
+
+  /**
+   * Sampled similarities.
+   */
+  private final double[] sample;
+
+  /**
+   * Sampling step.
+   */
+  private final long step;
+
+  /**
+   * Number of pairs offered.
+   */
+  private long seen = 0;
+
+  /**
+   * Number of pairs kept.
+   */
+  private int kept = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param size Number of objects
+   */
+  SimilaritySample(int size) {
+    final long pairs = (size * (long) (size - 1)) >>> 1;
+    step = Math.max(1, (pairs + MAX_SAMPLE - 1) / MAX_SAMPLE);
+    sample = new double[(int) ((pairs + step - 1) / step)];
+  }
+
+  /**
+   * Offer the similarity of the next pair.
+   *
+   * @param v Similarity
+   */
+  void add(double v) {
+    if(seen++ % step == 0) {
+      sample[kept++] = v;
+    }
+  }
+
+  /**
+   * Get a quantile of the sample.
+   *
+   * @param quantile Quantile
+   * @return Quantile of the sampled similarities
+   */
+  double quantile(double quantile) {
+    assert kept == sample.length : "Not all pairs were offered.";
+    return kept > 0 ? QuickSelect.quantile(sample, quantile) : 0.;
+  }
+}
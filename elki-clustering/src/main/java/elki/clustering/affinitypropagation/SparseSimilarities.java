@@ -0,0 +1,291 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.affinitypropagation;
+
+import java.util.Arrays;
+
+import elki.utilities.datastructures.QuickSelect;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Sparse similarity input for affinity propagation, keeping only the most
+ * similar objects of each object, and the diagonal (preference) entries.
+ * <p>
+ * Every row has the same number of entries, sorted by column, and the entries
+ * are stored in contiguous arrays in row-major order.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class SparseSimilarities {
+  /**
+   * Number of objects.
+   */
+  private final int size;
+
+  /**
+   * Number of entries per row, including the diagonal.
+   */
+  private final int width;
+
+  /**
+   * Column of each entry.
+   */
+  private final int[] cols;
+
+  /**
+   * Similarity of each entry.
+   */
+  private final double[] sims;
+
+  /**
+   * Constructor.
+   *
+   * @param size Number of objects
+   * @param k Number of similar objects to keep per object
+   */
+  public SparseSimilarities(int size, int k) {
+    this.size = size;
+    this.width = Math.min(k, size - 1) + 1;
+    final long length = size * (long) width;
+    if(length > Integer.MAX_VALUE - 8) {
+      throw new AbortException("Too many similarities for affinity propagation: " + length + " - use a smaller k.");
+    }
+    this.cols = new int[(int) length];
+    this.sims = new double[(int) length];
+  }
+
+  /**
+   * Number of objects.
+   *
+   * @return Size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Number of entries per row, including the diagonal.
+   *
+   * @return Row width
+   */
+  public int width() {
+    return width;
+  }
+
+  /**
+   * Number of similar objects kept per object.
+   *
+   * @return k
+   */
+  public int getK() {
+    return width - 1;
+  }
+
+  /**
+   * Get the column of an entry.
+   *
+   * @param p Entry position
+   * @return Column
+   */
+  public int column(int p) {
+    return cols[p];
+  }
+
+  /**
+   * Get the similarity of an entry.
+   *
+   * @param p Entry position
+   * @return Similarity
+   */
+  public double similarity(int p) {
+    return sims[p];
+  }
+
+  /**
+   * Store a row. The row may be modified.
+   *
+   * @param i Row number
+   * @param diag Diagonal value
+   * @param row Most similar objects, excluding the object itself
+   */
+  public void setRow(int i, double diag, Row row) {
+    assert row.size == width - 1 : "Incomplete row: " + row.size;
+    final int start = i * width;
+    cols[start] = i;
+    sims[start] = diag;
+    System.arraycopy(row.cols, 0, cols, start + 1, row.size);
+    System.arraycopy(row.sims, 0, sims, start + 1, row.size);
+    // Insertion sort by column; rows are short.
+    for(int p = start + 1, end = start + width; p < end; p++) {
+      final int c = cols[p];
+      final double s = sims[p];
+      int q = p - 1;
+      for(; q >= start && cols[q] > c; q--) {
+        cols[q + 1] = cols[q];
+        sims[q + 1] = sims[q];
+      }
+      cols[q + 1] = c;
+      sims[q + 1] = s;
+    }
+  }
+
+  /**
+   * Find an entry.
+   *
+   * @param i Row
+   * @param k Column
+   * @return Position, or a negative value
+   */
+  public int find(int i, int k) {
+    final int start = i * width;
+    final int p = Arrays.binarySearch(cols, start, start + width, k);
+    return p >= start ? p : -1;
+  }
+
+  /**
+   * Set all diagonal entries.
+   *
+   * @param preference Preference value
+   */
+  public void setPreference(double preference) {
+    for(int i = 0; i < size; i++) {
+      sims[find(i, i)] = preference;
+    }
+  }
+
+  /**
+   * Compute a quantile of the off-diagonal similarities, counting every pair of
+   * objects only once, even if it is stored in both rows.
+   *
+   * @param quantile Quantile
+   * @return Quantile of the stored similarities
+   */
+  public double quantile(double quantile) {
+    double[] flat = new double[size * (width - 1)];
+    int j = 0;
+    for(int i = 0, p = 0; i < size; i++) {
+      for(int end = p + width; p < end; p++) {
+        final int k = cols[p];
+        if(k > i || (k < i && find(k, i) < 0)) {
+          flat[j++] = sims[p];
+        }
+      }
+    }
+    return j > 0 ? QuickSelect.quantile(flat, 0, j, quantile) : 0.;
+  }
+
+  /**
+   * Collects the k most similar objects of a row.
+   *
+   * @author Erich Schubert
+   */
+  public static class Row {
+    /**
+     * Columns, organized as a heap by similarity.
+     */
+    private final int[] cols;
+
+    /**
+     * Similarities, organized as a min-heap.
+     */
+    private final double[] sims;
+
+    /**
+     * Current size.
+     */
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param k Number of entries to keep
+     */
+    public Row(int k) {
+      this.cols = new int[k];
+      this.sims = new double[k];
+    }
+
+    /**
+     * Reset the row.
+     */
+    public void clear() {
+      size = 0;
+    }
+
+    /**
+     * Number of entries.
+     *
+     * @return Size
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Add an entry, unless it is less similar than all stored entries. On ties,
+     * earlier entries are kept.
+     *
+     * @param col Column
+     * @param sim Similarity
+     */
+    public void add(int col, double sim) {
+      if(size < sims.length) {
+        // Sift up:
+        int pos = size++;
+        while(pos > 0) {
+          final int parent = (pos - 1) >>> 1;
+          if(sims[parent] <= sim) {
+            break;
+          }
+          cols[pos] = cols[parent];
+          sims[pos] = sims[parent];
+          pos = parent;
+        }
+        cols[pos] = col;
+        sims[pos] = sim;
+        return;
+      }
+      if(size == 0 || sim <= sims[0]) {
+        return;
+      }
+      // Replace the least similar entry, sift down:
+      int pos = 0;
+      while(true) {
+        int child = (pos << 1) + 1;
+        if(child >= size) {
+          break;
+        }
+        if(child + 1 < size && sims[child + 1] < sims[child]) {
+          child++;
+        }
+        if(sim <= sims[child]) {
+          break;
+        }
+        cols[pos] = cols[child];
+        sims[pos] = sims[child];
+        pos = child;
+      }
+      cols[pos] = col;
+      sims[pos] = sim;
+    }
+  }
+}
@@ -0,0 +1,780 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.affinitypropagation.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import elki.clustering.affinitypropagation.AffinityPropagation;
+import elki.clustering.affinitypropagation.AffinityPropagationInitialization;
+import elki.clustering.affinitypropagation.SparseSimilarities;
+import elki.data.Clustering;
+import elki.data.model.MedoidModel;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.Relation;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.progress.MutableProgress;
+import elki.parallel.ParallelCore;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
+import elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Parallel version of affinity propagation.
+ * <p>
+ * The similarity, responsibility and availability matrixes are stored in
+ * contiguous arrays, optionally in single precision to halve the memory use.
+ * The similarities are written into this storage directly by the
+ * initialization, and the message storage is only allocated afterwards.
+ * Responsibilities are updated row-parallel, availabilities column-parallel,
+ * with the same order of operations as {@link AffinityPropagation}; in double
+ * precision, the result is identical to the serial implementation.
+ * <p>
+ * Optionally, only the similarities to the k most similar objects of each
+ * object are kept (see
+ * {@link AffinityPropagationInitialization#getSparseSimilarities}), and the
+ * messages are only exchanged along these pairs. This reduces the memory from
+ * quadratic to linear in the data set size, and usually gives a similar
+ * clustering.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ *
+ * @param <O> object type
+ */
+public class ParallelAffinityPropagation<O> extends AffinityPropagation<O> {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelAffinityPropagation.class);
+
+  /**
+   * Minimum number of rows or columns per task.
+   */
+  private static final int MIN_BLOCK = 16;
+
+  /**
+   * Store the matrixes in single precision.
+   */
+  protected boolean useFloat;
+
+  /**
+   * Number of similar objects to keep, 0 for the full matrix.
+   */
+  protected int sparsek;
+
+  /**
+   * Constructor.
+   *
+   * @param initialization Similarity initialization
+   * @param lambda Damping factor
+   * @param convergence Termination threshold (Number of stable iterations)
+   * @param maxiter Maximum number of iterations
+   * @param useFloat Store the matrixes in single precision
+   * @param sparsek Number of similar objects to keep, 0 for the full matrix
+   */
+  public ParallelAffinityPropagation(AffinityPropagationInitialization<O> initialization, double lambda, int convergence, int maxiter, boolean useFloat, int sparsek) {
+    super(initialization, lambda, convergence, maxiter);
+    this.useFloat = useFloat;
+    this.sparsek = sparsek;
+  }
+
+  @Override
+  public Clustering<MedoidModel> run(Relation<O> relation) {
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    Instance inst = sparsek > 0 ? //
+        new SparseInstance(initialization.getSparseSimilarities(relation, ids, sparsek), lambda, useFloat) : //
+        new DenseInstance(initialization, relation, ids, lambda, useFloat);
+    int[] assignment = new int[size];
+
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Affinity Propagation Iteration", LOG) : null;
+    MutableProgress aprog = LOG.isVerbose() ? new MutableProgress("Stable assignments", size + 1, LOG) : null;
+
+    int inactive = 0;
+    for(int iteration = 0; iteration < maxiter && inactive < convergence; iteration++) {
+      inst.run(Instance.RESPONSIBILITIES, null);
+      inst.run(Instance.AVAILABILITIES, null);
+      int changed = inst.run(Instance.ASSIGNMENT, assignment);
+      inactive = changed > 0 ? 0 : (inactive + 1);
+      LOG.incrementProcessed(prog);
+      if(aprog != null) {
+        aprog.setProcessed(size - changed, LOG);
+      }
+    }
+    if(aprog != null) {
+      aprog.setProcessed(aprog.getTotal(), LOG);
+    }
+    LOG.setCompleted(prog);
+    return buildResult(ids, assignment);
+  }
+
+  /**
+   * Storage of the similarity, responsibility and availability matrixes.
+   *
+   * @author Erich Schubert
+   */
+  private abstract static class Matrixes {
+    /**
+     * Get a similarity.
+     *
+     * @param p Position
+     * @return Similarity
+     */
+    abstract double s(int p);
+
+    /**
+     * Get a responsibility.
+     *
+     * @param p Position
+     * @return Responsibility
+     */
+    abstract double r(int p);
+
+    /**
+     * Get an availability.
+     *
+     * @param p Position
+     * @return Availability
+     */
+    abstract double a(int p);
+
+    /**
+     * Set a similarity.
+     *
+     * @param p Position
+     * @param v New value
+     */
+    abstract void s(int p, double v);
+
+    /**
+     * Set a responsibility.
+     *
+     * @param p Position
+     * @param v New value
+     */
+    abstract void r(int p, double v);
+
+    /**
+     * Set an availability.
+     *
+     * @param p Position
+     * @param v New value
+     */
+    abstract void a(int p, double v);
+
+    /**
+     * Allocate the storage of the responsibilities and availabilities, once
+     * the similarities have been filled in.
+     */
+    abstract void allocateMessages();
+
+    /**
+     * Allocate storage, initially for the similarities only.
+     *
+     * @param length Number of entries
+     * @param useFloat Use single precision
+     * @return Storage
+     */
+    static Matrixes allocate(long length, boolean useFloat) {
+      if(length > Integer.MAX_VALUE - 8) {
+        throw new AbortException("Too many similarities for affinity propagation: " + length + " - use the sparse mode.");
+      }
+      return useFloat ? new FloatMatrixes((int) length) : new DoubleMatrixes((int) length);
+    }
+  }
+
+  /**
+   * Matrixes in double precision.
+   *
+   * @author Erich Schubert
+   */
+  private static class DoubleMatrixes extends Matrixes {
+    /**
+     * Similarities, responsibilities, availabilities.
+     */
+    private final double[] s;
+
+    /**
+     * Responsibilities, availabilities.
+     */
+    private double[] r, a;
+
+    /**
+     * Constructor.
+     *
+     * @param length Number of entries
+     */
+    DoubleMatrixes(int length) {
+      s = new double[length];
+    }
+
+    @Override
+    void allocateMessages() {
+      r = new double[s.length];
+      a = new double[s.length];
+    }
+
+    @Override
+    double s(int p) {
+      return s[p];
+    }
+
+    @Override
+    double r(int p) {
+      return r[p];
+    }
+
+    @Override
+    double a(int p) {
+      return a[p];
+    }
+
+    @Override
+    void s(int p, double v) {
+      s[p] = v;
+    }
+
+    @Override
+    void r(int p, double v) {
+      r[p] = v;
+    }
+
+    @Override
+    void a(int p, double v) {
+      a[p] = v;
+    }
+  }
+
+  /**
+   * Matrixes in single precision.
+   *
+   * @author Erich Schubert
+   */
+  private static class FloatMatrixes extends Matrixes {
+    /**
+     * Similarities, responsibilities, availabilities.
+     */
+    private final float[] s;
+
+    /**
+     * Responsibilities, availabilities.
+     */
+    private float[] r, a;
+
+    /**
+     * Constructor.
+     *
+     * @param length Number of entries
+     */
+    FloatMatrixes(int length) {
+      s = new float[length];
+    }
+
+    @Override
+    void allocateMessages() {
+      r = new float[s.length];
+      a = new float[s.length];
+    }
+
+    @Override
+    double s(int p) {
+      return s[p];
+    }
+
+    @Override
+    double r(int p) {
+      return r[p];
+    }
+
+    @Override
+    double a(int p) {
+      return a[p];
+    }
+
+    @Override
+    void s(int p, double v) {
+      s[p] = (float) v;
+    }
+
+    @Override
+    void r(int p, double v) {
+      r[p] = (float) v;
+    }
+
+    @Override
+    void a(int p, double v) {
+      a[p] = (float) v;
+    }
+  }
+
+  /**
+   * Instance for a single run.
+   *
+   * @author Erich Schubert
+   */
+  protected abstract static class Instance {
+    /**
+     * Phase: update the responsibilities, by rows.
+     */
+    static final int RESPONSIBILITIES = 0;
+
+    /**
+     * Phase: update the availabilities, by columns.
+     */
+    static final int AVAILABILITIES = 1;
+
+    /**
+     * Phase: update the assignment, by rows.
+     */
+    static final int ASSIGNMENT = 2;
+
+    /**
+     * Number of objects.
+     */
+    final int size;
+
+    /**
+     * Damping factor lambda.
+     */
+    final double lambda;
+
+    /**
+     * Matrix storage.
+     */
+    final Matrixes m;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of objects
+     * @param length Number of matrix entries
+     * @param lambda Damping factor
+     * @param useFloat Use single precision
+     */
+    Instance(int size, long length, double lambda, boolean useFloat) {
+      this.size = size;
+      this.lambda = lambda;
+      this.m = Matrixes.allocate(length, useFloat);
+    }
+
+    /**
+     * Run one phase, in parallel.
+     *
+     * @param phase Phase
+     * @param assignment Assignment (for the assignment phase)
+     * @return Number of changed assignments
+     */
+    int run(int phase, int[] assignment) {
+      final ForkJoinPool pool = ParallelCore.getCore().getForkJoinPool();
+      if(size < 2 * MIN_BLOCK || pool.getParallelism() <= 1) {
+        return process(phase, 0, size, assignment);
+      }
+      final int minblock = Math.max(MIN_BLOCK, size / (pool.getParallelism() << 3));
+      return pool.invoke(new Task(phase, 0, size, minblock, assignment));
+    }
+
+    /**
+     * Process a range of rows or columns.
+     *
+     * @param phase Phase
+     * @param start First row or column
+     * @param end End row or column (exclusive)
+     * @param assignment Assignment (for the assignment phase)
+     * @return Number of changed assignments
+     */
+    int process(int phase, int start, int end, int[] assignment) {
+      switch(phase){
+      case RESPONSIBILITIES:
+        for(int i = start; i < end; i++) {
+          updateResponsibilities(i);
+        }
+        return 0;
+      case AVAILABILITIES:
+        updateAvailabilities(start, end);
+        return 0;
+      case ASSIGNMENT:
+        int changed = 0;
+        for(int i = start; i < end; i++) {
+          changed += updateAssignment(i, assignment);
+        }
+        return changed;
+      default:
+        throw new IllegalStateException();
+      }
+    }
+
+    /**
+     * Update the responsibilities of one row.
+     *
+     * @param i Row
+     */
+    abstract void updateResponsibilities(int i);
+
+    /**
+     * Update the availabilities of a range of columns.
+     *
+     * @param start First column
+     * @param end End column (exclusive)
+     */
+    abstract void updateAvailabilities(int start, int end);
+
+    /**
+     * Update the assignment of one row.
+     *
+     * @param i Row
+     * @param assignment Assignment storage
+     * @return 1 if the assignment changed
+     */
+    abstract int updateAssignment(int i, int[] assignment);
+
+    /**
+     * Update the responsibilities of a row, stored contiguously.
+     *
+     * @param start First position of the row
+     * @param end End position of the row
+     */
+    void updateRow(int start, int end) {
+      // Find the two largest values
+      double max1 = Double.NEGATIVE_INFINITY, max2 = Double.NEGATIVE_INFINITY;
+      int maxk = -1;
+      for(int p = start; p < end; p++) {
+        double val = m.a(p) + m.s(p);
+        if(val > max1) {
+          max2 = max1;
+          max1 = val;
+          maxk = p;
+        }
+        else if(val > max2) {
+          max2 = val;
+        }
+      }
+      // With the maximum value known, update r:
+      for(int p = start; p < end; p++) {
+        double val = m.s(p) - ((p != maxk) ? max1 : max2);
+        m.r(p, m.r(p) * lambda + val * (1. - lambda));
+      }
+    }
+
+    /**
+     * Task to process a range of rows or columns.
+     *
+     * @author Erich Schubert
+     */
+    private class Task extends RecursiveTask<Integer> {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Phase to run.
+       */
+      private final int phase;
+
+      /**
+       * Rows or columns to process.
+       */
+      private final int start, end;
+
+      /**
+       * Minimum number of rows or columns per task.
+       */
+      private final int minblock;
+
+      /**
+       * Assignment storage.
+       */
+      private final int[] assignment;
+
+      /**
+       * Constructor.
+       *
+       * @param phase Phase to run
+       * @param start First row or column
+       * @param end End (exclusive)
+       * @param minblock Minimum number of rows or columns per task
+       * @param assignment Assignment storage
+       */
+      Task(int phase, int start, int end, int minblock, int[] assignment) {
+        this.phase = phase;
+        this.start = start;
+        this.end = end;
+        this.minblock = minblock;
+        this.assignment = assignment;
+      }
+
+      @Override
+      protected Integer compute() {
+        if(end - start < 2 * minblock) {
+          return process(phase, start, end, assignment);
+        }
+        final int mid = (start + end) >>> 1;
+        Task left = new Task(phase, start, mid, minblock, assignment);
+        left.fork();
+        final int right = new Task(phase, mid, end, minblock, assignment).compute();
+        return left.join() + right;
+      }
+    }
+  }
+
+  /**
+   * Instance on the full similarity matrix, stored row-major.
+   *
+   * @author Erich Schubert
+   */
+  protected static class DenseInstance extends Instance {
+    /**
+     * Constructor, filling the similarity matrix in place.
+     *
+     * @param initialization Similarity initialization
+     * @param relation Data relation
+     * @param ids Indexed DBIDs
+     * @param lambda Damping factor
+     * @param useFloat Use single precision
+     * @param <O> Object type
+     */
+    <O> DenseInstance(AffinityPropagationInitialization<O> initialization, Relation<O> relation, ArrayDBIDs ids, double lambda, boolean useFloat) {
+      super(ids.size(), ids.size() * (long) ids.size(), lambda, useFloat);
+      initialization.fillSimilarityMatrix(relation, ids, (i, j, v) -> m.s(i * size + j, v));
+      m.allocateMessages();
+    }
+
+    @Override
+    void updateResponsibilities(int i) {
+      updateRow(i * size, (i + 1) * size);
+    }
+
+    @Override
+    void updateAvailabilities(int start, int end) {
+      // Compute sum of max(0, r_ik) for all i, scanning the rows.
+      // For r_kk, don't apply the max.
+      final double[] colposum = new double[end - start];
+      for(int i = 0, row = 0; i < size; i++, row += size) {
+        for(int k = start; k < end; k++) {
+          final double rik = m.r(row + k);
+          if(i == k || rik > 0.) {
+            colposum[k - start] += rik;
+          }
+        }
+      }
+      for(int i = 0, row = 0; i < size; i++, row += size) {
+        for(int k = start; k < end; k++) {
+          final int p = row + k;
+          final double rik = m.r(p);
+          double val = colposum[k - start];
+          // Adjust column sum by the one extra term.
+          if(i == k || rik > 0.) {
+            val -= rik;
+          }
+          if(i != k && val > 0.) { // min
+            val = 0.;
+          }
+          m.a(p, m.a(p) * lambda + val * (1 - lambda));
+        }
+      }
+    }
+
+    @Override
+    int updateAssignment(int i, int[] assignment) {
+      double max = Double.NEGATIVE_INFINITY;
+      int maxj = -1;
+      for(int j = 0, p = i * size; j < size; j++, p++) {
+        double v = m.a(p) + m.r(p);
+        if(v > max || (i == j && v >= max)) {
+          max = v;
+          maxj = j;
+        }
+      }
+      if(assignment[i] != maxj) {
+        assignment[i] = maxj;
+        return 1;
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Instance on sparse similarities, with a fixed number of entries per row.
+   *
+   * @author Erich Schubert
+   */
+  protected static class SparseInstance extends Instance {
+    /**
+     * Entries per row.
+     */
+    private final int width;
+
+    /**
+     * Column of each entry.
+     */
+    private final int[] cols;
+
+    /**
+     * Start of each column in {@link #colpos}.
+     */
+    private final int[] colptr;
+
+    /**
+     * Entry positions, by column and then by row.
+     */
+    private final int[] colpos;
+
+    /**
+     * Constructor.
+     *
+     * @param sims Sparse similarities
+     * @param lambda Damping factor
+     * @param useFloat Use single precision
+     */
+    SparseInstance(SparseSimilarities sims, double lambda, boolean useFloat) {
+      super(sims.size(), sims.size() * (long) sims.width(), lambda, useFloat);
+      this.width = sims.width();
+      final int length = (int) (size * (long) width); // checked by allocate
+      this.cols = new int[length];
+      this.colptr = new int[size + 1];
+      for(int p = 0; p < length; p++) {
+        final int k = cols[p] = sims.column(p);
+        m.s(p, sims.similarity(p));
+        colptr[k + 1]++;
+      }
+      // Transposed index, by counting sort:
+      for(int k = 0; k < size; k++) {
+        colptr[k + 1] += colptr[k];
+      }
+      this.colpos = new int[length];
+      final int[] fill = new int[size];
+      for(int p = 0; p < length; p++) {
+        final int k = cols[p];
+        colpos[colptr[k] + fill[k]++] = p;
+      }
+      m.allocateMessages();
+    }
+
+    @Override
+    void updateResponsibilities(int i) {
+      updateRow(i * width, (i + 1) * width);
+    }
+
+    @Override
+    void updateAvailabilities(int start, int end) {
+      for(int k = start; k < end; k++) {
+        final int cstart = colptr[k], cend = colptr[k + 1];
+        // Compute sum of max(0, r_ik) for all i.
+        // For r_kk, don't apply the max.
+        double colposum = 0.;
+        for(int q = cstart; q < cend; q++) {
+          final int p = colpos[q];
+          final double rik = m.r(p);
+          if(p / width == k || rik > 0.) {
+            colposum += rik;
+          }
+        }
+        for(int q = cstart; q < cend; q++) {
+          final int p = colpos[q];
+          final boolean diag = p / width == k;
+          final double rik = m.r(p);
+          double val = colposum;
+          // Adjust column sum by the one extra term.
+          if(diag || rik > 0.) {
+            val -= rik;
+          }
+          if(!diag && val > 0.) { // min
+            val = 0.;
+          }
+          m.a(p, m.a(p) * lambda + val * (1 - lambda));
+        }
+      }
+    }
+
+    @Override
+    int updateAssignment(int i, int[] assignment) {
+      double max = Double.NEGATIVE_INFINITY;
+      int maxj = -1;
+      for(int p = i * width, end = p + width; p < end; p++) {
+        double v = m.a(p) + m.r(p);
+        final int j = cols[p];
+        if(v > max || (i == j && v >= max)) {
+          max = v;
+          maxj = j;
+        }
+      }
+      if(assignment[i] != maxj) {
+        assignment[i] = maxj;
+        return 1;
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> object type
+   */
+  public static class Par<O> extends AffinityPropagation.Par<O> {
+    /**
+     * Flag to store the matrixes in single precision.
+     */
+    public static final OptionID FLOAT_ID = new OptionID("ap.float", "Store the similarity and message matrixes in single precision, to halve the memory use.");
+
+    /**
+     * Number of similar objects to keep.
+     */
+    public static final OptionID SPARSE_ID = new OptionID("ap.sparse-k", "Only keep the similarities to the k most similar objects of each object. If not set, the full similarity matrix is used.");
+
+    /**
+     * Store the matrixes in single precision.
+     */
+    protected boolean useFloat;
+
+    /**
+     * Number of similar objects to keep, 0 for the full matrix.
+     */
+    protected int sparsek;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new Flag(FLOAT_ID).grab(config, x -> useFloat = x);
+      new IntParameter(SPARSE_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true) //
+          .grab(config, x -> sparsek = x);
+    }
+
+    @Override
+    public ParallelAffinityPropagation<O> make() {
+      return new ParallelAffinityPropagation<>(initialization, lambda, convergence, maxiter, useFloat, sparsek);
+    }
+  }
+}
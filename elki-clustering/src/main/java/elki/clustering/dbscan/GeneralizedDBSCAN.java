@@ -130,7 +130,10 @@ public class GeneralizedDBSCAN implements ClusteringAlgorithm<Clustering<Model>>
     if(!cp.acceptsType(npred.getOutputType())) {
       throw new AbortException("Core predicate and neighbor predicate are not compatible.");
     }
-    return new Instance<>(npred.instantiate(database), cp.instantiate(database), coremodel).run();
+    NeighborPredicate.Instance<?> ni = npred.instantiate(database);
+    Clustering<Model> result = new Instance<>(ni, cp.instantiate(database), coremodel).run();
+    ni.destroy();
+    return result;
   }
 
   @Override
@@ -165,7 +165,17 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
       LOG.warning("Invalid grid width (less than 2*epsilon, recommended 10*epsilon). Increasing grid width automatically.");
       adjgridwidth = 2. * epsilon;
     }
-    return new Instance<V>(distance, epsilon, minpts, adjgridwidth).run(relation);
+    return makeInstance(adjgridwidth).run(relation);
+  }
+
+  /**
+   * Create an instance for a single run.
+   *
+   * @param gridwidth Grid width
+   * @return Instance
+   */
+  protected Instance<V> makeInstance(double gridwidth) {
+    return new Instance<V>(distance, epsilon, minpts, gridwidth);
   }
 
   /**
@@ -229,27 +239,22 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
     /**
      * Data grid partitioning.
      */
-    Long2ObjectOpenHashMap<ModifiableDBIDs> grid;
+    protected Long2ObjectOpenHashMap<ModifiableDBIDs> grid;
 
     /**
      * Core identifier objects (shared to conserve memory).
      */
-    private Core[] cores;
+    protected Core[] cores;
 
     /**
      * Border identifier objects (shared to conserve memory).
      */
-    private Border[] borders;
+    protected Border[] borders;
 
     /**
      * Cluster assignments.
      */
-    private WritableDataStore<Assignment> clusterids;
-
-    /**
-     * Temporary assignments of a single run.
-     */
-    private WritableIntegerDataStore temporary;
+    protected WritableDataStore<Assignment> clusterids;
 
     /**
      * Indicates that the number of grid cells has overflown.
@@ -299,22 +304,36 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
 
       // (Temporary) store the cluster ID assigned.
       clusterids = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP, Assignment.class);
-      temporary = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, UNPROCESSED);
-      final ArrayModifiableDBIDs activeSet = DBIDUtil.newArray();
       // Reserve the first two cluster ids:
-      int clusterid = NOISE + 1;
       this.cores = new Core[2];
       this.borders = new Border[2];
 
+      int clusterid = processCells(relation, mincells);
+      return buildResult(ids, clusterid);
+    }
+
+    /**
+     * Run DBSCAN on each cell that has enough objects, and merge the results.
+     *
+     * @param relation Data relation
+     * @param mincells Number of cells with at least minPts objects
+     * @return Cluster number limit
+     */
+    protected int processCells(Relation<V> relation, int mincells) {
+      // Temporary assignments of a single cell:
+      WritableIntegerDataStore temporary = DataStoreUtil.makeIntegerStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP, UNPROCESSED);
+      // Reserve the first two cluster ids:
+      int clusterid = NOISE + 1;
       // Reused storage for neighbors:
+      final ArrayModifiableDBIDs activeSet = DBIDUtil.newArray();
       ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList(minpts << 1);
-      // Run DBSCAN on each cell that has enough objects.
       FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Processing grid cells", mincells, LOG) : null;
       for(ModifiableDBIDs cellids : grid.values()) {
         if(cellids.size() < minpts) {
           continue; // Too few objects.
         }
-        clusterid += runDBSCANOnCell(cellids, relation, neighbors, activeSet, clusterid);
+        temporary.clear(); // Reset to "UNPROCESSED"
+        clusterid = runDBSCANOnCell(cellids, relation, temporary, neighbors, activeSet, clusterid, LOG.isVerbose());
         // Post-process DBSCAN clustering result:
         updateCoreBorderObjects(clusterid);
         mergeClusterInformation(cellids, temporary, clusterids);
@@ -322,15 +341,25 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
       }
       LOG.ensureCompleted(cprog);
       temporary.destroy();
-
-      return buildResult(ids, clusterid);
+      return clusterid;
     }
 
-    private int runDBSCANOnCell(DBIDs cellids, Relation<V> relation, ModifiableDoubleDBIDList neighbors, ArrayModifiableDBIDs activeSet, int clusterid) {
-      temporary.clear(); // Reset to "UNPROCESSED"
+    /**
+     * Run DBSCAN on a single cell.
+     *
+     * @param cellids Objects in the cell
+     * @param relation Data relation
+     * @param temporary Assignment storage, initially {@link #UNPROCESSED}
+     * @param neighbors Reused storage for neighbors
+     * @param activeSet Reused storage for the active set
+     * @param clusterid First cluster number to use
+     * @param verbose Report progress
+     * @return Next unused cluster number
+     */
+    protected int runDBSCANOnCell(DBIDs cellids, Relation<V> relation, WritableIntegerDataStore temporary, ModifiableDoubleDBIDList neighbors, ArrayModifiableDBIDs activeSet, int clusterid, boolean verbose) {
       ProxyView<V> rel = new ProxyView<>(cellids, relation);
       RangeSearcher<DBIDRef> rq = new QueryBuilder<>(rel, distance).rangeByDBID(epsilon);
-      FiniteProgress pprog = LOG.isVerbose() ? new FiniteProgress("Running DBSCAN", cellids.size(), LOG) : null;
+      FiniteProgress pprog = verbose ? new FiniteProgress("Running DBSCAN", cellids.size(), LOG) : null;
       for(DBIDIter id = cellids.iter(); id.valid(); id.advance()) {
         // Skip already processed ids.
         if(temporary.intValue(id) != UNPROCESSED) {
@@ -355,7 +384,7 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      *
      * @param clusterid Number of clusters
      */
-    private void updateCoreBorderObjects(int clusterid) {
+    protected void updateCoreBorderObjects(int clusterid) {
       int i = cores.length;
       cores = Arrays.copyOf(cores, clusterid);
       borders = Arrays.copyOf(borders, clusterid);
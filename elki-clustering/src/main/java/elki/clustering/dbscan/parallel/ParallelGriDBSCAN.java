@@ -0,0 +1,246 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.dbscan.parallel;
+
+import elki.clustering.dbscan.GriDBSCAN;
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.logging.statistics.LongStatistic;
+import elki.math.MathUtil;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+
+/**
+ * Parallel version of GriDBSCAN.
+ * <p>
+ * The grid cells are independent until the final merge, so DBSCAN is run on
+ * all cells concurrently, using a linear scan restricted to the objects of each
+ * cell. Each cell numbers its clusters locally; the partial clusters are then
+ * renumbered and merged in the same order as in the serial version, which is
+ * cheap compared to the range queries. The result, including the assignment
+ * of border points reachable from multiple clusters and the order of the
+ * clusters, is hence the same as with the serial {@link GriDBSCAN}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ *
+ * @param <V> the type of vector the algorithm is applied to
+ */
+public class ParallelGriDBSCAN<V extends NumberVector> extends GriDBSCAN<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelGriDBSCAN.class);
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param distance Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts parameter
+   * @param gridwidth Grid width
+   */
+  public ParallelGriDBSCAN(Distance<? super V> distance, double epsilon, int minpts, double gridwidth) {
+    super(distance, epsilon, minpts, gridwidth);
+  }
+
+  @Override
+  protected GriDBSCAN.Instance<V> makeInstance(double gridwidth) {
+    return new Instance<V>(distance, epsilon, minpts, gridwidth);
+  }
+
+  /**
+   * Instance, for a single run.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  protected static class Instance<V extends NumberVector> extends GriDBSCAN.Instance<V> implements Processor {
+    /**
+     * Data relation.
+     */
+    private Relation<V> relation;
+
+    /**
+     * Cell indexes to process.
+     */
+    private DBIDRange range;
+
+    /**
+     * Cells to process, in the order of the serial version.
+     */
+    private ModifiableDBIDs[] todo;
+
+    /**
+     * Processing order of the cells, largest first.
+     */
+    private int[] order;
+
+    /**
+     * Cluster labels of each cell, in the order of the cell contents.
+     */
+    private int[][] labels;
+
+    /**
+     * Number of clusters found in each cell.
+     */
+    private int[] numclusters;
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance function
+     * @param epsilon Epsilon
+     * @param minpts MinPts
+     * @param gridwidth Grid width
+     */
+    public Instance(Distance<? super V> distance, double epsilon, int minpts, double gridwidth) {
+      super(distance, epsilon, minpts, gridwidth);
+    }
+
+    @Override
+    protected int processCells(Relation<V> relation, int mincells) {
+      this.relation = relation;
+      todo = new ModifiableDBIDs[mincells];
+      int c = 0;
+      for(ModifiableDBIDs cellids : grid.values()) {
+        if(cellids.size() >= minpts) {
+          todo[c++] = cellids;
+        }
+      }
+      assert c == mincells;
+      // Largest cells first, for better load balancing:
+      order = MathUtil.sequence(0, mincells);
+      IntegerArrayQuickSort.sort(order, (a, b) -> Integer.compare(todo[b].size(), todo[a].size()));
+      labels = new int[mincells][];
+      numclusters = new int[mincells];
+      range = DBIDUtil.generateStaticDBIDRange(mincells);
+      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Processing grid cells", mincells, LOG) : null;
+      ParallelExecutor.run(range, cprog, LOG, this);
+      LOG.ensureCompleted(cprog);
+      return mergeCells(relation.getDBIDs());
+    }
+
+    /**
+     * Merge the partial clusters of all cells, in the same order and with the
+     * same cluster numbers as the serial version.
+     *
+     * @param ids Object IDs
+     * @return Cluster number limit
+     */
+    private int mergeCells(DBIDs ids) {
+      WritableIntegerDataStore temporary = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, UNPROCESSED);
+      int clusterid = NOISE + 1;
+      FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Merging partial clusters", todo.length, LOG) : null;
+      for(int i = 0; i < todo.length; i++) {
+        // Renumber the clusters of the cell:
+        final int[] lbl = labels[i];
+        final int off = clusterid - (NOISE + 1);
+        DBIDIter it = todo[i].iter();
+        for(int j = 0; it.valid(); it.advance(), j++) {
+          final int l = lbl[j];
+          temporary.putInt(it, l > NOISE ? l + off : l < 0 ? l - off : l);
+        }
+        clusterid += numclusters[i];
+        updateCoreBorderObjects(clusterid);
+        mergeClusterInformation(todo[i], temporary, clusterids);
+        labels[i] = null;
+        LOG.incrementProcessed(mprog);
+      }
+      LOG.ensureCompleted(mprog);
+      temporary.destroy();
+      labels = null;
+      todo = null;
+      LOG.statistics(new LongStatistic(ParallelGriDBSCAN.class.getName() + ".partial-clusters", clusterid - (NOISE + 1)));
+      return clusterid;
+    }
+
+    @Override
+    public Mapper instantiate(Executor executor) {
+      return new Mapper();
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+
+    /**
+     * Process a subset of the grid cells.
+     *
+     * @author Erich Schubert
+     */
+    private class Mapper implements Processor.Instance {
+      /**
+       * Reused storage for neighbors.
+       */
+      private ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList(minpts << 1);
+
+      /**
+       * Reused storage for the active set.
+       */
+      private ArrayModifiableDBIDs activeSet = DBIDUtil.newArray();
+
+      @Override
+      public void map(DBIDRef id) {
+        final int i = order[range.getOffset(id)];
+        final ModifiableDBIDs cellids = todo[i];
+        WritableIntegerDataStore temporary = DataStoreUtil.makeIntegerStorage(cellids, DataStoreFactory.HINT_TEMP, UNPROCESSED);
+        numclusters[i] = runDBSCANOnCell(cellids, relation, temporary, neighbors, activeSet, NOISE + 1, false) - (NOISE + 1);
+        // Keep only the labels, in the order of the cell:
+        final int[] lbl = labels[i] = new int[cellids.size()];
+        DBIDIter it = cellids.iter();
+        for(int j = 0; it.valid(); it.advance(), j++) {
+          lbl[j] = temporary.intValue(it);
+        }
+        temporary.destroy();
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Vector type to use
+   */
+  public static class Par<O extends NumberVector> extends GriDBSCAN.Par<O> {
+    @Override
+    public ParallelGriDBSCAN<O> make() {
+      return new ParallelGriDBSCAN<>(distance, epsilon, minpts, gridwidth);
+    }
+  }
+}
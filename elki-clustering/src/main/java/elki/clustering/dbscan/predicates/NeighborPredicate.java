@@ -90,5 +90,12 @@ public interface NeighborPredicate<T> {
      * @return iterator
      */
     DBIDIter iterDBIDs(T neighbors);
+
+    /**
+     * Release the resources of the instance, once the algorithm is done.
+     */
+    default void destroy() {
+      // Nothing to do by default.
+    }
   }
 }
\ No newline at end of file
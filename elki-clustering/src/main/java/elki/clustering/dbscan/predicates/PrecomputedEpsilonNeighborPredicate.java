@@ -0,0 +1,149 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.dbscan.predicates;
+
+import elki.clustering.dbscan.util.NeighborhoodCache;
+import elki.database.Database;
+import elki.database.ids.DBIDs;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.Flag;
+
+/**
+ * Epsilon neighborhood predicate that precomputes all neighborhoods in
+ * parallel.
+ * <p>
+ * The range queries are run concurrently when the predicate is instantiated,
+ * and stored in a compact {@link NeighborhoodCache}. Generalized DBSCAN then
+ * expands the clusters serially from the cache, with the same result as when
+ * using {@link EpsilonNeighborPredicate}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @composed - - - NeighborhoodCache
+ *
+ * @param <O> object type
+ */
+public class PrecomputedEpsilonNeighborPredicate<O> extends EpsilonNeighborPredicate<O> {
+  /**
+   * Memory budget for the neighborhoods in bytes, 0 for no limit.
+   */
+  protected long memory;
+
+  /**
+   * Use batch range queries.
+   */
+  protected boolean batch;
+
+  /**
+   * Full constructor.
+   *
+   * @param epsilon Epsilon value
+   * @param distance Distance function to use
+   * @param memory Memory budget for the neighborhoods in bytes, 0 for no limit
+   * @param batch Use batch range queries
+   */
+  public PrecomputedEpsilonNeighborPredicate(double epsilon, Distance<? super O> distance, long memory, boolean batch) {
+    super(epsilon, distance);
+    this.memory = memory;
+    this.batch = batch;
+  }
+
+  @Override
+  public Instance instantiate(Database database) {
+    Relation<O> relation = database.getRelation(distance.getInputTypeRestriction());
+    return new Instance(epsilon, new NeighborhoodCache<>(relation, distance, epsilon, memory, batch), relation.getDBIDs());
+  }
+
+  /**
+   * Instance using a neighborhood cache.
+   *
+   * @author Erich Schubert
+   */
+  public static class Instance extends EpsilonNeighborPredicate.Instance {
+    /**
+     * Constructor.
+     *
+     * @param epsilon Epsilon
+     * @param cache Neighborhood cache
+     * @param ids DBIDs to process
+     */
+    public Instance(double epsilon, NeighborhoodCache<?> cache, DBIDs ids) {
+      super(epsilon, cache, ids);
+    }
+
+    @Override
+    public void destroy() {
+      ((NeighborhoodCache<?>) rq).destroy();
+    }
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> object type
+   */
+  public static class Par<O> extends EpsilonNeighborPredicate.Par<O> {
+    /**
+     * Memory budget for the precomputed neighborhoods.
+     */
+    public static final OptionID MEMORY_ID = new OptionID("dbscan.cache.memory", "Memory budget for the precomputed neighborhoods in megabytes; the remaining neighborhoods are computed on demand.");
+
+    /**
+     * Flag to use batch range queries.
+     */
+    public static final OptionID BATCH_ID = new OptionID("dbscan.cache.batch", "Precompute neighborhoods with batch range queries. Neighbors at tied distances may be processed in a different order.");
+
+    /**
+     * Memory budget in bytes, 0 for no limit.
+     */
+    protected long memory;
+
+    /**
+     * Use batch range queries.
+     */
+    protected boolean batch;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new DoubleParameter(MEMORY_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .setOptional(true) //
+          .grab(config, x -> memory = (long) (x * 1048576));
+      new Flag(BATCH_ID).grab(config, x -> batch = x);
+    }
+
+    @Override
+    public PrecomputedEpsilonNeighborPredicate<O> make() {
+      return new PrecomputedEpsilonNeighborPredicate<>(epsilon, distfun, memory, batch);
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.dbscan.util;
+
+import java.util.Arrays;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.range.BatchRangeSearcher;
+import elki.database.query.range.RangeSearcher;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.logging.statistics.LongStatistic;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+
+/**
+ * Precomputed epsilon neighborhoods of all objects, stored compactly in
+ * primitive arrays (compressed sparse rows: an offset array, and the object
+ * offsets and distances of all neighbors).
+ * <p>
+ * The range queries are run in parallel, in blocks of objects, and each
+ * neighborhood is stored in the order returned by the query. Answering a query
+ * from the cache hence gives exactly the same result as the range query, and
+ * algorithms such as OPTICS and DBSCAN produce the same result as with the
+ * serial queries.
+ * <p>
+ * If a memory budget is given, neighborhoods are only stored until the budget
+ * is exhausted; the remaining neighborhoods are computed on demand.
+ * <p>
+ * Alternatively, the queries can be answered by a batch range query, which can
+ * share work between the queries of a block. Batch queries return sorted
+ * neighborhoods, so the order of neighbors with tied distances may differ from
+ * the individual queries.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> Object type
+ */
+public class NeighborhoodCache<O> implements RangeSearcher<DBIDRef> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(NeighborhoodCache.class);
+
+  /**
+   * Number of objects precomputed at once.
+   */
+  private static final int BLOCK = 4096;
+
+  /**
+   * Largest array size we allocate.
+   */
+  private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+  /**
+   * Data relation.
+   */
+  private final Relation<O> relation;
+
+  /**
+   * Distance function.
+   */
+  private final Distance<? super O> distance;
+
+  /**
+   * Query radius.
+   */
+  private final double epsilon;
+
+  /**
+   * Object ids, in storage order.
+   */
+  private final ArrayDBIDs ids;
+
+  /**
+   * Offset of each object in {@link #ids}.
+   */
+  private final WritableIntegerDataStore index;
+
+  /**
+   * Range query for objects not in the cache.
+   */
+  private final RangeSearcher<DBIDRef> fallback;
+
+  /**
+   * Start of the neighbors of each cached object; one extra entry for the end.
+   */
+  private int[] offsets;
+
+  /**
+   * Offsets of the neighbors in {@link #ids}.
+   */
+  private int[] neighbors;
+
+  /**
+   * Distances of the neighbors.
+   */
+  private double[] dists;
+
+  /**
+   * Number of cached objects (a prefix of {@link #ids}).
+   */
+  private int cached = 0;
+
+  /**
+   * Maximum number of neighbors to store.
+   */
+  private final int capacity;
+
+  /**
+   * Constructor, precomputes the neighborhoods.
+   *
+   * @param relation Data relation
+   * @param distance Distance function
+   * @param epsilon Query radius
+   * @param memory Memory budget in bytes, 0 for no limit
+   * @param batch Use batch range queries
+   */
+  public NeighborhoodCache(Relation<O> relation, Distance<? super O> distance, double epsilon, long memory, boolean batch) {
+    this.relation = relation;
+    this.distance = distance;
+    this.epsilon = epsilon;
+    this.ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    this.index = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      index.putInt(it, it.getOffset());
+    }
+    this.fallback = new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+    final long budget = memory > 0 ? (memory - (size + 1L) * Integer.BYTES) / (Integer.BYTES + Double.BYTES) : MAX_ARRAY;
+    this.capacity = (int) Math.max(0, Math.min(budget, MAX_ARRAY));
+    this.offsets = new int[size + 1];
+    final int initial = (int) Math.min(capacity, Math.max(16, size * 8L));
+    this.neighbors = new int[initial];
+    this.dists = new double[initial];
+    precompute(batch);
+  }
+
+  /**
+   * Precompute the neighborhoods, block by block.
+   *
+   * @param batch Use batch range queries
+   */
+  private void precompute(boolean batch) {
+    final int size = ids.size();
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing neighborhoods", size, LOG) : null;
+    final BatchRangeSearcher<O> bq = batch ? new QueryBuilder<>(relation, distance).rangeBatch(epsilon) : null;
+    for(int start = 0; start < size; start += BLOCK) {
+      final int end = Math.min(size, start + BLOCK);
+      final ArrayDBIDs block = ids.slice(start, end);
+      final DoubleDBIDList[] lists;
+      if(bq != null) {
+        lists = bq.getRange(block, epsilon);
+        if(prog != null) {
+          prog.setProcessed(end, LOG);
+        }
+      }
+      else {
+        lists = new DoubleDBIDList[end - start];
+        ParallelExecutor.run(block, prog, LOG, new QueryProcessor(lists, start));
+      }
+      if(!append(lists)) {
+        break;
+      }
+    }
+    if(prog != null) {
+      prog.setProcessed(size, LOG);
+    }
+    LOG.ensureCompleted(prog);
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(NeighborhoodCache.class.getName() + ".cached-objects", cached));
+      LOG.statistics(new LongStatistic(NeighborhoodCache.class.getName() + ".cached-neighbors", offsets[cached]));
+    }
+  }
+
+  /**
+   * Append the neighborhoods of a block to the cache.
+   *
+   * @param lists Neighborhoods, in storage order
+   * @return {@code false} if the memory budget was exhausted
+   */
+  private boolean append(DoubleDBIDList[] lists) {
+    int p = offsets[cached];
+    for(DoubleDBIDList list : lists) {
+      final int end = p + list.size();
+      if(end < 0 || end > capacity) {
+        LOG.verbose("Memory budget exhausted, computing remaining neighborhoods on demand.");
+        return false;
+      }
+      if(end > neighbors.length) {
+        final int newsize = Math.min(capacity, Math.max(end, neighbors.length + (neighbors.length >> 1)));
+        neighbors = Arrays.copyOf(neighbors, newsize);
+        dists = Arrays.copyOf(dists, newsize);
+      }
+      for(DoubleDBIDListIter it = list.iter(); it.valid(); it.advance(), p++) {
+        neighbors[p] = index.intValue(it);
+        dists[p] = it.doubleValue();
+      }
+      offsets[++cached] = p;
+    }
+    return true;
+  }
+
+  @Override
+  public ModifiableDoubleDBIDList getRange(DBIDRef query, double range, ModifiableDoubleDBIDList result) {
+    final int i = index.intValue(query);
+    if(i < 0 || i >= cached || range > epsilon) {
+      return fallback.getRange(query, range, result);
+    }
+    final DBIDArrayIter it = ids.iter();
+    for(int j = offsets[i], end = offsets[i + 1]; j < end; j++) {
+      final double d = dists[j];
+      if(d <= range) {
+        result.add(d, it.seek(neighbors[j]));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the number of cached neighborhoods.
+   *
+   * @return Number of objects whose neighborhood is stored
+   */
+  public int numCached() {
+    return cached;
+  }
+
+  /**
+   * Release the cache. It must not be used afterwards.
+   */
+  public void destroy() {
+    index.destroy();
+    offsets = neighbors = null;
+    dists = null;
+    cached = 0;
+  }
+
+  /**
+   * Run the range queries of one block.
+   *
+   * @author Erich Schubert
+   */
+  private class QueryProcessor implements Processor {
+    /**
+     * Output neighborhoods.
+     */
+    private final DoubleDBIDList[] lists;
+
+    /**
+     * Offset of the first object of the block.
+     */
+    private final int start;
+
+    /**
+     * Constructor.
+     *
+     * @param lists Output neighborhoods
+     * @param start Offset of the first object of the block
+     */
+    QueryProcessor(DoubleDBIDList[] lists, int start) {
+      this.lists = lists;
+      this.start = start;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      // Range queries may not be thread safe, use one per thread.
+      final RangeSearcher<DBIDRef> rq = new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+      return id -> lists[index.intValue(id) - start] = rq.getRange(id, epsilon, DBIDUtil.newDistanceDBIDList());
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+  }
+}
@@ -108,6 +108,17 @@ public class DiagonalGaussianModel implements EMClusterModel<NumberVector, EMMod
     this.wsum = 0.;
   }
 
+  /**
+   * Constructor for an empty partial model.
+   *
+   * @param dim Dimensionality
+   */
+  private DiagonalGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.nmea = new double[dim];
+    this.variances = new double[dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -141,6 +152,40 @@ public class DiagonalGaussianModel implements EMClusterModel<NumberVector, EMMod
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  @Override
+  public boolean supportsPartialE() {
+    return true;
+  }
+
+  @Override
+  public DiagonalGaussianModel newPartialE() {
+    return new DiagonalGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> other) {
+    final DiagonalGaussianModel o = (DiagonalGaussianModel) other;
+    if(o.wsum < Double.MIN_NORMAL) {
+      return;
+    }
+    final int dim = mean.length;
+    if(wsum < Double.MIN_NORMAL) {
+      wsum = o.wsum;
+      System.arraycopy(o.mean, 0, mean, 0, dim);
+      System.arraycopy(o.variances, 0, variances, 0, dim);
+      return;
+    }
+    final double nwsum = wsum + o.wsum;
+    final double f = o.wsum / nwsum, g = wsum * f;
+    // Combine the variances, c.f. Chan et al.
+    for(int i = 0; i < dim; i++) {
+      final double delta = o.mean[i] - mean[i];
+      variances[i] += o.variances[i] + delta * delta * g;
+      mean[i] += delta * f;
+    }
+    wsum = nwsum;
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = variances.length;
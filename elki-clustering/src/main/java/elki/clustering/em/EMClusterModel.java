@@ -75,6 +75,53 @@ public interface EMClusterModel<O, M extends Model> {
    */
   void updateE(O vec, double weight);
 
+  /**
+   * True, if the model supports partial aggregation of the E step, using
+   * {@link #newPartialE()}, {@link #mergeFirstPassE} and {@link #mergeE}.
+   *
+   * @return {@code true} when partial aggregation is supported.
+   */
+  default boolean supportsPartialE() {
+    return false;
+  }
+
+  /**
+   * Create an empty model to collect partial statistics of the E step, e.g.,
+   * in a separate thread. The partial model must keep the state needed by
+   * {@link #updateE} (such as the mean computed in the first pass).
+   * <p>
+   * Partial models are combined using {@link #mergeFirstPassE} and
+   * {@link #mergeE}. By default, this is not supported (c.f.
+   * {@link #supportsPartialE()}).
+   *
+   * @return Empty partial model
+   */
+  default EMClusterModel<O, M> newPartialE() {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support partial aggregation.");
+  }
+
+  /**
+   * Merge the partial statistics of the first pass of the E step.
+   * <p>
+   * By default, this is not used (c.f. {@link #needsTwoPass()}.
+   *
+   * @param other Partial model, from {@link #newPartialE()}
+   */
+  default void mergeFirstPassE(EMClusterModel<O, M> other) {
+    // empty.
+  }
+
+  /**
+   * Merge the partial statistics of the E step.
+   * <p>
+   * By default, this is not supported (c.f. {@link #supportsPartialE()}).
+   *
+   * @param other Partial model, from {@link #newPartialE()}
+   */
+  default void mergeE(EMClusterModel<O, M> other) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support partial aggregation.");
+  }
+
   /**
    * Finalize the E step.
    * 
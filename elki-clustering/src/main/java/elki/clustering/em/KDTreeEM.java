@@ -180,21 +180,11 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
    */
   private List<TextbookMultivariateGaussianModel> newmodels;
 
-  /**
-   * Solver for quadratic problems
-   */
-  private ConstrainedQuadraticProblemSolver solver;
-
   /**
    * Gaussian scaling factor for likelihood.
    */
   private double ipiPow;
 
-  /**
-   * Cluster weights
-   */
-  private double[] wsum;
-
   /**
    * Perform exact cluster assignments
    */
@@ -225,12 +215,10 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
     for(int i = 0; i < k; i++) {
       newmodels.add(new TextbookMultivariateGaussianModel(0, new double[dim]));
     }
-    wsum = new double[k];
+    Statistics stats = new Statistics(newmodels, new double[k], new ConstrainedQuadraticProblemSolver(dim));
 
     DoubleStatistic likeStat = new DoubleStatistic(this.getClass().getName() + ".loglikelihood");
 
-    // Cache for the quadratic problem to reduce number of created arrays
-    solver = new ConstrainedQuadraticProblemSolver(dim);
     ipiPow = 1 / FastMath.pow(MathUtil.SQRTPI, dim);
 
     // iteration unless no change
@@ -243,10 +231,10 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
       for(TextbookMultivariateGaussianModel c : newmodels) {
         c.beginEStep();
       }
-      Arrays.fill(wsum, 0.);
-      logLikelihood = makeStats(tree, MathUtil.sequence(0, k), null) / relation.size();
+      Arrays.fill(stats.wsum, 0.);
+      logLikelihood = computeStatistics(tree, MathUtil.sequence(0, k), stats, null) / relation.size();
       for(int i = 0; i < k; i++) {
-        final double weight = wsum[i] / relation.size();
+        final double weight = stats.wsum[i] / relation.size();
         if(weight <= Double.MIN_NORMAL) {
           LOG.warning("A cluster has degenerated by pruning.");
           newmodels.get(i).clone(models.get(i));
@@ -258,6 +246,7 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
       List<TextbookMultivariateGaussianModel> tmp = newmodels;
       newmodels = models;
       models = tmp;
+      stats.models = newmodels;
       LOG.statistics(likeStat.setDouble(logLikelihood));
       // check stopping condition
       if(logLikelihood - bestLogLikelihood > delta) {
@@ -281,7 +270,7 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
       logLikelihood = EM.assignProbabilitiesToInstances(relation, models, probClusterIGivenX);
     }
     else {
-      logLikelihood = makeStats(tree, MathUtil.sequence(0, k), probClusterIGivenX) / relation.size();
+      logLikelihood = computeStatistics(tree, MathUtil.sequence(0, k), stats, probClusterIGivenX) / relation.size();
     }
     LOG.statistics(new LongStatistic(this.getClass().getName() + ".iterations", it));
     LOG.statistics(new DoubleStatistic(this.getClass().getName() + ".loglikelihood", logLikelihood));
@@ -303,7 +292,6 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
     else {
       probClusterIGivenX.destroy();
     }
-    solver = null;
     newmodels = null;
     return result;
   }
@@ -341,9 +329,10 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
    * 
    * @param node kd tree node
    * @param indices list of indices to check
+   * @param solver Solver for quadratic problems
    * @return indices that are not pruned, null if everything was pruned
    */
-  private int[] checkStoppingCondition(KDTree node, int[] indices) {
+  private int[] checkStoppingCondition(KDTree node, int[] indices, ConstrainedQuadraticProblemSolver solver) {
     if(!(models.get(0) instanceof TextbookMultivariateGaussianModel)) {
       return indices;
     }
@@ -352,7 +341,7 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
     double[][] minPnts = new double[models.size()][node.sum.length];
     double[][] limits = new double[models.size()][2];
     for(int i : indices) {
-      calculateModelLimits(node, models.get(i), minPnts[i], maxPnts[i], limits[i]);
+      calculateModelLimits(node, models.get(i), minPnts[i], maxPnts[i], limits[i], solver);
     }
     // calculate the complete sum of weighted limits for denominator calculation
     double maxDenomTotal = 0.0, minDenomTotal = 0.0;
@@ -409,8 +398,9 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
    * @param minpnt result array for argmin
    * @param maxpnt result array for argmax
    * @param ret Return array
+   * @param solver Solver for quadratic problems
    */
-  private void calculateModelLimits(KDTree node, TextbookMultivariateGaussianModel model, double[] minpnt, double[] maxpnt, double[] ret) {
+  private void calculateModelLimits(KDTree node, TextbookMultivariateGaussianModel model, double[] minpnt, double[] maxpnt, double[] ret, ConstrainedQuadraticProblemSolver solver) {
     double[] min = minusEquals(minus(node.midpoint, model.mean), node.halfwidth);
     double[] max = plusTimes(min, node.halfwidth, 2);
 
@@ -428,23 +418,52 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
     ret[1] = FastMath.exp(mahalanobisSQDmin * -.5) * f;
   }
 
+  /**
+   * Calculates the statistics on the whole kd-tree.
+   *
+   * @param tree kd-tree root
+   * @param indices list of indices to use in calculation, initially all
+   * @param stats Statistics to update
+   * @param probs cluster assignment
+   * @return log likelihood of the model
+   */
+  protected double computeStatistics(KDTree tree, int[] indices, Statistics stats, WritableDataStore<double[]> probs) {
+    return makeStats(tree, indices, stats, probs);
+  }
+
+  /**
+   * Calculates the statistics of two child nodes.
+   *
+   * @param left left child
+   * @param right right child
+   * @param size size of the parent node
+   * @param indices list of indices to use in calculation
+   * @param stats Statistics to update
+   * @param probs cluster assignment
+   * @return log likelihood of the model
+   */
+  protected double makeChildStats(KDTree left, KDTree right, int size, int[] indices, Statistics stats, WritableDataStore<double[]> probs) {
+    return makeStats(left, indices, stats, probs) + makeStats(right, indices, stats, probs);
+  }
+
   /**
    * Calculates the statistics on the kd-tree needed for the calculation of the
    * new models
    * 
    * @param node next node
    * @param indices list of indices to use in calculation, initially all
+   * @param stats Statistics to update
    * @param probs cluster assignment
    * @return log likelihood of the model
    */
-  private double makeStats(KDTree node, int[] indices, WritableDataStore<double[]> probs) {
+  protected double makeStats(KDTree node, int[] indices, Statistics stats, WritableDataStore<double[]> probs) {
     // Only one possible cluster remaining.
     final int size = node.right - node.left;
     if(indices.length == 1) {
       DoubleVector midpoint = DoubleVector.wrap(times(node.sum, 1.0 / size));
       double logDenSum = models.get(indices[0]).estimateLogDensity(midpoint);
-      wsum[indices[0]] += size;
-      newmodels.get(indices[0]).updateE(node.sum, node.sumSq, 1., size);
+      stats.wsum[indices[0]] += size;
+      stats.models.get(indices[0]).updateE(node.sum, node.sumSq, 1., size);
       if(probs != null) {
         double[] p = new double[k];
         p[indices[0]] = 1;
@@ -456,9 +475,9 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
     }
     // check for pruning possibility
     if(node.leftChild != null) {
-      int[] nextIndices = checkStoppingCondition(node, indices);
+      int[] nextIndices = checkStoppingCondition(node, indices, stats.solver);
       if(nextIndices != null) {
-        return makeStats(node.leftChild, nextIndices, probs) + makeStats(node.rightChild, nextIndices, probs);
+        return makeChildStats(node.leftChild, node.rightChild, size, nextIndices, stats, probs);
       }
     }
     DoubleVector midpoint = DoubleVector.wrap(times(node.sum, 1. / size));
@@ -473,8 +492,8 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
     double[] ps = probs != null ? new double[k] : null;
     for(int i = 0; i < indices.length; i++) {
       final double p = FastMath.exp(logProb[i]);
-      wsum[indices[i]] += p * size;
-      newmodels.get(indices[i]).updateE(node.sum, node.sumSq, p, p * size);
+      stats.wsum[indices[i]] += p * size;
+      stats.models.get(indices[i]).updateE(node.sum, node.sumSq, p, p * size);
       if(ps != null) {
         ps[indices[i]] = p;
       }
@@ -492,12 +511,72 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
     return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
   }
 
+  /**
+   * Create new, empty statistics, e.g., for a separate thread.
+   *
+   * @return Statistics
+   */
+  protected Statistics newStatistics() {
+    List<TextbookMultivariateGaussianModel> partials = new ArrayList<>(newmodels.size());
+    for(TextbookMultivariateGaussianModel m : newmodels) {
+      partials.add(m.newPartialE());
+    }
+    return new Statistics(partials, new double[newmodels.size()], new ConstrainedQuadraticProblemSolver(newmodels.get(0).mean.length));
+  }
+
+  /**
+   * Statistics aggregated on the kd-tree.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Statistics {
+    /**
+     * Models to update.
+     */
+    List<TextbookMultivariateGaussianModel> models;
+
+    /**
+     * Cluster weights
+     */
+    double[] wsum;
+
+    /**
+     * Solver for quadratic problems, to reduce number of created arrays
+     */
+    ConstrainedQuadraticProblemSolver solver;
+
+    /**
+     * Constructor.
+     *
+     * @param models Models to update
+     * @param wsum Cluster weights
+     * @param solver Solver for quadratic problems
+     */
+    protected Statistics(List<TextbookMultivariateGaussianModel> models, double[] wsum, ConstrainedQuadraticProblemSolver solver) {
+      this.models = models;
+      this.wsum = wsum;
+      this.solver = solver;
+    }
+
+    /**
+     * Merge the statistics of another part of the tree.
+     *
+     * @param other Other statistics
+     */
+    public void merge(Statistics other) {
+      for(int i = 0; i < wsum.length; i++) {
+        models.get(i).mergeE(other.models.get(i));
+        wsum[i] += other.wsum[i];
+      }
+    }
+  }
+
   /**
    * KDTree class with the statistics needed for EM clustering.
    * 
    * @author Robert Gehde
    */
-  class KDTree {
+  protected class KDTree {
     /**
      * Child nodes:
      */
@@ -747,12 +826,12 @@ public class KDTreeEM implements ClusteringAlgorithm<Clustering<EMModel>> {
     /**
      * Retain soft assignments?
      */
-    boolean soft = false;
+    protected boolean soft = false;
 
     /**
      * Perform the slower exact assignment step.
      */
-    boolean exactAssign = false;
+    protected boolean exactAssign = false;
 
     @Override
     public void configure(Parameterization config) {
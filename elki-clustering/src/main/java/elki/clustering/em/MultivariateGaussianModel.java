@@ -110,6 +110,17 @@ public class MultivariateGaussianModel implements EMClusterModel<NumberVector, E
     this.logNormDet = FastMath.log(weight) - .5 * logNorm - getHalfLogDeterminant(this.chol);
   }
 
+  /**
+   * Constructor for an empty partial model.
+   *
+   * @param dim Dimensionality
+   */
+  private MultivariateGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.nmea = new double[dim];
+    this.covariance = new double[dim][dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -150,6 +161,52 @@ public class MultivariateGaussianModel implements EMClusterModel<NumberVector, E
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  @Override
+  public boolean supportsPartialE() {
+    return true;
+  }
+
+  @Override
+  public MultivariateGaussianModel newPartialE() {
+    return new MultivariateGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> other) {
+    final MultivariateGaussianModel o = (MultivariateGaussianModel) other;
+    if(o.wsum < Double.MIN_NORMAL) {
+      return;
+    }
+    final int dim = mean.length;
+    if(wsum < Double.MIN_NORMAL) {
+      wsum = o.wsum;
+      System.arraycopy(o.mean, 0, mean, 0, dim);
+      for(int i = 0; i < dim; i++) {
+        System.arraycopy(o.covariance[i], 0, covariance[i], 0, i + 1);
+      }
+      return;
+    }
+    final double nwsum = wsum + o.wsum;
+    final double f = o.wsum / nwsum, g = wsum * f;
+    // Difference of means:
+    for(int i = 0; i < dim; i++) {
+      nmea[i] = o.mean[i] - mean[i];
+    }
+    // Combine the covariance matrixes, c.f. Chan et al.
+    for(int i = 0; i < dim; i++) {
+      final double[] cov_i = covariance[i], ocov_i = o.covariance[i];
+      final double delta_i = nmea[i] * g;
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] += ocov_i[j] + delta_i * nmea[j];
+      }
+      // Other half is NOT updated here, but in finalizeEStep!
+    }
+    for(int i = 0; i < dim; i++) {
+      mean[i] += nmea[i] * f;
+    }
+    wsum = nwsum;
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = covariance.length;
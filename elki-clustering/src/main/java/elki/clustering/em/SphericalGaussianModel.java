@@ -99,6 +99,16 @@ public class SphericalGaussianModel implements EMClusterModel<NumberVector, EMMo
     this.wsum = 0.;
   }
 
+  /**
+   * Constructor for an empty partial model.
+   *
+   * @param dim Dimensionality
+   */
+  private SphericalGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.nmea = new double[dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -131,6 +141,41 @@ public class SphericalGaussianModel implements EMClusterModel<NumberVector, EMMo
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  @Override
+  public boolean supportsPartialE() {
+    return true;
+  }
+
+  @Override
+  public SphericalGaussianModel newPartialE() {
+    return new SphericalGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> other) {
+    final SphericalGaussianModel o = (SphericalGaussianModel) other;
+    if(o.wsum < Double.MIN_NORMAL) {
+      return;
+    }
+    if(wsum < Double.MIN_NORMAL) {
+      wsum = o.wsum;
+      variance = o.variance;
+      System.arraycopy(o.mean, 0, mean, 0, mean.length);
+      return;
+    }
+    final double nwsum = wsum + o.wsum;
+    final double f = o.wsum / nwsum, g = wsum * f;
+    // Combine the variance sums, c.f. Chan et al.
+    double sqdelta = 0.;
+    for(int i = 0; i < mean.length; i++) {
+      final double delta = o.mean[i] - mean[i];
+      sqdelta += delta * delta;
+      mean[i] += delta * f;
+    }
+    variance += o.variance + sqdelta * g;
+    wsum = nwsum;
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = mean.length;
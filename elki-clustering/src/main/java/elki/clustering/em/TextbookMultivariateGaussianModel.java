@@ -107,6 +107,17 @@ public class TextbookMultivariateGaussianModel implements EMClusterModel<NumberV
     this.logNormDet = FastMath.log(weight) - .5 * logNorm - MultivariateGaussianModel.getHalfLogDeterminant(this.chol);
   }
 
+  /**
+   * Constructor for an empty partial model.
+   *
+   * @param dim Dimensionality
+   */
+  private TextbookMultivariateGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.tmp = new double[dim];
+    this.covariance = new double[dim][dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -156,6 +167,24 @@ public class TextbookMultivariateGaussianModel implements EMClusterModel<NumberV
     wsum += wei;
   }
 
+  @Override
+  public boolean supportsPartialE() {
+    return true;
+  }
+
+  @Override
+  public TextbookMultivariateGaussianModel newPartialE() {
+    return new TextbookMultivariateGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> other) {
+    final TextbookMultivariateGaussianModel o = (TextbookMultivariateGaussianModel) other;
+    plusEquals(mean, o.mean);
+    plusEquals(covariance, o.covariance);
+    wsum += o.wsum;
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = covariance.length;
@@ -104,6 +104,17 @@ public class TwoPassMultivariateGaussianModel implements EMClusterModel<NumberVe
     this.logNormDet = FastMath.log(weight) - .5 * logNorm - MultivariateGaussianModel.getHalfLogDeterminant(this.chol);
   }
 
+  /**
+   * Constructor for an empty partial model.
+   *
+   * @param mean Current mean (will be copied)
+   */
+  private TwoPassMultivariateGaussianModel(double[] mean) {
+    this.mean = mean.clone();
+    this.tmp = new double[mean.length];
+    this.covariance = new double[mean.length][mean.length];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -169,6 +180,29 @@ public class TwoPassMultivariateGaussianModel implements EMClusterModel<NumberVe
     }
   }
 
+  @Override
+  public boolean supportsPartialE() {
+    return true;
+  }
+
+  @Override
+  public TwoPassMultivariateGaussianModel newPartialE() {
+    // Partial models of the second pass need the mean of the first pass.
+    return new TwoPassMultivariateGaussianModel(mean);
+  }
+
+  @Override
+  public void mergeFirstPassE(EMClusterModel<NumberVector, EMModel> other) {
+    final TwoPassMultivariateGaussianModel o = (TwoPassMultivariateGaussianModel) other;
+    plusEquals(mean, o.mean);
+    wsum += o.wsum;
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<NumberVector, EMModel> other) {
+    plusEquals(covariance, ((TwoPassMultivariateGaussianModel) other).covariance);
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = covariance.length;
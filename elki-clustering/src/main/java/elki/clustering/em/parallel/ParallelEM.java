@@ -0,0 +1,352 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.em.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import elki.clustering.em.EM;
+import elki.clustering.em.EMClusterModel;
+import elki.clustering.em.EMClusterModelFactory;
+import elki.data.model.MeanModel;
+import elki.data.model.Model;
+import elki.database.datastore.WritableDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.Relation;
+import elki.parallel.ParallelCore;
+
+/**
+ * Parallel version of EM clustering.
+ * <p>
+ * Both the assignment of probabilities and the recomputation of the models are
+ * performed in parallel. Every task aggregates the statistics of a block of
+ * objects into partial models (see {@link EMClusterModel#newPartialE()}),
+ * which are then merged pairwise. The blocks and the order of merging only
+ * depend on the data size, not on the number of threads; hence the log
+ * likelihood and the resulting models are deterministic.
+ * <p>
+ * The recomputation of the models requires cluster models that support
+ * partial aggregation, as all Gaussian models provided with ELKI do. Otherwise,
+ * the models are recomputed serially.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> Vector type
+ * @param <M> Model type
+ */
+public class ParallelEM<O, M extends MeanModel> extends EM<O, M> {
+  /**
+   * Number of objects processed by a single task. This must not depend on the
+   * number of threads, to obtain deterministic results.
+   */
+  private static final int BLOCKSIZE = 256;
+
+  /**
+   * Constructor.
+   *
+   * @param k k parameter
+   * @param delta delta parameter
+   * @param mfactory EM cluster model factory
+   * @param miniter Minimum number of iterations
+   * @param maxiter Maximum number of iterations
+   * @param prior MAP prior
+   * @param soft Include soft assignments
+   */
+  public ParallelEM(int k, double delta, EMClusterModelFactory<? super O, M> mfactory, int miniter, int maxiter, double prior, boolean soft) {
+    super(k, delta, mfactory, miniter, maxiter, prior, soft);
+  }
+
+  @Override
+  protected double assignProbabilities(Relation<O> relation, List<? extends EMClusterModel<? super O, M>> models, WritableDataStore<double[]> probClusterIGivenX) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final double emSum = ParallelCore.getCore().getForkJoinPool() //
+        .invoke(new AssignTask<>(relation, ids, models, probClusterIGivenX, 0, ids.size()));
+    return emSum / ids.size();
+  }
+
+  @Override
+  protected void recomputeModels(Relation<O> relation, WritableDataStore<double[]> probClusterIGivenX, List<? extends EMClusterModel<? super O, M>> models) {
+    for(EMClusterModel<?, ?> m : models) {
+      if(!m.supportsPartialE()) {
+        super.recomputeModels(relation, probClusterIGivenX, models);
+        return;
+      }
+    }
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final ForkJoinPool pool = ParallelCore.getCore().getForkJoinPool();
+    final int k = models.size();
+    boolean needsTwoPass = false;
+    for(EMClusterModel<?, ?> m : models) {
+      m.beginEStep();
+      needsTwoPass |= m.needsTwoPass();
+    }
+    // First pass, only for two-pass models.
+    if(needsTwoPass) {
+      UpdateTask<O> task = new UpdateTask<>(relation, ids, models, probClusterIGivenX, true, 0, ids.size());
+      pool.invoke(task);
+      for(int i = 0; i < k; i++) {
+        merge(models.get(i), task.partials.get(i), true);
+        models.get(i).finalizeFirstPassE();
+      }
+    }
+    UpdateTask<O> task = new UpdateTask<>(relation, ids, models, probClusterIGivenX, false, 0, ids.size());
+    pool.invoke(task);
+    for(int i = 0; i < k; i++) {
+      merge(models.get(i), task.partials.get(i), false);
+    }
+    finalizeEStep(models, task.wsum, ids.size(), prior);
+  }
+
+  /**
+   * Merge a partial model into another model.
+   *
+   * @param target Model to update
+   * @param other Partial model
+   * @param firstPass Merge the statistics of the first pass
+   * @param <P> Object type
+   * @param <Q> Model type
+   */
+  @SuppressWarnings("unchecked")
+  private static <P, Q extends Model> void merge(EMClusterModel<P, Q> target, EMClusterModel<?, ?> other, boolean firstPass) {
+    if(firstPass) {
+      target.mergeFirstPassE((EMClusterModel<P, Q>) other);
+    }
+    else {
+      target.mergeE((EMClusterModel<P, Q>) other);
+    }
+  }
+
+  /**
+   * Task to assign the probabilities of a range of objects.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  private static class AssignTask<O> extends RecursiveTask<Double> {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Data relation.
+     */
+    private final Relation<? extends O> relation;
+
+    /**
+     * Object ids.
+     */
+    private final ArrayDBIDs ids;
+
+    /**
+     * Cluster models.
+     */
+    private final List<? extends EMClusterModel<? super O, ?>> models;
+
+    /**
+     * Output storage for cluster probabilities.
+     */
+    private final WritableDataStore<double[]> probClusterIGivenX;
+
+    /**
+     * Objects to process.
+     */
+    private final int start, end;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param ids Object ids
+     * @param models Cluster models
+     * @param probClusterIGivenX Output storage for cluster probabilities
+     * @param start First object
+     * @param end End (exclusive)
+     */
+    AssignTask(Relation<? extends O> relation, ArrayDBIDs ids, List<? extends EMClusterModel<? super O, ?>> models, WritableDataStore<double[]> probClusterIGivenX, int start, int end) {
+      this.relation = relation;
+      this.ids = ids;
+      this.models = models;
+      this.probClusterIGivenX = probClusterIGivenX;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected Double compute() {
+      if(end - start > BLOCKSIZE) {
+        final int mid = (start + end) >>> 1;
+        AssignTask<O> left = new AssignTask<>(relation, ids, models, probClusterIGivenX, start, mid);
+        AssignTask<O> right = new AssignTask<>(relation, ids, models, probClusterIGivenX, mid, end);
+        invokeAll(left, right);
+        // Always add in the same order:
+        return left.join() + right.join();
+      }
+      final int k = models.size();
+      double emSum = 0.;
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        double[] probs = new double[k];
+        emSum += computeProbabilities(relation.get(it), models, probs);
+        probClusterIGivenX.put(it, probs);
+      }
+      return emSum;
+    }
+  }
+
+  /**
+   * Task to aggregate the model statistics of a range of objects.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  private static class UpdateTask<O> extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Data relation.
+     */
+    private final Relation<? extends O> relation;
+
+    /**
+     * Object ids.
+     */
+    private final ArrayDBIDs ids;
+
+    /**
+     * Cluster models.
+     */
+    private final List<? extends EMClusterModel<? super O, ?>> models;
+
+    /**
+     * Cluster probabilities.
+     */
+    private final WritableDataStore<double[]> probClusterIGivenX;
+
+    /**
+     * Flag for the first pass of two-pass models.
+     */
+    private final boolean firstPass;
+
+    /**
+     * Objects to process.
+     */
+    private final int start, end;
+
+    /**
+     * Partial models (output).
+     */
+    List<EMClusterModel<? super O, ?>> partials;
+
+    /**
+     * Sum of cluster probabilities (output).
+     */
+    double[] wsum;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param ids Object ids
+     * @param models Cluster models
+     * @param probClusterIGivenX Cluster probabilities
+     * @param firstPass First pass of two-pass models
+     * @param start First object
+     * @param end End (exclusive)
+     */
+    UpdateTask(Relation<? extends O> relation, ArrayDBIDs ids, List<? extends EMClusterModel<? super O, ?>> models, WritableDataStore<double[]> probClusterIGivenX, boolean firstPass, int start, int end) {
+      this.relation = relation;
+      this.ids = ids;
+      this.models = models;
+      this.probClusterIGivenX = probClusterIGivenX;
+      this.firstPass = firstPass;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      final int k = models.size();
+      if(end - start > BLOCKSIZE) {
+        final int mid = (start + end) >>> 1;
+        UpdateTask<O> left = new UpdateTask<>(relation, ids, models, probClusterIGivenX, firstPass, start, mid);
+        UpdateTask<O> right = new UpdateTask<>(relation, ids, models, probClusterIGivenX, firstPass, mid, end);
+        invokeAll(left, right);
+        // Always merge in the same order:
+        partials = left.partials;
+        wsum = left.wsum;
+        for(int i = 0; i < k; i++) {
+          merge(partials.get(i), right.partials.get(i), firstPass);
+          wsum[i] += right.wsum[i];
+        }
+        return;
+      }
+      partials = new ArrayList<>(k);
+      for(EMClusterModel<? super O, ?> m : models) {
+        partials.add(m.newPartialE());
+      }
+      wsum = new double[k];
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        double[] clusterProbabilities = probClusterIGivenX.get(it);
+        O instance = relation.get(it);
+        for(int i = 0; i < k; i++) {
+          final double prob = clusterProbabilities[i];
+          if(prob > 1e-10) {
+            if(firstPass) {
+              partials.get(i).firstPassE(instance, prob);
+            }
+            else {
+              partials.get(i).updateE(instance, prob);
+            }
+          }
+          wsum[i] += prob;
+        }
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Vector type
+   * @param <M> Model type
+   */
+  public static class Par<O, M extends MeanModel> extends EM.Par<O, M> {
+    @Override
+    public ParallelEM<O, M> make() {
+      return new ParallelEM<>(k, delta, mfactory, miniter, maxiter, prior, soft);
+    }
+  }
+}
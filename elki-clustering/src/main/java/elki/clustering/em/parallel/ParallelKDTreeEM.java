@@ -0,0 +1,151 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.em.parallel;
+
+import java.util.concurrent.RecursiveTask;
+
+import elki.clustering.em.KDTreeEM;
+import elki.clustering.em.TextbookMultivariateGaussianModelFactory;
+import elki.database.datastore.WritableDataStore;
+import elki.parallel.ParallelCore;
+
+/**
+ * Parallel version of the kd-tree accelerated EM clustering.
+ * <p>
+ * The kd-tree is traversed in parallel: the subtrees of large nodes are
+ * processed by separate tasks, each aggregating into its own partial models,
+ * which are merged when both subtrees are complete. Which nodes are split only
+ * depends on the node sizes, not on the number of threads; hence the log
+ * likelihood and the resulting models are deterministic.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelKDTreeEM extends KDTreeEM {
+  /**
+   * Minimum node size to process the children in separate tasks. This must not
+   * depend on the number of threads, to obtain deterministic results.
+   */
+  private static final int MIN_FORK = 512;
+
+  /**
+   * Constructor.
+   *
+   * @param k number of classes
+   * @param mbw minimum relative size of leaf nodes
+   * @param tau pruning parameter
+   * @param tauclass pruning parameter for single classes
+   * @param delta delta parameter
+   * @param mfactory EM cluster model factory
+   * @param miniter Minimum number of iterations
+   * @param maxiter Maximum number of iterations
+   * @param soft Include soft assignments
+   * @param exactAssign Perform exact assignments at the end
+   */
+  public ParallelKDTreeEM(int k, double mbw, double tau, double tauclass, double delta, TextbookMultivariateGaussianModelFactory mfactory, int miniter, int maxiter, boolean soft, boolean exactAssign) {
+    super(k, mbw, tau, tauclass, delta, mfactory, miniter, maxiter, soft, exactAssign);
+  }
+
+  @Override
+  protected double computeStatistics(KDTree tree, int[] indices, Statistics stats, WritableDataStore<double[]> probs) {
+    return ParallelCore.getCore().getForkJoinPool().invoke(new StatsTask(tree, indices, stats, probs));
+  }
+
+  @Override
+  protected double makeChildStats(KDTree left, KDTree right, int size, int[] indices, Statistics stats, WritableDataStore<double[]> probs) {
+    if(size < MIN_FORK) {
+      return super.makeChildStats(left, right, size, indices, stats, probs);
+    }
+    Statistics rstats = newStatistics();
+    StatsTask ltask = new StatsTask(left, indices, stats, probs);
+    StatsTask rtask = new StatsTask(right, indices, rstats, probs);
+    RecursiveTask.invokeAll(ltask, rtask);
+    // Always merge in the same order:
+    stats.merge(rstats);
+    return ltask.join() + rtask.join();
+  }
+
+  /**
+   * Task to process a subtree.
+   *
+   * @author Erich Schubert
+   */
+  private class StatsTask extends RecursiveTask<Double> {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Subtree to process.
+     */
+    private final KDTree node;
+
+    /**
+     * Cluster indices to use.
+     */
+    private final int[] indices;
+
+    /**
+     * Statistics to update.
+     */
+    private final Statistics stats;
+
+    /**
+     * Cluster assignment output, may be {@code null}.
+     */
+    private final WritableDataStore<double[]> probs;
+
+    /**
+     * Constructor.
+     *
+     * @param node Subtree to process
+     * @param indices Cluster indices to use
+     * @param stats Statistics to update
+     * @param probs Cluster assignment output, may be {@code null}
+     */
+    StatsTask(KDTree node, int[] indices, Statistics stats, WritableDataStore<double[]> probs) {
+      this.node = node;
+      this.indices = indices;
+      this.stats = stats;
+      this.probs = probs;
+    }
+
+    @Override
+    protected Double compute() {
+      return makeStats(node, indices, stats, probs);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   */
+  public static class Par extends KDTreeEM.Par {
+    @Override
+    public ParallelKDTreeEM make() {
+      return new ParallelKDTreeEM(k, mbw, tau, tauclass, delta, mfactory, miniter, maxiter, soft, exactAssign);
+    }
+  }
+}
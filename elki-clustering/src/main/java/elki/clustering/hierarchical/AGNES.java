@@ -39,10 +39,12 @@ import elki.distance.minkowski.SquaredEuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.utilities.Alias;
+import elki.utilities.datastructures.arraylike.DoubleBigArray;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -57,6 +59,9 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * This implementation uses the pointer-based representation used by SLINK, so
  * that the extraction algorithms we have can be used with either of them.
  * <p>
+ * On large data sets, the matrix initialization, the search for the closest
+ * pair, and the Lance-Williams updates are performed in parallel.
+ * <p>
  * The algorithm is believed to be first published (for single-linkage) by:
  * <p>
  * P. H. Sneath<br>
@@ -123,6 +128,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Linkage linkage = WardLinkage.STATIC;
 
+  /**
+   * Store the matrix with single precision only.
+   */
+  protected boolean singlePrecision = false;
+
   /**
    * Constructor.
    *
@@ -130,9 +140,21 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @param linkage Linkage method
    */
   public AGNES(Distance<? super O> distance, Linkage linkage) {
+    this(distance, linkage, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param singlePrecision Store the matrix with single precision only
+   */
+  public AGNES(Distance<? super O> distance, Linkage linkage, boolean singlePrecision) {
     super();
     this.distance = distance;
     this.linkage = linkage;
+    this.singlePrecision = singlePrecision;
   }
 
   /**
@@ -150,7 +172,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
 
     // Compute the initial (lower triangular) distance matrix.
-    MatrixParadigm mat = new MatrixParadigm(ids);
+    MatrixParadigm mat = new MatrixParadigm(ids, singlePrecision);
     initializeDistanceMatrix(mat, dq, linkage);
 
     // Initialize space for result:
@@ -197,26 +219,8 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @param linkage Linkage method
    */
   protected static void initializeDistanceMatrix(MatrixParadigm mat, DistanceQuery<?> dq, Linkage linkage) {
-    final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] matrix = mat.matrix;
     final boolean issquare = dq.getDistance().isSquared();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", matrix.length, LOG) : null;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      final int x = ix.getOffset();
-      assert (pos == MatrixParadigm.triangleSize(x));
-      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = linkage.initial(dq.distance(ix, iy), issquare);
-      }
-      if(prog != null) {
-        prog.setProcessed(pos, LOG);
-      }
-    }
-    // Avoid logging errors in case scratch space was too large:
-    if(prog != null) {
-      prog.setProcessed(matrix.length, LOG);
-    }
-    LOG.ensureCompleted(prog);
+    mat.initializeWithDistances(dq, d -> linkage.initial(d, issquare), LOG);
   }
 
   /**
@@ -229,36 +233,75 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected int findMerge(int end, MatrixParadigm mat, PointerHierarchyBuilder builder) {
     assert (end > 0);
-    final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] matrix = mat.matrix;
-    double mindist = Double.POSITIVE_INFINITY;
-    int x = -1, y = -1;
+    final DoubleBigArray matrix = mat.matrix;
+    final MergeCandidate best = new MergeCandidate();
     // Find minimum:
-    for(int ox = 0, xbase = 0; ox < end; xbase += ox++) {
-      // Skip if object has already joined a cluster:
-      if(builder.isLinked(ix.seek(ox))) {
-        continue;
-      }
-      assert (xbase == MatrixParadigm.triangleSize(ox));
-      for(int oy = 0; oy < ox; oy++) {
+    mat.processRows(1, end, true, (ix, iy, start, stop) -> {
+      double mindist = Double.POSITIVE_INFINITY;
+      int x = -1, y = -1;
+      for(int ox = start; ox < stop; ox++) {
         // Skip if object has already joined a cluster:
-        if(builder.isLinked(iy.seek(oy))) {
+        if(builder.isLinked(ix.seek(ox))) {
           continue;
         }
-        final double dist = matrix[xbase + oy];
-        if(dist <= mindist) { // Prefer later on ==, to truncate more often.
-          mindist = dist;
-          x = ox;
-          y = oy;
+        final long xbase = MatrixParadigm.triangleSize(ox);
+        for(int oy = 0; oy < ox; oy++) {
+          // Skip if object has already joined a cluster:
+          if(builder.isLinked(iy.seek(oy))) {
+            continue;
+          }
+          final double dist = matrix.get(xbase + oy);
+          if(dist <= mindist) { // Prefer later on ==, to truncate more often.
+            mindist = dist;
+            x = ox;
+            y = oy;
+          }
         }
       }
-    }
+      best.offer(mindist, x, y);
+    });
+    final int x = best.x, y = best.y;
     assert (x >= 0 && y >= 0);
     assert (y < x); // We could swap otherwise, but this shouldn't arise.
-    merge(end, mat, builder, mindist, x, y);
+    merge(end, mat, builder, best.dist, x, y);
     return x;
   }
 
+  /**
+   * Best merge candidate found by (possibly parallel) search.
+   * <p>
+   * On ties, the candidate latest in the matrix is chosen, which is
+   * independent of the order in which the candidates are offered.
+   *
+   * @author Erich Schubert
+   */
+  protected static class MergeCandidate {
+    /**
+     * Merge distance.
+     */
+    double dist = Double.POSITIVE_INFINITY;
+
+    /**
+     * Merge positions.
+     */
+    int x = -1, y = -1;
+
+    /**
+     * Offer a candidate.
+     *
+     * @param d Distance
+     * @param cx First position, {@code -1} for none
+     * @param cy Second position
+     */
+    synchronized void offer(double d, int cx, int cy) {
+      if(cx >= 0 && (x < 0 || d < dist || (d == dist && (cx > x || (cx == x && cy > y))))) {
+        dist = d;
+        x = cx;
+        y = cy;
+      }
+    }
+  }
+
   /**
    * Execute the cluster merge.
    *
@@ -299,40 +342,21 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected void updateMatrix(int end, MatrixParadigm mat, PointerHierarchyBuilder builder, double mindist, int x, int y, final int sizex, final int sizey) {
     // Update distance matrix. Note: y < x
-    final int xbase = MatrixParadigm.triangleSize(x);
-    final int ybase = MatrixParadigm.triangleSize(y);
-    double[] scratch = mat.matrix;
-    DBIDArrayIter ij = mat.ix;
+    final long xbase = MatrixParadigm.triangleSize(x);
+    final long ybase = MatrixParadigm.triangleSize(y);
+    final DoubleBigArray scratch = mat.matrix;
 
-    // Write to (y, j), with j < y
-    int j = 0;
-    for(; j < y; j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
-      }
-      assert (j < y); // Otherwise, ybase + j is the wrong position!
-      final int yb = ybase + j;
-      scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], builder.getSize(ij), mindist);
-    }
-    j++; // Skip y
-    // Write to (j, y), with y < j < x
-    int jbase = MatrixParadigm.triangleSize(j);
-    for(; j < x; jbase += j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
-      }
-      final int jb = jbase + y;
-      scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], builder.getSize(ij), mindist);
-    }
-    jbase += j++; // Skip x
-    // Write to (j, y), with y < x < j
-    for(; j < end; jbase += j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
+    mat.processRows(0, end, false, (ij, unused, start, stop) -> {
+      for(int j = start; j < stop; j++) {
+        if(j == y || j == x || builder.isLinked(ij.seek(j))) {
+          continue;
+        }
+        // Positions of (y, j) and (x, j) in the triangular matrix:
+        final long yj = j < y ? ybase + j : MatrixParadigm.triangleSize(j) + y;
+        final long xj = j < x ? xbase + j : MatrixParadigm.triangleSize(j) + x;
+        scratch.set(yj, linkage.combine(sizex, scratch.get(xj), sizey, scratch.get(yj), builder.getSize(ij), mindist));
       }
-      final int jb = jbase + y;
-      scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], builder.getSize(ij), mindist);
-    }
+    });
   }
 
   @Override
@@ -355,6 +379,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     public static final OptionID LINKAGE_ID = new OptionID("hierarchical.linkage", "Linkage method to use (e.g. Ward, Single-Link)");
 
+    /**
+     * Flag to store the matrix with single precision.
+     */
+    public static final OptionID FLOAT_ID = new OptionID("hierarchical.float", "Store the distance matrix with single (float) precision only, to halve the memory requirements.");
+
     /**
      * Current linkage in use.
      */
@@ -365,6 +394,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the matrix with single precision only.
+     */
+    protected boolean singlePrecision = false;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Linkage>(LINKAGE_ID, Linkage.class) //
@@ -374,11 +408,12 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
           ? SquaredEuclideanDistance.class : EuclideanDistance.class;
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
           .grab(config, x -> distance = x);
+      new Flag(FLOAT_ID).grab(config, x -> singlePrecision = x);
     }
 
     @Override
     public AGNES<O> make() {
-      return new AGNES<>(distance, linkage);
+      return new AGNES<>(distance, linkage, singlePrecision);
     }
   }
 }
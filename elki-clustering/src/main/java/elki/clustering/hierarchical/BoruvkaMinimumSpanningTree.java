@@ -0,0 +1,360 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.DoubleDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.query.PrioritySearcher;
+import elki.logging.Logging;
+import elki.logging.statistics.LongStatistic;
+import elki.math.MathUtil;
+import elki.math.geometry.PrimsMinimumSpanningTree;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.utilities.datastructures.unionfind.WeightedQuickUnionInteger;
+import elki.utilities.documentation.Reference;
+
+/**
+ * Parallel Borůvka algorithm to compute the minimum spanning tree, for
+ * HDBSCAN (using the mutual reachability distance) and for single-linkage
+ * clustering.
+ * <p>
+ * In every round, the nearest neighbor in a different component is searched
+ * for every point, using a priority search. If an index such as a k-d tree or
+ * a cover tree is available, this search is accelerated by the index. The
+ * search is cut off at the best edge found for the component so far (shared by
+ * all threads), and points are skipped if their core distance or the distance
+ * found in the previous round exceeds this bound. If the nearest neighbor of
+ * the previous round is still in a different component, it is reused without
+ * searching.
+ * <p>
+ * Ties are broken by the point indexes, hence the result does not depend on the
+ * number of threads.
+ * <p>
+ * Without an index, each search is a linear scan, and the Prim-based
+ * {@link HDBSCANLinearMemory} will be faster.
+ * <p>
+ * Reference:
+ * <p>
+ * L. McInnes, J. Healy<br>
+ * Accelerated Hierarchical Density Based Clustering<br>
+ * IEEE Int. Conf. Data Mining Workshops (ICDMW)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@Reference(authors = "L. McInnes, J. Healy", //
+    title = "Accelerated Hierarchical Density Based Clustering", //
+    booktitle = "IEEE Int. Conf. Data Mining Workshops (ICDMW)", //
+    url = "https://doi.org/10.1109/ICDMW.2017.12", //
+    bibkey = "DBLP:conf/icdm/McInnesH17")
+public class BoruvkaMinimumSpanningTree implements Processor {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(BoruvkaMinimumSpanningTree.class);
+
+  /**
+   * Objects to process.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Index of each object.
+   */
+  private WritableIntegerDataStore index;
+
+  /**
+   * Core distances, may be {@code null} for single-linkage.
+   */
+  private DoubleDataStore coredists;
+
+  /**
+   * Factory for the priority searchers.
+   */
+  private Supplier<PrioritySearcher<DBIDRef>> searchers;
+
+  /**
+   * Component number of each object in the current round.
+   */
+  private int[] comp;
+
+  /**
+   * Nearest neighbor in another component, or -1 if not known.
+   */
+  private int[] nnj;
+
+  /**
+   * Distance to the nearest neighbor in another component, or a lower bound.
+   */
+  private double[] nnw;
+
+  /**
+   * Best edge length found for each component (as long bits, for atomic
+   * updates).
+   */
+  private AtomicLongArray bounds;
+
+  /**
+   * Number of threads, 0 for the number of processors.
+   */
+  private int parallelism;
+
+  /**
+   * Number of searches performed.
+   */
+  private long searches;
+
+  /**
+   * Constructor.
+   *
+   * @param ids Objects to process
+   * @param searchers Factory for priority searchers (called once per thread)
+   * @param coredists Core distances, {@code null} for single-linkage
+   * @param parallelism Number of threads, 0 for the number of processors
+   */
+  public BoruvkaMinimumSpanningTree(ArrayDBIDs ids, Supplier<PrioritySearcher<DBIDRef>> searchers, DoubleDataStore coredists, int parallelism) {
+    super();
+    this.ids = ids;
+    this.searchers = searchers;
+    this.coredists = coredists;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Compute the minimum spanning tree.
+   *
+   * @param collector Edge collector
+   */
+  public void run(PrimsMinimumSpanningTree.Collector collector) {
+    final int n = ids.size();
+    index = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT);
+    WeightedQuickUnionInteger uf = new WeightedQuickUnionInteger();
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      index.putInt(it, uf.nextIndex(1));
+    }
+    comp = new int[n];
+    nnj = new int[n];
+    nnw = new double[n];
+    Arrays.fill(nnj, -1);
+    searches = 0;
+    int[] number = new int[n];
+    double[] bw = new double[n];
+    int[] bi = new int[n], bj = new int[n];
+    int numc = n, rounds = 0;
+    while(numc > 1) {
+      // Number the components:
+      Arrays.fill(number, -1);
+      int c = 0;
+      for(int i = 0; i < n; i++) {
+        final int r = uf.find(i);
+        comp[i] = number[r] >= 0 ? number[r] : (number[r] = c++);
+      }
+      bounds = new AtomicLongArray(c);
+      final long inf = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+      for(int i = 0; i < c; i++) {
+        bounds.set(i, inf);
+      }
+      ParallelExecutor.run(parallelism, ids, null, null, this);
+      // Best edge of each component:
+      Arrays.fill(bj, 0, c, -1);
+      for(int i = 0; i < n; i++) {
+        final int j = nnj[i], ci = comp[i];
+        if(j >= 0 && comp[j] != ci && (bj[ci] < 0 || isBetter(nnw[i], i, j, bw[ci], bi[ci], bj[ci]))) {
+          bw[ci] = nnw[i];
+          bi[ci] = i;
+          bj[ci] = j;
+        }
+      }
+      // Merge components:
+      int added = 0;
+      for(int k = 0; k < c; k++) {
+        if(bj[k] >= 0 && uf.find(bi[k]) != uf.find(bj[k])) {
+          uf.union(bi[k], bj[k]);
+          collector.addEdge(bw[k], bi[k], bj[k]);
+          ++added;
+        }
+      }
+      ++rounds;
+      if(added == 0) {
+        LOG.warning("No edges found to connect the remaining " + numc + " components.");
+        break;
+      }
+      numc -= added;
+    }
+    if(LOG.isStatistics()) {
+      final String key = BoruvkaMinimumSpanningTree.class.getName();
+      LOG.statistics(new LongStatistic(key + ".rounds", rounds));
+      LOG.statistics(new LongStatistic(key + ".searches", searches));
+    }
+    index.destroy();
+    index = null;
+    comp = nnj = null;
+    nnw = null;
+    bounds = null;
+  }
+
+  /**
+   * Compare two edges, breaking ties by the point indexes.
+   *
+   * @param w1 Length of the first edge
+   * @param i1 First point of the first edge
+   * @param j1 Second point of the first edge
+   * @param w2 Length of the second edge
+   * @param i2 First point of the second edge
+   * @param j2 Second point of the second edge
+   * @return {@code true} if the first edge is better
+   */
+  private static boolean isBetter(double w1, int i1, int j1, double w2, int i2, int j2) {
+    if(w1 != w2) {
+      return w1 < w2;
+    }
+    final int a1 = Math.min(i1, j1), a2 = Math.min(i2, j2);
+    return a1 != a2 ? a1 < a2 : Math.max(i1, j1) < Math.max(i2, j2);
+  }
+
+  /**
+   * Get the current bound of a component.
+   *
+   * @param c Component
+   * @return Bound
+   */
+  private double getBound(int c) {
+    return Double.longBitsToDouble(bounds.get(c));
+  }
+
+  /**
+   * Decrease the bound of a component.
+   * <p>
+   * For non-negative doubles, the order of the bit patterns is the same as the
+   * order of the values.
+   *
+   * @param c Component
+   * @param w New edge length
+   * @return Updated bound
+   */
+  private double updateBound(int c, double w) {
+    final long nw = Double.doubleToLongBits(w + 0.); // Avoid -0.
+    long cur = bounds.get(c);
+    while(nw < cur) {
+      if(bounds.compareAndSet(c, cur, nw)) {
+        return w;
+      }
+      cur = bounds.get(c);
+    }
+    return Double.longBitsToDouble(cur);
+  }
+
+  @Override
+  public synchronized Instance instantiate(Executor executor) {
+    return new Instance(searchers.get());
+  }
+
+  @Override
+  public synchronized void cleanup(Processor.Instance inst) {
+    searches += ((Instance) inst).searches;
+  }
+
+  /**
+   * Instance for a single thread.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance implements Processor.Instance {
+    /**
+     * Priority searcher.
+     */
+    private PrioritySearcher<DBIDRef> search;
+
+    /**
+     * Number of searches.
+     */
+    private long searches;
+
+    /**
+     * Constructor.
+     *
+     * @param search Priority searcher
+     */
+    Instance(PrioritySearcher<DBIDRef> search) {
+      this.search = search;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final int i = index.intValue(id), ci = comp[i];
+      final int prev = nnj[i];
+      if(prev >= 0) {
+        if(comp[prev] != ci) {
+          // Still the nearest neighbor in a different component.
+          updateBound(ci, nnw[i]);
+          return;
+        }
+        nnj[i] = -1; // Distance remains a lower bound.
+      }
+      final double corei = coredists != null ? coredists.doubleValue(id) : 0.;
+      double bound = getBound(ci);
+      if(nnw[i] > bound || corei > bound) {
+        return; // Cannot improve the component.
+      }
+      ++searches;
+      double bestw = Double.POSITIVE_INFINITY;
+      int bestj = -1;
+      for(search.search(id, bound); search.valid(); search.advance()) {
+        final int j = index.intValue(search);
+        if(comp[j] == ci) {
+          continue;
+        }
+        final double d = search.computeExactDistance();
+        if(d > bound) {
+          continue;
+        }
+        final double w = coredists != null ? MathUtil.max(corei, coredists.doubleValue(search), d) : d;
+        // For a fixed i, ties are broken by the smaller j.
+        if(bestj < 0 || w < bestw || (w == bestw && j < bestj)) {
+          bestw = w;
+          bestj = j;
+          if(w <= bound) {
+            search.decreaseCutoff(bound = updateBound(ci, w));
+          }
+        }
+      }
+      // The result is exact unless the search was cut off before.
+      if(bestj >= 0 && bestw <= bound) {
+        nnw[i] = bestw;
+        nnj[i] = bestj;
+      }
+      else if(bound > nnw[i]) {
+        nnw[i] = bound;
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.utilities.datastructures.heap.DoubleLongHeap;
+import elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * HDBSCAN clustering, using a parallel Borůvka algorithm to compute the minimum
+ * spanning tree.
+ * <p>
+ * Both the core distances and the nearest neighbors in other components are
+ * found with index queries, so this variant benefits from a k-d tree or cover
+ * tree index added to the database. Without an index, the Prim-based
+ * {@link HDBSCANLinearMemory} is faster.
+ * <p>
+ * This implementation does <em>not</em> include the cluster extraction, which
+ * is provided in a separate step.
+ * <p>
+ * Reference:
+ * <p>
+ * L. McInnes, J. Healy<br>
+ * Accelerated Hierarchical Density Based Clustering<br>
+ * IEEE Int. Conf. Data Mining Workshops (ICDMW)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - PointerDensityHierarchyResult
+ * @composed - - - BoruvkaMinimumSpanningTree
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "L. McInnes, J. Healy", //
+    title = "Accelerated Hierarchical Density Based Clustering", //
+    booktitle = "IEEE Int. Conf. Data Mining Workshops (ICDMW)", //
+    url = "https://doi.org/10.1109/ICDMW.2017.12", //
+    bibkey = "DBLP:conf/icdm/McInnesH17")
+public class HDBSCANBoruvka<O> extends AbstractHDBSCAN<O> implements HierarchicalClusteringAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(HDBSCANBoruvka.class);
+
+  /**
+   * Number of threads, 0 for the number of processors.
+   */
+  protected int parallelism;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param minPts Minimum number of points for density
+   * @param parallelism Number of threads, 0 for the number of processors
+   */
+  public HDBSCANBoruvka(Distance<? super O> distance, int minPts, int parallelism) {
+    super(distance, minPts);
+    this.parallelism = parallelism;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param relation Relation
+   * @return Clustering hierarchy
+   */
+  public PointerDensityHierarchyResult run(Relation<O> relation) {
+    final QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+
+    // 1. Compute the core distances
+    final WritableDoubleDataStore coredists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB);
+    FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Computing core sizes", ids.size(), LOG) : null;
+    ParallelExecutor.run(parallelism, ids, cprog, LOG, new CoreDistanceProcessor(qb, minPts, coredists));
+    LOG.ensureCompleted(cprog);
+
+    // 2. Build spanning tree.
+    final int numedges = ids.size() - 1;
+    DoubleLongHeap heap = new DoubleLongMinHeap(Math.max(numedges, 1));
+    FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Computing minimum spanning tree (n-1 edges)", numedges, LOG) : null;
+    new BoruvkaMinimumSpanningTree(ids, qb::priorityByDBID, coredists, parallelism) //
+        .run(new HeapMSTCollector(heap, mprog, LOG));
+    LOG.ensureCompleted(mprog);
+    return convertToPointerRepresentation(ids, heap, //
+        new PointerHierarchyBuilder(ids, distance.isSquared())) //
+            .complete(coredists);
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Processor to compute the core distances in parallel.
+   *
+   * @author Erich Schubert
+   */
+  private static class CoreDistanceProcessor implements Processor {
+    /**
+     * Query builder.
+     */
+    private QueryBuilder<?> qb;
+
+    /**
+     * Minimum number of points.
+     */
+    private int minPts;
+
+    /**
+     * Output storage.
+     */
+    private WritableDoubleDataStore coredists;
+
+    /**
+     * Constructor.
+     *
+     * @param qb Query builder
+     * @param minPts Minimum number of points
+     * @param coredists Output storage
+     */
+    CoreDistanceProcessor(QueryBuilder<?> qb, int minPts, WritableDoubleDataStore coredists) {
+      this.qb = qb;
+      this.minPts = minPts;
+      this.coredists = coredists;
+    }
+
+    @Override
+    public synchronized Processor.Instance instantiate(Executor executor) {
+      final KNNSearcher<DBIDRef> knnQ = qb.kNNByDBID(minPts);
+      return id -> coredists.putDouble(id, knnQ.getKNN(id, minPts).getKNNDistance());
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> extends AbstractHDBSCAN.Par<O> {
+    /**
+     * Number of threads.
+     */
+    protected int parallelism;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(SingleLinkBoruvka.Par.PARALLEL_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> parallelism = x);
+    }
+
+    @Override
+    public HDBSCANBoruvka<O> make() {
+      return new HDBSCANBoruvka<>(distance, minPts, parallelism);
+    }
+  }
+}
@@ -20,12 +20,21 @@
  */
 package elki.clustering.hierarchical;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleUnaryOperator;
+
 import elki.database.ids.ArrayDBIDs;
 import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.query.distance.DistanceQuery;
-import elki.utilities.exceptions.AbortException;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.parallel.ParallelCore;
+import elki.utilities.datastructures.arraylike.DoubleBigArray;
+import elki.utilities.datastructures.arraylike.SegmentedDoubleBigArray;
+import elki.utilities.datastructures.arraylike.SegmentedFloatBigArray;
 
 /**
  * Shared code for algorithms that work on a strict matrix paradigm.
@@ -36,12 +45,27 @@ import elki.utilities.exceptions.AbortException;
  * the matrix view (indexed by integers 0...n-1).
  * <p>
  * While this will usually store (merge-) distances when clustering, it can
- * store arbitrary doubles.
+ * store arbitrary doubles. The matrix is stored in segments with long
+ * indexes, so it is not limited by the maximum Java array size, and can
+ * optionally use single precision to halve the memory requirements.
+ * <p>
+ * Large matrixes are initialized in parallel, in cache-sized tiles, and
+ * {@link #processRows} allows algorithms to update rows in parallel, too.
  *
  * @author Erich Schubert
  * @since 0.7.5
  */
 public class MatrixParadigm {
+  /**
+   * Tile size for initialization.
+   */
+  private static final int BLOCKSIZE = 128;
+
+  /**
+   * Minimum number of matrix cells to process in one task.
+   */
+  private static final int MIN_WORK = 1 << 14;
+
   /**
    * Two iterators to reference to objects.
    */
@@ -50,29 +74,40 @@ public class MatrixParadigm {
   /**
    * Distance matrix (<b>modifiable</b>).
    */
-  public final double[] matrix;
+  public final DoubleBigArray matrix;
 
   /**
    * Number of rows/columns.
    */
   public final int size;
 
+  /**
+   * Object ids, to create additional iterators for parallel processing.
+   */
+  private final ArrayDBIDs ids;
+
   /**
    * Constructor.
    *
    * @param ids Database ids.
    */
   public MatrixParadigm(DBIDs ids) {
+    this(ids, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param ids Database ids.
+   * @param singlePrecision Store the matrix with single precision only
+   */
+  public MatrixParadigm(DBIDs ids, boolean singlePrecision) {
     size = ids.size();
-    if(size > 0x10000) {
-      throw new AbortException("This implementation does not scale to data sets larger than " + //
-          0x10000 // = 65535
-          + " instances (~16 GB RAM), at which point the Java maximum array size is reached.");
-    }
-    ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
-    ix = aids.iter();
-    iy = aids.iter();
-    matrix = new double[triangleSize(size)];
+    this.ids = DBIDUtil.ensureArray(ids);
+    ix = this.ids.iter();
+    iy = this.ids.iter();
+    final long msize = triangleSize(size);
+    matrix = singlePrecision ? new SegmentedFloatBigArray(msize) : new SegmentedDoubleBigArray(msize);
   }
 
   /**
@@ -81,8 +116,8 @@ public class MatrixParadigm {
    * @param x Offset
    * @return Size of complete triangle
    */
-  public static int triangleSize(int x) {
-    return (x * (x - 1)) >>> 1;
+  public static long triangleSize(int x) {
+    return ((long) x * (x - 1)) >>> 1;
   }
 
   /**
@@ -96,7 +131,7 @@ public class MatrixParadigm {
    * @return Distance
    */
   public double get(int x, int y) {
-    return x == y ? 0 : x < y ? matrix[triangleSize(y) + x] : matrix[triangleSize(x) + y];
+    return x == y ? 0 : x < y ? matrix.get(triangleSize(y) + x) : matrix.get(triangleSize(x) + y);
   }
 
   /**
@@ -106,16 +141,225 @@ public class MatrixParadigm {
    * @return this
    */
   public MatrixParadigm initializeWithDistances(DistanceQuery<?> dq) {
-    final DBIDArrayIter ix = this.ix, iy = this.iy;
-    final double[] matrix = this.matrix;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      final int x = ix.getOffset();
-      assert pos == triangleSize(x);
-      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = dq.distance(ix, iy);
-      }
+    return initializeWithDistances(dq, null, null);
+  }
+
+  /**
+   * Initialize a distance matrix, in parallel for large data sets.
+   * <p>
+   * The distance query is shared by all threads, and hence must be
+   * thread-safe (as are the usual distance functions).
+   *
+   * @param dq Distance query
+   * @param transform Transformation of the distances, may be {@code null}
+   * @param log Logger for progress reporting, may be {@code null}
+   * @return this
+   */
+  public MatrixParadigm initializeWithDistances(DistanceQuery<?> dq, DoubleUnaryOperator transform, Logging log) {
+    final int nblocks = (size + BLOCKSIZE - 1) / BLOCKSIZE;
+    FiniteProgress prog = log != null && log.isVerbose() ? new FiniteProgress("Distance matrix computation", (nblocks * (nblocks + 1)) >>> 1, log) : null;
+    InitializationTask task = new InitializationTask(dq, transform, 0, nblocks, prog, log);
+    if(size < BLOCKSIZE || ParallelCore.getCore().getParallelism() <= 1) {
+      task.compute();
+    }
+    else {
+      ParallelCore.getCore().getForkJoinPool().invoke(task);
+    }
+    if(log != null) {
+      log.ensureCompleted(prog);
     }
     return this;
   }
+
+  /**
+   * Task to compute a range of block rows of the matrix.
+   *
+   * @author Erich Schubert
+   */
+  private class InitializationTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Distance query.
+     */
+    private final DistanceQuery<?> dq;
+
+    /**
+     * Distance transformation, may be {@code null}.
+     */
+    private final DoubleUnaryOperator transform;
+
+    /**
+     * Block rows to process.
+     */
+    private final int start, end;
+
+    /**
+     * Progress, may be {@code null}.
+     */
+    private final FiniteProgress prog;
+
+    /**
+     * Logger for progress.
+     */
+    private final Logging log;
+
+    /**
+     * Constructor.
+     *
+     * @param dq Distance query
+     * @param transform Distance transformation, may be {@code null}
+     * @param start First block row
+     * @param end End block row (exclusive)
+     * @param prog Progress, may be {@code null}
+     * @param log Logger for progress
+     */
+    InitializationTask(DistanceQuery<?> dq, DoubleUnaryOperator transform, int start, int end, FiniteProgress prog, Logging log) {
+      this.dq = dq;
+      this.transform = transform;
+      this.start = start;
+      this.end = end;
+      this.prog = prog;
+      this.log = log;
+    }
+
+    @Override
+    protected void compute() {
+      if(getPool() != null && end - start > 1) {
+        // Block row b has b+1 tiles; split such that both halves have
+        // about the same number of tiles:
+        final int mid = Math.max(start + 1, Math.min(end - 1, (int) Math.sqrt(((double) start * start + (double) end * end) * .5)));
+        invokeAll(new InitializationTask(dq, transform, start, mid, prog, log), //
+            new InitializationTask(dq, transform, mid, end, prog, log));
+        return;
+      }
+      final DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+      for(int b = start; b < end; b++) {
+        final int x0 = b * BLOCKSIZE, x1 = Math.min(x0 + BLOCKSIZE, size);
+        // Process the tiles of this block row, each fitting into the cache.
+        for(int y0 = 0; y0 < x1; y0 += BLOCKSIZE) {
+          for(ix.seek(x0); ix.getOffset() < x1; ix.advance()) {
+            final int x = ix.getOffset(), y1 = Math.min(y0 + BLOCKSIZE, x);
+            long pos = triangleSize(x) + y0;
+            for(iy.seek(y0); iy.getOffset() < y1; iy.advance()) {
+              final double d = dq.distance(ix, iy);
+              matrix.set(pos++, transform != null ? transform.applyAsDouble(d) : d);
+            }
+          }
+          if(prog != null) {
+            prog.incrementProcessed(log);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Process a range of rows (or columns), in parallel if the amount of work
+   * is large enough.
+   * <p>
+   * The processor will be invoked with disjoint, contiguous ranges; for each
+   * range it receives a pair of iterators that it may use freely. When run on
+   * a single thread, the iterators {@link #ix} and {@link #iy} are used.
+   *
+   * @param start First row
+   * @param end End row (exclusive)
+   * @param triangular {@code true} if the work per row is proportional to the
+   *        row number, {@code false} if constant
+   * @param proc Processor
+   */
+  public void processRows(int start, int end, boolean triangular, RowProcessor proc) {
+    final ForkJoinPool pool = ParallelCore.getCore().getForkJoinPool();
+    final long work = triangular ? triangleSize(end) - triangleSize(start) : end - start;
+    if(work < 2 * MIN_WORK || pool.getParallelism() <= 1) {
+      proc.process(ix, iy, start, end);
+      return;
+    }
+    final long minwork = Math.max(MIN_WORK, work / (pool.getParallelism() << 3));
+    pool.invoke(new RowTask(proc, start, end, triangular, minwork));
+  }
+
+  /**
+   * Processor for a range of rows.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  public interface RowProcessor {
+    /**
+     * Process a range of rows.
+     *
+     * @param ix First iterator, for exclusive use
+     * @param iy Second iterator, for exclusive use
+     * @param start First row
+     * @param end End row (exclusive)
+     */
+    void process(DBIDArrayIter ix, DBIDArrayIter iy, int start, int end);
+  }
+
+  /**
+   * Task to process a range of rows.
+   *
+   * @author Erich Schubert
+   */
+  private class RowTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Processor to run.
+     */
+    private final RowProcessor proc;
+
+    /**
+     * Rows to process.
+     */
+    private final int start, end;
+
+    /**
+     * Work is proportional to row numbers.
+     */
+    private final boolean triangular;
+
+    /**
+     * Minimum amount of work per task.
+     */
+    private final long minwork;
+
+    /**
+     * Constructor.
+     *
+     * @param proc Processor
+     * @param start First row
+     * @param end End row (exclusive)
+     * @param triangular Work is proportional to row numbers
+     * @param minwork Minimum amount of work per task
+     */
+    RowTask(RowProcessor proc, int start, int end, boolean triangular, long minwork) {
+      this.proc = proc;
+      this.start = start;
+      this.end = end;
+      this.triangular = triangular;
+      this.minwork = minwork;
+    }
+
+    @Override
+    protected void compute() {
+      final long work = triangular ? triangleSize(end) - triangleSize(start) : end - start;
+      if(work >= 2 * minwork && end - start > 1) {
+        final int mid = triangular ? //
+            Math.max(start + 1, Math.min(end - 1, (int) Math.sqrt(((double) start * start + (double) end * end) * .5))) : //
+            (start + end) >>> 1;
+        invokeAll(new RowTask(proc, start, mid, triangular, minwork), //
+            new RowTask(proc, mid, end, triangular, minwork));
+        return;
+      }
+      proc.process(ids.iter(), ids.iter(), start, end);
+    }
+  }
 }
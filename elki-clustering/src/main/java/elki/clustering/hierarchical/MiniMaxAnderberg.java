@@ -32,6 +32,7 @@ import elki.distance.minkowski.EuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.utilities.Priority;
+import elki.utilities.datastructures.arraylike.DoubleBigArray;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
@@ -103,7 +104,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
 
     // Compute the initial (lower triangular) distance matrix.
     MatrixParadigm mat = new MatrixParadigm(ids);
-    ArrayModifiableDBIDs prots = DBIDUtil.newArray(MatrixParadigm.triangleSize(size));
+    ArrayModifiableDBIDs prots = MiniMax.newPrototypeStorage(size);
     DBIDArrayMIter protiter = prots.iter();
 
     MiniMax.initializeMatrices(mat, prots, dq);
@@ -111,7 +112,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
     // Arrays used for caching:
     double[] bestd = new double[size];
     int[] besti = new int[size];
-    Anderberg.initializeNNCache(mat.matrix, bestd, besti);
+    Anderberg.initializeNNCache(mat, bestd, besti);
 
     // Repeat until everything merged into 1 cluster
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
@@ -177,10 +178,10 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
   protected void merge(int size, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<O> dq, double[] bestd, int[] besti, int x, int y) {
     // Avoid allocating memory, by reusing existing iterators:
     final DBIDArrayIter ix = mat.ix.seek(x), iy = mat.iy.seek(y);
-    final double[] distances = mat.matrix;
-    int offset = MatrixParadigm.triangleSize(x) + y;
+    final DoubleBigArray distances = mat.matrix;
+    int offset = (int) MatrixParadigm.triangleSize(x) + y;
     if(LOG.isDebuggingFine()) {
-      LOG.debugFine("Merging: " + DBIDUtil.toString(ix) + " -> " + DBIDUtil.toString(iy) + " " + distances[offset]);
+      LOG.debugFine("Merging: " + DBIDUtil.toString(ix) + " -> " + DBIDUtil.toString(iy) + " " + distances.get(offset));
     }
     // Perform merge in data structure: x -> y
     assert y < x;
@@ -200,7 +201,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
     clusters.put(y, cy);
 
     // parent of x is set to y
-    builder.add(ix, distances[offset], iy, prots.seek(offset));
+    builder.add(ix, distances.get(offset), iy, prots.seek(offset));
     besti[x] = -1; // Deactivate x in cache:
     updateMatrices(size, mat, prots, builder, clusters, dq, bestd, besti, x, y);
     if(y > 0) {
@@ -225,21 +226,21 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
    */
   private void updateMatrices(int size, MatrixParadigm mat, DBIDArrayMIter prots, PointerHierarchyBuilder builder, Int2ObjectOpenHashMap<ModifiableDBIDs> clusters, DistanceQuery<O> dq, double[] bestd, int[] besti, int x, int y) {
     final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] distances = mat.matrix;
+    final DoubleBigArray distances = mat.matrix;
     // c is the new cluster.
     // Update entries (at (a,b) with a > b) in the matrix where a = y or b = y
 
     // Update entries at (y,b) with b < y
     int a = y, b = 0;
     ix.seek(a);
-    final int yoffset = MatrixParadigm.triangleSize(y);
+    final long yoffset = MatrixParadigm.triangleSize(y);
     for(; b < a; b++) {
       // Skip entry if already merged
       if(builder.isLinked(iy.seek(b))) {
         continue;
       }
       MiniMax.updateEntry(mat, prots, clusters, dq, a, b);
-      Anderberg.updateCache(distances, bestd, besti, x, y, b, distances[yoffset + b]);
+      Anderberg.updateCache(distances, bestd, besti, x, y, b, distances.get(yoffset + b));
     }
 
     // Update entries at (a,y) with a > y
@@ -252,7 +253,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
         continue;
       }
       MiniMax.updateEntry(mat, prots, clusters, dq, a, b);
-      Anderberg.updateCache(distances, bestd, besti, x, y, a, distances[MatrixParadigm.triangleSize(a) + y]);
+      Anderberg.updateCache(distances, bestd, besti, x, y, a, distances.get(MatrixParadigm.triangleSize(a) + y));
     }
   }
 
@@ -0,0 +1,160 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import elki.Algorithm;
+import elki.clustering.hierarchical.AbstractHDBSCAN.HeapMSTCollector;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDVar;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.utilities.datastructures.heap.DoubleLongHeap;
+import elki.utilities.datastructures.heap.DoubleLongMinHeap;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Single-linkage clustering, using a parallel Borůvka algorithm to compute the
+ * minimum spanning tree.
+ * <p>
+ * The nearest neighbors in other components are found with index queries, so
+ * this variant benefits from a k-d tree or cover tree index added to the
+ * database. Without an index, {@link SLINK} is faster.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @composed - - - BoruvkaMinimumSpanningTree
+ * @navassoc - generates - PointerHierarchyResult
+ *
+ * @param <O> Object type
+ */
+public class SingleLinkBoruvka<O> implements HierarchicalClusteringAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(SingleLinkBoruvka.class);
+
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Number of threads, 0 for the number of processors.
+   */
+  protected int parallelism;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param parallelism Number of threads, 0 for the number of processors
+   */
+  public SingleLinkBoruvka(Distance<? super O> distance, int parallelism) {
+    super();
+    this.distance = distance;
+    this.parallelism = parallelism;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param relation Relation
+   * @return Clustering hierarchy
+   */
+  public PointerHierarchyResult run(Relation<O> relation) {
+    final QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int numedges = ids.size() - 1;
+    DoubleLongHeap heap = new DoubleLongMinHeap(Math.max(numedges, 1));
+    FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Computing minimum spanning tree (n-1 edges)", numedges, LOG) : null;
+    new BoruvkaMinimumSpanningTree(ids, qb::priorityByDBID, null, parallelism) //
+        .run(new HeapMSTCollector(heap, mprog, LOG));
+    LOG.ensureCompleted(mprog);
+
+    // Convert spanning tree to a pointer representation:
+    PointerHierarchyBuilder builder = new PointerHierarchyBuilder(ids, distance.isSquared());
+    DBIDVar p = DBIDUtil.newVar(), q = DBIDUtil.newVar();
+    for(; !heap.isEmpty(); heap.poll()) {
+      final long pair = heap.peekValue();
+      final int i = (int) (pair >>> 31), j = (int) (pair & 0x7FFFFFFFL);
+      builder.add(ids.assignVar(i, p), heap.peekKey(), ids.assignVar(j, q));
+    }
+    return builder.complete();
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * Number of threads for the spanning tree.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("boruvka.parallel", "Number of threads for the minimum spanning tree, 0 for the number of processors.");
+
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Number of threads.
+     */
+    protected int parallelism;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(PARALLEL_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> parallelism = x);
+    }
+
+    @Override
+    public SingleLinkBoruvka<O> make() {
+      return new SingleLinkBoruvka<>(distance, parallelism);
+    }
+  }
+}
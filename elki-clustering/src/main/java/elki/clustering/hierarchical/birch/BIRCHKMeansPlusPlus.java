@@ -95,6 +95,27 @@ public class BIRCHKMeansPlusPlus {
     return means;
   }
 
+  /**
+   * Perform k-means++ initialization on the leaf centroids of a tree, e.g., of
+   * a tree built from a stream or restored from a file.
+   *
+   * @param tree CF-tree
+   * @param k K
+   * @return Initial cluster centers
+   */
+  public double[][] run(CFTree tree, int k) {
+    double[][] x = new double[tree.numLeaves()][];
+    int z = 0;
+    for(CFTree.LeafIterator iter = tree.leafIterator(); iter.valid(); iter.advance()) {
+      ClusteringFeature f = iter.get();
+      double[] c = x[z++] = new double[f.getDimensionality()];
+      for(int i = 0; i < c.length; i++) {
+        c[i] = f.centroid(i);
+      }
+    }
+    return run(x, k);
+  }
+
   /**
    * Initialize the weight list.
    * 
@@ -35,6 +35,7 @@ import elki.database.ids.DBIDUtil;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.relation.Relation;
 import elki.database.relation.RelationUtil;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.result.Metadata;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
@@ -120,6 +121,41 @@ public class BIRCHLeafClustering implements ClusteringAlgorithm<Clustering<MeanM
     return result;
   }
 
+  /**
+   * Run the clustering algorithm on a stream of vectors, for example from a
+   * {@link elki.datasource.parser.StreamingParser}.
+   * <p>
+   * Because the objects are not retained, the resulting clusters contain only
+   * the leaf centroids, but no objects.
+   *
+   * @param source Stream source
+   * @return Clustering, without cluster members
+   */
+  public Clustering<MeanModel> run(BundleStreamSource source) {
+    return run(cffactory.newTree(source));
+  }
+
+  /**
+   * Treat the leaves of an existing tree as clusters, e.g., of a tree built from
+   * a stream or restored from a file.
+   *
+   * @param tree CF-tree
+   * @return Clustering, without cluster members
+   */
+  public Clustering<MeanModel> run(CFTree tree) {
+    Clustering<MeanModel> result = new Clustering<>();
+    for(CFTree.LeafIterator iter = tree.leafIterator(); iter.valid(); iter.advance()) {
+      ClusteringFeature leaf = iter.get();
+      double[] center = new double[leaf.getDimensionality()];
+      for(int i = 0; i < center.length; i++) {
+        center[i] = leaf.centroid(i);
+      }
+      result.addToplevelCluster(new Cluster<>(DBIDUtil.EMPTYDBIDS, new MeanModel(center)));
+    }
+    Metadata.of(result).setLongName("BIRCH Clustering");
+    return result;
+  }
+
   /**
    * Parameterization class.
    *
@@ -38,6 +38,7 @@ import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.logging.Logging;
 import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.LongStatistic;
@@ -132,21 +133,9 @@ public class BIRCHLloydKMeans implements ClusteringAlgorithm<Clustering<MeanMode
    */
   public Clustering<KMeansModel> run(Relation<NumberVector> relation) {
     CFTree tree = cffactory.newTree(relation.getDBIDs(), relation);
-
-    // For efficiency, we also need the mean of each CF:
-    ClusteringFeature[] cfs = new ClusteringFeature[tree.leaves];
-    double[][] cfmeans = new double[tree.leaves][];
-
-    int z = 0;
-    for(LeafIterator iter = tree.leafIterator(); iter.valid(); iter.advance()) {
-      ClusteringFeature f = cfs[z] = iter.get();
-      cfmeans[z] = times(f.ls, 1. / f.n);
-      z++;
-    }
-
-    int[] assignment = new int[tree.leaves], weights = new int[k];
-    Arrays.fill(assignment, -1);
-    double[][] means = kmeans(cfmeans, cfs, assignment, weights);
+    ClusteringFeature[] cfs = leaves(tree);
+    int[] assignment = new int[cfs.length], weights = new int[k];
+    double[][] means = kmeans(cfs, assignment, weights);
 
     // The CFTree does not store points. We have to reassign them; but rather
     // than assigning them to n > k cluster features, we just assign them to the
@@ -181,16 +170,79 @@ public class BIRCHLloydKMeans implements ClusteringAlgorithm<Clustering<MeanMode
     return result;
   }
 
+  /**
+   * Run the clustering algorithm on a stream of vectors, for example from a
+   * {@link elki.datasource.parser.StreamingParser}.
+   * <p>
+   * Because the objects are not retained, the resulting clusters contain only
+   * the cluster means, but no objects.
+   *
+   * @param source Stream source
+   * @return Clustering, without cluster members
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source) {
+    return run(cffactory.newTree(source));
+  }
+
+  /**
+   * Run k-means on the leaves of an existing tree, e.g., of a tree built from a
+   * stream or restored from a file.
+   *
+   * @param tree CF-tree
+   * @return Clustering, without cluster members
+   */
+  public Clustering<KMeansModel> run(CFTree tree) {
+    ClusteringFeature[] cfs = leaves(tree);
+    if(cfs.length < k) {
+      throw new IllegalStateException("The CF-tree has only " + cfs.length + " leaves, but k=" + k + " clusters were requested.");
+    }
+    int[] assignment = new int[cfs.length], weights = new int[k];
+    double[][] means = kmeans(cfs, assignment, weights);
+    // Sum of squared deviations from the means, from the CF statistics:
+    double[] varsum = new double[k];
+    for(int i = 0; i < cfs.length; i++) {
+      final ClusteringFeature cf = cfs[i];
+      final double[] mean = means[assignment[i]];
+      varsum[assignment[i]] += cf.ss - 2 * dot(mean, cf.ls) + cf.n * squareSum(mean);
+    }
+    Clustering<KMeansModel> result = new Clustering<>();
+    for(int i = 0; i < k; i++) {
+      result.addToplevelCluster(new Cluster<KMeansModel>(DBIDUtil.EMPTYDBIDS, new KMeansModel(means[i], varsum[i])));
+    }
+    Metadata.of(result).setLongName("BIRCH k-Means Clustering");
+    return result;
+  }
+
+  /**
+   * Collect the leaves of a tree.
+   *
+   * @param tree CF-tree
+   * @return Leaf clustering features
+   */
+  private static ClusteringFeature[] leaves(CFTree tree) {
+    ClusteringFeature[] cfs = new ClusteringFeature[tree.leaves];
+    int z = 0;
+    for(LeafIterator iter = tree.leafIterator(); iter.valid(); iter.advance()) {
+      cfs[z++] = iter.get();
+    }
+    return cfs;
+  }
+
   /**
    * Perform k-means clustering.
    *
-   * @param cfmeans Cluster feature means
    * @param cfs Cluster features
-   * @param assignment Cluster assignment of each CF
+   * @param assignment Cluster assignment of each CF (output)
    * @param weights Cluster weight output
    * @return Cluster means
    */
-  private double[][] kmeans(double[][] cfmeans, ClusteringFeature[] cfs, int[] assignment, int[] weights) {
+  private double[][] kmeans(ClusteringFeature[] cfs, int[] assignment, int[] weights) {
+    // For efficiency, we also need the mean of each CF:
+    double[][] cfmeans = new double[cfs.length][];
+    for(int i = 0; i < cfs.length; i++) {
+      cfmeans[i] = times(cfs[i].ls, 1. / cfs[i].n);
+    }
+    Arrays.fill(assignment, -1);
     double[][] means = initialization.run(cfmeans, k);
     for(int i = 1; i <= maxiter || maxiter <= 0; i++) {
       means = i == 1 ? means : means(assignment, means, cfs, weights);
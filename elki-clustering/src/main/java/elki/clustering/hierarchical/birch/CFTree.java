@@ -20,17 +20,34 @@
  */
 package elki.clustering.hierarchical.birch;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 
 import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
 import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDs;
 import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
+import elki.logging.progress.IndefiniteProgress;
 import elki.utilities.datastructures.iterator.Iter;
 import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
 import elki.utilities.io.FormatUtil;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.OptionID;
@@ -38,6 +55,7 @@ import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.constraints.GreaterEqualConstraint;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.FileParameter;
 import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -47,7 +65,8 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * Important differences:
  * <ol>
  * <li>Leaf nodes and directory nodes have the same capacity</li>
- * <li>Condensing and memory limits are not implemented</li>
+ * <li>Condensing is not implemented, and memory limits are only estimated from
+ * the number of nodes</li>
  * <li>Merging refinement (merge-resplit) is not implemented</li>
  * </ol>
  * Because we want to be able to track the cluster assignments of all data
@@ -89,6 +108,11 @@ public class CFTree {
    */
   public static final Logging LOG = Logging.getLogger(CFTree.class);
 
+  /**
+   * Magic number of the serialized format, "CFT" and version 1.
+   */
+  private static final int MAGIC = 0x43465401;
+
   /**
    * Distance function to use.
    */
@@ -119,6 +143,11 @@ public class CFTree {
    */
   int leaves;
 
+  /**
+   * Inner node counter.
+   */
+  int inner;
+
   /**
    * Constructor.
    *
@@ -150,6 +179,7 @@ public class CFTree {
       root.children[0] = leaf;
       root.addToStatistics(nv);
       ++leaves;
+      ++inner;
       return;
     }
     TreeNode other = insert(root, nv);
@@ -159,6 +189,7 @@ public class CFTree {
       newnode.addToStatistics(newnode.children[0] = root);
       newnode.addToStatistics(newnode.children[1] = other);
       root = newnode;
+      ++inner;
     }
   }
 
@@ -178,6 +209,7 @@ public class CFTree {
     ClusteringFeature first = iter.get();
 
     leaves = 0;
+    inner = 1;
     // Make a new root node:
     root = new TreeNode(dim, capacity);
     root.children[0] = first;
@@ -191,6 +223,7 @@ public class CFTree {
         newnode.addToStatistics(newnode.children[0] = root);
         newnode.addToStatistics(newnode.children[1] = other);
         root = newnode;
+        ++inner;
       }
     }
   }
@@ -356,6 +389,7 @@ public class CFTree {
     final int capacity = node.children.length;
     assert (node.children[capacity - 1] != null) : "Node to split is not empty!";
     TreeNode newn = new TreeNode(node.getDimensionality(), capacity);
+    ++inner;
     final int size = capacity + 1;
     // Find farthest pair:
     int m1 = -1, m2 = -1;
@@ -488,6 +522,169 @@ public class CFTree {
     return new LeafIterator(root);
   }
 
+  /**
+   * Get the number of leaf entries.
+   *
+   * @return Number of leaves
+   */
+  public int numLeaves() {
+    return leaves;
+  }
+
+  /**
+   * Estimate the memory use of the tree, assuming 64 bit references and
+   * 16 bytes of object and array headers each.
+   *
+   * @return Estimated memory use in bytes
+   */
+  public long estimateMemory() {
+    if(root == null) {
+      return 0L;
+    }
+    // Object with n, ss, and ls, plus the ls array:
+    final long cf = 16 + 4 + 8 + 8 + 16 + 8L * root.getDimensionality();
+    // Inner nodes additionally have the children array:
+    return leaves * cf + inner * (cf + 8 + 16 + 8L * capacity);
+  }
+
+  /**
+   * Save the tree to a file, e.g., to continue inserting data later.
+   * <p>
+   * The file is first written to a temporary file, and then moved into place,
+   * so that an existing checkpoint is not damaged if writing fails.
+   *
+   * @param file Output file
+   * @throws IOException on write errors
+   */
+  public void save(Path file) throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      write(out);
+    }
+    try {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(AtomicMoveNotSupportedException e) {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Serialize the tree.
+   *
+   * @param out Output
+   * @throws IOException on write errors
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeUTF(distance.getClass().getName());
+    out.writeUTF(absorption.getClass().getName());
+    out.writeInt(capacity);
+    out.writeDouble(thresholdsq);
+    out.writeInt(root != null ? root.getDimensionality() : -1);
+    if(root != null) {
+      out.writeInt(leaves);
+      out.writeInt(inner);
+      write(out, root);
+    }
+  }
+
+  /**
+   * Serialize a subtree, in preorder.
+   *
+   * @param out Output
+   * @param cf Current entry
+   * @throws IOException on write errors
+   */
+  private static void write(DataOutput out, ClusteringFeature cf) throws IOException {
+    final boolean isnode = cf instanceof TreeNode;
+    out.writeBoolean(isnode);
+    out.writeInt(cf.n);
+    out.writeDouble(cf.ss);
+    for(double v : cf.ls) {
+      out.writeDouble(v);
+    }
+    if(isnode) {
+      ClusteringFeature[] children = ((TreeNode) cf).children;
+      int size = 0;
+      while(size < children.length && children[size] != null) {
+        size++;
+      }
+      out.writeInt(size);
+      for(int i = 0; i < size; i++) {
+        write(out, children[i]);
+      }
+    }
+  }
+
+  /**
+   * Restore a serialized tree.
+   * <p>
+   * The node capacity of the stored tree is kept, and the threshold is only
+   * increased, never decreased.
+   *
+   * @param in Input
+   * @param distance Distance function to use
+   * @param absorption Absorption criterion
+   * @param threshold Minimum threshold
+   * @return Restored tree
+   * @throws IOException on read errors or invalid data
+   */
+  public static CFTree read(DataInput in, BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold) throws IOException {
+    if(in.readInt() != MAGIC) {
+      throw new IOException("Not a serialized CF-tree.");
+    }
+    String dname = in.readUTF(), aname = in.readUTF();
+    if(!dname.equals(distance.getClass().getName()) || !aname.equals(absorption.getClass().getName())) {
+      LOG.warning("The CF-tree was built with " + dname + " and " + aname + ", but will be continued with " + distance.getClass().getName() + " and " + absorption.getClass().getName());
+    }
+    final int capacity = in.readInt();
+    final double thresholdsq = in.readDouble();
+    CFTree tree = new CFTree(distance, absorption, threshold, capacity);
+    tree.thresholdsq = thresholdsq > tree.thresholdsq ? thresholdsq : tree.thresholdsq;
+    final int dim = in.readInt();
+    if(dim >= 0) {
+      tree.leaves = in.readInt();
+      tree.inner = in.readInt();
+      ClusteringFeature root = read(in, dim, capacity);
+      if(!(root instanceof TreeNode)) {
+        throw new IOException("Invalid CF-tree: root is not a node.");
+      }
+      tree.root = (TreeNode) root;
+    }
+    return tree;
+  }
+
+  /**
+   * Restore a serialized subtree.
+   *
+   * @param in Input
+   * @param dim Dimensionality
+   * @param capacity Node capacity
+   * @return Restored entry
+   * @throws IOException on read errors or invalid data
+   */
+  private static ClusteringFeature read(DataInput in, int dim, int capacity) throws IOException {
+    final boolean isnode = in.readBoolean();
+    ClusteringFeature cf = isnode ? new TreeNode(dim, capacity) : new ClusteringFeature(dim);
+    cf.n = in.readInt();
+    cf.ss = in.readDouble();
+    for(int i = 0; i < dim; i++) {
+      cf.ls[i] = in.readDouble();
+    }
+    if(isnode) {
+      final int size = in.readInt();
+      if(size < 1 || size > capacity) {
+        throw new IOException("Invalid CF-tree: node with " + size + " children.");
+      }
+      ClusteringFeature[] children = ((TreeNode) cf).children;
+      for(int i = 0; i < size; i++) {
+        children[i] = read(in, dim, capacity);
+      }
+    }
+    return cf;
+  }
+
   /**
    * Iterator over leaf nodes.
    *
@@ -623,6 +820,16 @@ public class CFTree {
      */
     double maxleaves;
 
+    /**
+     * Approximate memory budget in bytes, 0 for no limit.
+     */
+    long memory;
+
+    /**
+     * Checkpoint file to continue from and save to, may be {@code null}.
+     */
+    Path checkpoint;
+
     /**
      * Constructor.
      *
@@ -633,38 +840,175 @@ public class CFTree {
      * @param maxleaves Maximum number of leaves
      */
     public Factory(BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold, int branchingFactor, double maxleaves) {
+      this(distance, absorption, threshold, branchingFactor, maxleaves, 0L, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance to use
+     * @param absorption Absorption criterion (diameter, distance).
+     * @param threshold Distance threshold
+     * @param branchingFactor Maximum branching factor.
+     * @param maxleaves Maximum number of leaves
+     * @param memory Approximate memory budget in bytes, 0 for no limit
+     * @param checkpoint Checkpoint file to continue from and save to, may be
+     *        {@code null}
+     */
+    public Factory(BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold, int branchingFactor, double maxleaves, long memory, Path checkpoint) {
       this.distance = distance;
       this.absorption = absorption;
       this.threshold = threshold;
       this.branchingFactor = branchingFactor;
       this.maxleaves = maxleaves;
+      this.memory = memory;
+      this.checkpoint = checkpoint;
     }
 
     /**
      * Make a new tree.
+     * <p>
+     * If a checkpoint file is configured and exists, the tree is restored from
+     * it, and the new data is added; the tree is saved to the checkpoint file
+     * afterwards.
      *
      * @param ids DBIDs to insert
      * @param relation Data relation
      * @return New tree
      */
     public CFTree newTree(DBIDs ids, Relation<? extends NumberVector> relation) {
-      CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
+      CFTree tree = restoreTree();
       final double max = maxleaves <= 1 ? maxleaves * ids.size() : maxleaves;
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building tree", relation.size(), LOG) : null;
       for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
-        tree.insert(relation.get(it));
-        if(tree.leaves > max) {
-          if(LOG.isVerbose()) {
-            LOG.verbose("Compacting CF-tree.");
-          }
-          tree.rebuildTree();
-        }
+        insert(tree, relation.get(it), max);
         LOG.incrementProcessed(prog);
       }
       LOG.ensureCompleted(prog);
+      saveTree(tree);
       return tree;
     }
 
+    /**
+     * Build a tree from a stream of vectors, for example from a
+     * {@link elki.datasource.parser.StreamingParser}, without materializing
+     * the data in a database.
+     * <p>
+     * Because the number of objects is not known in advance, a relative limit
+     * on the number of leaves is not used; the tree size is limited by an
+     * absolute number of leaves or by the memory budget. If a checkpoint file
+     * is configured and exists, the tree is restored from it, and the tree is
+     * saved to the checkpoint file afterwards, so data can be added
+     * incrementally.
+     *
+     * @param source Stream source
+     * @return Tree
+     */
+    public CFTree newTree(BundleStreamSource source) {
+      if(maxleaves <= 1 && memory <= 0) {
+        LOG.warning("Relative leaf limits cannot be used with streams, and no memory budget was set. The CF-tree size is not limited.");
+      }
+      CFTree tree = restoreTree();
+      final double max = maxleaves <= 1 ? Double.POSITIVE_INFINITY : maxleaves;
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Building tree", LOG) : null;
+      int col = -1;
+      for(BundleStreamSource.Event ev = source.nextEvent(); ev != BundleStreamSource.Event.END_OF_STREAM; ev = source.nextEvent()) {
+        switch(ev){
+        case META_CHANGED:
+          if(col < 0) {
+            BundleMeta meta = source.getMeta();
+            for(int i = 0; i < meta.size(); i++) {
+              if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+                col = i;
+                break;
+              }
+            }
+          }
+          break;
+        case NEXT_OBJECT:
+          if(col < 0) {
+            throw new AbortException("No number vector field in the input stream.");
+          }
+          insert(tree, (NumberVector) source.data(col), max);
+          LOG.incrementProcessed(prog);
+          break;
+        default:
+          LOG.warning("Unknown event: " + ev);
+        }
+      }
+      LOG.setCompleted(prog);
+      saveTree(tree);
+      return tree;
+    }
+
+    /**
+     * Insert a vector, and rebuild the tree if it became too large.
+     *
+     * @param tree Tree
+     * @param nv Vector to insert
+     * @param max Maximum number of leaves
+     */
+    private void insert(CFTree tree, NumberVector nv, double max) {
+      tree.insert(nv);
+      if(tree.leaves > max || (memory > 0 && tree.estimateMemory() > memory)) {
+        if(LOG.isVerbose()) {
+          LOG.verbose("Compacting CF-tree.");
+        }
+        tree.rebuildTree();
+      }
+    }
+
+    /**
+     * Restore a tree from a file, written by {@link CFTree#save}.
+     *
+     * @param file Input file
+     * @return Restored tree
+     * @throws IOException on read errors
+     */
+    public CFTree load(Path file) throws IOException {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        return CFTree.read(in, distance, absorption, threshold);
+      }
+    }
+
+    /**
+     * Restore the tree from the checkpoint, or make a new tree.
+     *
+     * @return Tree
+     */
+    private CFTree restoreTree() {
+      if(checkpoint == null || !Files.exists(checkpoint)) {
+        return new CFTree(distance, absorption, threshold, branchingFactor);
+      }
+      try {
+        CFTree tree = load(checkpoint);
+        if(LOG.isVerbose()) {
+          LOG.verbose("Restored CF-tree with " + tree.leaves + " leaves from " + checkpoint);
+        }
+        return tree;
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not restore the CF-tree from " + checkpoint, e);
+      }
+    }
+
+    /**
+     * Save the tree to the checkpoint, if configured.
+     *
+     * @param tree Tree
+     */
+    private void saveTree(CFTree tree) {
+      if(checkpoint == null) {
+        return;
+      }
+      try {
+        tree.save(checkpoint);
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not save the CF-tree to " + checkpoint, e);
+      }
+    }
+
     /**
      * Parameterization class for CFTrees.
      *
@@ -696,6 +1040,16 @@ public class CFTree {
        */
       public static final OptionID MAXLEAVES_ID = new OptionID("cftree.maxleaves", "Maximum number of leaves (if less than 1, the values is assumed to be relative)");
 
+      /**
+       * Memory budget.
+       */
+      public static final OptionID MEMORY_ID = new OptionID("cftree.memory", "Approximate memory budget of the CF-Tree in megabytes; when exceeded, the tree is rebuilt with a larger threshold.");
+
+      /**
+       * Checkpoint file.
+       */
+      public static final OptionID CHECKPOINT_ID = new OptionID("cftree.checkpoint", "File to restore the CF-Tree from (if it exists) before inserting, and to save it to afterwards, to add data incrementally.");
+
       /**
        * BIRCH distance function to use
        */
@@ -721,6 +1075,16 @@ public class CFTree {
        */
       double maxleaves;
 
+      /**
+       * Approximate memory budget in bytes, 0 for no limit.
+       */
+      long memory;
+
+      /**
+       * Checkpoint file.
+       */
+      Path checkpoint;
+
       @Override
       public void configure(Parameterization config) {
         new ObjectParameter<BIRCHDistance>(DISTANCE_ID, BIRCHDistance.class, VarianceIncreaseDistance.class) //
@@ -739,11 +1103,18 @@ public class CFTree {
             .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
             .setDefaultValue(0.05) //
             .grab(config, x -> maxleaves = x);
+        new DoubleParameter(MEMORY_ID) //
+            .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+            .setOptional(true) //
+            .grab(config, x -> memory = (long) (x * 1048576));
+        new FileParameter(CHECKPOINT_ID, FileParameter.FileType.OUTPUT_FILE) //
+            .setOptional(true) //
+            .grab(config, x -> checkpoint = Paths.get(x));
       }
 
       @Override
       public CFTree.Factory make() {
-        return new CFTree.Factory(distance, absorption, threshold, branchingFactor, maxleaves);
+        return new CFTree.Factory(distance, absorption, threshold, branchingFactor, maxleaves, memory, checkpoint);
       }
     }
   }
@@ -212,6 +212,14 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
    * @param vec Vector to add
    */
   private static void densePlusEquals(double[] sum, NumberVector vec) {
+    if(vec instanceof PackedDoubleVector) {
+      final double[] data = ((PackedDoubleVector) vec).getData();
+      final int off = ((PackedDoubleVector) vec).getStart();
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] += data[off + d];
+      }
+      return;
+    }
     for(int d = 0; d < sum.length; d++) {
       sum[d] += vec.doubleValue(d);
     }
@@ -236,6 +244,14 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
    * @param vec Vector to subtract
    */
   public static void minusEquals(double[] sum, NumberVector vec) {
+    if(vec instanceof PackedDoubleVector) {
+      final double[] data = ((PackedDoubleVector) vec).getData();
+      final int off = ((PackedDoubleVector) vec).getStart();
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] -= data[off + d];
+      }
+      return;
+    }
     for(int d = 0; d < sum.length; d++) {
       sum[d] -= vec.doubleValue(d);
     }
@@ -265,6 +281,16 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
    * @param vec Vector to subtract
    */
   private static void densePlusMinusEquals(double[] add, double[] sub, NumberVector vec) {
+    if(vec instanceof PackedDoubleVector) {
+      final double[] data = ((PackedDoubleVector) vec).getData();
+      final int off = ((PackedDoubleVector) vec).getStart();
+      for(int d = 0; d < add.length; d++) {
+        final double v = data[off + d];
+        add[d] += v;
+        sub[d] -= v;
+      }
+      return;
+    }
     for(int d = 0; d < add.length; d++) {
       final double v = vec.doubleValue(d);
       add[d] += v;
@@ -485,6 +511,15 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
           throw new IllegalArgumentException("Objects do not have the same dimensionality.");
         }
         double v = 0;
+        if(x instanceof PackedDoubleVector) {
+          final double[] data = ((PackedDoubleVector) x).getData();
+          final int off = ((PackedDoubleVector) x).getStart();
+          for(int i = 0; i < y.length; i++) {
+            double d = data[off + i] - y[i];
+            v += d * d;
+          }
+          return v;
+        }
         for(int i = 0; i < y.length; i++) {
           double d = x.doubleValue(i) - y[i];
           v += d * d;
@@ -24,7 +24,7 @@ import elki.clustering.kmeans.initialization.KMeansInitialization;
 import elki.data.Clustering;
 import elki.data.NumberVector;
 import elki.data.model.KMeansModel;
-import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
 import elki.database.relation.Relation;
 import elki.distance.NumberVectorDistance;
 import elki.logging.Logging;
@@ -91,7 +91,7 @@ public class ElkanKMeans<V extends NumberVector> extends SimplifiedElkanKMeans<V
     /**
      * Cluster center distances
      */
-    double[][] cdist;
+    protected double[][] cdist;
 
     /**
      * Constructor.
@@ -109,79 +109,72 @@ public class ElkanKMeans<V extends NumberVector> extends SimplifiedElkanKMeans<V
     protected int initialAssignToNearestCluster() {
       assert k == means.length;
       initialSeperation(cdist);
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
-        NumberVector fv = relation.get(it);
-        double[] l = lower.get(it);
-        // Check all (other) means:
-        double best = l[0] = sqrtdistance(fv, means[0]);
-        int minIndex = 0;
-        for(int j = 1; j < k; j++) {
-          if(best > cdist[minIndex][j]) {
-            double dist = l[j] = sqrtdistance(fv, means[j]);
-            if(dist < best) {
-              minIndex = j;
-              best = dist;
-            }
+      return super.initialAssignToNearestCluster();
+    }
+
+    @Override
+    protected int initialAssign(DBIDRef it, NumberVector fv) {
+      double[] l = lower.get(it);
+      // Check all (other) means:
+      double best = l[0] = sqrtdistance(fv, means[0]);
+      int minIndex = 0;
+      for(int j = 1; j < k; j++) {
+        if(best > cdist[minIndex][j]) {
+          double dist = l[j] = sqrtdistance(fv, means[j]);
+          if(dist < best) {
+            minIndex = j;
+            best = dist;
           }
         }
-        for(int j = 1; j < k; j++) {
-          if(l[j] == 0. && j != minIndex) {
-            l[j] = 2 * cdist[minIndex][j] - best;
-          }
+      }
+      for(int j = 1; j < k; j++) {
+        if(l[j] == 0. && j != minIndex) {
+          l[j] = 2 * cdist[minIndex][j] - best;
         }
-        // Assign to nearest cluster.
-        clusters.get(minIndex).add(it);
-        assignment.putInt(it, minIndex);
-        plusEquals(sums[minIndex], fv);
-        upper.putDouble(it, best);
       }
-      return relation.size();
+      upper.putDouble(it, best);
+      return minIndex;
     }
 
     @Override
     protected int assignToNearestCluster() {
       recomputeSeperation(sep, cdist); // #1
-      int changed = 0;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
-        final int orig = assignment.intValue(it);
-        double u = upper.doubleValue(it);
-        // Upper bound check (#2):
-        if(u <= sep[orig]) {
-          continue;
+      return super.assignToNearestCluster();
+    }
+
+    @Override
+    protected int reassign(DBIDRef it, int orig) {
+      double u = upper.doubleValue(it);
+      // Upper bound check (#2):
+      if(u <= sep[orig]) {
+        return orig;
+      }
+      boolean recompute_u = true; // Elkan's r(x)
+      NumberVector fv = relation.get(it);
+      double[] l = lower.get(it);
+      // Check all (other) means:
+      int cur = orig;
+      for(int j = 0; j < k; j++) {
+        if(orig == j || u <= l[j] || u <= cdist[cur][j]) {
+          continue; // Condition #3 i-iii not satisfied
         }
-        boolean recompute_u = true; // Elkan's r(x)
-        NumberVector fv = relation.get(it);
-        double[] l = lower.get(it);
-        // Check all (other) means:
-        int cur = orig;
-        for(int j = 0; j < k; j++) {
-          if(orig == j || u <= l[j] || u <= cdist[cur][j]) {
-            continue; // Condition #3 i-iii not satisfied
-          }
-          if(recompute_u) { // Need to update bound? #3a
-            upper.putDouble(it, u = sqrtdistance(fv, means[cur]));
-            recompute_u = false; // Once only
-            if(u <= l[j] || u <= cdist[cur][j]) { // #3b
-              continue;
-            }
-          }
-          double dist = l[j] = sqrtdistance(fv, means[j]);
-          if(dist < u) {
-            cur = j;
-            u = dist;
+        if(recompute_u) { // Need to update bound? #3a
+          upper.putDouble(it, u = sqrtdistance(fv, means[cur]));
+          recompute_u = false; // Once only
+          if(u <= l[j] || u <= cdist[cur][j]) { // #3b
+            continue;
           }
         }
-        // Object has to be reassigned.
-        if(cur != orig) {
-          clusters.get(cur).add(it);
-          clusters.get(orig).remove(it);
-          assignment.putInt(it, cur);
-          plusMinusEquals(sums[cur], sums[orig], fv);
-          ++changed;
-          upper.putDouble(it, u); // Remember bound.
+        double dist = l[j] = sqrtdistance(fv, means[j]);
+        if(dist < u) {
+          cur = j;
+          u = dist;
         }
       }
-      return changed;
+      if(cur != orig) {
+        upper.putDouble(it, u); // Remember bound.
+      }
+      return cur;
     }
 
     @Override
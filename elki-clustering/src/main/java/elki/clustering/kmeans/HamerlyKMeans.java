@@ -30,6 +30,7 @@ import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
 import elki.database.relation.Relation;
 import elki.distance.NumberVectorDistance;
 import elki.logging.Logging;
@@ -98,27 +99,27 @@ public class HamerlyKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
     /**
      * Sum aggregate for the new mean.
      */
-    double[][] sums;
+    protected double[][] sums;
 
     /**
      * Scratch space for new means.
      */
-    double[][] newmeans;
+    protected double[][] newmeans;
 
     /**
      * Upper bounds
      */
-    WritableDoubleDataStore upper;
+    protected WritableDoubleDataStore upper;
 
     /**
      * Lower bounds
      */
-    WritableDoubleDataStore lower;
+    protected WritableDoubleDataStore lower;
 
     /**
      * Separation of means / distance moved.
      */
-    double[] sep;
+    protected double[] sep;
 
     /**
      * Constructor.
@@ -159,69 +160,42 @@ public class HamerlyKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
       computeSquaredSeparation(cdist);
       for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
         NumberVector fv = relation.get(it);
-        // Find closest center, and distance to two closest centers:
-        double min1 = distance(fv, means[0]);
-        double min2 = k > 1 ? distance(fv, means[1]) : min1;
-        int minIndex = 0;
-        if(min2 < min1) {
-          double tmp = min1;
-          min1 = min2;
-          min2 = tmp;
-          minIndex = 1;
-        }
-        for(int i = 2; i < k; i++) {
-          if(min2 > cdist[minIndex][i]) {
-            double dist = distance(fv, means[i]);
-            if(dist < min1) {
-              minIndex = i;
-              min2 = min1;
-              min1 = dist;
-            }
-            else if(dist < min2) {
-              min2 = dist;
-            }
-          }
-        }
+        final int minIndex = initialAssign(it, fv, cdist);
         // Assign to nearest cluster.
         clusters.get(minIndex).add(it);
         assignment.putInt(it, minIndex);
         plusEquals(sums[minIndex], fv);
-        upper.putDouble(it, isSquared ? Math.sqrt(min1) : min1);
-        lower.putDouble(it, isSquared ? Math.sqrt(min2) : min2);
       }
       return relation.size();
     }
 
-    @Override
-    protected int assignToNearestCluster() {
-      recomputeSeperation(sep);
-      int changed = 0;
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
-        final int orig = assignment.intValue(it);
-        // Compute the current bound:
-        final double l = lower.doubleValue(it);
-        final double sa = sep[orig];
-        double u = upper.doubleValue(it);
-        if(u <= l || u <= sa) {
-          continue;
-        }
-        // Update the upper bound
-        NumberVector fv = relation.get(it);
-        double curd2 = distance(fv, means[orig]);
-        upper.putDouble(it, u = isSquared ? Math.sqrt(curd2) : curd2);
-        if(u <= l || u <= sa) {
-          continue;
-        }
-        // Find closest center, and distance to the second closest center
-        double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
-        int cur = orig;
-        for(int i = 0; i < k; i++) {
-          if(i == orig) {
-            continue;
-          }
+    /**
+     * Find the nearest cluster of a single object, and initialize its bounds.
+     * <p>
+     * This only modifies the bounds of the object itself, and hence can be
+     * used concurrently on different objects.
+     *
+     * @param it Object
+     * @param fv Object vector
+     * @param cdist Center separation (as squared/4)
+     * @return Index of the nearest cluster
+     */
+    protected int initialAssign(DBIDRef it, NumberVector fv, double[][] cdist) {
+      // Find closest center, and distance to two closest centers:
+      double min1 = distance(fv, means[0]);
+      double min2 = k > 1 ? distance(fv, means[1]) : min1;
+      int minIndex = 0;
+      if(min2 < min1) {
+        double tmp = min1;
+        min1 = min2;
+        min2 = tmp;
+        minIndex = 1;
+      }
+      for(int i = 2; i < k; i++) {
+        if(min2 > cdist[minIndex][i]) {
           double dist = distance(fv, means[i]);
           if(dist < min1) {
-            cur = i;
+            minIndex = i;
             min2 = min1;
             min1 = dist;
           }
@@ -229,20 +203,81 @@ public class HamerlyKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
             min2 = dist;
           }
         }
+      }
+      upper.putDouble(it, isSquared ? Math.sqrt(min1) : min1);
+      lower.putDouble(it, isSquared ? Math.sqrt(min2) : min2);
+      return minIndex;
+    }
+
+    @Override
+    protected int assignToNearestCluster() {
+      recomputeSeperation(sep);
+      int changed = 0;
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        final int orig = assignment.intValue(it);
+        final int cur = reassign(it, orig);
         // Object has to be reassigned.
         if(cur != orig) {
           clusters.get(cur).add(it);
           clusters.get(orig).remove(it);
           assignment.putInt(it, cur);
-          plusMinusEquals(sums[cur], sums[orig], fv);
+          plusMinusEquals(sums[cur], sums[orig], relation.get(it));
           ++changed;
-          upper.putDouble(it, min1 == curd2 ? u : isSquared ? Math.sqrt(min1) : min1);
         }
-        lower.putDouble(it, min2 == curd2 ? u : isSquared ? Math.sqrt(min2) : min2);
       }
       return changed;
     }
 
+    /**
+     * Find the nearest cluster of a single object, and update its bounds.
+     * <p>
+     * This only modifies the bounds of the object itself (but neither the
+     * cluster assignment nor the cluster sums), and hence can be used
+     * concurrently on different objects.
+     *
+     * @param it Object
+     * @param orig Current cluster assignment
+     * @return New cluster assignment
+     */
+    protected int reassign(DBIDRef it, int orig) {
+      // Compute the current bound:
+      final double l = lower.doubleValue(it);
+      final double sa = sep[orig];
+      double u = upper.doubleValue(it);
+      if(u <= l || u <= sa) {
+        return orig;
+      }
+      // Update the upper bound
+      NumberVector fv = relation.get(it);
+      double curd2 = distance(fv, means[orig]);
+      upper.putDouble(it, u = isSquared ? Math.sqrt(curd2) : curd2);
+      if(u <= l || u <= sa) {
+        return orig;
+      }
+      // Find closest center, and distance to the second closest center
+      double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
+      int cur = orig;
+      for(int i = 0; i < k; i++) {
+        if(i == orig) {
+          continue;
+        }
+        double dist = distance(fv, means[i]);
+        if(dist < min1) {
+          cur = i;
+          min2 = min1;
+          min1 = dist;
+        }
+        else if(dist < min2) {
+          min2 = dist;
+        }
+      }
+      if(cur != orig) {
+        upper.putDouble(it, min1 == curd2 ? u : isSquared ? Math.sqrt(min1) : min1);
+      }
+      lower.putDouble(it, min2 == curd2 ? u : isSquared ? Math.sqrt(min2) : min2);
+      return cur;
+    }
+
     /**
      * Recompute the separation of cluster means.
      * <p>
@@ -0,0 +1,618 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import java.util.Random;
+
+import elki.clustering.ClusteringAlgorithmUtil;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.data.type.SimpleTypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.relation.MaterializedRelation;
+import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.distance.NumberVectorDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.LongStatistic;
+import elki.result.Metadata;
+import elki.utilities.documentation.Reference;
+import elki.utilities.documentation.Title;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.WrongParameterValueException;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Mini-batch k-means, which updates the cluster centers using small random
+ * samples of the data only.
+ * <p>
+ * Each iteration draws a batch (with replacement) from the relation, assigns
+ * the batch to the nearest centers, and moves each center towards its points
+ * with a per-center learning rate of 1/n, where n is the number of points
+ * assigned to that center so far. A lower bound on the learning rate can be
+ * set to keep adapting to drifting data.
+ * <p>
+ * The iterations stop after the given number of batches (by default
+ * {@value Par#DEFAULT_MAXITER}), or when the center movement (relative to the
+ * average squared distance of the batch, smoothed over about ten batches)
+ * drops below the tolerance. For a relation, a final pass assigns all objects
+ * to their nearest center.
+ * <p>
+ * The data can also be consumed directly from a {@link BundleStreamSource},
+ * such as a streaming parser, without materializing it in a database, see
+ * {@link #run(BundleStreamSource)}.
+ * <p>
+ * Reference:
+ * <p>
+ * D. Sculley<br>
+ * Web-scale k-means clustering<br>
+ * Proc. 19th Int. Conf. on World Wide Web (WWW 2010)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector type to use
+ */
+@Title("Mini-Batch k-Means")
+@Reference(authors = "D. Sculley", //
+    title = "Web-scale k-means clustering", //
+    booktitle = "Proc. 19th Int. Conf. on World Wide Web (WWW 2010)", //
+    url = "https://doi.org/10.1145/1772690.1772862", //
+    bibkey = "DBLP:conf/www/Sculley10")
+public class MiniBatchKMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(MiniBatchKMeans.class);
+
+  /**
+   * Smoothing factor of the convergence criterion.
+   */
+  private static final double SMOOTHING = 0.1;
+
+  /**
+   * Batch size.
+   */
+  protected int batchsize;
+
+  /**
+   * Convergence tolerance.
+   */
+  protected double tolerance;
+
+  /**
+   * Minimum learning rate.
+   */
+  protected double minrate;
+
+  /**
+   * Random generator for sampling batches.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maximum number of batches, 0 for no limit
+   * @param initializer Initialization method
+   * @param batchsize Batch size
+   * @param tolerance Convergence tolerance, 0 to disable (requires a batch
+   *        limit)
+   * @param minrate Minimum learning rate, 0 for the 1/n schedule
+   * @param rnd Random generator for sampling batches
+   */
+  public MiniBatchKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, int batchsize, double tolerance, double minrate, RandomFactory rnd) {
+    super(distance, k, maxiter, initializer);
+    if(tolerance <= 0 && maxiter <= 0) {
+      throw new IllegalArgumentException("Mini-batch k-means needs a convergence tolerance or a maximum number of batches.");
+    }
+    this.batchsize = batchsize;
+    this.tolerance = tolerance;
+    this.minrate = minrate;
+    this.rnd = rnd;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = makeInstance(Math.min(batchsize, relation.size()));
+    instance.means = initialMeans(relation);
+    // Draw batches with replacement:
+    DBIDArrayIter it = DBIDUtil.ensureArray(relation.getDBIDs()).iter();
+    final int size = relation.size();
+    final NumberVector[] batch = instance.batch;
+    Random random = rnd.getSingleThreadedRandom();
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Mini-batch iteration") : null;
+    int iteration = 0;
+    while(iteration < maxiter) {
+      LOG.incrementProcessed(prog);
+      for(int i = 0; i < batch.length; i++) {
+        batch[i] = relation.get(it.seek(random.nextInt(size)));
+      }
+      if(instance.update(batch.length, ++iteration)) {
+        break;
+      }
+    }
+    LOG.setCompleted(prog);
+    LOG.statistics(new LongStatistic(instance.key + ".iterations", iteration));
+    return instance.assignAll(relation);
+  }
+
+  /**
+   * Run mini-batch k-means on a stream of vectors, for example from a
+   * {@link elki.datasource.parser.StreamingParser}.
+   * <p>
+   * The stream is consumed in batches of consecutive objects, so it should be
+   * in random order. The initial means are chosen from the first batch. Because
+   * the objects are not retained, the resulting clusters contain only the
+   * cluster means, but no objects.
+   *
+   * @param source Stream source
+   * @return Clustering, without cluster members
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source) {
+    Instance instance = makeInstance(Math.max(batchsize, k));
+    final NumberVector[] batch = instance.batch;
+    SimpleTypeInformation<?> type = null;
+    int col = -1, n = 0, iteration = 0;
+    long total = 0;
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Mini-batch iteration") : null;
+    boolean stop = false;
+    while(!stop) {
+      BundleStreamSource.Event ev = source.nextEvent();
+      switch(ev){
+      case END_OF_STREAM:
+        if(n > 0) {
+          initialMeansFromBatch(instance, type, n);
+          LOG.incrementProcessed(prog);
+          instance.update(n, ++iteration);
+        }
+        stop = true;
+        break;
+      case META_CHANGED:
+        if(col < 0) {
+          BundleMeta meta = source.getMeta();
+          for(int i = 0; i < meta.size(); i++) {
+            if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+              type = meta.get(i);
+              col = i;
+              break;
+            }
+          }
+        }
+        break;
+      case NEXT_OBJECT:
+        if(col < 0) {
+          throw new AbortException("No number vector field in the input stream.");
+        }
+        batch[n++] = (NumberVector) source.data(col);
+        ++total;
+        if(n == batch.length) {
+          initialMeansFromBatch(instance, type, n);
+          LOG.incrementProcessed(prog);
+          stop = instance.update(n, ++iteration) || iteration >= maxiter;
+          n = 0;
+        }
+        break;
+      default:
+        LOG.warning("Unknown event: " + ev);
+      }
+    }
+    LOG.setCompleted(prog);
+    LOG.statistics(new LongStatistic(instance.key + ".iterations", iteration));
+    LOG.statistics(new LongStatistic(instance.key + ".objects", total));
+    Clustering<KMeansModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("k-Means Clustering");
+    if(instance.means == null) {
+      return result;
+    }
+    for(int i = 0; i < instance.means.length; i++) {
+      result.addToplevelCluster(new Cluster<>(DBIDUtil.EMPTYDBIDS, new KMeansModel(instance.means[i], Double.NaN)));
+    }
+    return result;
+  }
+
+  /**
+   * Choose the initial means from the first batch of a stream.
+   *
+   * @param instance Instance
+   * @param type Vector type
+   * @param n Batch size
+   */
+  private void initialMeansFromBatch(Instance instance, SimpleTypeInformation<?> type, int n) {
+    if(instance.means != null) {
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    SimpleTypeInformation<V> vtype = (SimpleTypeInformation<V>) type;
+    MaterializedRelation<V> rel = new MaterializedRelation<>(vtype, DBIDUtil.generateStaticDBIDRange(n));
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      @SuppressWarnings("unchecked")
+      V v = (V) instance.batch[i++];
+      rel.insert(it, v);
+    }
+    instance.means = initialMeans(rel);
+  }
+
+  /**
+   * Make the instance for a single run.
+   *
+   * @param size Batch size
+   * @return Instance
+   */
+  protected Instance makeInstance(int size) {
+    return new Instance(distance, size, tolerance, minrate);
+  }
+
+  /**
+   * Inner instance, storing the state of a single run.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance {
+    /**
+     * Cluster means.
+     */
+    protected double[][] means;
+
+    /**
+     * Current batch.
+     */
+    protected NumberVector[] batch;
+
+    /**
+     * Nearest center of each batch object.
+     */
+    protected int[] nearest;
+
+    /**
+     * Distance to the nearest center.
+     */
+    protected double[] dists;
+
+    /**
+     * Number of objects assigned to each center so far.
+     */
+    protected long[] counts;
+
+    /**
+     * Distance function.
+     */
+    protected NumberVectorDistance<?> df;
+
+    /**
+     * Convergence tolerance.
+     */
+    protected double tolerance;
+
+    /**
+     * Minimum learning rate.
+     */
+    protected double minrate;
+
+    /**
+     * Smoothed relative center movement.
+     */
+    protected double smoothed = Double.NaN;
+
+    /**
+     * Number of distance computations.
+     */
+    protected long diststat = 0;
+
+    /**
+     * Key for statistics logging.
+     */
+    protected String key;
+
+    /**
+     * Constructor.
+     *
+     * @param df Distance function
+     * @param size Batch size
+     * @param tolerance Convergence tolerance
+     * @param minrate Minimum learning rate
+     */
+    public Instance(NumberVectorDistance<?> df, int size, double tolerance, double minrate) {
+      this.df = df;
+      this.batch = new NumberVector[size];
+      this.nearest = new int[size];
+      this.dists = new double[size];
+      this.tolerance = tolerance;
+      this.minrate = minrate;
+      this.key = this.getClass().getName().replace("$Instance", "");
+    }
+
+    /**
+     * Process one batch.
+     *
+     * @param size Number of objects in the batch
+     * @param iteration Iteration number (beginning at 1)
+     * @return {@code true} when converged
+     */
+    protected boolean update(int size, int iteration) {
+      final int k = means.length;
+      if(counts == null) {
+        counts = new long[k];
+      }
+      assignBatch(size);
+      diststat += size * (long) k;
+      // Update the centers in the order of the batch:
+      double[][] old = new double[k][];
+      double inertia = 0.;
+      for(int i = 0; i < size; i++) {
+        final int c = nearest[i];
+        final double[] mean = means[c];
+        if(old[c] == null) {
+          old[c] = mean.clone();
+        }
+        final double rate = Math.max(1. / ++counts[c], minrate);
+        final NumberVector vec = batch[i];
+        for(int d = 0; d < mean.length; d++) {
+          mean[d] += rate * (vec.doubleValue(d) - mean[d]);
+        }
+        inertia += df.isSquared() ? dists[i] : dists[i] * dists[i];
+      }
+      double move = 0.;
+      for(int c = 0; c < k; c++) {
+        if(old[c] != null) {
+          final double d = distance(old[c], means[c]);
+          move += df.isSquared() ? d : d * d;
+        }
+      }
+      final double relative = inertia > 0 ? move * size / inertia : 0.;
+      smoothed = smoothed == smoothed ? smoothed + SMOOTHING * (relative - smoothed) : relative;
+      Logging log = getLogger();
+      if(log.isStatistics()) {
+        log.statistics(new DoubleStatistic(key + "." + iteration + ".batch-variance-sum", inertia));
+        log.statistics(new DoubleStatistic(key + "." + iteration + ".relative-change", smoothed));
+      }
+      return iteration * SMOOTHING >= 1 && smoothed < tolerance;
+    }
+
+    /**
+     * Assign the current batch to the nearest centers.
+     *
+     * @param size Number of objects in the batch
+     */
+    protected void assignBatch(int size) {
+      assign(0, size);
+    }
+
+    /**
+     * Assign a range of the batch to the nearest centers.
+     *
+     * @param start First object
+     * @param end End (exclusive)
+     */
+    protected void assign(int start, int end) {
+      for(int i = start; i < end; i++) {
+        final NumberVector vec = batch[i];
+        double mindist = distance(vec, means[0]);
+        int minIndex = 0;
+        for(int c = 1; c < means.length; c++) {
+          final double dist = distance(vec, means[c]);
+          if(dist < mindist) {
+            minIndex = c;
+            mindist = dist;
+          }
+        }
+        nearest[i] = minIndex;
+        dists[i] = mindist;
+      }
+    }
+
+    /**
+     * Assign all objects of the relation to the nearest center.
+     *
+     * @param relation Data relation
+     * @return Clustering result
+     */
+    protected Clustering<KMeansModel> assignAll(Relation<? extends NumberVector> relation) {
+      final int k = means.length;
+      final DBIDs ids = relation.getDBIDs();
+      WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, -1);
+      double[] varsum = new double[k];
+      // Process the data in chunks of the batch size:
+      DBIDIter it = ids.iter(), jt = ids.iter();
+      while(it.valid()) {
+        int n = 0;
+        for(; it.valid() && n < batch.length; it.advance()) {
+          batch[n++] = relation.get(it);
+        }
+        assignBatch(n);
+        diststat += n * (long) k;
+        for(int i = 0; i < n; i++, jt.advance()) {
+          assignment.putInt(jt, nearest[i]);
+          varsum[nearest[i]] += df.isSquared() ? dists[i] : dists[i] * dists[i];
+        }
+      }
+      ArrayModifiableDBIDs[] clusters = ClusteringAlgorithmUtil.partitionsFromIntegerLabels(ids, assignment, k);
+      assignment.destroy();
+
+      Clustering<KMeansModel> result = new Clustering<>();
+      Metadata.of(result).setLongName("k-Means Clustering");
+      for(int i = 0; i < k; i++) {
+        if(clusters[i].isEmpty()) {
+          getLogger().warning("K-Means produced an empty cluster - bad initialization?");
+        }
+        result.addToplevelCluster(new Cluster<>(clusters[i], new KMeansModel(means[i], varsum[i])));
+      }
+      getLogger().statistics(new LongStatistic(key + ".distance-computations", diststat));
+      return result;
+    }
+
+    /**
+     * Compute the distance of a vector to a mean.
+     *
+     * @param x Vector
+     * @param y Mean
+     * @return Distance
+     */
+    protected double distance(NumberVector x, double[] y) {
+      if(df.getClass() == SquaredEuclideanDistance.class) {
+        double v = 0;
+        for(int i = 0; i < y.length; i++) {
+          double d = x.doubleValue(i) - y[i];
+          v += d * d;
+        }
+        return v;
+      }
+      return df.distance(x, DoubleVector.wrap(y));
+    }
+
+    /**
+     * Compute the distance of two means.
+     *
+     * @param x First mean
+     * @param y Second mean
+     * @return Distance
+     */
+    protected double distance(double[] x, double[] y) {
+      return distance(DoubleVector.wrap(x), y);
+    }
+
+    /**
+     * Get the class logger.
+     *
+     * @return Logger
+     */
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends AbstractKMeans.Par<V> {
+    /**
+     * Default maximum number of batches.
+     */
+    public static final int DEFAULT_MAXITER = 1000;
+
+    /**
+     * Parameter for the batch size.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("minibatch.batchsize", "Number of objects in each mini-batch.");
+
+    /**
+     * Parameter for the convergence tolerance.
+     */
+    public static final OptionID TOLERANCE_ID = new OptionID("minibatch.tolerance", "Stop when the smoothed center movement, relative to the average squared distance, is less than this. 0 disables early stopping, and then requires a maximum number of batches.");
+
+    /**
+     * Parameter for the minimum learning rate.
+     */
+    public static final OptionID MINRATE_ID = new OptionID("minibatch.minrate", "Lower bound on the learning rate, to keep adapting to drifting data. 0 uses the 1/n learning rate only.");
+
+    /**
+     * Random seed for sampling batches.
+     */
+    public static final OptionID SEED_ID = new OptionID("minibatch.seed", "Random seed for sampling the mini-batches.");
+
+    /**
+     * Batch size.
+     */
+    protected int batchsize;
+
+    /**
+     * Convergence tolerance.
+     */
+    protected double tolerance;
+
+    /**
+     * Minimum learning rate.
+     */
+    protected double minrate;
+
+    /**
+     * Random generator for sampling batches.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(BATCHSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> batchsize = x);
+      DoubleParameter toleranceP = new DoubleParameter(TOLERANCE_ID, 1e-4) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE);
+      toleranceP.grab(config, x -> tolerance = x);
+      // Non-formalized parameter constraint: do not run forever
+      if(tolerance == 0 && maxiter == 0) {
+        config.reportError(new WrongParameterValueException(toleranceP, "0", "Early stopping can only be disabled with a maximum number of batches."));
+      }
+      new DoubleParameter(MINRATE_ID, 0.) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE) //
+          .addConstraint(CommonConstraints.LESS_EQUAL_ONE_DOUBLE) //
+          .grab(config, x -> minrate = x);
+      new RandomParameter(SEED_ID).grab(config, x -> rnd = x);
+    }
+
+    @Override
+    protected void getParameterMaxIter(Parameterization config) {
+      new IntParameter(MAXITER_ID, DEFAULT_MAXITER) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> maxiter = x);
+    }
+
+    @Override
+    public MiniBatchKMeans<V> make() {
+      return new MiniBatchKMeans<>(distance, k, maxiter, initializer, batchsize, tolerance, minrate, rnd);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDataStore;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
 import elki.database.relation.Relation;
 import elki.distance.NumberVectorDistance;
 import elki.logging.Logging;
@@ -101,27 +102,27 @@ public class SimplifiedElkanKMeans<V extends NumberVector> extends AbstractKMean
     /**
      * Sum aggregate for the new mean.
      */
-    double[][] sums;
+    protected double[][] sums;
 
     /**
      * Scratch space for new means.
      */
-    double[][] newmeans;
+    protected double[][] newmeans;
 
     /**
      * Upper bounds
      */
-    WritableDoubleDataStore upper;
+    protected WritableDoubleDataStore upper;
 
     /**
      * Lower bounds
      */
-    WritableDataStore<double[]> lower;
+    protected WritableDataStore<double[]> lower;
 
     /**
      * Cluster separation
      */
-    double[] sep;
+    protected double[] sep;
 
     /**
      * Constructor.
@@ -164,67 +165,100 @@ public class SimplifiedElkanKMeans<V extends NumberVector> extends AbstractKMean
       assert k == means.length;
       for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
         NumberVector fv = relation.get(it);
-        double[] l = lower.get(it);
-        // Check all (other) means:
-        double best = l[0] = sqrtdistance(fv, means[0]);
-        int minIndex = 0;
-        for(int j = 1; j < k; j++) {
-          double dist = l[j] = sqrtdistance(fv, means[j]);
-          if(dist < best) {
-            minIndex = j;
-            best = dist;
-          }
-        }
+        final int minIndex = initialAssign(it, fv);
         // Assign to nearest cluster.
         clusters.get(minIndex).add(it);
         assignment.putInt(it, minIndex);
         plusEquals(sums[minIndex], fv);
-        upper.putDouble(it, best);
       }
       return relation.size();
     }
 
+    /**
+     * Find the nearest cluster of a single object, and initialize its bounds.
+     * <p>
+     * This only modifies the bounds of the object itself, and hence can be
+     * used concurrently on different objects.
+     *
+     * @param it Object
+     * @param fv Object vector
+     * @return Index of the nearest cluster
+     */
+    protected int initialAssign(DBIDRef it, NumberVector fv) {
+      double[] l = lower.get(it);
+      // Check all (other) means:
+      double best = l[0] = sqrtdistance(fv, means[0]);
+      int minIndex = 0;
+      for(int j = 1; j < k; j++) {
+        double dist = l[j] = sqrtdistance(fv, means[j]);
+        if(dist < best) {
+          minIndex = j;
+          best = dist;
+        }
+      }
+      upper.putDouble(it, best);
+      return minIndex;
+    }
+
     @Override
     protected int assignToNearestCluster() {
       int changed = 0;
       for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
         final int orig = assignment.intValue(it);
-        double u = upper.doubleValue(it);
-        boolean recompute_u = true; // Elkan's r(x)
-        NumberVector fv = relation.get(it);
-        double[] l = lower.get(it);
-        // Check all (other) means:
-        int cur = orig;
-        for(int j = 0; j < k; j++) {
-          if(orig == j || u <= l[j]) {
-            continue; // Condition #3 i-iii not satisfied
-          }
-          if(recompute_u) { // Need to update bound? #3a
-            upper.putDouble(it, u = sqrtdistance(fv, means[cur]));
-            recompute_u = false; // Once only
-            if(u <= l[j]) { // #3b
-              continue;
-            }
-          }
-          double dist = l[j] = sqrtdistance(fv, means[j]);
-          if(dist < u) {
-            cur = j;
-            u = dist;
-          }
-        }
+        final int cur = reassign(it, orig);
         // Object has to be reassigned.
         if(cur != orig) {
           clusters.get(cur).add(it);
           clusters.get(orig).remove(it);
           assignment.putInt(it, cur);
-          plusMinusEquals(sums[cur], sums[orig], fv);
+          plusMinusEquals(sums[cur], sums[orig], relation.get(it));
           ++changed;
-          upper.putDouble(it, u); // Remember bound.
         }
       }
       return changed;
     }
 
+    /**
+     * Find the nearest cluster of a single object, and update its bounds.
+     * <p>
+     * This only modifies the bounds of the object itself (but neither the
+     * cluster assignment nor the cluster sums), and hence can be used
+     * concurrently on different objects.
+     *
+     * @param it Object
+     * @param orig Current cluster assignment
+     * @return New cluster assignment
+     */
+    protected int reassign(DBIDRef it, int orig) {
+      double u = upper.doubleValue(it);
+      boolean recompute_u = true; // Elkan's r(x)
+      NumberVector fv = relation.get(it);
+      double[] l = lower.get(it);
+      // Check all (other) means:
+      int cur = orig;
+      for(int j = 0; j < k; j++) {
+        if(orig == j || u <= l[j]) {
+          continue; // Condition #3 i-iii not satisfied
+        }
+        if(recompute_u) { // Need to update bound? #3a
+          upper.putDouble(it, u = sqrtdistance(fv, means[cur]));
+          recompute_u = false; // Once only
+          if(u <= l[j]) { // #3b
+            continue;
+          }
+        }
+        double dist = l[j] = sqrtdistance(fv, means[j]);
+        if(dist < u) {
+          cur = j;
+          u = dist;
+        }
+      }
+      if(cur != orig) {
+        upper.putDouble(it, u); // Remember bound.
+      }
+      return cur;
+    }
+
     /**
      * Update the bounds for k-means.
      *
@@ -0,0 +1,509 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.initialization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.logging.statistics.LongStatistic;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Scalable k-means++ initialization, also known as k-means||.
+ * <p>
+ * Rather than choosing one center per pass over the data as in
+ * {@link KMeansPlusPlus}, each round samples every object independently with
+ * probability proportional to its distance to the current candidates, with an
+ * expected number of l samples per round. After a few rounds, the candidates
+ * are weighted by the number of objects closest to them, and reclustered into
+ * k means using weighted k-means++ followed by weighted Lloyd iterations.
+ * <p>
+ * The passes over the data run in parallel. The random choices are derived
+ * from the random generator and the object identifiers only, so the result
+ * does not depend on the number of threads.
+ * <p>
+ * Reference:
+ * <p>
+ * B. Bahmani, B. Moseley, A. Vattani, R. Kumar, S. Vassilvitskii<br>
+ * Scalable K-Means++<br>
+ * Proc. VLDB Endowment 5(7)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@Reference(authors = "B. Bahmani, B. Moseley, A. Vattani, R. Kumar, S. Vassilvitskii", //
+    title = "Scalable K-Means++", //
+    booktitle = "Proc. VLDB Endowment 5(7)", //
+    url = "https://doi.org/10.14778/2180912.2180915", //
+    bibkey = "DBLP:journals/pvldb/BahmaniMVKV12")
+public class ScalableKMeansPlusPlus extends AbstractKMeansInitialization {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ScalableKMeansPlusPlus.class);
+
+  /**
+   * Maximum number of Lloyd iterations on the candidates.
+   */
+  private static final int MAXITER = 100;
+
+  /**
+   * Oversampling factor, relative to k.
+   */
+  protected double oversampling;
+
+  /**
+   * Number of sampling rounds.
+   */
+  protected int rounds;
+
+  /**
+   * Constructor.
+   *
+   * @param rnd Random generator.
+   * @param oversampling Oversampling factor, relative to k
+   * @param rounds Number of sampling rounds
+   */
+  public ScalableKMeansPlusPlus(RandomFactory rnd, double oversampling, int rounds) {
+    super(rnd);
+    this.oversampling = oversampling;
+    this.rounds = rounds;
+  }
+
+  @Override
+  public double[][] chooseInitialMeans(Relation<? extends NumberVector> relation, int k, NumberVectorDistance<?> distance) {
+    if(relation.size() < k) {
+      throw new IllegalArgumentException("Cannot choose k=" + k + " means from N=" + relation.size() + " < k objects.");
+    }
+    return new Instance(relation, distance, rnd).run(k, oversampling * k, rounds);
+  }
+
+  /**
+   * Instance for a single run.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance implements Processor {
+    /**
+     * Data relation.
+     */
+    protected Relation<? extends NumberVector> relation;
+
+    /**
+     * Object IDs.
+     */
+    protected DBIDs ids;
+
+    /**
+     * Distance function.
+     */
+    protected NumberVectorDistance<?> distance;
+
+    /**
+     * Distance to the nearest candidate.
+     */
+    protected WritableDoubleDataStore weights;
+
+    /**
+     * Candidate centers.
+     */
+    protected List<NumberVector> candidates = new ArrayList<>();
+
+    /**
+     * First candidate not yet used for updating the weights.
+     */
+    protected int first;
+
+    /**
+     * Number of objects closest to each candidate, when counting.
+     */
+    protected int[] counts;
+
+    /**
+     * Count the number of distance computations.
+     */
+    protected long diststat;
+
+    /**
+     * Random generator.
+     */
+    protected Random random;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param distance Distance function
+     * @param rnd Random generator
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> distance, RandomFactory rnd) {
+      this.relation = relation;
+      this.ids = relation.getDBIDs();
+      this.distance = distance;
+      this.random = rnd.getSingleThreadedRandom();
+    }
+
+    /**
+     * Run the k-means|| initialization.
+     *
+     * @param k Number of means
+     * @param l Expected number of samples per round
+     * @param rounds Number of rounds
+     * @return Initial means
+     */
+    public double[][] run(int k, double l, int rounds) {
+      weights = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, Double.POSITIVE_INFINITY);
+      candidates.add(relation.get(DBIDUtil.randomSample(ids, random)));
+      first = 0;
+      // Additional rounds if we do not have enough candidates yet:
+      for(int r = 0; r < rounds || (candidates.size() < k && r < rounds << 1); r++) {
+        ParallelExecutor.run(ids, this);
+        first = candidates.size();
+        if(!sample(l, random.nextLong())) {
+          break; // All objects are candidates.
+        }
+      }
+      if(candidates.size() < k) {
+        LOG.warning("Only " + candidates.size() + " candidates were sampled - too few unique data points?");
+        while(candidates.size() < k) {
+          candidates.add(relation.get(DBIDUtil.randomSample(ids, random)));
+        }
+      }
+      // Weight the candidates by the number of objects closest to them:
+      counts = new int[candidates.size()];
+      ParallelExecutor.run(ids, this);
+      weights.destroy();
+      double[][] means = recluster(k, counts);
+      LOG.statistics(new LongStatistic(ScalableKMeansPlusPlus.class.getName() + ".candidates", candidates.size()));
+      LOG.statistics(new LongStatistic(ScalableKMeansPlusPlus.class.getName() + ".distance-computations", diststat));
+      return means;
+    }
+
+    /**
+     * Sample new candidates, proportionally to their weight.
+     *
+     * @param l Expected number of samples
+     * @param seed Random seed for this round
+     * @return {@code false} if no object has a positive weight
+     */
+    protected boolean sample(double l, long seed) {
+      double psi = 0.;
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        psi += weights.doubleValue(it);
+      }
+      if(!(psi > 0.)) {
+        return false;
+      }
+      final double scale = l / psi;
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        final double w = weights.doubleValue(it);
+        if(w > 0 && uniform(seed, DBIDUtil.asInteger(it)) < w * scale) {
+          candidates.add(relation.get(it));
+          weights.putDouble(it, 0.);
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Cluster the weighted candidates into k means.
+     *
+     * @param k Number of means
+     * @param w Candidate weights
+     * @return Means
+     */
+    protected double[][] recluster(int k, int[] w) {
+      final int n = candidates.size();
+      double[][] data = new double[n][];
+      for(int i = 0; i < n; i++) {
+        data[i] = candidates.get(i).toArray();
+      }
+      // Weighted k-means++ on the candidates:
+      double[][] means = new double[k][];
+      double[] mind = new double[n];
+      Arrays.fill(mind, Double.POSITIVE_INFINITY);
+      int c = random.nextInt(n);
+      for(int j = 0; j < k; j++) {
+        means[j] = data[c].clone();
+        double sum = 0.;
+        for(int i = 0; i < n; i++) {
+          final double d = distance(data[i], means[j]);
+          mind[i] = d < mind[i] ? d : mind[i];
+          sum += mind[i] * w[i];
+        }
+        if(j + 1 < k) {
+          c = choose(mind, w, sum);
+        }
+      }
+      // Weighted Lloyd iterations:
+      int[] assignment = new int[n];
+      Arrays.fill(assignment, -1);
+      double[][] sums = new double[k][means[0].length];
+      long[] sizes = new long[k];
+      for(int iter = 0; iter < MAXITER; iter++) {
+        int changed = 0;
+        for(int i = 0; i < n; i++) {
+          int best = 0;
+          double bestd = distance(data[i], means[0]);
+          for(int j = 1; j < k; j++) {
+            final double d = distance(data[i], means[j]);
+            if(d < bestd) {
+              best = j;
+              bestd = d;
+            }
+          }
+          if(assignment[i] != best) {
+            assignment[i] = best;
+            ++changed;
+          }
+        }
+        if(changed == 0) {
+          break;
+        }
+        for(int j = 0; j < k; j++) {
+          Arrays.fill(sums[j], 0.);
+        }
+        Arrays.fill(sizes, 0);
+        for(int i = 0; i < n; i++) {
+          final double[] sum = sums[assignment[i]], v = data[i];
+          for(int d = 0; d < v.length; d++) {
+            sum[d] += w[i] * v[d];
+          }
+          sizes[assignment[i]] += w[i];
+        }
+        for(int j = 0; j < k; j++) {
+          if(sizes[j] > 0) {
+            final double[] sum = sums[j], mean = means[j];
+            for(int d = 0; d < mean.length; d++) {
+              mean[d] = sum[d] / sizes[j];
+            }
+          }
+        }
+      }
+      return means;
+    }
+
+    /**
+     * Choose a candidate proportionally to its weighted distance.
+     *
+     * @param mind Distance to the nearest mean
+     * @param w Candidate weights
+     * @param sum Sum of weighted distances
+     * @return Chosen candidate
+     */
+    private int choose(double[] mind, int[] w, double sum) {
+      double r = random.nextDouble() * sum;
+      int last = -1;
+      for(int i = 0; i < mind.length; i++) {
+        final double v = mind[i] * w[i];
+        if(v > 0) {
+          last = i;
+          if((r -= v) <= 0) {
+            return i;
+          }
+        }
+      }
+      // Floating point rounding, or too few distinct candidates:
+      return last >= 0 ? last : random.nextInt(mind.length);
+    }
+
+    /**
+     * Compute the distance of two vectors.
+     *
+     * @param a First vector
+     * @param b Second vector
+     * @return Distance
+     */
+    protected double distance(double[] a, double[] b) {
+      ++diststat;
+      return distance.distance(DoubleVector.wrap(a), DoubleVector.wrap(b));
+    }
+
+    /**
+     * Deterministic pseudo-random number for an object (SplitMix64 mixing).
+     *
+     * @param seed Round seed
+     * @param index Object index
+     * @return Uniform random number in [0:1)
+     */
+    private static double uniform(long seed, int index) {
+      long z = seed + (index + 1L) * 0x9E3779B97F4A7C15L;
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      z ^= z >>> 31;
+      return (z >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      return counts == null ? new Updater() : new Counter(new int[counts.length]);
+    }
+
+    @Override
+    public synchronized void cleanup(Processor.Instance inst) {
+      if(inst instanceof Updater) {
+        diststat += ((Updater) inst).diststat;
+      }
+      else {
+        final Counter c = (Counter) inst;
+        diststat += c.diststat;
+        for(int i = 0; i < counts.length; i++) {
+          counts[i] += c.counts[i];
+        }
+      }
+    }
+
+    /**
+     * Update the weights with the candidates added in the last round.
+     *
+     * @author Erich Schubert
+     */
+    private class Updater implements Processor.Instance {
+      /**
+       * Number of distance computations.
+       */
+      long diststat;
+
+      @Override
+      public void map(DBIDRef id) {
+        double w = weights.doubleValue(id);
+        if(w <= 0) {
+          return; // Already a candidate.
+        }
+        final NumberVector v = relation.get(id);
+        for(int i = first; i < candidates.size(); i++) {
+          final double d = distance.distance(v, candidates.get(i));
+          w = d < w ? d : w;
+        }
+        diststat += candidates.size() - first;
+        weights.putDouble(id, w);
+      }
+    }
+
+    /**
+     * Count the objects closest to each candidate.
+     *
+     * @author Erich Schubert
+     */
+    private class Counter implements Processor.Instance {
+      /**
+       * Number of distance computations.
+       */
+      long diststat;
+
+      /**
+       * Thread-local counts.
+       */
+      int[] counts;
+
+      /**
+       * Constructor.
+       *
+       * @param counts Count storage
+       */
+      Counter(int[] counts) {
+        this.counts = counts;
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        final NumberVector v = relation.get(id);
+        int best = 0;
+        double bestd = distance.distance(v, candidates.get(0));
+        for(int i = 1; i < counts.length; i++) {
+          final double d = distance.distance(v, candidates.get(i));
+          if(d < bestd) {
+            best = i;
+            bestd = d;
+          }
+        }
+        diststat += counts.length;
+        counts[best]++;
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par extends AbstractKMeansInitialization.Par {
+    /**
+     * Oversampling factor, relative to k.
+     */
+    public static final OptionID OVERSAMPLING_ID = new OptionID("kmeans.oversampling", "Expected number of candidates sampled per round, relative to k.");
+
+    /**
+     * Number of sampling rounds.
+     */
+    public static final OptionID ROUNDS_ID = new OptionID("kmeans.rounds", "Number of rounds of candidate sampling.");
+
+    /**
+     * Oversampling factor, relative to k.
+     */
+    protected double oversampling;
+
+    /**
+     * Number of sampling rounds.
+     */
+    protected int rounds;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new DoubleParameter(OVERSAMPLING_ID, 2.) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .grab(config, x -> oversampling = x);
+      new IntParameter(ROUNDS_ID, 5) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> rounds = x);
+    }
+
+    @Override
+    public ScalableKMeansPlusPlus make() {
+      return new ScalableKMeansPlusPlus(rnd, oversampling, rounds);
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.ExponionKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.clustering.kmeans.parallel.ParallelKMeansUtil.Step;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+
+/**
+ * Parallel version of the Exponion k-means algorithm.
+ * <p>
+ * The assignment step and the maintenance of the bounds are performed in
+ * parallel, the cluster sums are updated afterwards in the order of the data.
+ * The result is identical to the serial {@link ExponionKMeans}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelExponionKMeans<V extends NumberVector> extends ExponionKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelExponionKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelExponionKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   * <p>
+   * Each thread uses a shallow copy of the instance, sharing the data stores
+   * but not the distance computation counter.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends ExponionKMeans.Instance implements Processor, Processor.Instance, Cloneable {
+    /**
+     * New cluster assignment.
+     */
+    protected WritableIntegerDataStore next;
+
+    /**
+     * Center separation for the initial assignment.
+     */
+    private double[][] cdist;
+
+    /**
+     * Distance moved by each center.
+     */
+    private double[] move;
+
+    /**
+     * Maximum distance moved (negative).
+     */
+    private double delta;
+
+    /**
+     * Current step.
+     */
+    private Step step;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      next = DataStoreUtil.makeIntegerStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+    }
+
+    @Override
+    protected int initialAssignToNearestCluster() {
+      assert k == means.length;
+      computeSquaredSeparation(cdist = new double[k][k]);
+      step = Step.INITIAL;
+      ParallelExecutor.run(relation.getDBIDs(), this);
+      return ParallelKMeansUtil.initialAssignment(relation, assignment, clusters, sums);
+    }
+
+    @Override
+    protected int assignToNearestCluster() {
+      recomputeSeperation(sep);
+      step = Step.REASSIGN;
+      ParallelExecutor.run(relation.getDBIDs(), this);
+      return ParallelKMeansUtil.updateAssignment(relation, next, assignment, clusters, sums);
+    }
+
+    @Override
+    protected void updateBounds(double[] move, double delta) {
+      this.move = move;
+      this.delta = -delta;
+      step = Step.BOUNDS;
+      ParallelExecutor.run(relation.getDBIDs(), this);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      switch(step){
+      case INITIAL:
+        assignment.putInt(id, initialAssign(id, relation.get(id), cdist));
+        break;
+      case REASSIGN:
+        next.putInt(id, reassign(id, assignment.intValue(id)));
+        break;
+      case BOUNDS:
+        upper.increment(id, move[assignment.intValue(id)]);
+        lower.increment(id, delta);
+        break;
+      }
+    }
+
+    @Override
+    public ParallelExponionKMeans.Instance instantiate(Executor executor) {
+      try {
+        ParallelExponionKMeans.Instance copy = (ParallelExponionKMeans.Instance) clone();
+        copy.diststat = 0;
+        return copy;
+      }
+      catch(CloneNotSupportedException e) {
+        throw new IllegalStateException(e); // Cannot happen.
+      }
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      diststat += ((ParallelExponionKMeans.Instance) inst).diststat;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends ExponionKMeans.Par<V> {
+    @Override
+    public ParallelExponionKMeans<V> make() {
+      return new ParallelExponionKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
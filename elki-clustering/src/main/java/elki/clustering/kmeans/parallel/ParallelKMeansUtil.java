@@ -0,0 +1,108 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import java.util.List;
+
+import elki.clustering.kmeans.AbstractKMeans;
+import elki.data.NumberVector;
+import elki.database.datastore.IntegerDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.ModifiableDBIDs;
+import elki.database.relation.Relation;
+
+/**
+ * Utility functions shared by the parallel variants of the accelerated k-means
+ * algorithms.
+ * <p>
+ * The expensive part of these algorithms, finding the nearest center and
+ * maintaining the bounds, only modifies the state of each object, and is
+ * performed in parallel. The cluster sums are then updated in the order of the
+ * relation, such that the results are identical to the serial versions
+ * (floating point addition is not associative).
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public final class ParallelKMeansUtil {
+  /**
+   * Steps of the algorithms that are run in parallel.
+   */
+  enum Step {
+    /** Initial assignment */
+    INITIAL,
+    /** Reassignment */
+    REASSIGN,
+    /** Bound maintenance */
+    BOUNDS
+  }
+
+  /**
+   * Private constructor. Static methods only.
+   */
+  private ParallelKMeansUtil() {
+    // Do not use.
+  }
+
+  /**
+   * Apply the initial cluster assignment.
+   *
+   * @param relation Data relation
+   * @param assignment Initial cluster assignment
+   * @param clusters Cluster members (output)
+   * @param sums Cluster sums (output)
+   * @return Number of objects assigned
+   */
+  public static int initialAssignment(Relation<? extends NumberVector> relation, IntegerDataStore assignment, List<ModifiableDBIDs> clusters, double[][] sums) {
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      final int c = assignment.intValue(it);
+      clusters.get(c).add(it);
+      AbstractKMeans.plusEquals(sums[c], relation.get(it));
+    }
+    return relation.size();
+  }
+
+  /**
+   * Apply the changes of the cluster assignment.
+   *
+   * @param relation Data relation
+   * @param next New cluster assignment
+   * @param assignment Previous cluster assignment (will be updated)
+   * @param clusters Cluster members (will be updated)
+   * @param sums Cluster sums (will be updated)
+   * @return Number of objects reassigned
+   */
+  public static int updateAssignment(Relation<? extends NumberVector> relation, IntegerDataStore next, WritableIntegerDataStore assignment, List<ModifiableDBIDs> clusters, double[][] sums) {
+    int changed = 0;
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      final int orig = assignment.intValue(it), cur = next.intValue(it);
+      if(cur != orig) {
+        clusters.get(cur).add(it);
+        clusters.get(orig).remove(it);
+        assignment.putInt(it, cur);
+        AbstractKMeans.plusMinusEquals(sums[cur], sums[orig], relation.get(it));
+        ++changed;
+      }
+    }
+    return changed;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import elki.clustering.kmeans.MiniBatchKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.NumberVector;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.parallel.ParallelCore;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel version of mini-batch k-means.
+ * <p>
+ * The objects of each batch (and of the final assignment pass) are assigned to
+ * their nearest centers in parallel; the centers are then updated in the order
+ * of the batch. The result is identical to the serial {@link MiniBatchKMeans}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelMiniBatchKMeans<V extends NumberVector> extends MiniBatchKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelMiniBatchKMeans.class);
+
+  /**
+   * Minimum number of objects per task.
+   */
+  private static final int MIN_BLOCK = 256;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maximum number of batches
+   * @param initializer Initialization method
+   * @param batchsize Batch size
+   * @param tolerance Convergence tolerance, 0 to disable
+   * @param minrate Minimum learning rate, 0 for the 1/n schedule
+   * @param rnd Random generator for sampling batches
+   */
+  public ParallelMiniBatchKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, int batchsize, double tolerance, double minrate, RandomFactory rnd) {
+    super(distance, k, maxiter, initializer, batchsize, tolerance, minrate, rnd);
+  }
+
+  @Override
+  protected MiniBatchKMeans.Instance makeInstance(int size) {
+    return new Instance(distance, size, tolerance, minrate);
+  }
+
+  /**
+   * Inner instance, storing the state of a single run.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends MiniBatchKMeans.Instance {
+    /**
+     * Constructor.
+     *
+     * @param df Distance function
+     * @param size Batch size
+     * @param tolerance Convergence tolerance
+     * @param minrate Minimum learning rate
+     */
+    public Instance(NumberVectorDistance<?> df, int size, double tolerance, double minrate) {
+      super(df, size, tolerance, minrate);
+    }
+
+    @Override
+    protected void assignBatch(int size) {
+      final ForkJoinPool pool = ParallelCore.getCore().getForkJoinPool();
+      if(size < 2 * MIN_BLOCK || pool.getParallelism() <= 1) {
+        assign(0, size);
+        return;
+      }
+      final int minblock = Math.max(MIN_BLOCK, size / (pool.getParallelism() << 3));
+      pool.invoke(new AssignTask(0, size, minblock));
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+
+    /**
+     * Task to assign a range of the batch.
+     *
+     * @author Erich Schubert
+     */
+    private class AssignTask extends RecursiveAction {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Objects to process.
+       */
+      private final int start, end;
+
+      /**
+       * Minimum number of objects per task.
+       */
+      private final int minblock;
+
+      /**
+       * Constructor.
+       *
+       * @param start First object
+       * @param end End (exclusive)
+       * @param minblock Minimum number of objects per task
+       */
+      AssignTask(int start, int end, int minblock) {
+        this.start = start;
+        this.end = end;
+        this.minblock = minblock;
+      }
+
+      @Override
+      protected void compute() {
+        if(end - start < 2 * minblock) {
+          assign(start, end);
+          return;
+        }
+        final int mid = (start + end) >>> 1;
+        invokeAll(new AssignTask(start, mid, minblock), new AssignTask(mid, end, minblock));
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends MiniBatchKMeans.Par<V> {
+    @Override
+    public ParallelMiniBatchKMeans<V> make() {
+      return new ParallelMiniBatchKMeans<>(distance, k, maxiter, initializer, batchsize, tolerance, minrate, rnd);
+    }
+  }
+}
@@ -95,22 +95,22 @@ public class CLARA<V> extends PAM<V> {
   /**
    * Sampling rate. If less than 1, it is considered to be a relative value.
    */
-  double sampling;
+  protected double sampling;
 
   /**
    * Number of samples to draw (i.e. iterations).
    */
-  int numsamples;
+  protected int numsamples;
 
   /**
    * Keep the previous medoids in the sample (see page 145).
    */
-  boolean keepmed;
+  protected boolean keepmed;
 
   /**
    * Random factory for initialization.
    */
-  RandomFactory random;
+  protected RandomFactory random;
 
   /**
    * Constructor.
@@ -201,7 +201,7 @@ public class CLARA<V> extends PAM<V> {
    * @param previous Previous medoids to always include in the sample.
    * @return Sample
    */
-  static DBIDs randomSample(DBIDs ids, int samplesize, Random rnd, DBIDs previous) {
+  public static DBIDs randomSample(DBIDs ids, int samplesize, Random rnd, DBIDs previous) {
     if(previous == null) {
       return DBIDUtil.randomSample(ids, samplesize, rnd);
     }
@@ -231,7 +231,7 @@ public class CLARA<V> extends PAM<V> {
    * @param distQ distance query
    * @return Sum of distances.
    */
-  static double assignRemainingToNearestCluster(ArrayDBIDs means, DBIDs ids, DBIDs rids, WritableIntegerDataStore assignment, DistanceQuery<?> distQ) {
+  public static double assignRemainingToNearestCluster(ArrayDBIDs means, DBIDs ids, DBIDs rids, WritableIntegerDataStore assignment, DistanceQuery<?> distQ) {
     rids = DBIDUtil.ensureSet(rids); // Ensure we have fast contains
     double distsum = 0.;
     DBIDArrayIter miter = means.iter();
@@ -262,7 +262,7 @@ public class CLARA<V> extends PAM<V> {
    *
    * @param <V> Data type
    */
-  static class CachedDistanceQuery<V> implements DistanceQuery<V> {
+  public static class CachedDistanceQuery<V> implements DistanceQuery<V> {
     /**
      * Inner distance query
      */
@@ -299,6 +299,22 @@ public class CLARA<V> extends PAM<V> {
       return bad > 0;
     }
 
+    /**
+     * Store a distance in the cache, e.g., if computed in advance.
+     *
+     * @param id1 First object
+     * @param id2 Second object
+     * @param d Distance
+     */
+    public void put(DBIDRef id1, DBIDRef id2, double d) {
+      if(DBIDUtil.compare(id1, id2) > 0) {
+        put(id2, id1, d);
+        return;
+      }
+      int i = id1.internalGetIndex(), j = id2.internalGetIndex();
+      cache.put((((long) i) << 32) | j, d);
+    }
+
     /**
      * Clear the distance cache.
      */
@@ -382,22 +398,22 @@ public class CLARA<V> extends PAM<V> {
     /**
      * Sampling rate. If less than 1, it is considered to be a relative value.
      */
-    double sampling;
+    protected double sampling;
 
     /**
      * Number of samples to draw (i.e. iterations).
      */
-    int numsamples;
+    protected int numsamples;
 
     /**
      * Keep the previous medoids in the sample.
      */
-    boolean keepmed;
+    protected boolean keepmed;
 
     /**
      * Random factory for initialization.
      */
-    RandomFactory random;
+    protected RandomFactory random;
 
     @Override
     public void configure(Parameterization config) {
@@ -88,22 +88,22 @@ public class FastCLARA<V> extends FastPAM<V> {
   /**
    * Sampling rate. If less than 1, it is considered to be a relative value.
    */
-  double sampling;
+  protected double sampling;
 
   /**
    * Number of samples to draw (i.e. iterations).
    */
-  int numsamples;
+  protected int numsamples;
 
   /**
    * Keep the previous medoids in the sample (see page 145).
    */
-  boolean keepmed;
+  protected boolean keepmed;
 
   /**
    * Random factory for initialization.
    */
-  RandomFactory random;
+  protected RandomFactory random;
 
   /**
    * Constructor.
@@ -214,22 +214,22 @@ public class FastCLARA<V> extends FastPAM<V> {
     /**
      * Sampling rate. If less than 1, it is considered to be a relative value.
      */
-    double sampling;
+    protected double sampling;
 
     /**
      * Number of samples to draw (i.e. iterations).
      */
-    int numsamples;
+    protected int numsamples;
 
     /**
      * Keep the previous medoids in the sample.
      */
-    boolean keepmed;
+    protected boolean keepmed;
 
     /**
      * Random factory for initialization.
      */
-    RandomFactory random;
+    protected RandomFactory random;
 
     @Override
     public void configure(Parameterization config) {
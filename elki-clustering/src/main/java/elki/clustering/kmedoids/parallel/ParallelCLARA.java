@@ -0,0 +1,279 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids.parallel;
+
+import java.util.concurrent.RecursiveTask;
+
+import elki.clustering.kmedoids.CLARA;
+import elki.clustering.kmedoids.PAM;
+import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
+import elki.data.Clustering;
+import elki.data.model.MedoidModel;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.LongStatistic;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel version of CLARA.
+ * <p>
+ * Independent samples are optimized concurrently; within each sample, the
+ * search for the best PAM swap is split over the candidate non-medoids, and
+ * the remaining objects are assigned in parallel. The random samples and the
+ * initial medoids are chosen in the serial order, and all ties are resolved as
+ * in the serial {@link CLARA}, so the result is identical for a fixed seed.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> Data type
+ */
+public class ParallelCLARA<V> extends CLARA<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelCLARA.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param k Number of clusters to produce
+   * @param maxiter Maximum number of iterations
+   * @param initializer Initialization function
+   * @param numsamples Number of samples (sampling iterations)
+   * @param sampling Sampling rate (absolute or relative)
+   * @param keepmed Keep the previous medoids in the next sample
+   * @param random Random generator
+   */
+  public ParallelCLARA(Distance<? super V> distance, int k, int maxiter, KMedoidsInitialization<V> initializer, int numsamples, double sampling, boolean keepmed, RandomFactory random) {
+    super(distance, k, maxiter, initializer, numsamples, sampling, keepmed, random);
+  }
+
+  @Override
+  public Clustering<MedoidModel> run(Relation<V> relation) {
+    return ParallelCLARAUtil.run(relation, distance, k, initializer, numsamples, sampling, keepmed, random, //
+        (distQ, rids, medoids, assignment) -> new Instance(distQ, rids, assignment).run(medoids, maxiter), //
+        LOG, getClass().getName());
+  }
+
+  /**
+   * Instance for a single sample, with parallel swap search.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends PAM.Instance {
+    /**
+     * Candidates, in the iteration order of the ids.
+     */
+    protected ArrayDBIDs candidates;
+
+    /**
+     * Constructor.
+     *
+     * @param distQ Distance query
+     * @param ids IDs to process
+     * @param assignment Cluster assignment
+     */
+    public Instance(DistanceQuery<?> distQ, DBIDs ids, WritableIntegerDataStore assignment) {
+      super(distQ, ids, assignment);
+      this.candidates = DBIDUtil.ensureArray(ids);
+    }
+
+    @Override
+    protected double run(ArrayModifiableDBIDs medoids, int maxiter) {
+      // Initial assignment to nearest medoids
+      double tc = assignToNearestCluster(medoids);
+      String key = getClass().getName().replace("$Instance", "");
+      if(LOG.isStatistics()) {
+        LOG.statistics(new DoubleStatistic(key + ".iteration-" + 0 + ".cost", tc));
+      }
+
+      final boolean metric = distQ.getDistance().isMetric();
+      final int size = candidates.size(), minblock = ParallelFastPAM.blocksize(size);
+
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("PAM iteration", LOG) : null;
+      // Swap phase
+      DBIDArrayIter c = candidates.iter();
+      int iteration = 0;
+      while(iteration < maxiter || maxiter <= 0) {
+        ++iteration;
+        LOG.incrementProcessed(prog);
+        // Try to swap a non-medoid with a medoid member:
+        SwapTask swap = ParallelFastPAM.invoke(new SwapTask(medoids, metric, 0, size, minblock));
+        if(!(swap.best < -1e-12 * tc)) {
+          break;
+        }
+        medoids.set(swap.bestcluster, c.seek(swap.bestpos));
+        // Reassign
+        double nc = assignToNearestCluster(medoids);
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(key + ".iteration-" + iteration + ".cost", nc));
+        }
+        if(nc > tc) {
+          if(nc - tc < 1e-7 * tc) {
+            LOG.warning("PAM failed to converge (numerical instability?)");
+            break;
+          }
+          LOG.warning("PAM failed to converge: costs increased by: " + (nc - tc) + " exepected a decrease by " + swap.best);
+          break;
+        }
+        tc = nc;
+      }
+      LOG.setCompleted(prog);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(key + ".iterations", iteration));
+        LOG.statistics(new DoubleStatistic(key + ".final-cost", tc));
+      }
+      return tc;
+    }
+
+    /**
+     * Task to find the best swap within a range of candidates.
+     *
+     * @author Erich Schubert
+     */
+    private class SwapTask extends RecursiveTask<SwapTask> {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Current medoids.
+       */
+      private final ArrayDBIDs medoids;
+
+      /**
+       * Distance is a metric.
+       */
+      private final boolean metric;
+
+      /**
+       * Candidates to process.
+       */
+      private final int start, end;
+
+      /**
+       * Minimum number of candidates per task.
+       */
+      private final int minblock;
+
+      /**
+       * Best change.
+       */
+      double best = Double.POSITIVE_INFINITY;
+
+      /**
+       * Position of the best candidate, and medoid to replace.
+       */
+      int bestpos = -1, bestcluster = -1;
+
+      /**
+       * Constructor.
+       *
+       * @param medoids Current medoids
+       * @param metric Distance is a metric
+       * @param start First candidate
+       * @param end End (exclusive)
+       * @param minblock Minimum number of candidates per task
+       */
+      SwapTask(ArrayDBIDs medoids, boolean metric, int start, int end, int minblock) {
+        this.medoids = medoids;
+        this.metric = metric;
+        this.start = start;
+        this.end = end;
+        this.minblock = minblock;
+      }
+
+      @Override
+      protected SwapTask compute() {
+        if(end - start < 2 * minblock) {
+          evaluate();
+          return this;
+        }
+        final int mid = (start + end) >>> 1;
+        SwapTask left = new SwapTask(medoids, metric, start, mid, minblock);
+        SwapTask right = new SwapTask(medoids, metric, mid, end, minblock);
+        invokeAll(left, right);
+        // Use the joined results, as subtasks return their best child:
+        SwapTask l = left.join(), r = right.join();
+        // Ties go to the earlier candidate:
+        return r.best < l.best ? r : l;
+      }
+
+      /**
+       * Evaluate all candidates of this task.
+       */
+      private void evaluate() {
+        final int k = medoids.size();
+        DBIDArrayIter m = medoids.iter();
+        for(DBIDArrayIter h = candidates.iter().seek(start); h.getOffset() < end; h.advance()) {
+          // Compare object to its own medoid.
+          if(DBIDUtil.equal(m.seek(assignment.intValue(h)), h)) {
+            continue; // This is a medoid.
+          }
+          final double hdist = nearest.doubleValue(h); // Current cost of h.
+          if(metric && hdist <= 0.) {
+            continue; // Duplicate of a medoid.
+          }
+          // Find the best possible swap for h:
+          for(int pi = 0; pi < k; pi++) {
+            // hdist is the cost we get back by making the non-medoid h medoid.
+            final double cpi = computeReassignmentCost(h, pi) - hdist;
+            if(cpi < best) {
+              best = cpi;
+              bestpos = h.getOffset();
+              bestcluster = pi;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> Data type
+   */
+  public static class Par<V> extends CLARA.Par<V> {
+    @Override
+    public ParallelCLARA<V> make() {
+      return new ParallelCLARA<>(distance, k, maxiter, initializer, numsamples, sampling, keepmed, random);
+    }
+  }
+}
@@ -0,0 +1,517 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids.parallel;
+
+import java.util.Random;
+import java.util.concurrent.RecursiveAction;
+
+import elki.clustering.ClusteringAlgorithmUtil;
+import elki.clustering.kmedoids.CLARA;
+import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.model.MedoidModel;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.result.Metadata;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Shared sampling logic of the parallel CLARA variants.
+ * <p>
+ * The samples are drawn, and the initial medoids chosen, sequentially in the
+ * same order as in the serial {@link CLARA}, so that the random generators are
+ * used identically. The pairwise distances of each sample are computed in
+ * parallel, and stored in a separate cache per sample, that is only read
+ * afterwards. If the samples are independent, they are then optimized
+ * concurrently (at the cost of keeping all caches in memory); if the previous
+ * best medoids are kept in the next sample, the samples are processed one after
+ * another, and only the optimization within each sample is parallel. The
+ * remaining objects are assigned in parallel, but the costs are summed in the
+ * serial order; the first sample with the lowest cost is chosen.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+final class ParallelCLARAUtil {
+  /**
+   * Minimum number of objects per task.
+   */
+  private static final int MIN_BLOCK = 256;
+
+  /**
+   * Private constructor. Static methods only.
+   */
+  private ParallelCLARAUtil() {
+    // Do not use.
+  }
+
+  /**
+   * Optimize the medoids of a single sample.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  interface SampleOptimizer {
+    /**
+     * Optimize the medoids of a sample.
+     *
+     * @param distQ Distance query, with cached distances of the sample
+     * @param rids Sample
+     * @param medoids Initial medoids, will be modified
+     * @param assignment Cluster assignment output
+     * @return Cost of the sample
+     */
+    double optimize(DistanceQuery<?> distQ, DBIDs rids, ArrayModifiableDBIDs medoids, WritableIntegerDataStore assignment);
+  }
+
+  /**
+   * Run CLARA sampling.
+   *
+   * @param relation Data relation
+   * @param distance Distance function
+   * @param k Number of clusters
+   * @param initializer Initialization method
+   * @param numsamples Number of samples
+   * @param sampling Sampling rate (absolute or relative)
+   * @param keepmed Keep the previous medoids in the next sample
+   * @param random Random generator
+   * @param optimizer Optimization of a single sample
+   * @param log Logger
+   * @param key Key for statistics logging
+   * @return Clustering result
+   */
+  static <V> Clustering<MedoidModel> run(Relation<V> relation, Distance<? super V> distance, int k, KMedoidsInitialization<V> initializer, int numsamples, double sampling, boolean keepmed, RandomFactory random, SampleOptimizer optimizer, Logging log, String key) {
+    DBIDs ids = relation.getDBIDs();
+    DistanceQuery<V> distQ = new QueryBuilder<>(relation, distance).distanceQuery();
+    int samplesize = Math.min(ids.size(), (int) (sampling <= 1 ? sampling * ids.size() : sampling));
+    if(samplesize < 3 * k) {
+      log.warning("The sampling size is set to a very small value, it should be much larger than k.");
+    }
+    ArrayDBIDs all = DBIDUtil.ensureArray(ids);
+
+    Sample[] samples = new Sample[numsamples];
+    double bestscore = Double.POSITIVE_INFINITY;
+    int best = -1;
+    Random rnd = random.getSingleThreadedRandom();
+    FiniteProgress prog = log.isVerbose() ? new FiniteProgress("Processing random samples", numsamples, log) : null;
+    for(int j = 0; j < numsamples; j++) {
+      DBIDs rids = CLARA.randomSample(ids, samplesize, rnd, keepmed && best >= 0 ? samples[best].medoids : null);
+      CLARA.CachedDistanceQuery<V> cachedQ = precomputeDistances(distQ, rids);
+      // Choose initial medoids
+      ArrayModifiableDBIDs medoids = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ));
+      if(cachedQ.hasUncachedQueries()) {
+        log.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+      }
+      samples[j] = new Sample(distQ, cachedQ, all, rids, medoids, optimizer);
+      if(!keepmed) {
+        continue; // Optimize all samples concurrently below.
+      }
+      // The next sample depends on the best medoids so far:
+      ParallelFastPAM.invoke(samples[j]);
+      if(log.isStatistics()) {
+        log.statistics(new DoubleStatistic(key + ".sample-" + j + ".cost", samples[j].score));
+      }
+      if(samples[j].score < bestscore) {
+        bestscore = samples[j].score;
+        best = j;
+      }
+      log.incrementProcessed(prog);
+    }
+    if(!keepmed) {
+      ParallelFastPAM.invoke(new SampleAll(samples));
+      for(int j = 0; j < numsamples; j++) {
+        if(log.isStatistics()) {
+          log.statistics(new DoubleStatistic(key + ".sample-" + j + ".cost", samples[j].score));
+        }
+        if(samples[j].score < bestscore) {
+          bestscore = samples[j].score;
+          best = j;
+        }
+        log.incrementProcessed(prog);
+      }
+    }
+    log.ensureCompleted(prog);
+    if(log.isStatistics()) {
+      log.statistics(new DoubleStatistic(key + ".final-cost", bestscore));
+    }
+    if(best < 0) {
+      throw new IllegalStateException("numsamples must be larger than 0.");
+    }
+    ArrayModifiableDBIDs bestmedoids = samples[best].medoids;
+    ArrayModifiableDBIDs[] clusters = ClusteringAlgorithmUtil.partitionsFromIntegerLabels(ids, samples[best].assignment, k);
+
+    // Wrap result
+    Clustering<MedoidModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("CLARA Clustering");
+    for(DBIDArrayIter it = bestmedoids.iter(); it.valid(); it.advance()) {
+      MedoidModel model = new MedoidModel(DBIDUtil.deref(it));
+      result.addToplevelCluster(new Cluster<>(clusters[it.getOffset()], model));
+    }
+    return result;
+  }
+
+  /**
+   * Compute all pairwise distances of a sample in parallel, and store them in
+   * a new cache. The cache is only read afterwards, and hence can be shared
+   * by multiple threads.
+   *
+   * @param distQ Distance query
+   * @param rids Sample
+   * @return Distance cache
+   */
+  static <V> CLARA.CachedDistanceQuery<V> precomputeDistances(DistanceQuery<V> distQ, DBIDs rids) {
+    ArrayDBIDs sample = DBIDUtil.ensureArray(rids);
+    final int size = sample.size();
+    final long length = ((long) size * (size - 1)) >>> 1;
+    if(length > Integer.MAX_VALUE - 8) {
+      throw new AbortException("Sample too large for a distance cache: " + size + " objects need " + length + " distances.");
+    }
+    double[] tri = new double[(int) length];
+    ParallelFastPAM.invoke(new DistanceTask(distQ, sample, tri, 1, size));
+    CLARA.CachedDistanceQuery<V> cachedQ = new CLARA.CachedDistanceQuery<V>(distQ, tri.length);
+    DBIDArrayIter ix = sample.iter(), iy = sample.iter();
+    int p = 0;
+    for(ix.seek(1); ix.valid(); ix.advance()) {
+      for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
+        cachedQ.put(ix, iy, tri[p++]);
+      }
+    }
+    return cachedQ;
+  }
+
+  /**
+   * Assign the remaining objects to the nearest medoid, in parallel.
+   * <p>
+   * The distances are summed in the order of the objects, such that the result
+   * is identical to
+   * {@link CLARA#assignRemainingToNearestCluster(ArrayDBIDs, DBIDs, DBIDs, WritableIntegerDataStore, DistanceQuery)}.
+   *
+   * @param means Object centroids
+   * @param all All objects, in the order of the relation
+   * @param rids Sample that was already assigned
+   * @param assignment cluster assignment
+   * @param distQ distance query
+   * @return Sum of distances.
+   */
+  static double assignRemainingToNearestCluster(ArrayDBIDs means, ArrayDBIDs all, DBIDs rids, WritableIntegerDataStore assignment, DistanceQuery<?> distQ) {
+    final int size = all.size();
+    int[] minidx = new int[size];
+    double[] mindist = new double[size];
+    ParallelFastPAM.invoke(new AssignTask(means, all, DBIDUtil.ensureSet(rids), distQ, minidx, mindist, 0, size));
+    double distsum = 0.;
+    for(DBIDArrayIter it = all.iter(); it.valid(); it.advance()) {
+      final int i = it.getOffset();
+      if(minidx[i] >= 0) {
+        distsum += mindist[i];
+        assignment.put(it, minidx[i]);
+      }
+    }
+    return distsum;
+  }
+
+  /**
+   * Optimization of a single sample.
+   *
+   * @author Erich Schubert
+   */
+  private static class Sample extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Distance query.
+     */
+    private final DistanceQuery<?> distQ;
+
+    /**
+     * Distance cache of the sample, released after the optimization.
+     */
+    private DistanceQuery<?> cachedQ;
+
+    /**
+     * All objects.
+     */
+    private final ArrayDBIDs all;
+
+    /**
+     * Sample.
+     */
+    private final DBIDs rids;
+
+    /**
+     * Medoids.
+     */
+    final ArrayModifiableDBIDs medoids;
+
+    /**
+     * Optimization method.
+     */
+    private final SampleOptimizer optimizer;
+
+    /**
+     * Cluster assignment.
+     */
+    WritableIntegerDataStore assignment;
+
+    /**
+     * Cost of the sample.
+     */
+    double score = Double.NaN;
+
+    /**
+     * Constructor.
+     *
+     * @param distQ Distance query
+     * @param cachedQ Distance cache of the sample
+     * @param all All objects
+     * @param rids Sample
+     * @param medoids Initial medoids
+     * @param optimizer Optimization method
+     */
+    Sample(DistanceQuery<?> distQ, DistanceQuery<?> cachedQ, ArrayDBIDs all, DBIDs rids, ArrayModifiableDBIDs medoids, SampleOptimizer optimizer) {
+      this.distQ = distQ;
+      this.cachedQ = cachedQ;
+      this.all = all;
+      this.rids = rids;
+      this.medoids = medoids;
+      this.optimizer = optimizer;
+    }
+
+    @Override
+    protected void compute() {
+      // Setup cluster assignment store
+      assignment = DataStoreUtil.makeIntegerStorage(all, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+      score = optimizer.optimize(cachedQ, rids, medoids, assignment);
+      cachedQ = null;
+      score += assignRemainingToNearestCluster(medoids, all, rids, assignment, distQ);
+    }
+  }
+
+  /**
+   * Optimize multiple independent samples concurrently.
+   *
+   * @author Erich Schubert
+   */
+  private static class SampleAll extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Samples to process.
+     */
+    private final Sample[] samples;
+
+    /**
+     * Constructor.
+     *
+     * @param samples Samples to process
+     */
+    SampleAll(Sample[] samples) {
+      this.samples = samples;
+    }
+
+    @Override
+    protected void compute() {
+      invokeAll(samples);
+    }
+  }
+
+  /**
+   * Compute the distances of a range of rows of the triangular matrix.
+   *
+   * @author Erich Schubert
+   */
+  private static class DistanceTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Distance query.
+     */
+    private final DistanceQuery<?> distQ;
+
+    /**
+     * Sample.
+     */
+    private final ArrayDBIDs sample;
+
+    /**
+     * Output triangular matrix.
+     */
+    private final double[] tri;
+
+    /**
+     * Rows to process.
+     */
+    private final int start, end;
+
+    /**
+     * Constructor.
+     *
+     * @param distQ Distance query
+     * @param sample Sample
+     * @param tri Output triangular matrix
+     * @param start First row
+     * @param end End row (exclusive)
+     */
+    DistanceTask(DistanceQuery<?> distQ, ArrayDBIDs sample, double[] tri, int start, int end) {
+      this.distQ = distQ;
+      this.sample = sample;
+      this.tri = tri;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(((long) end * end - (long) start * start) < (MIN_BLOCK << 5) || end - start < 2) {
+        DBIDArrayIter ix = sample.iter(), iy = sample.iter();
+        for(ix.seek(start); ix.getOffset() < end; ix.advance()) {
+          int p = (int) (((long) ix.getOffset() * (ix.getOffset() - 1)) >>> 1);
+          for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
+            // Same argument order as the cache:
+            tri[p++] = DBIDUtil.compare(ix, iy) < 0 ? distQ.distance(ix, iy) : distQ.distance(iy, ix);
+          }
+        }
+        return;
+      }
+      // Split such that both halves have about the same number of pairs:
+      final int mid = Math.max(start + 1, Math.min(end - 1, (int) Math.sqrt(((double) start * start + (double) end * end) * .5)));
+      invokeAll(new DistanceTask(distQ, sample, tri, start, mid), new DistanceTask(distQ, sample, tri, mid, end));
+    }
+  }
+
+  /**
+   * Assign a range of objects to the nearest medoid.
+   *
+   * @author Erich Schubert
+   */
+  private static class AssignTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Medoids.
+     */
+    private final ArrayDBIDs means;
+
+    /**
+     * All objects.
+     */
+    private final ArrayDBIDs all;
+
+    /**
+     * Sample, to skip.
+     */
+    private final DBIDs rids;
+
+    /**
+     * Distance query.
+     */
+    private final DistanceQuery<?> distQ;
+
+    /**
+     * Output: nearest medoid, -1 for sample objects.
+     */
+    private final int[] minidx;
+
+    /**
+     * Output: distance to the nearest medoid.
+     */
+    private final double[] mindist;
+
+    /**
+     * Objects to process.
+     */
+    private final int start, end;
+
+    /**
+     * Constructor.
+     *
+     * @param means Medoids
+     * @param all All objects
+     * @param rids Sample, to skip
+     * @param distQ Distance query
+     * @param minidx Output nearest medoid
+     * @param mindist Output distance
+     * @param start First object
+     * @param end End (exclusive)
+     */
+    AssignTask(ArrayDBIDs means, ArrayDBIDs all, DBIDs rids, DistanceQuery<?> distQ, int[] minidx, double[] mindist, int start, int end) {
+      this.means = means;
+      this.all = all;
+      this.rids = rids;
+      this.distQ = distQ;
+      this.minidx = minidx;
+      this.mindist = mindist;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start < 2 * MIN_BLOCK) {
+        DBIDArrayIter miter = means.iter();
+        for(DBIDArrayIter it = all.iter().seek(start); it.getOffset() < end; it.advance()) {
+          final int o = it.getOffset();
+          if(rids.contains(it)) {
+            minidx[o] = -1;
+            continue;
+          }
+          double min = Double.POSITIVE_INFINITY;
+          int minIndex = 0;
+          for(miter.seek(0); miter.valid(); miter.advance()) {
+            double dist = distQ.distance(it, miter);
+            if(dist < min) {
+              minIndex = miter.getOffset();
+              min = dist;
+            }
+          }
+          minidx[o] = minIndex;
+          mindist[o] = min;
+        }
+        return;
+      }
+      final int mid = (start + end) >>> 1;
+      invokeAll(new AssignTask(means, all, rids, distQ, minidx, mindist, start, mid), //
+          new AssignTask(means, all, rids, distQ, minidx, mindist, mid, end));
+    }
+  }
+}
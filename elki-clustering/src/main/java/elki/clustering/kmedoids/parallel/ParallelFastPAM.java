@@ -0,0 +1,281 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import elki.clustering.kmedoids.FastPAM;
+import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.distance.DistanceQuery;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.parallel.ParallelCore;
+
+/**
+ * Parallel version of FastPAM.
+ * <p>
+ * The search for the best swap of each medoid is split over the candidate
+ * non-medoids; every task keeps its own loss and best-swap arrays, which are
+ * then merged in the order of the candidates. Ties are hence resolved exactly
+ * as in the serial {@link FastPAM}, and the resulting medoids are identical.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> object datatype
+ */
+public class ParallelFastPAM<V> extends FastPAM<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFastPAM.class);
+
+  /**
+   * Minimum number of candidates per task.
+   */
+  protected static final int MIN_BLOCK = 16;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Function to generate the initial means
+   * @param fasttol Tolerance for fast swapping
+   */
+  public ParallelFastPAM(Distance<? super V> distance, int k, int maxiter, KMedoidsInitialization<V> initializer, double fasttol) {
+    super(distance, k, maxiter, initializer, fasttol);
+  }
+
+  @Override
+  protected void run(DistanceQuery<V> distQ, DBIDs ids, ArrayModifiableDBIDs medoids, WritableIntegerDataStore assignment) {
+    new Instance(distQ, ids, assignment, fasttol).run(medoids, maxiter);
+  }
+
+  /**
+   * Invoke a task, either directly when already running within a fork-join
+   * pool (e.g., for concurrent CLARA samples), or in the shared pool.
+   *
+   * @param task Task to run
+   * @return Task result
+   */
+  protected static <T> T invoke(ForkJoinTask<T> task) {
+    return ForkJoinTask.inForkJoinPool() ? task.invoke() : ParallelCore.getCore().getForkJoinPool().invoke(task);
+  }
+
+  /**
+   * Choose the minimum number of candidates per task.
+   *
+   * @param size Number of candidates
+   * @return Block size
+   */
+  protected static int blocksize(int size) {
+    final ForkJoinPool pool = ParallelCore.getCore().getForkJoinPool();
+    return Math.max(MIN_BLOCK, size / (pool.getParallelism() << 3));
+  }
+
+  /**
+   * Instance for a single dataset.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends FastPAM.Instance {
+    /**
+     * Candidates, in the iteration order of the ids.
+     */
+    protected ArrayDBIDs candidates;
+
+    /**
+     * Constructor.
+     *
+     * @param distQ Distance query
+     * @param ids IDs to process
+     * @param assignment Cluster assignment
+     * @param fasttol Tolerance for fast swapping
+     */
+    public Instance(DistanceQuery<?> distQ, DBIDs ids, WritableIntegerDataStore assignment, double fasttol) {
+      super(distQ, ids, assignment, fasttol);
+      this.candidates = DBIDUtil.ensureArray(ids);
+    }
+
+    @Override
+    protected double run(ArrayModifiableDBIDs medoids, int maxiter) {
+      // Overridden to make it accessible to the parallel CLARA variants.
+      return super.run(medoids, maxiter);
+    }
+
+    @Override
+    protected void findBestSwaps(DBIDArrayIter m, ArrayModifiableDBIDs bestids, double[] best, double[] cost, double[] pcost) {
+      updatePriorCost(pcost);
+      // Private copy of the medoids, as the iterator is not shareable:
+      ArrayModifiableDBIDs medoids = DBIDUtil.newArray(best.length);
+      for(m.seek(0); m.valid(); m.advance()) {
+        medoids.add(m);
+      }
+      final int size = candidates.size();
+      SwapTask result = invoke(new SwapTask(medoids, pcost, 0, size, blocksize(size)));
+      System.arraycopy(result.best, 0, best, 0, best.length);
+      DBIDArrayIter c = candidates.iter();
+      for(int i = 0; i < best.length; i++) {
+        if(result.bestpos[i] >= 0) {
+          bestids.set(i, c.seek(result.bestpos[i]));
+        }
+      }
+    }
+
+    /**
+     * Task to find the best swaps within a range of candidates.
+     *
+     * @author Erich Schubert
+     */
+    private class SwapTask extends RecursiveTask<SwapTask> {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Current medoids.
+       */
+      private final ArrayDBIDs medoids;
+
+      /**
+       * Prior cost of removing each medoid.
+       */
+      private final double[] pcost;
+
+      /**
+       * Candidates to process.
+       */
+      private final int start, end;
+
+      /**
+       * Minimum number of candidates per task.
+       */
+      private final int minblock;
+
+      /**
+       * Best change for each medoid.
+       */
+      double[] best;
+
+      /**
+       * Position of the best candidate for each medoid, -1 for none.
+       */
+      int[] bestpos;
+
+      /**
+       * Constructor.
+       *
+       * @param medoids Current medoids
+       * @param pcost Prior cost
+       * @param start First candidate
+       * @param end End (exclusive)
+       * @param minblock Minimum number of candidates per task
+       */
+      SwapTask(ArrayDBIDs medoids, double[] pcost, int start, int end, int minblock) {
+        this.medoids = medoids;
+        this.pcost = pcost;
+        this.start = start;
+        this.end = end;
+        this.minblock = minblock;
+      }
+
+      @Override
+      protected SwapTask compute() {
+        if(end - start < 2 * minblock) {
+          evaluate();
+          return this;
+        }
+        final int mid = (start + end) >>> 1;
+        SwapTask left = new SwapTask(medoids, pcost, start, mid, minblock);
+        SwapTask right = new SwapTask(medoids, pcost, mid, end, minblock);
+        invokeAll(left, right);
+        // Use the joined results, as subtasks return their merged left child:
+        SwapTask l = left.join(), r = right.join();
+        // Merge right into left, such that ties go to the earlier candidate:
+        for(int i = 0; i < l.best.length; i++) {
+          if(r.best[i] < l.best[i]) {
+            l.best[i] = r.best[i];
+            l.bestpos[i] = r.bestpos[i];
+          }
+        }
+        return l;
+      }
+
+      /**
+       * Evaluate all candidates of this task.
+       */
+      private void evaluate() {
+        final int k = pcost.length;
+        best = new double[k];
+        bestpos = new int[k];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        Arrays.fill(bestpos, -1);
+        double[] cost = new double[k];
+        DBIDArrayIter m = medoids.iter();
+        for(DBIDArrayIter h = candidates.iter().seek(start); h.getOffset() < end; h.advance()) {
+          // Compare object to its own medoid.
+          if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
+            continue; // This is a medoid.
+          }
+          System.arraycopy(pcost, 0, cost, 0, k);
+          double acc = computeReassignmentCost(h, cost);
+          // Find the best possible swap for each medoid:
+          for(int i = 0; i < k; i++) {
+            final double costi = cost[i] + acc;
+            if(costi < best[i]) {
+              best[i] = costi;
+              bestpos[i] = h.getOffset();
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> object type
+   */
+  public static class Par<V> extends FastPAM.Par<V> {
+    @Override
+    public ParallelFastPAM<V> make() {
+      return new ParallelFastPAM<>(distance, k, maxiter, initializer, fasttol);
+    }
+  }
+}
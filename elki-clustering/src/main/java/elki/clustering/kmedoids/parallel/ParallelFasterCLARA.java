@@ -0,0 +1,94 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids.parallel;
+
+import elki.clustering.kmedoids.FasterCLARA;
+import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
+import elki.data.Clustering;
+import elki.data.model.MedoidModel;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel version of FasterCLARA.
+ * <p>
+ * Independent samples are optimized concurrently; within each sample, the swap
+ * search of {@link ParallelFasterPAM} is used, and the remaining objects are assigned in
+ * parallel. The result is identical to the serial {@link FasterCLARA} for a fixed
+ * seed.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> Data type
+ */
+public class ParallelFasterCLARA<V> extends FasterCLARA<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFasterCLARA.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param k Number of clusters to produce
+   * @param maxiter Maximum number of iterations
+   * @param initializer Initialization function
+   * @param numsamples Number of samples (sampling iterations)
+   * @param sampling Sampling rate (absolute or relative)
+   * @param keepmed Keep the previous medoids in the next sample
+   * @param random Random generator
+   */
+  public ParallelFasterCLARA(Distance<? super V> distance, int k, int maxiter, KMedoidsInitialization<V> initializer, int numsamples, double sampling, boolean keepmed, RandomFactory random) {
+    super(distance, k, maxiter, initializer, numsamples, sampling, keepmed, random);
+  }
+
+  @Override
+  public Clustering<MedoidModel> run(Relation<V> relation) {
+    return ParallelCLARAUtil.run(relation, distance, k, initializer, numsamples, sampling, keepmed, random, //
+        (distQ, rids, medoids, assignment) -> new ParallelFasterPAM.Instance(distQ, rids, assignment).run(medoids, maxiter), //
+        LOG, getClass().getName());
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> Data type
+   */
+  public static class Par<V> extends FasterCLARA.Par<V> {
+    @Override
+    public ParallelFasterCLARA<V> make() {
+      return new ParallelFasterCLARA<>(distance, k, maxiter, initializer, numsamples, sampling, keepmed, random);
+    }
+  }
+}
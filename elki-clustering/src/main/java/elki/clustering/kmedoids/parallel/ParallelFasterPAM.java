@@ -0,0 +1,326 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids.parallel;
+
+import java.util.concurrent.RecursiveAction;
+
+import elki.clustering.kmedoids.FasterPAM;
+import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.*;
+import elki.database.query.distance.DistanceQuery;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.LongStatistic;
+
+/**
+ * Parallel version of FasterPAM.
+ * <p>
+ * FasterPAM performs a swap as soon as an improvement is found, so the
+ * candidates cannot simply be evaluated independently. Instead, a block of the
+ * next candidates is evaluated speculatively in parallel, assuming no swap
+ * happens; the block is then scanned in order, and the first improving swap is
+ * performed. The evaluation of the remainder of the block is discarded and
+ * restarted after the swapped candidate. The block size adapts to the swap
+ * rate: it grows while no swaps are found, and shrinks after a swap.
+ * <p>
+ * Because every swap decision is based on the same state as in the serial
+ * {@link FasterPAM}, the resulting medoids are identical.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> object datatype
+ */
+public class ParallelFasterPAM<O> extends FasterPAM<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFasterPAM.class);
+
+  /**
+   * Key for statistics logging.
+   */
+  private static final String KEY = ParallelFasterPAM.class.getName();
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Function to generate the initial means
+   */
+  public ParallelFasterPAM(Distance<? super O> distance, int k, int maxiter, KMedoidsInitialization<O> initializer) {
+    super(distance, k, maxiter, initializer);
+  }
+
+  @Override
+  protected void run(DistanceQuery<O> distQ, DBIDs ids, ArrayModifiableDBIDs medoids, WritableIntegerDataStore assignment) {
+    new Instance(distQ, ids, assignment).run(medoids, maxiter);
+  }
+
+  /**
+   * Instance for a single dataset.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends FasterPAM.Instance {
+    /**
+     * Candidates, in the iteration order of the ids.
+     */
+    protected ArrayDBIDs candidates;
+
+    /**
+     * Constructor.
+     *
+     * @param distQ Distance query
+     * @param ids IDs to process
+     * @param assignment Cluster assignment
+     */
+    public Instance(DistanceQuery<?> distQ, DBIDs ids, WritableIntegerDataStore assignment) {
+      super(distQ, ids, assignment);
+      this.candidates = DBIDUtil.ensureArray(ids);
+    }
+
+    @Override
+    protected double run(ArrayModifiableDBIDs medoids, int maxiter) {
+      final int k = medoids.size(), size = candidates.size();
+      // Initial assignment to nearest medoids
+      double tc = assignToNearestCluster(medoids);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new DoubleStatistic(KEY + ".iteration-" + 0 + ".cost", tc));
+      }
+
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("PAM iteration", LOG) : null;
+      // Swap phase
+      DBIDArrayIter m = medoids.iter(), h = candidates.iter();
+      double[] pcost = new double[k];
+      // Speculative evaluation results, per candidate:
+      final int minblock = ParallelFastPAM.blocksize(size);
+      final int maxblock = Math.max(minblock, ParallelFastPAM.MIN_BLOCK << 6);
+      double[] bestcost = new double[Math.min(size, maxblock)];
+      int[] bestmed = new int[bestcost.length];
+      int blocksize = minblock, lastswap = -1;
+      int iteration = 0, prevswaps = 0, swaps = 0, wasted = 0;
+      while(iteration < maxiter || maxiter <= 0) {
+        ++iteration;
+        LOG.incrementProcessed(prog);
+        // Compute costs of reassigning to the second closest medoid.
+        updatePriorCost(pcost);
+        // Check if we completed an entire round without swapping:
+        int end = lastswap >= 0 ? lastswap : size;
+        for(int start = 0; start < end;) {
+          final int bend = Math.min(end, start + Math.min(blocksize, bestcost.length));
+          ParallelFastPAM.invoke(new EvaluateTask(medoids, pcost, start, bend, Math.max(1, (bend - start) >>> 3), bestcost, bestmed));
+          int next = bend;
+          for(int i = start; i < bend; i++) {
+            final double c = bestcost[i - start];
+            if(!(c < -1e-12 * tc)) {
+              continue;
+            }
+            ++swaps;
+            lastswap = i;
+            end = size; // Continue to the end of this round
+            updateAssignment(medoids, m, h.seek(i), bestmed[i - start]);
+            updatePriorCost(pcost);
+            tc += c;
+            assert tc >= 0;
+            if(LOG.isStatistics()) {
+              LOG.statistics(new DoubleStatistic(KEY + ".swap-" + swaps + ".cost", tc));
+            }
+            wasted += bend - i - 1;
+            next = i + 1;
+            break;
+          }
+          // Adapt the block size to the swap rate:
+          blocksize = next < bend ? Math.max(minblock, blocksize >>> 1) : Math.min(maxblock, blocksize << 1);
+          start = next;
+        }
+        if(LOG.isStatistics()) {
+          LOG.statistics(new LongStatistic(KEY + ".iteration-" + iteration + ".swaps", swaps - prevswaps));
+        }
+        if(prevswaps == swaps) {
+          break; // Converged
+        }
+        prevswaps = swaps;
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(KEY + ".iteration-" + iteration + ".cost", tc));
+        }
+      }
+      LOG.setCompleted(prog);
+      if(LOG.isStatistics()) {
+        LOG.statistics(new LongStatistic(KEY + ".iterations", iteration));
+        LOG.statistics(new LongStatistic(KEY + ".swaps", swaps));
+        LOG.statistics(new LongStatistic(KEY + ".wasted-evaluations", wasted));
+        LOG.statistics(new DoubleStatistic(KEY + ".final-cost", tc));
+      }
+      // Cleanup
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        assignment.putInt(it, assignment.intValue(it) & 0x7FFF);
+      }
+      return tc;
+    }
+
+    /**
+     * Task to evaluate the best swap of a range of candidates.
+     *
+     * @author Erich Schubert
+     */
+    private class EvaluateTask extends RecursiveAction {
+      /**
+       * Serialization version.
+       */
+      private static final long serialVersionUID = 1L;
+
+      /**
+       * Current medoids.
+       */
+      private final ArrayDBIDs medoids;
+
+      /**
+       * Prior cost of removing each medoid.
+       */
+      private final double[] pcost;
+
+      /**
+       * Candidates to process.
+       */
+      private final int start, end;
+
+      /**
+       * Minimum number of candidates per task.
+       */
+      private final int minblock;
+
+      /**
+       * Output: best change, NaN for medoids.
+       */
+      private final double[] bestcost;
+
+      /**
+       * Output: medoid to replace.
+       */
+      private final int[] bestmed;
+
+      /**
+       * Offset of the output arrays.
+       */
+      private final int offset;
+
+      /**
+       * Constructor.
+       *
+       * @param medoids Current medoids
+       * @param pcost Prior cost
+       * @param start First candidate
+       * @param end End (exclusive)
+       * @param minblock Minimum number of candidates per task
+       * @param bestcost Output array for the best change
+       * @param bestmed Output array for the medoid to replace
+       */
+      EvaluateTask(ArrayDBIDs medoids, double[] pcost, int start, int end, int minblock, double[] bestcost, int[] bestmed) {
+        this(medoids, pcost, start, end, minblock, bestcost, bestmed, start);
+      }
+
+      /**
+       * Constructor.
+       *
+       * @param medoids Current medoids
+       * @param pcost Prior cost
+       * @param start First candidate
+       * @param end End (exclusive)
+       * @param minblock Minimum number of candidates per task
+       * @param bestcost Output array for the best change
+       * @param bestmed Output array for the medoid to replace
+       * @param offset Offset of the output arrays
+       */
+      private EvaluateTask(ArrayDBIDs medoids, double[] pcost, int start, int end, int minblock, double[] bestcost, int[] bestmed, int offset) {
+        this.medoids = medoids;
+        this.pcost = pcost;
+        this.start = start;
+        this.end = end;
+        this.minblock = minblock;
+        this.bestcost = bestcost;
+        this.bestmed = bestmed;
+        this.offset = offset;
+      }
+
+      @Override
+      protected void compute() {
+        if(end - start < 2 * minblock) {
+          evaluate();
+          return;
+        }
+        final int mid = (start + end) >>> 1;
+        invokeAll(new EvaluateTask(medoids, pcost, start, mid, minblock, bestcost, bestmed, offset), //
+            new EvaluateTask(medoids, pcost, mid, end, minblock, bestcost, bestmed, offset));
+      }
+
+      /**
+       * Evaluate all candidates of this task.
+       */
+      private void evaluate() {
+        double[] cost = new double[pcost.length];
+        DBIDArrayIter m = medoids.iter();
+        for(DBIDArrayIter h = candidates.iter().seek(start); h.getOffset() < end; h.advance()) {
+          final int i = h.getOffset() - offset;
+          // Compare object to its own medoid.
+          if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
+            bestcost[i] = Double.NaN; // This is a medoid.
+            continue;
+          }
+          // Initialize with medoid removal cost:
+          System.arraycopy(pcost, 0, cost, 0, cost.length);
+          // The cost we get back by making the non-medoid h medoid.
+          double acc = computeReassignmentCost(h, cost);
+          // Find the best possible swap for each medoid:
+          final int min = argmin(cost);
+          bestcost[i] = cost[min] + acc;
+          bestmed[i] = min;
+        }
+      }
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> object type
+   */
+  public static class Par<O> extends FasterPAM.Par<O> {
+    @Override
+    public ParallelFasterPAM<O> make() {
+      return new ParallelFasterPAM<>(distance, k, maxiter, initializer);
+    }
+  }
+}
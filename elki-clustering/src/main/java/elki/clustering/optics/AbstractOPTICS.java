@@ -23,6 +23,9 @@ package elki.clustering.optics;
 import elki.Algorithm;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
+import elki.database.ids.DBIDRef;
+import elki.database.query.QueryBuilder;
+import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
 import elki.distance.Distance;
 import elki.distance.minkowski.EuclideanDistance;
@@ -104,6 +107,26 @@ public abstract class AbstractOPTICS<O> implements OPTICSTypeAlgorithm {
    */
   public abstract ClusterOrder run(Relation<O> relation);
 
+  /**
+   * Get the range query used to find the epsilon neighborhoods.
+   *
+   * @param relation Relation
+   * @return Range query
+   */
+  protected RangeSearcher<DBIDRef> makeRangeQuery(Relation<O> relation) {
+    return new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+  }
+
+  /**
+   * Release the range query from {@link #makeRangeQuery}, once the cluster
+   * order is complete.
+   *
+   * @param rangeQuery Range query
+   */
+  protected void releaseRangeQuery(RangeSearcher<DBIDRef> rangeQuery) {
+    // Nothing to do by default.
+  }
+
   @Override
   public int getMinPts() {
     return minpts;
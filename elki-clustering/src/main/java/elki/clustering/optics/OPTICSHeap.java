@@ -27,7 +27,6 @@ import elki.database.ids.DBIDs;
 import elki.database.ids.DoubleDBIDListIter;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.ids.ModifiableDoubleDBIDList;
-import elki.database.query.QueryBuilder;
 import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
 import elki.distance.Distance;
@@ -138,7 +137,7 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
       clusterOrder = new ClusterOrder(ids);
       Metadata.of(clusterOrder).setLongName("OPTICS Clusterorder");
       progress = LOG.isVerbose() ? new FiniteProgress("OPTICS", ids.size(), LOG) : null;
-      rangeQuery = new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+      rangeQuery = makeRangeQuery(relation);
       heap = new UpdatableHeap<>();
     }
 
@@ -155,6 +154,7 @@ public class OPTICSHeap<O> extends AbstractOPTICS<O> {
         }
       }
       LOG.ensureCompleted(progress);
+      releaseRangeQuery(rangeQuery);
       return clusterOrder;
     }
 
@@ -0,0 +1,121 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.optics.parallel;
+
+import elki.clustering.dbscan.util.NeighborhoodCache;
+import elki.clustering.optics.AbstractOPTICS;
+import elki.clustering.optics.OPTICSList;
+import elki.database.ids.DBIDRef;
+import elki.database.query.range.RangeSearcher;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.Flag;
+
+/**
+ * OPTICS using a list, with all epsilon neighborhoods precomputed in parallel.
+ * <p>
+ * The range queries are independent, and usually the most expensive part of
+ * OPTICS. They are run concurrently, and stored in a compact
+ * {@link NeighborhoodCache}; the cluster order is then computed serially from
+ * the cache, and is identical to the order of {@link OPTICSList}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @composed - - - NeighborhoodCache
+ *
+ * @param <O> the type of objects handled by the algorithm
+ */
+public class ParallelOPTICSList<O> extends OPTICSList<O> {
+  /**
+   * Memory budget for the neighborhoods in bytes, 0 for no limit.
+   */
+  protected long memory;
+
+  /**
+   * Use batch range queries.
+   */
+  protected boolean batch;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts value
+   * @param memory Memory budget for the neighborhoods in bytes, 0 for no limit
+   * @param batch Use batch range queries
+   */
+  public ParallelOPTICSList(Distance<? super O> distance, double epsilon, int minpts, long memory, boolean batch) {
+    super(distance, epsilon, minpts);
+    this.memory = memory;
+    this.batch = batch;
+  }
+
+  @Override
+  protected RangeSearcher<DBIDRef> makeRangeQuery(Relation<O> relation) {
+    return new NeighborhoodCache<>(relation, distance, epsilon, memory, batch);
+  }
+
+  @Override
+  protected void releaseRangeQuery(RangeSearcher<DBIDRef> rangeQuery) {
+    ((NeighborhoodCache<?>) rangeQuery).destroy();
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> extends AbstractOPTICS.Par<O> {
+    /**
+     * Memory budget in bytes, 0 for no limit.
+     */
+    protected long memory;
+
+    /**
+     * Use batch range queries.
+     */
+    protected boolean batch;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new DoubleParameter(ParallelOPTICSHeap.Par.MEMORY_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .setOptional(true) //
+          .grab(config, x -> memory = (long) (x * 1048576));
+      new Flag(ParallelOPTICSHeap.Par.BATCH_ID).grab(config, x -> batch = x);
+    }
+
+    @Override
+    public ParallelOPTICSList<O> make() {
+      return new ParallelOPTICSList<>(distance, epsilon, minpts, memory, batch);
+    }
+  }
+}
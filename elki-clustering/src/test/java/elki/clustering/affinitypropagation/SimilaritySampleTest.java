@@ -0,0 +1,64 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.affinitypropagation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the sample of similarities.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class SimilaritySampleTest {
+  /**
+   * Small inputs are not sampled.
+   */
+  @Test
+  public void testExact() {
+    final int size = 100, pairs = size * (size - 1) / 2;
+    SimilaritySample sample = new SimilaritySample(size);
+    for(int i = 0; i < pairs; i++) {
+      sample.add(-((i * 7919) % pairs));
+    }
+    assertEquals(-(pairs - 1) * .5, sample.quantile(.5), 0.);
+    sample = new SimilaritySample(1);
+    assertEquals(0., sample.quantile(.5), 0.);
+  }
+
+  /**
+   * Large inputs are sampled, with bounded memory.
+   */
+  @Test
+  public void testSampled() {
+    final int size = 3000;
+    final long pairs = size * (long) (size - 1) / 2;
+    SimilaritySample sample = new SimilaritySample(size);
+    for(long i = 0; i < pairs; i++) {
+      sample.add(-((i * 7919) % pairs));
+    }
+    assertEquals(-(pairs - 1) * .5, sample.quantile(.5), pairs * 1e-3);
+    // Must not overflow, nor allocate more than the maximum sample:
+    new SimilaritySample(100000);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.affinitypropagation.parallel;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.MedoidModel;
+import elki.database.Database;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel affinity propagation.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelAffinityPropagationTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testParallelAffinityPropagation() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<MedoidModel> result = new ELKIBuilder<ParallelAffinityPropagation<DoubleVector>>(ParallelAffinityPropagation.class)//
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.957227259);
+    assertClusterSizes(result, new int[] { 5, 5, 7, 55, 105, 153 });
+  }
+
+  @Test
+  public void testParallelAffinityPropagationOnSingleLinkDataset() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<MedoidModel> result = new ELKIBuilder<ParallelAffinityPropagation<DoubleVector>>(ParallelAffinityPropagation.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.351689882);
+    assertClusterSizes(result, new int[] { 24, 27, 29, 34, 36, 36, 37, 38, 41, 43, 43, 44, 46, 47, 56, 57 });
+  }
+
+  /**
+   * Keeping all neighbors must give the same result as the full matrix.
+   */
+  @Test
+  public void testSparseComplete() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<MedoidModel> result = new ELKIBuilder<ParallelAffinityPropagation<DoubleVector>>(ParallelAffinityPropagation.class)//
+        .with(ParallelAffinityPropagation.Par.SPARSE_ID, 329) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.957227259);
+    assertClusterSizes(result, new int[] { 5, 5, 7, 55, 105, 153 });
+  }
+
+  @Test
+  public void testSparseFloat() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<MedoidModel> result = new ELKIBuilder<ParallelAffinityPropagation<DoubleVector>>(ParallelAffinityPropagation.class)//
+        .with(ParallelAffinityPropagation.Par.SPARSE_ID, 20) //
+        .with(ParallelAffinityPropagation.Par.FLOAT_ID) //
+        .build().autorun(db);
+    int total = 0;
+    for(Cluster<MedoidModel> c : result.getAllClusters()) {
+      total += c.size();
+    }
+    assertEquals("Not all objects assigned.", 330, total);
+  }
+}
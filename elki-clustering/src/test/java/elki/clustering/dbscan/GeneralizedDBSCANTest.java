@@ -23,6 +23,7 @@ package elki.clustering.dbscan;
 import org.junit.Test;
 
 import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.dbscan.predicates.PrecomputedEpsilonNeighborPredicate;
 import elki.clustering.dbscan.predicates.SimilarityNeighborPredicate;
 import elki.data.Clustering;
 import elki.data.model.Model;
@@ -53,6 +54,22 @@ public class GeneralizedDBSCANTest extends AbstractClusterAlgorithmTest {
     assertClusterSizes(result, new int[] { 29, 50, 101, 150 });
   }
 
+  /**
+   * Run Generalized DBSCAN with neighborhoods precomputed in parallel.
+   */
+  @Test
+  public void testPrecomputedDBSCAN() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<Model> result = new ELKIBuilder<>(GeneralizedDBSCAN.class) //
+        .with(GeneralizedDBSCAN.Par.NEIGHBORHOODPRED_ID, PrecomputedEpsilonNeighborPredicate.class) //
+        .with(DBSCAN.Par.EPSILON_ID, 0.04) //
+        .with(DBSCAN.Par.MINPTS_ID, 20) //
+        .with(PrecomputedEpsilonNeighborPredicate.Par.MEMORY_ID, 0.02) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.996413);
+    assertClusterSizes(result, new int[] { 29, 50, 101, 150 });
+  }
+
   @Test
   public void testDBSCANOnSingleLinkDataset() {
     Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
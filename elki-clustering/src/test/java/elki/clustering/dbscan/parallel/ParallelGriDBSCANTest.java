@@ -0,0 +1,121 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.dbscan.parallel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.dbscan.DBSCAN;
+import elki.clustering.dbscan.GriDBSCAN;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.Model;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDUtil;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel GriDBSCAN.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelGriDBSCANTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run DBSCAN with fixed parameters and compare the result to a golden
+   * standard.
+   */
+  @Test
+  public void testParallelGriDBSCANResults() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<Model> result = new ELKIBuilder<ParallelGriDBSCAN<DoubleVector>>(ParallelGriDBSCAN.class) //
+        .with(DBSCAN.Par.EPSILON_ID, 0.04) //
+        .with(DBSCAN.Par.MINPTS_ID, 20) //
+        .with(GriDBSCAN.Par.GRID_ID, 0.08) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.996413);
+    assertClusterSizes(result, new int[] { 29, 50, 101, 150 });
+  }
+
+  /**
+   * Run DBSCAN with fixed parameters and compare the result to a golden
+   * standard, with larger grid width (fewer cells, less redundancy).
+   */
+  @Test
+  public void testParallelGriDBSCANWide() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Clustering<Model> result = new ELKIBuilder<ParallelGriDBSCAN<DoubleVector>>(ParallelGriDBSCAN.class) //
+        .with(DBSCAN.Par.EPSILON_ID, 0.04) //
+        .with(DBSCAN.Par.MINPTS_ID, 20) //
+        .with(GriDBSCAN.Par.GRID_ID, 0.4) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.996413);
+    assertClusterSizes(result, new int[] { 29, 50, 101, 150 });
+  }
+
+  /**
+   * The result must be identical to the serial version, including border
+   * points shared by multiple clusters and the order of the clusters.
+   */
+  @Test
+  public void testSameAsSerial() {
+    // Pairs of short segments, with a border point exactly halfway between.
+    double[][] data = new double[10 * 10 * 11][];
+    for(int r = 0, p = 0; r < 10; r++) {
+      for(int c = 0; c < 10; c++) {
+        final double x = c * 1.5 + r * .1;
+        for(int i = 0; i < 5; i++) {
+          data[p++] = new double[] { x + i * .05, r };
+          data[p++] = new double[] { x + .8 + i * .05, r };
+        }
+        data[p++] = new double[] { x + .5, r };
+      }
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null);
+    db.initialize();
+    for(double gridwidth : new double[] { 0.7, 1.3, 3. }) {
+      Clustering<Model> ref = new ELKIBuilder<GriDBSCAN<DoubleVector>>(GriDBSCAN.class) //
+          .with(DBSCAN.Par.EPSILON_ID, 0.31) //
+          .with(DBSCAN.Par.MINPTS_ID, 4) //
+          .with(GriDBSCAN.Par.GRID_ID, gridwidth) //
+          .build().autorun(db);
+      Clustering<Model> result = new ELKIBuilder<ParallelGriDBSCAN<DoubleVector>>(ParallelGriDBSCAN.class) //
+          .with(DBSCAN.Par.EPSILON_ID, 0.31) //
+          .with(DBSCAN.Par.MINPTS_ID, 4) //
+          .with(GriDBSCAN.Par.GRID_ID, gridwidth) //
+          .build().autorun(db);
+      List<Cluster<Model>> rc = ref.getAllClusters(), pc = result.getAllClusters();
+      assertEquals("Number of clusters", rc.size(), pc.size());
+      for(int i = 0; i < rc.size(); i++) {
+        assertEquals("Cluster " + i, rc.get(i).size(), pc.get(i).size());
+        assertEquals("Cluster " + i, rc.get(i).size(), DBIDUtil.intersectionSize(rc.get(i).getIDs(), pc.get(i).getIDs()));
+        assertEquals("Noise flag", rc.get(i).isNoise(), pc.get(i).isNoise());
+      }
+    }
+  }
+}
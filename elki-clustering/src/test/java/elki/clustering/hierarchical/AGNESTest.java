@@ -20,6 +20,10 @@
  */
 package elki.clustering.hierarchical;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import elki.Algorithm;
@@ -28,6 +32,7 @@ import elki.clustering.hierarchical.extraction.CutDendrogramByNumberOfClusters;
 import elki.clustering.hierarchical.linkage.*;
 import elki.data.Clustering;
 import elki.database.Database;
+import elki.database.ids.DBIDIter;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -183,4 +188,30 @@ public class AGNESTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.9277466);
     assertClusterSizes(clustering, new int[] { 196, 200, 242 });
   }
+
+  /**
+   * Storing the matrix with single precision must only cause small errors.
+   */
+  @Test
+  public void testSinglePrecision() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    PointerHierarchyResult ref = new ELKIBuilder<>(AGNES.class) //
+        .with(AGNES.Par.LINKAGE_ID, WardLinkage.class) //
+        .build().autorun(db);
+    PointerHierarchyResult res = new ELKIBuilder<>(AGNES.class) //
+        .with(AGNES.Par.LINKAGE_ID, WardLinkage.class) //
+        .with(AGNES.Par.FLOAT_ID) //
+        .build().autorun(db);
+    double[] a = new double[ref.getDBIDs().size()], b = new double[a.length];
+    int i = 0;
+    for(DBIDIter it = ref.getDBIDs().iter(); it.valid(); it.advance(), i++) {
+      a[i] = ref.getParentDistanceStore().doubleValue(it);
+      b[i] = res.getParentDistanceStore().doubleValue(it);
+    }
+    Arrays.sort(a);
+    Arrays.sort(b);
+    for(i = 0; i < a.length - 1; i++) {
+      assertEquals("Merge height differs.", a[i], b[i], 1e-5 * a[i]);
+    }
+  }
 }
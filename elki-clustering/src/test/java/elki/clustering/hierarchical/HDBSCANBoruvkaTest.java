@@ -0,0 +1,113 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import org.junit.Test;
+
+import elki.Algorithm;
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.hierarchical.extraction.CutDendrogramByNumberOfClusters;
+import elki.data.Clustering;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Perform HDBSCAN unit test, using the Borůvka minimum spanning tree.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class HDBSCANBoruvkaTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run agglomerative hierarchical clustering with fixed parameters and compare
+   * the result to a golden standard.
+   */
+  @Test
+  public void testHDBSCAN() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HDBSCANBoruvka.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.686953412);
+    assertClusterSizes(clustering, new int[] { 1, 200, 437 });
+  }
+
+  /**
+   * Regression test against github #46O
+   */
+  @Test
+  public void testHDBSCANCornerCase() {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(new double[][] { { 1, 0 }, { 0, 1 } }), null);
+    db.initialize();
+    new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HDBSCANBoruvka.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+        .build().autorun(db);
+    db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(new double[][] { { 0 } }), null);
+    db.initialize();
+    new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, HDBSCANBoruvka.class) //
+        .with(Algorithm.Utils.DISTANCE_FUNCTION_ID, SquaredEuclideanDistance.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+        .build().autorun(db);
+  }
+
+  /**
+   * The result must not depend on the number of threads.
+   */
+  @Test
+  public void testThreadCounts() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    PointerHierarchyResult ref = new ELKIBuilder<>(HDBSCANBoruvka.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+        .with(SingleLinkBoruvka.Par.PARALLEL_ID, 1) //
+        .build().autorun(db);
+    for(int p : new int[] { 2, 3, 8 }) {
+      PointerHierarchyResult res = new ELKIBuilder<>(HDBSCANBoruvka.class) //
+          .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+          .with(SingleLinkBoruvka.Par.PARALLEL_ID, p) //
+          .build().autorun(db);
+      SingleLinkBoruvkaTest.assertSameHierarchy(ref, res);
+    }
+  }
+
+  /**
+   * The spanning tree must yield the same merge heights as Prim's algorithm.
+   */
+  @Test
+  public void testSameAsLinearMemory() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    PointerHierarchyResult ref = new ELKIBuilder<>(HDBSCANLinearMemory.class) //
+        .with(HDBSCANLinearMemory.Par.MIN_PTS_ID, 20) //
+        .build().autorun(db);
+    PointerHierarchyResult res = new ELKIBuilder<>(HDBSCANBoruvka.class) //
+        .with(HDBSCANBoruvka.Par.MIN_PTS_ID, 20) //
+        .build().autorun(db);
+    SingleLinkBoruvkaTest.assertSameHeights(ref, res);
+  }
+}
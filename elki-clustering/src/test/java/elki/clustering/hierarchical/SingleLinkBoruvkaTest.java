@@ -0,0 +1,123 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import elki.Algorithm;
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.hierarchical.extraction.CutDendrogramByNumberOfClusters;
+import elki.data.Clustering;
+import elki.database.Database;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for single-linkage using the Borůvka minimum spanning tree.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class SingleLinkBoruvkaTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run with fixed parameters and compare the result to a golden standard.
+   */
+  @Test
+  public void testSingleLinkBoruvka() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(CutDendrogramByNumberOfClusters.class) //
+        .with(CutDendrogramByNumberOfClusters.Par.MINCLUSTERS_ID, 3) //
+        .with(Algorithm.Utils.ALGORITHM_ID, SingleLinkBoruvka.class) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.6829722);
+    assertClusterSizes(clustering, new int[] { 9, 200, 429 });
+  }
+
+  /**
+   * The spanning tree must yield the same merge heights as SLINK.
+   */
+  @Test
+  public void testSameAsSLINK() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    PointerHierarchyResult ref = new ELKIBuilder<>(SLINK.class).build().autorun(db);
+    PointerHierarchyResult res = new ELKIBuilder<>(SingleLinkBoruvka.class).build().autorun(db);
+    assertSameHeights(ref, res);
+  }
+
+  /**
+   * The result must not depend on the number of threads.
+   */
+  @Test
+  public void testThreadCounts() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    PointerHierarchyResult ref = new ELKIBuilder<>(SingleLinkBoruvka.class) //
+        .with(SingleLinkBoruvka.Par.PARALLEL_ID, 1) //
+        .build().autorun(db);
+    for(int p : new int[] { 2, 3, 8 }) {
+      PointerHierarchyResult res = new ELKIBuilder<>(SingleLinkBoruvka.class) //
+          .with(SingleLinkBoruvka.Par.PARALLEL_ID, p) //
+          .build().autorun(db);
+      assertSameHierarchy(ref, res);
+    }
+  }
+
+  /**
+   * Compare two hierarchies for identity.
+   *
+   * @param ref Reference result
+   * @param res Result to check
+   */
+  protected static void assertSameHierarchy(PointerHierarchyResult ref, PointerHierarchyResult res) {
+    assertEquals("Size differs.", ref.getDBIDs().size(), res.getDBIDs().size());
+    for(DBIDIter it = ref.getDBIDs().iter(); it.valid(); it.advance()) {
+      assertTrue("Parent differs.", DBIDUtil.equal(ref.getParentStore().get(it), res.getParentStore().get(it)));
+      assertEquals("Merge height differs.", ref.getParentDistanceStore().doubleValue(it), res.getParentDistanceStore().doubleValue(it), 0.);
+    }
+  }
+
+  /**
+   * Compare the sorted merge heights of two hierarchies. Ties may be resolved
+   * differently, so the trees themselves need not be identical.
+   *
+   * @param ref Reference result
+   * @param res Result to check
+   */
+  protected static void assertSameHeights(PointerHierarchyResult ref, PointerHierarchyResult res) {
+    assertEquals("Size differs.", ref.getDBIDs().size(), res.getDBIDs().size());
+    double[] a = new double[ref.getDBIDs().size()], b = new double[a.length];
+    int i = 0;
+    for(DBIDIter it = ref.getDBIDs().iter(); it.valid(); it.advance(), i++) {
+      a[i] = ref.getParentDistanceStore().doubleValue(it);
+      b[i] = res.getParentDistanceStore().doubleValue(it);
+    }
+    Arrays.sort(a);
+    Arrays.sort(b);
+    for(i = 0; i < a.length; i++) {
+      assertEquals("Merge height differs.", a[i], b[i], 1e-12);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical.birch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.DBIDIter;
+import elki.database.relation.Relation;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Test building CF-trees from streams, and saving and restoring them.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class CFTreeTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testStream() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    CFTree.Factory factory = new CFTree.Factory(VarianceIncreaseDistance.STATIC, DiameterCriterion.STATIC, 0., 64, 4);
+    CFTree expect = factory.newTree(rel.getDBIDs(), rel);
+    CFTree tree = factory.newTree(bundle(rel, 0, rel.size()).asStream());
+    assertTreeEquals(expect, tree);
+  }
+
+  @Test
+  public void testCheckpoint() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    File file = File.createTempFile("elki-cftree", ".bin");
+    file.deleteOnExit();
+    Path path = file.toPath();
+    Files.delete(path);
+    CFTree.Factory factory = new CFTree.Factory(VarianceIncreaseDistance.STATIC, DiameterCriterion.STATIC, 0., 64, 20, 0L, path);
+    // First increment:
+    CFTree first = factory.newTree(bundle(rel, 0, 300).asStream());
+    assertTrue("Checkpoint not written.", Files.exists(path));
+    assertEquals(300, first.root.n);
+    // Second increment, continuing from the checkpoint:
+    CFTree tree = factory.newTree(bundle(rel, 300, rel.size()).asStream());
+    assertEquals(rel.size(), tree.root.n);
+    assertTreeEquals(tree, factory.load(path));
+    // The algorithms accept the restored tree:
+    Clustering<?> clustering = new BIRCHLeafClustering(factory).run(factory.load(path));
+    assertEquals(tree.numLeaves(), clustering.getAllClusters().size());
+    assertEquals(3, new BIRCHKMeansPlusPlus(new RandomFactory(0L)).run(tree, 3).length);
+  }
+
+  @Test
+  public void testMemoryBudget() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    CFTree unlimited = new CFTree.Factory(VarianceIncreaseDistance.STATIC, DiameterCriterion.STATIC, 0., 16, 1000) //
+        .newTree(bundle(rel, 0, rel.size()).asStream());
+    final long budget = unlimited.estimateMemory() >> 2;
+    CFTree tree = new CFTree.Factory(VarianceIncreaseDistance.STATIC, DiameterCriterion.STATIC, 0., 16, 1000, budget, null) //
+        .newTree(bundle(rel, 0, rel.size()).asStream());
+    assertTrue("Memory budget not enforced.", tree.numLeaves() < unlimited.numLeaves());
+    assertEquals(rel.size(), tree.root.n);
+  }
+
+  /**
+   * Make a bundle of a range of the relation.
+   *
+   * @param rel Relation
+   * @param start First object
+   * @param end End (exclusive)
+   * @return Bundle
+   */
+  private static MultipleObjectsBundle bundle(Relation<NumberVector> rel, int start, int end) {
+    List<NumberVector> vecs = new ArrayList<>(end - start);
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid() && i < end; it.advance(), i++) {
+      if(i >= start) {
+        vecs.add(rel.get(it));
+      }
+    }
+    return MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), vecs);
+  }
+
+  /**
+   * Compare the leaves of two trees.
+   *
+   * @param expect Expected tree
+   * @param tree Actual tree
+   */
+  private static void assertTreeEquals(CFTree expect, CFTree tree) {
+    assertEquals("Number of leaves differs.", expect.numLeaves(), tree.numLeaves());
+    CFTree.LeafIterator it2 = tree.leafIterator();
+    for(CFTree.LeafIterator it = expect.leafIterator(); it.valid(); it.advance(), it2.advance()) {
+      assertTrue(it2.valid());
+      ClusteringFeature a = it.get(), b = it2.get();
+      assertEquals("Leaf size differs.", a.n, b.n);
+      assertEquals(a.ss, b.ss, 0.);
+      for(int d = 0; d < a.getDimensionality(); d++) {
+        assertEquals(a.centroid(d), b.centroid(d), 0.);
+      }
+    }
+    assertFalse(it2.valid());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.initialization.KMeansPlusPlus;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.KMeansModel;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.*;
+import elki.database.relation.Relation;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for mini-batch k-means.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class MiniBatchKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testMiniBatchKMeans() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<MiniBatchKMeans<DoubleVector>>(MiniBatchKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 100) //
+        .with(MiniBatchKMeans.Par.SEED_ID, 1) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.998005);
+    assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+  }
+
+  @Test
+  public void testMiniBatchKMeansStream() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    // Stream the data once, in random order:
+    ArrayModifiableDBIDs order = DBIDUtil.newArray(rel.getDBIDs());
+    DBIDUtil.randomShuffle(order, new Random(0L));
+    List<DoubleVector> vecs = new ArrayList<>(order.size());
+    for(DBIDIter it = order.iter(); it.valid(); it.advance()) {
+      vecs.add(rel.get(it));
+    }
+    Clustering<KMeansModel> result = new ELKIBuilder<MiniBatchKMeans<DoubleVector>>(MiniBatchKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 100) //
+        .build().run(MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), vecs).asStream());
+    // Only the means are known, assign the data to the nearest mean:
+    List<Cluster<KMeansModel>> clusters = result.getAllClusters();
+    assertEquals("Number of clusters", 5, clusters.size());
+    ArrayModifiableDBIDs[] members = new ArrayModifiableDBIDs[clusters.size()];
+    for(int i = 0; i < members.length; i++) {
+      assertTrue("Stream clusters must not contain objects.", clusters.get(i).getIDs().isEmpty());
+      members[i] = DBIDUtil.newArray();
+    }
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      int best = 0;
+      double bestd = Double.POSITIVE_INFINITY;
+      for(int i = 0; i < members.length; i++) {
+        double d = SquaredEuclideanDistance.STATIC.distance(rel.get(it), DoubleVector.wrap(clusters.get(i).getModel().getMean()));
+        if(d < bestd) {
+          best = i;
+          bestd = d;
+        }
+      }
+      members[best].add(it);
+    }
+    Clustering<KMeansModel> assigned = new Clustering<>();
+    for(int i = 0; i < members.length; i++) {
+      assigned.addToplevelCluster(new Cluster<>(members[i], clusters.get(i).getModel()));
+    }
+    assertFMeasure(db, assigned, 0.998005);
+    assertClusterSizes(assigned, new int[] { 199, 200, 200, 200, 201 });
+  }
+}
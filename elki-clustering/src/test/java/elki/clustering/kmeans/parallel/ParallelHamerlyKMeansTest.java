@@ -0,0 +1,89 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.HamerlyKMeans;
+import elki.clustering.kmeans.KMeans;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.KMeansModel;
+import elki.database.Database;
+import elki.database.ids.DBIDUtil;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for the parallel Hamerly k-means.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelHamerlyKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testParallelKMeansHamerly() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<ParallelHamerlyKMeans<DoubleVector>>(ParallelHamerlyKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.998005);
+    assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+  }
+
+  @Test
+  public void testIdenticalToSerial() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-3d2d1d.csv", 600);
+    Clustering<KMeansModel> serial = new ELKIBuilder<HamerlyKMeans<DoubleVector>>(HamerlyKMeans.class) //
+        .with(KMeans.K_ID, 10) //
+        .with(KMeans.SEED_ID, 1) //
+        .build().autorun(db);
+    Clustering<KMeansModel> parallel = new ELKIBuilder<ParallelHamerlyKMeans<DoubleVector>>(ParallelHamerlyKMeans.class) //
+        .with(KMeans.K_ID, 10) //
+        .with(KMeans.SEED_ID, 1) //
+        .build().autorun(db);
+    assertIdentical(serial, parallel);
+  }
+
+  /**
+   * Assert that two k-means results are identical.
+   *
+   * @param expected Expected result
+   * @param actual Actual result
+   */
+  static void assertIdentical(Clustering<KMeansModel> expected, Clustering<KMeansModel> actual) {
+    List<Cluster<KMeansModel>> ec = expected.getAllClusters(), ac = actual.getAllClusters();
+    assertEquals("Number of clusters does not match.", ec.size(), ac.size());
+    for(int i = 0; i < ec.size(); i++) {
+      assertArrayEquals("Means do not match.", ec.get(i).getModel().getMean(), ac.get(i).getModel().getMean(), 0.);
+      assertEquals("Variance does not match.", ec.get(i).getModel().getVarianceContribution(), ac.get(i).getModel().getVarianceContribution(), 0.);
+      assertTrue("Cluster members do not match.", DBIDUtil.intersectionSize(ec.get(i).getIDs(), ac.get(i).getIDs()) == ec.get(i).size());
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.MiniBatchKMeans;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.KMeansModel;
+import elki.database.Database;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for the parallel mini-batch k-means.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelMiniBatchKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testIdenticalToSerial() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-3d2d1d.csv", 600);
+    Clustering<KMeansModel> serial = new ELKIBuilder<MiniBatchKMeans<DoubleVector>>(MiniBatchKMeans.class) //
+        .with(KMeans.K_ID, 10) //
+        .with(KMeans.SEED_ID, 1) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 600) //
+        .with(MiniBatchKMeans.Par.SEED_ID, 2) //
+        .build().autorun(db);
+    Clustering<KMeansModel> parallel = new ELKIBuilder<ParallelMiniBatchKMeans<DoubleVector>>(ParallelMiniBatchKMeans.class) //
+        .with(KMeans.K_ID, 10) //
+        .with(KMeans.SEED_ID, 1) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 600) //
+        .with(MiniBatchKMeans.Par.SEED_ID, 2) //
+        .build().autorun(db);
+    ParallelHamerlyKMeansTest.assertIdentical(serial, parallel);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids.parallel;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmedoids.CLARA;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.MedoidModel;
+import elki.database.Database;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for the parallel FastCLARA, which must give the same
+ * result as the serial version.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelFastCLARATest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testFastCLARA() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<MedoidModel> result = new ELKIBuilder<ParallelFastCLARA<DoubleVector>>(ParallelFastCLARA.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(CLARA.Par.RANDOM_ID, 6) //
+        .with(CLARA.Par.NUMSAMPLES_ID, 2) //
+        .with(CLARA.Par.SAMPLESIZE_ID, 50) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.998005);
+    assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+  }
+}
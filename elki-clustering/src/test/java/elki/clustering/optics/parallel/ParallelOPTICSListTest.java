@@ -0,0 +1,65 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.optics.parallel;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.optics.OPTICSXi;
+import elki.data.Clustering;
+import elki.database.Database;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Performs a full OPTICS run with precomputed neighborhoods, and checks that
+ * the result is the same as with the serial implementation.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelOPTICSListTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testOPTICS() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> clustering = new ELKIBuilder<>(OPTICSXi.class) //
+        .with(ParallelOPTICSList.Par.MINPTS_ID, 20) //
+        .with(ParallelOPTICSList.Par.EPSILON_ID, 0.15) //
+        .with(OPTICSXi.Par.XI_ID, 0.05) //
+        .with(OPTICSXi.Par.XIALG_ID, ParallelOPTICSList.class) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.893865);
+    assertClusterSizes(clustering, new int[] { 8, 35, 72, 115, 209, 271 });
+  }
+
+  @Test
+  public void testMemoryBudget() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> clustering = new ELKIBuilder<>(OPTICSXi.class) //
+        .with(ParallelOPTICSList.Par.MINPTS_ID, 20) //
+        .with(ParallelOPTICSList.Par.EPSILON_ID, 0.15) //
+        .with(ParallelOPTICSHeap.Par.MEMORY_ID, 0.05) //
+        .with(OPTICSXi.Par.XI_ID, 0.05) //
+        .with(OPTICSXi.Par.XIALG_ID, ParallelOPTICSList.class) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.893865);
+    assertClusterSizes(clustering, new int[] { 8, 35, 72, 115, 209, 271 });
+  }
+}
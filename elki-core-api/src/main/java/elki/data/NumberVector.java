@@ -20,6 +20,8 @@
  */
 package elki.data;
 
+import java.util.Arrays;
+
 import elki.data.spatial.SpatialComparable;
 import elki.data.type.VectorFieldTypeInformation;
 import elki.data.type.VectorTypeInformation;
@@ -203,6 +205,21 @@ public interface NumberVector extends FeatureVector<Number>, SpatialComparable {
       return newNumberVector(values, NumberVectorAdapter.STATIC);
     }
 
+    /**
+     * Returns a new NumberVector for a range of a larger array.
+     * <p>
+     * Implementations may return a view sharing the array instead of a copy,
+     * so the array must not be modified afterwards.
+     * 
+     * @param values Array containing the values
+     * @param start Offset of the first value
+     * @param dim Dimensionality
+     * @return a new NumberVector of N for the given values
+     */
+    default V newNumberVector(double[] values, int start, int dim) {
+      return newNumberVector(Arrays.copyOfRange(values, start, start + dim));
+    }
+
     /**
      * Instantiate from any number-array like object.
      * 
@@ -211,7 +211,7 @@ public class TypeInformationSerializer implements ByteBufferSerializer<TypeInfor
       // Type class
       total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(object.getRestrictionClass().getName());
       // Name, or an empty string.
-      total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(object.getLabel());
+      total += ByteArrayUtil.getStringSize(object.getLabel());
       // Serializer class
       total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(serializer.getClass().getName());
       return total;
@@ -297,9 +297,9 @@ public class TypeInformationSerializer implements ByteBufferSerializer<TypeInfor
       }
       int total = 0;
       // Type class
-      total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(object.getRestrictionClass().getName());
+      total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(object.getFactory().getClass().getName());
       // Name, or an empty string.
-      total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(object.getLabel());
+      total += ByteArrayUtil.getStringSize(object.getLabel());
       // Serializer class
       total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(serializer.getClass().getName());
       // Dimensionality
@@ -413,9 +413,9 @@ public class TypeInformationSerializer implements ByteBufferSerializer<TypeInfor
       }
       int total = 0;
       // Type class
-      total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(object.getRestrictionClass().getName());
+      total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(object.getFactory().getClass().getName());
       // Name, or an empty string.
-      total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(object.getLabel());
+      total += ByteArrayUtil.getStringSize(object.getLabel());
       // Serializer class
       total += ByteArrayUtil.STRING_SERIALIZER.getByteSize(serializer.getClass().getName());
       // Dimensionality
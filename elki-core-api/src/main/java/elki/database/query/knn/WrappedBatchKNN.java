@@ -0,0 +1,89 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.ids.KNNList;
+
+/**
+ * Answer batch kNN queries one at a time, using regular kNN searchers (e.g.,
+ * of an index that does not support batch processing).
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> relation object type
+ */
+public class WrappedBatchKNN<O> implements BatchKNNSearcher<O> {
+  /**
+   * Searcher for database objects.
+   */
+  private KNNSearcher<DBIDRef> byDBID;
+
+  /**
+   * Supplier for the object searcher, only used when needed.
+   */
+  private Supplier<KNNSearcher<O>> byObjectSupplier;
+
+  /**
+   * Searcher for query objects.
+   */
+  private KNNSearcher<O> byObject;
+
+  /**
+   * Constructor.
+   *
+   * @param byDBID Searcher for database objects
+   * @param byObject Supplier of a searcher for query objects
+   */
+  public WrappedBatchKNN(KNNSearcher<DBIDRef> byDBID, Supplier<KNNSearcher<O>> byObject) {
+    super();
+    this.byDBID = byDBID;
+    this.byObjectSupplier = byObject;
+  }
+
+  @Override
+  public KNNList[] getKNN(DBIDs queries, int k) {
+    KNNList[] result = new KNNList[queries.size()];
+    int i = 0;
+    for(DBIDIter iter = queries.iter(); iter.valid(); iter.advance()) {
+      result[i++] = byDBID.getKNN(iter, k);
+    }
+    return result;
+  }
+
+  @Override
+  public KNNList[] getKNN(List<? extends O> queries, int k) {
+    if(byObject == null) {
+      byObject = byObjectSupplier.get();
+    }
+    KNNList[] result = new KNNList[queries.size()];
+    for(int i = 0; i < result.length; i++) {
+      result[i] = byObject.getKNN(queries.get(i), k);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.range;
+
+import java.util.List;
+
+import elki.database.ids.DBIDs;
+import elki.database.ids.DoubleDBIDList;
+
+/**
+ * Batch interface for range queries, answering many queries at once.
+ * Implementations can use this to share work between queries, e.g., by
+ * scanning the data only once for a block of queries, and to process queries
+ * in parallel.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @opt nodefillcolor LemonChiffon
+ * @navassoc - create - DoubleDBIDList
+ *
+ * @param <O> Object type
+ */
+public interface BatchRangeSearcher<O> {
+  /**
+   * Get the neighbors for a set of database objects in a given query range.
+   *
+   * @param queries query object IDs
+   * @param range Query range
+   * @return sorted neighbors, in the iteration order of the queries
+   */
+  DoubleDBIDList[] getRange(DBIDs queries, double range);
+
+  /**
+   * Get the neighbors for a list of query objects in a given query range.
+   *
+   * @param queries query objects
+   * @param range Query range
+   * @return sorted neighbors, in the order of the queries
+   */
+  DoubleDBIDList[] getRange(List<? extends O> queries, double range);
+}
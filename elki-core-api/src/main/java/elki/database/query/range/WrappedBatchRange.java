@@ -0,0 +1,89 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.range;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.ids.DoubleDBIDList;
+
+/**
+ * Answer batch range queries one at a time, using regular range searchers
+ * (e.g., of an index that does not support batch processing).
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> relation object type
+ */
+public class WrappedBatchRange<O> implements BatchRangeSearcher<O> {
+  /**
+   * Searcher for database objects.
+   */
+  private RangeSearcher<DBIDRef> byDBID;
+
+  /**
+   * Supplier for the object searcher, only used when needed.
+   */
+  private Supplier<RangeSearcher<O>> byObjectSupplier;
+
+  /**
+   * Searcher for query objects.
+   */
+  private RangeSearcher<O> byObject;
+
+  /**
+   * Constructor.
+   *
+   * @param byDBID Searcher for database objects
+   * @param byObject Supplier of a searcher for query objects
+   */
+  public WrappedBatchRange(RangeSearcher<DBIDRef> byDBID, Supplier<RangeSearcher<O>> byObject) {
+    super();
+    this.byDBID = byDBID;
+    this.byObjectSupplier = byObject;
+  }
+
+  @Override
+  public DoubleDBIDList[] getRange(DBIDs queries, double range) {
+    DoubleDBIDList[] result = new DoubleDBIDList[queries.size()];
+    int i = 0;
+    for(DBIDIter iter = queries.iter(); iter.valid(); iter.advance()) {
+      result[i++] = byDBID.getRange(iter, range);
+    }
+    return result;
+  }
+
+  @Override
+  public DoubleDBIDList[] getRange(List<? extends O> queries, double range) {
+    if(byObject == null) {
+      byObject = byObjectSupplier.get();
+    }
+    DoubleDBIDList[] result = new DoubleDBIDList[queries.size()];
+    for(int i = 0; i < result.length; i++) {
+      result[i] = byObject.getRange(queries.get(i), range);
+    }
+    return result;
+  }
+}
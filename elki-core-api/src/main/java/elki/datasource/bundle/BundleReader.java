@@ -21,25 +21,45 @@
 package elki.datasource.bundle;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 
+import elki.data.NumberVector;
 import elki.data.type.SimpleTypeInformation;
 import elki.data.type.TypeInformationSerializer;
+import elki.data.type.VectorFieldTypeInformation;
 import elki.database.ids.DBID;
 import elki.database.ids.DBIDVar;
 import elki.utilities.exceptions.AbortException;
 import elki.utilities.io.ByteBufferSerializer;
+import elki.utilities.io.FixedSizeByteBufferSerializer;
 
 /**
  * Read an ELKI bundle file into a data stream.
  * <p>
- * TODO: resize buffer when necessary?
- * 
+ * Both the original format (written by
+ * {@link BundleWriter#writeBundleStream(BundleStreamSource, java.nio.channels.WritableByteChannel)})
+ * and the block format (written by {@link BundleWriter.BlockWriter}) are
+ * supported. Files are mapped into memory in windows (by default of
+ * {@link #WINDOW_SIZE} bytes), so there is no limit on the file size. Before
+ * an object is deserialized, the window is moved such that it contains the
+ * full object, or at least the maximum record size (by default
+ * {@link #MAX_RECORD_SIZE} bytes) for serializers without a fixed size.
+ * <p>
+ * In the column layout, packed double vectors are bulk copied into one array
+ * per block; factories that support it (such as the one of
+ * {@link elki.data.PackedDoubleVector}) return views into this array.
+ * <p>
+ * Meta data stored between blocks is reported as
+ * {@link BundleStreamSource.Event#META_CHANGED}.
+ *
  * @author Erich Schubert
  * @since 0.5.5
- * 
+ *
  * @assoc - reads - MappedByteBuffer
  * @assoc - reads - FileChannel
  */
@@ -49,10 +69,20 @@ public class BundleReader implements BundleStreamSource {
    */
   public static final int MAGIC = BundleWriter.MAGIC;
 
+  /**
+   * Size of the memory mapped windows.
+   */
+  public static final int WINDOW_SIZE = 1 << 30;
+
+  /**
+   * Maximum size of a single serialized object.
+   */
+  public static final int MAX_RECORD_SIZE = 1 << 24;
+
   /**
    * The stream buffer.
    */
-  MappedByteBuffer buffer = null;
+  ByteBuffer buffer = null;
 
   /**
    * Bundle metadata.
@@ -64,6 +94,26 @@ public class BundleReader implements BundleStreamSource {
    */
   FileChannel input = null;
 
+  /**
+   * Size of the memory mapped windows.
+   */
+  int window = WINDOW_SIZE;
+
+  /**
+   * Maximum size of a single serialized object.
+   */
+  int maxrecord = MAX_RECORD_SIZE;
+
+  /**
+   * File offset of the current buffer.
+   */
+  long offset = 0;
+
+  /**
+   * Size of the input file.
+   */
+  long size = 0;
+
   /**
    * Serializers to use.
    */
@@ -79,20 +129,67 @@ public class BundleReader implements BundleStreamSource {
    */
   boolean hasids = false;
 
+  /**
+   * File uses the block format.
+   */
+  boolean blocks = false;
+
+  /**
+   * Block data is stored by column.
+   */
+  boolean columns = false;
+
+  /**
+   * Vector factories for columns stored as packed doubles, {@code null} for
+   * columns stored with their serializer.
+   */
+  NumberVector.Factory<?>[] packed;
+
+  /**
+   * Dimensionality of packed columns.
+   */
+  int[] dims;
+
+  /**
+   * Number of rows in the file (block format only).
+   */
+  long numrows;
+
+  /**
+   * Number of rows read.
+   */
+  long rowsread;
+
+  /**
+   * Rows in the current block.
+   */
+  int blockrows;
+
+  /**
+   * Rows remaining in the current block.
+   */
+  int blockremaining;
+
+  /**
+   * Data of the current block, when stored by column.
+   */
+  Object[][] blockdata;
+
   /**
    * Constructor.
-   * 
+   *
    * @param buffer Input buffer
    */
   public BundleReader(MappedByteBuffer buffer) {
     super();
     this.buffer = buffer;
+    this.size = buffer.limit();
     this.input = null;
   }
 
   /**
    * Constructor.
-   * 
+   *
    * @param input Input channel
    */
   public BundleReader(FileChannel input) {
@@ -100,6 +197,22 @@ public class BundleReader implements BundleStreamSource {
     this.input = input;
   }
 
+  /**
+   * Constructor.
+   * <p>
+   * Serialized objects may use at most half the window size, up to
+   * {@link #MAX_RECORD_SIZE} bytes.
+   *
+   * @param input Input channel
+   * @param window Size of the memory mapped windows
+   */
+  public BundleReader(FileChannel input, int window) {
+    super();
+    this.input = input;
+    this.window = window;
+    this.maxrecord = Math.min(MAX_RECORD_SIZE, window >>> 1);
+  }
+
   @Override
   public BundleMeta getMeta() {
     if(meta == null) {
@@ -115,44 +228,109 @@ public class BundleReader implements BundleStreamSource {
   void openBuffer() {
     if(buffer == null) {
       try {
-        buffer = input.map(MapMode.READ_ONLY, 0, input.size());
+        size = input.size();
       }
       catch(IOException e) {
         throw new AbortException("Cannot map input bundle.", e);
       }
+      map(0, 0);
     }
   }
 
+  /**
+   * Map a window of the input file.
+   *
+   * @param pos File position
+   * @param minsize Minimum window size
+   */
+  void map(long pos, long minsize) {
+    final long len = Math.min(Math.max(window, minsize), size - pos);
+    if(len > Integer.MAX_VALUE) {
+      throw new AbortException("Object too large to map: " + minsize);
+    }
+    try {
+      buffer = input.map(MapMode.READ_ONLY, pos, len);
+      offset = pos;
+    }
+    catch(IOException e) {
+      throw new AbortException("Cannot map input bundle.", e);
+    }
+  }
+
+  /**
+   * Ensure the current window contains at least the given number of bytes.
+   *
+   * @param bytes Number of bytes required
+   */
+  void ensure(int bytes) {
+    if(buffer.remaining() < bytes) {
+      remap(offset + buffer.position(), bytes);
+    }
+  }
+
+  /**
+   * Move the window to the given position.
+   *
+   * @param pos File position
+   * @param minsize Minimum size required
+   */
+  void remap(long pos, long minsize) {
+    if(input == null || pos + minsize > size) {
+      throw new AbortException("Unexpected end of bundle file at position " + pos + ".");
+    }
+    map(pos, minsize);
+  }
+
   /**
    * Read the metadata.
    */
   void readMeta() {
+    ensure(8);
     final int check = buffer.getInt();
-    if(check != MAGIC) {
+    if(check != MAGIC && check != BundleWriter.MAGIC_BLOCKS) {
       throw new AbortException("File does not start with expected magic.");
     }
+    if(check == BundleWriter.MAGIC_BLOCKS) {
+      ensure(16);
+      blocks = true;
+      columns = (buffer.getInt() & BundleWriter.FLAG_COLUMNS) != 0;
+      numrows = buffer.getLong();
+    }
+    readColumns();
+  }
+
+  /**
+   * Read the column types, and their encodings in the block format.
+   */
+  void readColumns() {
+    ensure(4);
     final int nummeta = buffer.getInt();
     assert (nummeta > 0) : "Empty bundle?";
     meta = new BundleMeta(nummeta);
     sers = new ByteBufferSerializer<?>[nummeta];
+    packed = new NumberVector.Factory<?>[nummeta];
+    dims = new int[nummeta];
     data = new Object[nummeta];
+    hasids = false;
     for(int i = 0; i < nummeta; i++) {
-      try {
-        @SuppressWarnings("unchecked")
-        SimpleTypeInformation<? extends Object> type = (SimpleTypeInformation<? extends Object>) TypeInformationSerializer.STATIC.fromByteBuffer(buffer);
-        sers[i] = type.getSerializer();
-        if(i == 0 && DBID.class.isAssignableFrom(type.getRestrictionClass())) {
-          hasids = true;
-        }
-        else {
-          meta.add(type);
-        }
+      @SuppressWarnings("unchecked")
+      SimpleTypeInformation<? extends Object> type = (SimpleTypeInformation<? extends Object>) readSerialized(TypeInformationSerializer.STATIC);
+      sers[i] = type.getSerializer();
+      if(i == 0 && DBID.class.isAssignableFrom(type.getRestrictionClass())) {
+        hasids = true;
       }
-      catch(UnsupportedOperationException e) {
-        throw new AbortException("Deserialization failed: " + e.getMessage(), e);
+      else {
+        meta.add(type);
       }
-      catch(IOException e) {
-        throw new AbortException("IO error", e);
+    }
+    if(blocks) {
+      ensure(nummeta);
+      for(int i = 0; i < nummeta; i++) {
+        if(buffer.get() == BundleWriter.ENCODING_PACKED_DOUBLES) {
+          VectorFieldTypeInformation<?> type = (VectorFieldTypeInformation<?>) meta.get(hasids ? i - 1 : i);
+          packed[i] = (NumberVector.Factory<?>) type.getFactory();
+          dims[i] = type.getDimensionality();
+        }
       }
     }
   }
@@ -162,29 +340,145 @@ public class BundleReader implements BundleStreamSource {
    */
   void readObject() {
     for(int i = 0; i < sers.length; ++i) {
-      try {
-        data[i] = sers[i].fromByteBuffer(buffer);
-      }
-      catch(UnsupportedOperationException e) {
-        throw new AbortException("Deserialization failed.", e);
+      data[i] = packed[i] != null ? readPacked(packed[i], dims[i]) : readSerialized(sers[i]);
+    }
+  }
+
+  /**
+   * Read a single object using its serializer.
+   *
+   * @param ser Serializer
+   * @return Object
+   */
+  Object readSerialized(ByteBufferSerializer<?> ser) {
+    final long pos = offset + buffer.position();
+    // Make sure the window contains the entire object:
+    final int len = ser instanceof FixedSizeByteBufferSerializer ? ((FixedSizeByteBufferSerializer<?>) ser).getFixedByteSize() : maxrecord;
+    ensure((int) Math.min(len, size - pos));
+    try {
+      return ser.fromByteBuffer(buffer);
+    }
+    catch(BufferUnderflowException e) {
+      throw new AbortException("Object at position " + pos + " is truncated, or larger than the maximum record size of " + maxrecord + " bytes.", e);
+    }
+    catch(UnsupportedOperationException e) {
+      throw new AbortException("Deserialization failed: " + e.getMessage(), e);
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error", e);
+    }
+  }
+
+  /**
+   * Read a single vector stored as packed doubles.
+   *
+   * @param factory Vector factory
+   * @param dim Dimensionality
+   * @return Vector
+   */
+  Object readPacked(NumberVector.Factory<?> factory, int dim) {
+    ensure(dim << 3);
+    double[] v = new double[dim];
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    for(int d = 0; d < dim; d++) {
+      v[d] = buffer.getDouble();
+    }
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    return factory.newNumberVector(v);
+  }
+
+  /**
+   * Read a block of the column layout.
+   *
+   * @param rows Number of rows in the block
+   */
+  void readColumnBlock(int rows) {
+    if(blockdata == null) {
+      blockdata = new Object[sers.length][];
+    }
+    for(int i = 0; i < sers.length; i++) {
+      Object[] col = blockdata[i] = (blockdata[i] != null && blockdata[i].length >= rows) ? blockdata[i] : new Object[rows];
+      if(packed[i] != null && (long) rows * dims[i] < Integer.MAX_VALUE) {
+        readPackedColumn(col, packed[i], rows, dims[i]);
+        continue;
       }
-      catch(IOException e) {
-        throw new AbortException("IO error", e);
+      for(int j = 0; j < rows; j++) {
+        col[j] = packed[i] != null ? readPacked(packed[i], dims[i]) : readSerialized(sers[i]);
       }
     }
   }
 
+  /**
+   * Read a column of packed vectors into a single array, with bulk copies from
+   * the mapped buffer. Factories that support views on a shared array (such as
+   * the one of {@link elki.data.PackedDoubleVector}) then do not copy the data
+   * again.
+   *
+   * @param col Output column
+   * @param factory Vector factory
+   * @param rows Number of rows
+   * @param dim Dimensionality
+   */
+  void readPackedColumn(Object[] col, NumberVector.Factory<?> factory, int rows, int dim) {
+    final double[] block = new double[rows * dim];
+    for(int pos = 0; pos < block.length;) {
+      ensure(8);
+      final int n = Math.min(block.length - pos, buffer.remaining() >>> 3);
+      buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(block, pos, n);
+      buffer.order(ByteOrder.BIG_ENDIAN).position(buffer.position() + (n << 3));
+      pos += n;
+    }
+    for(int j = 0, off = 0; j < rows; j++, off += dim) {
+      col[j] = factory.newNumberVector(block, off, dim);
+    }
+  }
+
   @Override
   public Event nextEvent() {
     // Send initial meta
     if(meta == null) {
       return Event.META_CHANGED;
     }
-    if(buffer != null && buffer.remaining() == 0) {
-      buffer = null;
+    if(buffer == null) {
       return Event.END_OF_STREAM;
     }
-    readObject();
+    if(!blocks) {
+      if(buffer.remaining() == 0 && offset + buffer.position() >= size) {
+        buffer = null;
+        return Event.END_OF_STREAM;
+      }
+      readObject();
+      return Event.NEXT_OBJECT;
+    }
+    if(blockremaining == 0) {
+      if(rowsread >= numrows) {
+        buffer = null;
+        blockdata = null;
+        return Event.END_OF_STREAM;
+      }
+      ensure(4);
+      final int rows = buffer.getInt();
+      if(rows == BundleWriter.BLOCK_META) {
+        readColumns();
+        blockdata = null;
+        return Event.META_CHANGED;
+      }
+      blockrows = blockremaining = rows;
+      if(columns) {
+        readColumnBlock(blockremaining);
+      }
+    }
+    if(columns) {
+      final int pos = blockrows - blockremaining;
+      for(int i = 0; i < data.length; i++) {
+        data[i] = blockdata[i][pos];
+      }
+    }
+    else {
+      readObject();
+    }
+    --blockremaining;
+    ++rowsread;
     return Event.NEXT_OBJECT;
   }
 
@@ -22,10 +22,17 @@ package elki.datasource.bundle;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 
+import elki.data.NumberVector;
+import elki.data.SparseNumberVector;
 import elki.data.type.SimpleTypeInformation;
 import elki.data.type.TypeInformationSerializer;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.ArrayModifiableDBIDs;
 import elki.database.ids.DBID;
 import elki.database.ids.DBIDFactory;
 import elki.database.ids.DBIDUtil;
@@ -36,8 +43,19 @@ import elki.utilities.io.ByteBufferSerializer;
 
 /**
  * Write an object bundle stream to a file channel.
- * 
- * Bundle streams that add new columns are not supported.
+ * <p>
+ * Besides the original format, which is a header followed by the serialized
+ * rows, a block format can be written using {@link BlockWriter}: the header
+ * additionally contains the number of rows, which is updated after every
+ * block, such that data can be appended in batches without holding the whole
+ * bundle in memory. Blocks can be stored by row or by column; in the column
+ * layout, dense vector fields of fixed dimensionality are stored as packed
+ * little-endian doubles that can be read in bulk.
+ * <p>
+ * Bundle streams that change their meta data after the first object (e.g.,
+ * when a parser encounters labels or a different dimensionality) are only
+ * supported by the block format, which then stores the new meta data before
+ * the following blocks.
  * 
  * @author Erich Schubert
  * @since 0.5.5
@@ -61,6 +79,36 @@ public class BundleWriter {
    */
   public static final int MAGIC = 0xa8123b12;
 
+  /**
+   * Magic number of the block format.
+   */
+  public static final int MAGIC_BLOCKS = 0xa8123b13;
+
+  /**
+   * Flag for the column layout of the block format.
+   */
+  public static final int FLAG_COLUMNS = 1;
+
+  /**
+   * Column encoding: using the type serializer.
+   */
+  public static final byte ENCODING_SERIALIZER = 0;
+
+  /**
+   * Column encoding: packed little-endian doubles.
+   */
+  public static final byte ENCODING_PACKED_DOUBLES = 1;
+
+  /**
+   * Row count of a block that contains new meta data instead of rows.
+   */
+  public static final int BLOCK_META = -1;
+
+  /**
+   * Default number of rows per block.
+   */
+  public static final int DEFAULT_BLOCKSIZE = 1 << 14;
+
   /**
    * Write a bundle stream to a file output channel.
    * 
@@ -116,6 +164,80 @@ public class BundleWriter {
     }
   }
 
+  /**
+   * Write a bundle stream to a file in the block format.
+   * <p>
+   * At most one block of rows is held in memory at a time. When the meta data
+   * of the stream changes, the pending rows are written as a shorter block,
+   * followed by the new meta data.
+   *
+   * @param source Data source
+   * @param output Output channel
+   * @param columns Use the column layout
+   * @param blocksize Number of rows per block
+   * @throws IOException on IO errors
+   */
+  public void writeBundleStream(BundleStreamSource source, FileChannel output, boolean columns, int blocksize) throws IOException {
+    BlockWriter writer = null;
+    MultipleObjectsBundle block = null;
+    ArrayModifiableDBIDs ids = null;
+    DBIDVar var = DBIDUtil.newVar();
+    loop: while(true) {
+      BundleStreamSource.Event ev = source.nextEvent();
+      switch(ev){
+      case NEXT_OBJECT:
+        if(writer == null) {
+          writer = new BlockWriter(output, source.getMeta(), source.hasDBIDs(), columns);
+        }
+        if(block == null) {
+          block = new MultipleObjectsBundle();
+          for(SimpleTypeInformation<?> type : source.getMeta()) {
+            block.appendColumn(type, new ArrayList<>(blocksize));
+          }
+          if(source.hasDBIDs()) {
+            block.setDBIDs(ids = DBIDUtil.newArray(blocksize));
+          }
+        }
+        if(ids != null) {
+          if(!source.assignDBID(var)) {
+            throw new AbortException("An object did not have an DBID assigned.");
+          }
+          ids.add(var);
+        }
+        Object[] row = new Object[block.metaLength()];
+        for(int i = 0; i < row.length; i++) {
+          row[i] = source.data(i);
+        }
+        block.appendSimple(row);
+        if(block.dataLength() >= blocksize) {
+          writer.writeBlock(block);
+          block = null;
+        }
+        break; // switch
+      case META_CHANGED:
+        if(writer != null) {
+          if(block != null) {
+            writer.writeBlock(block);
+            block = null;
+          }
+          writer.writeMeta(source.getMeta(), source.hasDBIDs());
+        }
+        break; // switch
+      case END_OF_STREAM:
+        break loop;
+      default:
+        LOG.warning("Unknown bundle stream event. API inconsistent? " + ev);
+        break; // switch
+      }
+    }
+    if(writer == null) {
+      writer = new BlockWriter(output, source.getMeta(), source.hasDBIDs(), columns);
+    }
+    if(block != null) {
+      writer.writeBlock(block);
+    }
+  }
+
   /**
    * Flush the current write buffer to disk.
    * 
@@ -191,4 +313,280 @@ public class BundleWriter {
     flushBuffer(buffer, output);
     return serializers;
   }
+
+  /**
+   * Test whether a column can be stored as packed doubles.
+   *
+   * @param type Column type
+   * @return {@code true} for dense number vector fields of fixed
+   *         dimensionality.
+   */
+  protected static boolean canPack(SimpleTypeInformation<?> type) {
+    if(!(type instanceof VectorFieldTypeInformation)) {
+      return false;
+    }
+    final Class<?> cls = type.getRestrictionClass();
+    if(!NumberVector.class.isAssignableFrom(cls) || SparseNumberVector.class.isAssignableFrom(cls)) {
+      return false;
+    }
+    final VectorFieldTypeInformation<?> vtype = (VectorFieldTypeInformation<?>) type;
+    return vtype.mindim() == vtype.maxdim() && vtype.getFactory() instanceof NumberVector.Factory;
+  }
+
+  /**
+   * Incremental writer for the block format.
+   * <p>
+   * The header is written on construction, and the row count in the header is
+   * updated after each block. The meta data can be changed between blocks
+   * using {@link #writeMeta}. The channel is not closed by this writer.
+   *
+   * @author Erich Schubert
+   */
+  public static class BlockWriter {
+    /**
+     * Output channel.
+     */
+    private FileChannel output;
+
+    /**
+     * Position of the row count in the file.
+     */
+    private long countpos;
+
+    /**
+     * Write buffer.
+     */
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER);
+
+    /**
+     * Serializers, with the DBID serializer (or {@code null}) at index 0.
+     */
+    private ByteBufferSerializer<?>[] serializers;
+
+    /**
+     * Dimensionality of columns stored packed, -1 otherwise.
+     */
+    private int[] packed;
+
+    /**
+     * Use the column layout.
+     */
+    private boolean columns;
+
+    /**
+     * Whether the rows have DBIDs.
+     */
+    private boolean hasids;
+
+    /**
+     * Number of rows written.
+     */
+    private long numrows = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param output Output channel, positioned where the bundle should start
+     * @param meta Bundle meta
+     * @param hasids Whether the rows have DBIDs
+     * @param columns Use the column layout
+     * @throws IOException on IO errors
+     */
+    public BlockWriter(FileChannel output, BundleMeta meta, boolean hasids, boolean columns) throws IOException {
+      this.output = output;
+      this.columns = columns;
+      this.hasids = hasids;
+      buffer.putInt(MAGIC_BLOCKS);
+      buffer.putInt(columns ? FLAG_COLUMNS : 0);
+      countpos = output.position() + buffer.position();
+      buffer.putLong(0L);
+      writeColumns(meta);
+    }
+
+    /**
+     * Change the meta data for the following blocks. Columns may be added or
+     * changed, but the presence of DBIDs cannot change.
+     *
+     * @param meta New bundle meta
+     * @param hasids Whether the rows have DBIDs
+     * @throws IOException on IO errors
+     */
+    public void writeMeta(BundleMeta meta, boolean hasids) throws IOException {
+      if(hasids != this.hasids) {
+        throw new AbortException("DBIDs cannot be added or removed after the first block.");
+      }
+      ensureBuffer(4);
+      buffer.putInt(BLOCK_META);
+      writeColumns(meta);
+    }
+
+    /**
+     * Write the column types and encodings, and flush the buffer.
+     *
+     * @param meta Bundle meta
+     * @throws IOException on IO errors
+     */
+    private void writeColumns(BundleMeta meta) throws IOException {
+      final int nummeta = meta.size();
+      serializers = new ByteBufferSerializer<?>[1 + nummeta];
+      packed = new int[1 + nummeta];
+      packed[0] = -1;
+      ensureBuffer(4);
+      buffer.putInt(hasids ? 1 + nummeta : nummeta);
+      if(hasids) {
+        ByteBufferSerializer<DBID> ser = DBIDFactory.FACTORY.getDBIDSerializer();
+        SimpleTypeInformation<DBID> type = new SimpleTypeInformation<>(DBID.class, ser);
+        ensureBuffer(TypeInformationSerializer.STATIC.getByteSize(type));
+        TypeInformationSerializer.STATIC.toByteBuffer(buffer, type);
+        serializers[0] = ser;
+      }
+      for(int i = 0; i < nummeta; i++) {
+        SimpleTypeInformation<?> type = meta.get(i);
+        ByteBufferSerializer<?> ser = type.getSerializer();
+        if(ser == null) {
+          throw new AbortException("Cannot serialize - no serializer found for type: " + type.toString());
+        }
+        ensureBuffer(TypeInformationSerializer.STATIC.getByteSize(type));
+        TypeInformationSerializer.STATIC.toByteBuffer(buffer, type);
+        serializers[i + 1] = ser;
+        packed[i + 1] = columns && canPack(type) ? ((VectorFieldTypeInformation<?>) type).getDimensionality() : -1;
+      }
+      ensureBuffer(1 + nummeta);
+      if(hasids) {
+        buffer.put(ENCODING_SERIALIZER);
+      }
+      for(int i = 1; i < packed.length; i++) {
+        buffer.put(packed[i] >= 0 ? ENCODING_PACKED_DOUBLES : ENCODING_SERIALIZER);
+      }
+      flush();
+    }
+
+    /**
+     * Append a block of rows, and update the row count in the header.
+     *
+     * @param block Block of rows, with the same meta as the bundle
+     * @throws IOException on IO errors
+     */
+    public void writeBlock(ObjectBundle block) throws IOException {
+      final int rows = block.dataLength();
+      if(rows == 0) {
+        return;
+      }
+      if(block.metaLength() != serializers.length - 1) {
+        throw new AbortException("Block does not match the bundle meta data.");
+      }
+      ensureBuffer(4);
+      buffer.putInt(rows);
+      DBIDVar var = serializers[0] != null ? DBIDUtil.newVar() : null;
+      if(columns) {
+        for(int i = 0; i < serializers.length; i++) {
+          for(int r = 0; r < rows; r++) {
+            writeValue(block, var, r, i);
+          }
+        }
+      }
+      else {
+        for(int r = 0; r < rows; r++) {
+          for(int i = 0; i < serializers.length; i++) {
+            writeValue(block, var, r, i);
+          }
+        }
+      }
+      flush();
+      numrows += rows;
+      ByteBuffer count = ByteBuffer.allocate(8).putLong(0, numrows);
+      for(long pos = countpos; count.hasRemaining();) {
+        pos += output.write(count, pos);
+      }
+    }
+
+    /**
+     * Write a single value.
+     *
+     * @param block Data block
+     * @param var Variable for DBIDs
+     * @param r Row
+     * @param i Column, 0 for DBIDs
+     * @throws IOException on IO errors
+     */
+    private void writeValue(ObjectBundle block, DBIDVar var, int r, int i) throws IOException {
+      if(i == 0) {
+        if(var == null) {
+          return;
+        }
+        if(!block.assignDBID(r, var)) {
+          throw new AbortException("An object did not have an DBID assigned.");
+        }
+        writeObject(serializers[0], DBIDUtil.deref(var));
+        return;
+      }
+      final Object obj = block.data(r, i - 1);
+      final int dim = packed[i];
+      if(dim < 0) {
+        writeObject(serializers[i], obj);
+        return;
+      }
+      NumberVector vec = (NumberVector) obj;
+      if(vec.getDimensionality() != dim) {
+        throw new AbortException("Vector dimensionality does not match the column type: " + vec.getDimensionality() + " != " + dim);
+      }
+      ensureBuffer(dim << 3);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      for(int d = 0; d < dim; d++) {
+        buffer.putDouble(vec.doubleValue(d));
+      }
+      buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Write a single object using its serializer.
+     *
+     * @param ser Serializer
+     * @param obj Object
+     * @throws IOException on IO errors
+     */
+    @SuppressWarnings("unchecked")
+    private void writeObject(ByteBufferSerializer<?> ser, Object obj) throws IOException {
+      ensureBuffer(((ByteBufferSerializer<Object>) ser).getByteSize(obj));
+      ((ByteBufferSerializer<Object>) ser).toByteBuffer(buffer, obj);
+    }
+
+    /**
+     * Get the number of rows written.
+     *
+     * @return Number of rows
+     */
+    public long size() {
+      return numrows;
+    }
+
+    /**
+     * Ensure the buffer has enough space, flushing or resizing as needed.
+     *
+     * @param size Required size
+     * @throws IOException on IO errors
+     */
+    private void ensureBuffer(int size) throws IOException {
+      if(buffer.remaining() >= size) {
+        return;
+      }
+      flush();
+      if(buffer.remaining() < size) {
+        buffer = ByteBuffer.allocateDirect(Math.max(buffer.capacity() << 1, size));
+      }
+    }
+
+    /**
+     * Flush the buffer to the output channel.
+     *
+     * @throws IOException on IO errors
+     */
+    private void flush() throws IOException {
+      buffer.flip();
+      while(buffer.hasRemaining()) {
+        output.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
 }
@@ -49,13 +49,12 @@ import elki.utilities.datastructures.iterator.It;
  * Be careful to not overuse this: as this class needs synchronization, there is
  * cost associated with retrieving the metadata of an object.
  * <p>
- * We also chose to not synchronize all operations; so concurrent changes to the
- * result hierarchy while traversing it may cause confusion.
+ * Changes to the result hierarchy are synchronized. The iterators over parents
+ * and children work on a copy taken when they are created, so concurrent
+ * changes are not visible to an ongoing traversal, but do not break it either.
  * <p>
  * If you store a WeakReference in the hierarchy, the iterators will
- * automatically call <code>get()</code>.
- * <p>
- * TODO: add a modCounter, and fail if concurrent modifications happen?
+ * automatically call <code>get()</code>, and remove expired references.
  *
  * @author Erich Schubert
  */
@@ -470,6 +469,44 @@ public class Metadata extends WeakReference<Object> {
       return false;
     }
 
+    /**
+     * Remove an expired weak reference to a child.
+     *
+     * @param ref Expired reference
+     */
+    private synchronized void removeExpiredInt(Object ref) {
+      for(int i = 0; i < numc; i++) {
+        if(children[i] == ref) {
+          if(--numc == 0) {
+            children = EMPTY_CHILDREN;
+          }
+          else {
+            System.arraycopy(children, i + 1, children, i, numc - i);
+            children[numc] = null;
+          }
+          return;
+        }
+      }
+    }
+
+    /**
+     * Copy of the current parents, for iteration.
+     *
+     * @return Parents
+     */
+    private synchronized Metadata[] parentsSnapshot() {
+      return Arrays.copyOf(parents, nump);
+    }
+
+    /**
+     * Copy of the current children, for iteration.
+     *
+     * @return Children
+     */
+    private synchronized Object[] childrenSnapshot() {
+      return Arrays.copyOf(children, numc);
+    }
+
     /**
      * Get the number of children.
      *
@@ -557,6 +594,11 @@ public class Metadata extends WeakReference<Object> {
      * @author Erich Schubert
      */
     private class ItrParents extends EagerIt<Object> {
+      /**
+       * Parents, when the iterator was created.
+       */
+      private final Metadata[] parents = parentsSnapshot();
+
       /**
        * Next position.
        */
@@ -572,7 +614,7 @@ public class Metadata extends WeakReference<Object> {
       @Override
       public It<Object> advance() {
         current = null;
-        if(pos < nump) {
+        if(pos < parents.length) {
           current = deref(parents[pos++]);
           assert (current != null); // Only children may be weak
         }
@@ -586,10 +628,15 @@ public class Metadata extends WeakReference<Object> {
      * @author Erich Schubert
      */
     private class ItrParentsReverse extends EagerIt<Object> {
+      /**
+       * Parents, when the iterator was created.
+       */
+      private final Metadata[] parents = parentsSnapshot();
+
       /**
        * Current position.
        */
-      private int pos = nump;
+      private int pos = parents.length;
 
       /**
        * Constructor.
@@ -615,6 +662,11 @@ public class Metadata extends WeakReference<Object> {
      * @author Erich Schubert
      */
     private class ItrChildren extends EagerIt<Object> {
+      /**
+       * Children, when the iterator was created.
+       */
+      private final Object[] children = childrenSnapshot();
+
       /**
        * Next position.
        */
@@ -630,15 +682,14 @@ public class Metadata extends WeakReference<Object> {
       @Override
       public It<Object> advance() {
         current = null;
-        while(pos < numc) {
-          current = deref(children[pos++]);
+        while(pos < children.length) {
+          final Object c = children[pos++];
+          current = deref(c);
           if(current != null) {
             return this;
           }
           // Expired weak reference detected.
-          System.arraycopy(children, pos, children, pos - 1, numc - pos);
-          children[--numc] = null;
-          --pos;
+          removeExpiredInt(c);
         }
         return this;
       }
@@ -650,10 +701,15 @@ public class Metadata extends WeakReference<Object> {
      * @author Erich Schubert
      */
     private class ItrChildrenReverse extends EagerIt<Object> {
+      /**
+       * Children, when the iterator was created.
+       */
+      private final Object[] children = childrenSnapshot();
+
       /**
        * Current position.
        */
-      private int pos = numc;
+      private int pos = children.length;
 
       /**
        * Constructor.
@@ -666,13 +722,13 @@ public class Metadata extends WeakReference<Object> {
       public It<Object> advance() {
         current = null;
         while(pos > 0) {
-          current = deref(children[--pos]);
+          final Object c = children[--pos];
+          current = deref(c);
           if(current != null) {
             return this;
           }
           // Expired weak reference detected.
-          System.arraycopy(children, pos + 1, children, pos, numc - pos - 1);
-          children[--numc] = null;
+          removeExpiredInt(c);
         }
         return this;
       }
@@ -103,6 +103,32 @@ public class MetadataTest {
     assertFalse(it.advance().valid());
   }
 
+  /**
+   * Removing children while iterating must neither skip nor repeat others.
+   */
+  @Test
+  public void removeWhileIteratingTest() {
+    Object a = new byte[] { 5 }, b = new byte[] { 6 }, c = new byte[] { 7 }, d = new byte[] { 8 };
+    Metadata.hierarchyOf(a).addChild(b);
+    Metadata.hierarchyOf(a).addChild(c);
+    Metadata.hierarchyOf(a).addChild(d);
+    It<Object> it = Metadata.hierarchyOf(a).iterChildren();
+    assertEquals(b, it.get());
+    Metadata.hierarchyOf(a).removeChild(b);
+    assertEquals(c, it.advance().get());
+    assertEquals(d, it.advance().get());
+    assertFalse(it.advance().valid());
+
+    Metadata.hierarchyOf(a).addChild(b);
+    it = Metadata.hierarchyOf(a).iterChildrenReverse();
+    assertEquals(b, it.get());
+    Metadata.hierarchyOf(a).removeChild(c);
+    assertEquals(d, it.advance().get());
+    assertEquals(c, it.advance().get());
+    assertFalse(it.advance().valid());
+    assertEquals("Expected 2 children.", 2, Metadata.hierarchyOf(a).numc);
+  }
+
   /**
    * O
    * Test soft reference handling. This may be fragile on some JVMs.
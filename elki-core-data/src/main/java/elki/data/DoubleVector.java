@@ -22,6 +22,7 @@ package elki.data;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import elki.utilities.datastructures.arraylike.ArrayAdapter;
 import elki.utilities.datastructures.arraylike.DoubleArray;
@@ -151,6 +152,11 @@ public class DoubleVector implements NumberVector {
       return new DoubleVector(values);
     }
 
+    @Override
+    public DoubleVector newNumberVector(double[] values, int start, int dim) {
+      return new DoubleVector(Arrays.copyOfRange(values, start, start + dim), true);
+    }
+
     @Override
     public <A> DoubleVector newFeatureVector(A array, ArrayAdapter<? extends Number, A> adapter) {
       int dim = adapter.size(array);
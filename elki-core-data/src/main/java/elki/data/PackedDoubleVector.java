@@ -0,0 +1,239 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import elki.utilities.datastructures.arraylike.ArrayAdapter;
+import elki.utilities.datastructures.arraylike.NumberArrayAdapter;
+import elki.utilities.io.ByteArrayUtil;
+import elki.utilities.io.ByteBufferSerializer;
+import elki.utilities.optionhandling.Parameterizer;
+
+/**
+ * Light-weight view of a vector stored in a larger {@code double[]} block,
+ * shared with other vectors. This avoids the per-object overhead of storing
+ * every vector in its own array, and allows tight loops over the underlying
+ * block via {@link #getData()} and {@link #getStart()}.
+ * <p>
+ * This is not a {@link DoubleVector}, as code of that class reads its own array
+ * directly; relations of packed vectors hence satisfy requests for
+ * {@link elki.data.type.TypeUtil#NUMBER_VECTOR_FIELD}, but not for
+ * {@link elki.data.type.TypeUtil#DOUBLE_VECTOR_FIELD}.
+ * <p>
+ * See {@link PackedFloatVector} for single precision.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public final class PackedDoubleVector implements NumberVector {
+  /**
+   * Static factory instance.
+   */
+  public static final PackedDoubleVector.Factory FACTORY = new PackedDoubleVector.Factory();
+
+  /**
+   * Serializer using varint encoding.
+   */
+  public static final ByteBufferSerializer<PackedDoubleVector> VARIABLE_SERIALIZER = new VariableSerializer();
+
+  /**
+   * Shared data block.
+   */
+  private final double[] data;
+
+  /**
+   * Offset of the first value in the data block.
+   */
+  private final int start;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Constructor.
+   *
+   * @param data Data block, <em>not copied</em>
+   * @param start Offset of the first value
+   * @param dim Dimensionality
+   */
+  public PackedDoubleVector(double[] data, int start, int dim) {
+    this.data = data;
+    this.start = start;
+    this.dim = dim;
+  }
+
+  /**
+   * Get the shared data block. Do not modify!
+   *
+   * @return Data block
+   */
+  public double[] getData() {
+    return data;
+  }
+
+  /**
+   * Get the offset of the first value in the data block.
+   *
+   * @return Offset
+   */
+  public int getStart() {
+    return start;
+  }
+
+  @Override
+  public int getDimensionality() {
+    return dim;
+  }
+
+  @Deprecated
+  @Override
+  public Double getValue(int dimension) {
+    return data[start + dimension];
+  }
+
+  @Override
+  public double doubleValue(int dimension) {
+    return data[start + dimension];
+  }
+
+  @Override
+  public float floatValue(int dimension) {
+    return (float) data[start + dimension];
+  }
+
+  @Override
+  public long longValue(int dimension) {
+    return (long) data[start + dimension];
+  }
+
+  @Override
+  public double[] toArray() {
+    return Arrays.copyOfRange(data, start, start + dim);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder featureLine = new StringBuilder(dim * 10);
+    for(int i = 0; i < dim; i++) {
+      if(i > 0) {
+        featureLine.append(ATTRIBUTE_SEPARATOR);
+      }
+      featureLine.append(data[start + i]);
+    }
+    return featureLine.toString();
+  }
+
+  /**
+   * Factory for packed vectors; each new vector uses its own block, unless
+   * created from a range of a shared array.
+   *
+   * @author Erich Schubert
+   *
+   * @has - - - PackedDoubleVector
+   */
+  public static class Factory implements NumberVector.Factory<PackedDoubleVector> {
+    @Override
+    public PackedDoubleVector newNumberVector(double[] values, int start, int dim) {
+      return new PackedDoubleVector(values, start, dim);
+    }
+
+    @Override
+    public <A> PackedDoubleVector newFeatureVector(A array, ArrayAdapter<? extends Number, A> adapter) {
+      int dim = adapter.size(array);
+      double[] values = new double[dim];
+      for(int i = 0; i < dim; i++) {
+        values[i] = adapter.get(array, i).doubleValue();
+      }
+      return new PackedDoubleVector(values, 0, dim);
+    }
+
+    @Override
+    public <A> PackedDoubleVector newNumberVector(A array, NumberArrayAdapter<?, ? super A> adapter) {
+      int dim = adapter.size(array);
+      double[] values = new double[dim];
+      for(int i = 0; i < dim; i++) {
+        values[i] = adapter.getDouble(array, i);
+      }
+      return new PackedDoubleVector(values, 0, dim);
+    }
+
+    @Override
+    public ByteBufferSerializer<PackedDoubleVector> getDefaultSerializer() {
+      return VARIABLE_SERIALIZER;
+    }
+
+    @Override
+    public Class<? super PackedDoubleVector> getRestrictionClass() {
+      return PackedDoubleVector.class;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Par implements Parameterizer {
+      @Override
+      public PackedDoubleVector.Factory make() {
+        return FACTORY;
+      }
+    }
+  }
+
+  /**
+   * Serialization class for variable dimensionality by using VarInt encoding.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - serializes - PackedDoubleVector
+   */
+  public static class VariableSerializer implements ByteBufferSerializer<PackedDoubleVector> {
+    @Override
+    public PackedDoubleVector fromByteBuffer(ByteBuffer buffer) throws IOException {
+      final int dimensionality = ByteArrayUtil.readUnsignedVarint(buffer);
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_DOUBLE * dimensionality);
+      final double[] values = new double[dimensionality];
+      for(int i = 0; i < dimensionality; i++) {
+        values[i] = buffer.getDouble();
+      }
+      return new PackedDoubleVector(values, 0, dimensionality);
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, PackedDoubleVector vec) throws IOException {
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_DOUBLE * vec.dim);
+      ByteArrayUtil.writeUnsignedVarint(buffer, vec.dim);
+      for(int i = 0; i < vec.dim; i++) {
+        buffer.putDouble(vec.data[vec.start + i]);
+      }
+    }
+
+    @Override
+    public int getByteSize(PackedDoubleVector vec) {
+      return ByteArrayUtil.getUnsignedVarintSize(vec.dim) + ByteArrayUtil.SIZE_DOUBLE * vec.dim;
+    }
+  }
+}
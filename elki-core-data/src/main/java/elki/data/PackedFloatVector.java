@@ -0,0 +1,236 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import elki.utilities.datastructures.arraylike.ArrayAdapter;
+import elki.utilities.datastructures.arraylike.NumberArrayAdapter;
+import elki.utilities.io.ByteArrayUtil;
+import elki.utilities.io.ByteBufferSerializer;
+import elki.utilities.optionhandling.Parameterizer;
+
+/**
+ * Light-weight view of a vector stored in a larger {@code float[]} block,
+ * shared with other vectors. This avoids the per-object overhead of storing
+ * every vector in its own array, and allows tight loops over the underlying
+ * block via {@link #getData()} and {@link #getStart()}.
+ * <p>
+ * This is not a {@link FloatVector}, as code of that class reads its own array
+ * directly; relations of packed vectors hence satisfy requests for
+ * {@link elki.data.type.TypeUtil#NUMBER_VECTOR_FIELD}, but not for
+ * {@link elki.data.type.TypeUtil#FLOAT_VECTOR_FIELD}.
+ * <p>
+ * See {@link PackedDoubleVector} for double precision.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public final class PackedFloatVector implements NumberVector {
+  /**
+   * Static factory instance.
+   */
+  public static final PackedFloatVector.Factory FACTORY = new PackedFloatVector.Factory();
+
+  /**
+   * Serializer using varint encoding.
+   */
+  public static final ByteBufferSerializer<PackedFloatVector> VARIABLE_SERIALIZER = new VariableSerializer();
+
+  /**
+   * Shared data block.
+   */
+  private final float[] data;
+
+  /**
+   * Offset of the first value in the data block.
+   */
+  private final int start;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Constructor.
+   *
+   * @param data Data block, <em>not copied</em>
+   * @param start Offset of the first value
+   * @param dim Dimensionality
+   */
+  public PackedFloatVector(float[] data, int start, int dim) {
+    this.data = data;
+    this.start = start;
+    this.dim = dim;
+  }
+
+  /**
+   * Get the shared data block. Do not modify!
+   *
+   * @return Data block
+   */
+  public float[] getData() {
+    return data;
+  }
+
+  /**
+   * Get the offset of the first value in the data block.
+   *
+   * @return Offset
+   */
+  public int getStart() {
+    return start;
+  }
+
+  @Override
+  public int getDimensionality() {
+    return dim;
+  }
+
+  @Deprecated
+  @Override
+  public Float getValue(int dimension) {
+    return data[start + dimension];
+  }
+
+  @Override
+  public double doubleValue(int dimension) {
+    return data[start + dimension];
+  }
+
+  @Override
+  public float floatValue(int dimension) {
+    return data[start + dimension];
+  }
+
+  @Override
+  public long longValue(int dimension) {
+    return (long) data[start + dimension];
+  }
+
+  @Override
+  public double[] toArray() {
+    double[] values = new double[dim];
+    for(int i = 0; i < dim; i++) {
+      values[i] = data[start + i];
+    }
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder featureLine = new StringBuilder(dim * 10);
+    for(int i = 0; i < dim; i++) {
+      if(i > 0) {
+        featureLine.append(ATTRIBUTE_SEPARATOR);
+      }
+      featureLine.append(data[start + i]);
+    }
+    return featureLine.toString();
+  }
+
+  /**
+   * Factory for packed vectors; each new vector uses its own block.
+   *
+   * @author Erich Schubert
+   *
+   * @has - - - PackedFloatVector
+   */
+  public static class Factory implements NumberVector.Factory<PackedFloatVector> {
+    @Override
+    public <A> PackedFloatVector newFeatureVector(A array, ArrayAdapter<? extends Number, A> adapter) {
+      int dim = adapter.size(array);
+      float[] values = new float[dim];
+      for(int i = 0; i < dim; i++) {
+        values[i] = adapter.get(array, i).floatValue();
+      }
+      return new PackedFloatVector(values, 0, dim);
+    }
+
+    @Override
+    public <A> PackedFloatVector newNumberVector(A array, NumberArrayAdapter<?, ? super A> adapter) {
+      int dim = adapter.size(array);
+      float[] values = new float[dim];
+      for(int i = 0; i < dim; i++) {
+        values[i] = adapter.getFloat(array, i);
+      }
+      return new PackedFloatVector(values, 0, dim);
+    }
+
+    @Override
+    public ByteBufferSerializer<PackedFloatVector> getDefaultSerializer() {
+      return VARIABLE_SERIALIZER;
+    }
+
+    @Override
+    public Class<? super PackedFloatVector> getRestrictionClass() {
+      return PackedFloatVector.class;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author Erich Schubert
+     */
+    public static class Par implements Parameterizer {
+      @Override
+      public PackedFloatVector.Factory make() {
+        return FACTORY;
+      }
+    }
+  }
+
+  /**
+   * Serialization class for variable dimensionality by using VarInt encoding.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - serializes - PackedFloatVector
+   */
+  public static class VariableSerializer implements ByteBufferSerializer<PackedFloatVector> {
+    @Override
+    public PackedFloatVector fromByteBuffer(ByteBuffer buffer) throws IOException {
+      final int dimensionality = ByteArrayUtil.readUnsignedVarint(buffer);
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_FLOAT * dimensionality);
+      final float[] values = new float[dimensionality];
+      for(int i = 0; i < dimensionality; i++) {
+        values[i] = buffer.getFloat();
+      }
+      return new PackedFloatVector(values, 0, dimensionality);
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, PackedFloatVector vec) throws IOException {
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_FLOAT * vec.dim);
+      ByteArrayUtil.writeUnsignedVarint(buffer, vec.dim);
+      for(int i = 0; i < vec.dim; i++) {
+        buffer.putFloat(vec.data[vec.start + i]);
+      }
+    }
+
+    @Override
+    public int getByteSize(PackedFloatVector vec) {
+      return ByteArrayUtil.getUnsignedVarintSize(vec.dim) + ByteArrayUtil.SIZE_FLOAT * vec.dim;
+    }
+  }
+}
@@ -110,6 +110,10 @@ public class EuclideanDistance extends LPIntegerNormDistance {
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    final double packed = SquaredEuclideanDistance.prePackedDistance(v1, v2);
+    if(packed >= 0) {
+      return Math.sqrt(packed);
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
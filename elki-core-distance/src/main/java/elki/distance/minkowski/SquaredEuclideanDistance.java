@@ -21,6 +21,8 @@
 package elki.distance.minkowski;
 
 import elki.data.NumberVector;
+import elki.data.PackedDoubleVector;
+import elki.data.PackedFloatVector;
 import elki.data.SparseNumberVector;
 import elki.data.spatial.SpatialComparable;
 import elki.data.type.SimpleTypeInformation;
@@ -74,6 +76,53 @@ public class SquaredEuclideanDistance extends AbstractNumberVectorDistance imple
     return agg;
   }
 
+  private static double preDistance(double[] v1, int off1, double[] v2, int off2, int len) {
+    double agg = 0.;
+    for(int d = 0; d < len; d++) {
+      final double delta = v1[off1 + d] - v2[off2 + d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  private static double preDistance(float[] v1, int off1, float[] v2, int off2, int len) {
+    double agg = 0.;
+    for(int d = 0; d < len; d++) {
+      // Subtract in double precision, as the other distance loops do.
+      final double delta = (double) v1[off1 + d] - (double) v2[off2 + d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
+  /**
+   * Distance of two packed vectors of the same dimensionality, using tight
+   * loops on the underlying arrays; else -1.
+   * <p>
+   * Also used by {@link EuclideanDistance}.
+   *
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @return Squared distance, or -1
+   */
+  static double prePackedDistance(NumberVector v1, NumberVector v2) {
+    if(v1 instanceof PackedDoubleVector && v2 instanceof PackedDoubleVector) {
+      final PackedDoubleVector p1 = (PackedDoubleVector) v1, p2 = (PackedDoubleVector) v2;
+      final int dim = p1.getDimensionality();
+      if(dim == p2.getDimensionality()) {
+        return preDistance(p1.getData(), p1.getStart(), p2.getData(), p2.getStart(), dim);
+      }
+    }
+    else if(v1 instanceof PackedFloatVector && v2 instanceof PackedFloatVector) {
+      final PackedFloatVector p1 = (PackedFloatVector) v1, p2 = (PackedFloatVector) v2;
+      final int dim = p1.getDimensionality();
+      if(dim == p2.getDimensionality()) {
+        return preDistance(p1.getData(), p1.getStart(), p2.getData(), p2.getStart(), dim);
+      }
+    }
+    return -1;
+  }
+
   private double preDistanceVM(NumberVector v, SpatialComparable mbr, int start, int end) {
     double agg = 0.;
     for(int d = start; d < end; d++) {
@@ -131,6 +180,10 @@ public class SquaredEuclideanDistance extends AbstractNumberVectorDistance imple
 
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
+    final double packed = prePackedDistance(v1, v2);
+    if(packed >= 0) {
+      return packed;
+    }
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
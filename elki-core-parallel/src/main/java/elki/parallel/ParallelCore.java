@@ -23,7 +23,8 @@ package elki.parallel;
 import java.util.concurrent.*;
 
 /**
- * Core for parallel processing in ELKI, based on {@link ThreadPoolExecutor}.
+ * Core for parallel processing in ELKI, based on {@link ThreadPoolExecutor}
+ * for submitted tasks, and a {@link ForkJoinPool} for work-stealing execution.
  * <p>
  * TODO: make configurable how many threads are used.
  * 
@@ -46,6 +47,11 @@ public class ParallelCore {
    */
   private volatile ThreadPoolExecutor executor;
 
+  /**
+   * Work-stealing pool, lazily initialized.
+   */
+  private volatile ForkJoinPool forkjoin;
+
   /**
    * Number of connected submitters.
    */
@@ -93,6 +99,26 @@ public class ParallelCore {
     return executor.submit(task);
   }
 
+  /**
+   * Get the work-stealing pool, using the configured number of processors.
+   * <p>
+   * The threads of this pool are daemon threads, and will be retired
+   * automatically by the pool when not in use.
+   *
+   * @return Fork-join pool
+   */
+  public ForkJoinPool getForkJoinPool() {
+    ForkJoinPool pool = forkjoin;
+    if(pool == null) {
+      synchronized(this) {
+        if((pool = forkjoin) == null) {
+          forkjoin = pool = new ForkJoinPool(processors);
+        }
+      }
+    }
+    return pool;
+  }
+
   /**
    * Connect to the executor.
    */
@@ -22,31 +22,80 @@ package elki.parallel;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import elki.database.ids.ArrayDBIDs;
 import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.LongStatistic;
+import elki.logging.statistics.NanoDuration;
 import elki.parallel.processor.Processor;
 import elki.parallel.variables.SharedVariable;
 import elki.parallel.variables.SharedVariable.Instance;
+import elki.utilities.documentation.Reference;
 
 /**
  * Class to run processors in parallel, on all available cores.
- *
- * TODO: add progress
+ * <p>
+ * The objects are processed by a work-stealing {@link ForkJoinPool}, using
+ * lazy binary splitting: a worker only splits off half of its remaining range
+ * when no other work is queued, and otherwise processes a small chunk before
+ * checking again. Idle workers steal the split halves, so the chunk sizes
+ * adapt to skewed per-object cost (e.g., kNN queries in a tree index).
+ * <p>
+ * Each worker thread instantiates every processor once per run, and all
+ * instances are cleaned up after all objects have been processed. If a
+ * processor runs a nested parallel task, the waiting thread may execute
+ * other tasks of the outer run; these then use an additional set of
+ * instances, as the thread's instances are still in use.
+ * <p>
+ * Reference:
+ * <p>
+ * A. Tzannes, G. C. Caragea, R. Barua, U. Vishkin<br>
+ * Lazy Binary-Splitting: A Run-Time Adaptive Work-Stealing Scheduler<br>
+ * In: Proc. 15th ACM SIGPLAN Symp. Principles and Practice of Parallel
+ * Programming (PPoPP 2010)
  *
  * @author Erich Schubert
  * @since 0.7.0
  *
- * @has - - - BlockArrayRunner
+ * @has - - - Worker
  * @assoc - - - ParallelCore
  */
+@Reference(authors = "A. Tzannes, G. C. Caragea, R. Barua, U. Vishkin", //
+    title = "Lazy Binary-Splitting: A Run-Time Adaptive Work-Stealing Scheduler", //
+    booktitle = "Proc. 15th ACM SIGPLAN Symp. Principles and Practice of Parallel Programming (PPoPP 2010)", //
+    url = "https://doi.org/10.1145/1693453.1693479", //
+    bibkey = "DBLP:conf/ppopp/TzannesCBV10")
 public final class ParallelExecutor {
+  /**
+   * Class logger, for statistics.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelExecutor.class);
+
+  /**
+   * Number of surplus tasks in the local queue before we stop splitting.
+   */
+  private static final int SURPLUS_THRESHOLD = 2;
+
+  /**
+   * Number of chunks per thread to aim for (at least).
+   */
+  private static final int CHUNKS_PER_THREAD = 64;
+
+  /**
+   * Maximum chunk size, to have regular load balancing and progress.
+   */
+  private static final int MAX_CHUNK_SIZE = 1024;
+
   /**
    * Private constructor. Static methods only.
    */
@@ -61,104 +110,325 @@ public final class ParallelExecutor {
    * @param procs Processors to run
    */
   public static void run(DBIDs ids, Processor... procs) {
-    ParallelCore core = ParallelCore.getCore();
-    core.connect();
+    run(0, ids, null, null, procs);
+  }
+
+  /**
+   * Run a task on all available CPUs, with progress reporting.
+   *
+   * @param ids IDs to process
+   * @param prog Progress to increment (may be {@code null})
+   * @param log Logger to report progress to
+   * @param procs Processors to run
+   */
+  public static void run(DBIDs ids, FiniteProgress prog, Logging log, Processor... procs) {
+    run(0, ids, prog, log, procs);
+  }
+
+  /**
+   * Run a task with the given level of parallelism.
+   *
+   * @param parallelism Number of threads to use, {@code <= 0} for all
+   *        available processors
+   * @param ids IDs to process
+   * @param prog Progress to increment (may be {@code null})
+   * @param log Logger to report progress to
+   * @param procs Processors to run
+   */
+  public static void run(int parallelism, DBIDs ids, FiniteProgress prog, Logging log, Processor... procs) {
+    final ParallelCore core = ParallelCore.getCore();
+    final ForkJoinPool pool = parallelism <= 0 || parallelism == core.getParallelism() ? //
+        core.getForkJoinPool() : new ForkJoinPool(parallelism);
     try {
-      // TODO: try different strategies anyway!
       ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
-      final int size = aids.size();
-      int numparts = core.getParallelism();
-      // TODO: are there better heuristics for choosing this?
-      numparts = (size > numparts * numparts * 16) ? numparts * Math.max(1, numparts - 1) : numparts;
-
-      final int blocksize = (size + (numparts - 1)) / numparts;
-      List<Future<ArrayDBIDs>> parts = new ArrayList<>(numparts);
-      for(int i = 0; i < numparts; i++) {
-        final int start = i * blocksize;
-        final int end = Math.min(start + blocksize, size);
-        Callable<ArrayDBIDs> run = new BlockArrayRunner(aids, start, end, procs);
-        parts.add(core.submit(run));
+      final int size = aids.size(), p = pool.getParallelism();
+      final int chunksize = Math.max(1, Math.min(MAX_CHUNK_SIZE, size / (p * CHUNKS_PER_THREAD)));
+      Run run = new Run(aids, chunksize, procs, prog, log);
+      if(size > 0) {
+        pool.invoke(new Task(null, run, 0, size));
       }
-
-      for(Future<ArrayDBIDs> fut : parts) {
-        fut.get();
+      run.cleanup();
+      if(LOG.isStatistics()) {
+        run.logStatistics();
       }
     }
-    catch(ExecutionException e) {
-      throw new RuntimeException("Processor execution failed.", e);
-    }
-    catch(InterruptedException e) {
-      throw new RuntimeException("Parallel execution interrupted.");
-    }
     finally {
-      core.disconnect();
+      if(pool != core.getForkJoinPool()) {
+        pool.shutdown();
+      }
     }
   }
 
   /**
-   * Run for an array part, without step size.
+   * Shared state of a single run.
    *
    * @author Erich Schubert
-   *
-   * @assoc - - - Processor
    */
-  protected static class BlockArrayRunner implements Callable<ArrayDBIDs>, Executor {
+  private static class Run {
     /**
      * Array IDs to process
      */
-    private ArrayDBIDs ids;
+    final ArrayDBIDs ids;
 
     /**
-     * Start position
+     * Smallest unit of work.
      */
-    private int start;
+    final int chunksize;
 
     /**
-     * End position
+     * The processor masters that own the instances.
      */
-    private int end;
+    final Processor[] procs;
 
     /**
-     * The processor masters that own the instances.
+     * Progress, may be {@code null}.
      */
-    private Processor[] procs;
+    final FiniteProgress prog;
 
     /**
-     * Variables map.
+     * Logger for progress reporting.
      */
-    private HashMap<SharedVariable<?>, SharedVariable.Instance<?>> variables = new HashMap<>();
+    final Logging log;
+
+    /**
+     * Workers of this run, by thread. Each list is only used by its thread.
+     */
+    final ConcurrentHashMap<Thread, ArrayList<Worker>> local = new ConcurrentHashMap<>();
+
+    /**
+     * All workers of this run.
+     */
+    final ConcurrentLinkedQueue<Worker> workers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Worker counter, for statistics.
+     */
+    final AtomicInteger numworkers = new AtomicInteger();
 
     /**
      * Constructor.
      *
      * @param ids IDs to process
-     * @param start Starting position
-     * @param end End position
+     * @param chunksize Smallest unit of work
      * @param procs Processors to run
+     * @param prog Progress
+     * @param log Logger
      */
-    protected BlockArrayRunner(ArrayDBIDs ids, int start, int end, Processor[] procs) {
-      super();
+    Run(ArrayDBIDs ids, int chunksize, Processor[] procs, FiniteProgress prog, Logging log) {
       this.ids = ids;
+      this.chunksize = chunksize;
+      this.procs = procs;
+      this.prog = prog;
+      this.log = log;
+    }
+
+    /**
+     * Acquire a worker of the current thread, that is not in use further up
+     * the stack of this thread.
+     *
+     * @return Worker
+     */
+    Worker acquire() {
+      final ArrayList<Worker> ws = local.computeIfAbsent(Thread.currentThread(), t -> new ArrayList<>());
+      for(Worker w : ws) {
+        if(!w.busy) {
+          w.busy = true;
+          return w;
+        }
+      }
+      Worker w = new Worker(this);
+      w.busy = true;
+      ws.add(w);
+      workers.add(w);
+      return w;
+    }
+
+    /**
+     * Clean up all processor instances.
+     */
+    void cleanup() {
+      for(Worker w : workers) {
+        for(int i = 0; i < procs.length; i++) {
+          procs[i].cleanup(w.instances[i]);
+        }
+      }
+    }
+
+    /**
+     * Log per-worker statistics.
+     */
+    void logStatistics() {
+      final String key = ParallelExecutor.class.getName();
+      long sum = 0, max = 0;
+      for(Worker w : workers) {
+        final String wkey = key + ".worker-" + w.num;
+        LOG.statistics(new LongStatistic(wkey + ".objects", w.processed));
+        LOG.statistics(new LongStatistic(wkey + ".chunks", w.chunks));
+        LOG.statistics(w.duration);
+        sum += w.duration.getDuration();
+        max = Math.max(max, w.duration.getDuration());
+      }
+      final int n = workers.size();
+      LOG.statistics(new LongStatistic(key + ".workers", n));
+      LOG.statistics(new LongStatistic(key + ".chunksize", chunksize));
+      // Ratio of the slowest worker to the average worker:
+      LOG.statistics(new DoubleStatistic(key + ".imbalance", sum > 0 ? max * n / (double) sum : 1.));
+    }
+  }
+
+  /**
+   * Task processing a range of the array, splitting lazily.
+   *
+   * @author Erich Schubert
+   */
+  private static class Task extends CountedCompleter<Void> {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Shared state
+     */
+    private final Run run;
+
+    /**
+     * Start position
+     */
+    private final int start;
+
+    /**
+     * End position
+     */
+    private final int end;
+
+    /**
+     * Constructor.
+     *
+     * @param parent Parent task
+     * @param run Shared state
+     * @param start Starting position
+     * @param end End position
+     */
+    Task(CountedCompleter<?> parent, Run run, int start, int end) {
+      super(parent);
+      this.run = run;
       this.start = start;
       this.end = end;
-      this.procs = procs;
     }
 
     @Override
-    public ArrayDBIDs call() {
-      Processor.Instance[] instances = new Processor.Instance[procs.length];
+    public void compute() {
+      final Worker w = run.acquire();
+      try {
+        final int chunksize = run.chunksize;
+        int s = start, e = end;
+        while(e - s > chunksize) {
+          if(getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD) {
+            final int mid = (s + e) >>> 1;
+            addToPendingCount(1);
+            new Task(this, run, mid, e).fork();
+            e = mid;
+          }
+          else {
+            w.process(s, s + chunksize);
+            s += chunksize;
+          }
+        }
+        w.process(s, e);
+      }
+      finally {
+        w.busy = false;
+      }
+      propagateCompletion();
+    }
+  }
+
+  /**
+   * Per-thread processor instances.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - - - Processor
+   */
+  protected static class Worker implements Executor {
+    /**
+     * Shared state.
+     */
+    private final Run run;
+
+    /**
+     * Iterator over the array.
+     */
+    private final DBIDArrayIter iter;
+
+    /**
+     * Processor instances.
+     */
+    final Processor.Instance[] instances;
+
+    /**
+     * Variables map.
+     */
+    private HashMap<SharedVariable<?>, SharedVariable.Instance<?>> variables = new HashMap<>();
+
+    /**
+     * Worker number, for statistics.
+     */
+    final int num;
+
+    /**
+     * Worker is in use by a task on the stack of its thread.
+     */
+    boolean busy;
+
+    /**
+     * Statistics: number of objects processed, number of chunks.
+     */
+    long processed, chunks;
+
+    /**
+     * Statistics: time from the first to the last chunk of this worker.
+     */
+    final NanoDuration duration;
+
+    /**
+     * Constructor.
+     *
+     * @param run Shared state
+     */
+    Worker(Run run) {
+      this.run = run;
+      this.iter = run.ids.iter();
+      this.num = run.numworkers.getAndIncrement();
+      this.duration = new NanoDuration(ParallelExecutor.class.getName() + ".worker-" + num + ".time");
+      this.duration.begin();
+      final Processor[] procs = run.procs;
+      this.instances = new Processor.Instance[procs.length];
       for(int i = 0; i < procs.length; i++) {
         instances[i] = procs[i].instantiate(this);
       }
-      for(DBIDArrayIter iter = ids.iter().seek(start); iter.valid() && iter.getOffset() < end; iter.advance()) {
+    }
+
+    /**
+     * Process a range of objects.
+     *
+     * @param start Start position
+     * @param end End position (exclusive)
+     */
+    void process(int start, int end) {
+      final Processor.Instance[] instances = this.instances;
+      for(iter.seek(start); iter.getOffset() < end; iter.advance()) {
         for(int i = 0; i < instances.length; i++) {
           instances[i].map(iter);
         }
       }
-      for(int i = 0; i < instances.length; i++) {
-        procs[i].cleanup(instances[i]);
+      processed += end - start;
+      ++chunks;
+      duration.end();
+      if(run.prog != null) {
+        run.prog.incrementProcessed(end - start, run.log);
       }
-      return ids;
     }
 
     @Override
@@ -0,0 +1,212 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.parallel.processor.Processor;
+
+/**
+ * Test the work-stealing parallel executor.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelExecutorTest {
+  /**
+   * Logger for progress reporting.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelExecutorTest.class);
+
+  /**
+   * Processor counting how often each object was processed.
+   *
+   * @author Erich Schubert
+   */
+  private static class CountProcessor implements Processor {
+    /**
+     * Objects to process.
+     */
+    final DBIDRange range;
+
+    /**
+     * Counters, per object.
+     */
+    final AtomicIntegerArray counts;
+
+    /**
+     * Number of instances created and cleaned up.
+     */
+    final AtomicInteger instances = new AtomicInteger(), cleanups = new AtomicInteger();
+
+    /**
+     * Constructor.
+     *
+     * @param range Objects to process
+     */
+    CountProcessor(DBIDRange range) {
+      this.range = range;
+      this.counts = new AtomicIntegerArray(range.size());
+    }
+
+    @Override
+    public Instance instantiate(Executor executor) {
+      instances.incrementAndGet();
+      return id -> process(range.getOffset(id));
+    }
+
+    /**
+     * Process a single object.
+     *
+     * @param off Offset of the object
+     */
+    void process(int off) {
+      counts.incrementAndGet(off);
+    }
+
+    @Override
+    public void cleanup(Instance inst) {
+      cleanups.incrementAndGet();
+    }
+
+    /**
+     * Verify that every object was processed exactly once.
+     */
+    void verify() {
+      for(int i = 0; i < counts.length(); i++) {
+        assertEquals("Object processed not exactly once.", 1, counts.get(i));
+      }
+      assertTrue("No instances.", instances.get() > 0 || counts.length() == 0);
+      assertEquals("Instances not cleaned up.", instances.get(), cleanups.get());
+    }
+  }
+
+  @Test
+  public void testAllProcessed() {
+    for(int size : new int[] { 0, 1, 17, 100000 }) {
+      CountProcessor proc = new CountProcessor(DBIDUtil.generateStaticDBIDRange(size));
+      ParallelExecutor.run(4, proc.range, null, null, proc);
+      proc.verify();
+    }
+  }
+
+  @Test
+  public void testStealing() {
+    final int size = 100000;
+    final CountDownLatch stolen = new CountDownLatch(1);
+    final AtomicInteger timeouts = new AtomicInteger();
+    // The first object blocks until another thread processed the second half:
+    CountProcessor proc = new CountProcessor(DBIDUtil.generateStaticDBIDRange(size)) {
+      @Override
+      void process(int off) {
+        super.process(off);
+        if(off >= size >>> 1) {
+          stolen.countDown();
+        }
+        else if(off == 0) {
+          try {
+            if(!stolen.await(30, TimeUnit.SECONDS)) {
+              timeouts.incrementAndGet();
+            }
+          }
+          catch(InterruptedException e) {
+            timeouts.incrementAndGet();
+          }
+        }
+      }
+    };
+    ParallelExecutor.run(4, proc.range, null, null, proc);
+    assertEquals("The split ranges were not stolen.", 0, timeouts.get());
+    proc.verify();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testException() {
+    CountProcessor proc = new CountProcessor(DBIDUtil.generateStaticDBIDRange(10000)) {
+      @Override
+      void process(int off) {
+        if(off == 5000) {
+          throw new IllegalStateException("Expected failure.");
+        }
+      }
+    };
+    ParallelExecutor.run(4, proc.range, null, null, proc);
+  }
+
+  @Test
+  public void testProgress() {
+    final int size = 12345;
+    CountProcessor proc = new CountProcessor(DBIDUtil.generateStaticDBIDRange(size));
+    FiniteProgress prog = new FiniteProgress("Test progress", size, LOG);
+    ParallelExecutor.run(4, proc.range, prog, LOG, proc);
+    assertEquals("Progress does not match.", size, prog.getProcessed());
+    assertTrue("Progress not complete.", prog.isComplete());
+    proc.verify();
+  }
+
+  @Test
+  public void testNested() {
+    final DBIDRange inner = DBIDUtil.generateStaticDBIDRange(2000);
+    final AtomicInteger corrupted = new AtomicInteger();
+    final CountProcessor[] nested = new CountProcessor[64];
+    CountProcessor outer = new CountProcessor(DBIDUtil.generateStaticDBIDRange(nested.length)) {
+      @Override
+      public Instance instantiate(Executor executor) {
+        instances.incrementAndGet();
+        return new Instance() {
+          @Override
+          public void map(DBIDRef id) {
+            final int off = range.getOffset(id);
+            process(off);
+            CountProcessor proc = nested[off] = new CountProcessor(inner);
+            ParallelExecutor.run(inner, proc);
+            // While waiting, a thread may execute other tasks of the outer run:
+            ForkJoinTask.helpQuiesce();
+            // The outer iterator must not have been moved meanwhile:
+            if(range.getOffset(id) != off) {
+              corrupted.incrementAndGet();
+            }
+          }
+        };
+      }
+    };
+    ParallelExecutor.run(4, outer.range, null, null, outer);
+    assertEquals("Outer iterator was reused by a nested task.", 0, corrupted.get());
+    outer.verify();
+    for(CountProcessor proc : nested) {
+      proc.verify();
+    }
+  }
+}
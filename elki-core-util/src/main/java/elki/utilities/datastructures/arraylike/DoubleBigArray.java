@@ -0,0 +1,77 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.datastructures.arraylike;
+
+/**
+ * Array of double values, indexed by a long, to overcome the size limit of
+ * Java arrays (2<sup>31</sup> entries).
+ * <p>
+ * Implementations may use a reduced precision internally, so reading a value
+ * may return a slightly different value than the value stored.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public interface DoubleBigArray {
+  /**
+   * Number of entries in the array.
+   *
+   * @return Size
+   */
+  long size();
+
+  /**
+   * Get the value at the given position.
+   *
+   * @param index Position
+   * @return Value
+   */
+  double get(long index);
+
+  /**
+   * Set the value at the given position.
+   *
+   * @param index Position
+   * @param value New value
+   */
+  void set(long index, double value);
+
+  /**
+   * Copy a range into a (small) array.
+   *
+   * @param start Start position in the big array
+   * @param dest Destination array
+   * @param off Offset in the destination array
+   * @param len Number of values to copy
+   */
+  default void get(long start, double[] dest, int off, int len) {
+    for(int i = 0; i < len; i++) {
+      dest[off + i] = get(start + i);
+    }
+  }
+
+  /**
+   * Get the number of bytes used per entry.
+   *
+   * @return Bytes per entry
+   */
+  int bytesPerEntry();
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.datastructures.arraylike;
+
+/**
+ * Large array of double values, stored with full double precision, in
+ * segments of 2<sup>24</sup> entries each.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class SegmentedDoubleBigArray implements DoubleBigArray {
+  /**
+   * Segment size (bits).
+   */
+  private static final int SHIFT = 24;
+
+  /**
+   * Segment size.
+   */
+  private static final int SEGMENT = 1 << SHIFT;
+
+  /**
+   * Bit mask for the offset within a segment.
+   */
+  private static final long MASK = SEGMENT - 1;
+
+  /**
+   * Data segments.
+   */
+  private final double[][] seg;
+
+  /**
+   * Total size.
+   */
+  private final long size;
+
+  /**
+   * Constructor.
+   *
+   * @param size Array size
+   */
+  public SegmentedDoubleBigArray(long size) {
+    super();
+    if(size < 0 || (size >>> SHIFT) >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid array size: " + size);
+    }
+    this.size = size;
+    final int nseg = (int) ((size + MASK) >>> SHIFT);
+    seg = new double[nseg][];
+    for(int i = 0; i < nseg; i++) {
+      seg[i] = new double[i < nseg - 1 ? SEGMENT : (int) (size - ((long) i << SHIFT))];
+    }
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public double get(long index) {
+    return seg[(int) (index >>> SHIFT)][(int) (index & MASK)];
+  }
+
+  @Override
+  public void set(long index, double value) {
+    seg[(int) (index >>> SHIFT)][(int) (index & MASK)] = value;
+  }
+
+  @Override
+  public void get(long start, double[] dest, int off, int len) {
+    while(len > 0) {
+      final int s = (int) (start >>> SHIFT), o = (int) (start & MASK);
+      final int n = Math.min(len, SEGMENT - o);
+      System.arraycopy(seg[s], o, dest, off, n);
+      start += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  @Override
+  public int bytesPerEntry() {
+    return 8;
+  }
+}
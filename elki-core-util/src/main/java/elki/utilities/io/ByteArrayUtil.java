@@ -747,7 +747,7 @@ public final class ByteArrayUtil {
    * @return Byte size
    */
   public static int getStringSize(String s) throws IOException {
-    return STRING_SERIALIZER.getByteSize(s);
+    return s == null ? 1 : STRING_SERIALIZER.getByteSize(s);
   }
 
   /**
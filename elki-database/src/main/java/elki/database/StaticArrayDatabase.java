@@ -22,16 +22,23 @@ package elki.database;
 
 import java.util.Collection;
 
+import elki.data.DoubleVector;
+import elki.data.FloatVector;
+import elki.data.NumberVector;
 import elki.data.type.SimpleTypeInformation;
+import elki.data.type.VectorFieldTypeInformation;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDataStore;
 import elki.database.ids.ArrayStaticDBIDs;
 import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.relation.DBIDView;
 import elki.database.relation.MaterializedRelation;
+import elki.database.relation.PackedDoubleVectorRelation;
+import elki.database.relation.PackedFloatVectorRelation;
 import elki.database.relation.Relation;
 import elki.datasource.DatabaseConnection;
 import elki.datasource.FileBasedDatabaseConnection;
@@ -42,7 +49,9 @@ import elki.logging.Logging;
 import elki.logging.statistics.Duration;
 import elki.result.Metadata;
 import elki.utilities.documentation.Description;
+import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.EnumParameter;
 import elki.utilities.optionhandling.parameters.ObjectListParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -50,6 +59,12 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * This database class uses array-based storage and thus does not allow for
  * dynamic insert, delete and update operations. However, array access is
  * expected to be faster and use less memory.
+ * <p>
+ * Optionally, {@link DoubleVector} and {@link FloatVector} fields can be stored
+ * packed into contiguous arrays (see {@link PackedDoubleVectorRelation} and
+ * {@link PackedFloatVectorRelation}) to reduce memory and garbage collection
+ * overhead on large data sets. The vectors are packed after loading, so this
+ * reduces the memory used afterwards, but not the peak memory while loading.
  *
  * @author Arthur Zimek
  * @author Erich Schubert
@@ -81,15 +96,40 @@ public class StaticArrayDatabase extends AbstractDatabase {
    */
   protected DatabaseConnection databaseConnection;
 
+  /**
+   * Storage mode for dense vector fields.
+   */
+  protected VectorStorage vectorStorage;
+
+  /**
+   * Storage modes for dense vector fields.
+   * <p>
+   * Only fields of {@link DoubleVector} and {@link FloatVector} are packed;
+   * other vector types are kept as loaded. While packing, both the loaded
+   * objects and the packed arrays are in memory.
+   *
+   * @author Erich Schubert
+   */
+  public enum VectorStorage {
+    /** Store the vector objects as loaded. */
+    OBJECTS,
+    /** Store packed into double arrays. */
+    PACKED_DOUBLE,
+    /** Store packed into float arrays, using single precision. */
+    PACKED_FLOAT
+  }
+
   /**
    * Constructor.
    *
    * @param databaseConnection Database connection to get the initial data from.
    * @param indexFactories Indexes to add
+   * @param vectorStorage Storage mode for dense vector fields
    */
-  public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories) {
+  public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories, VectorStorage vectorStorage) {
     super();
     this.databaseConnection = databaseConnection;
+    this.vectorStorage = vectorStorage;
     this.ids = null;
     this.idrep = null;
 
@@ -99,6 +139,16 @@ public class StaticArrayDatabase extends AbstractDatabase {
     }
   }
 
+  /**
+   * Constructor.
+   *
+   * @param databaseConnection Database connection to get the initial data from.
+   * @param indexFactories Indexes to add
+   */
+  public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories) {
+    this(databaseConnection, indexFactories, VectorStorage.OBJECTS);
+  }
+
   /**
    * Constructor with no indexes.
    *
@@ -148,19 +198,22 @@ public class StaticArrayDatabase extends AbstractDatabase {
     int numrel = bundle.metaLength();
     for(int i = 0; i < numrel; i++) {
       SimpleTypeInformation<?> meta = bundle.meta(i);
-      @SuppressWarnings("unchecked")
-      SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
-      WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
-      for(it.seek(0); it.valid(); it.advance()) {
-        store.put(it, bundle.data(it.getOffset(), i));
+      Relation<?> relation = packVectors(bundle, i, it);
+      if(relation == null) {
+        @SuppressWarnings("unchecked")
+        SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
+        WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
+        for(it.seek(0); it.valid(); it.advance()) {
+          store.put(it, bundle.data(it.getOffset(), i));
+        }
+        relation = new MaterializedRelation<>(null, ometa, ids, store);
       }
-      Relation<?> relation = new MaterializedRelation<>(null, ometa, ids, store);
       relations.add(relation);
       Metadata.hierarchyOf(this).addChild(relation);
 
       // Try to add indexes where appropriate
       for(IndexFactory<?> factory : indexFactories) {
-        if(factory.getInputTypeRestriction().isAssignableFromType(ometa)) {
+        if(factory.getInputTypeRestriction().isAssignableFromType(relation.getDataTypeInformation())) {
           @SuppressWarnings("unchecked")
           final IndexFactory<Object> ofact = (IndexFactory<Object>) factory;
           @SuppressWarnings("unchecked")
@@ -180,6 +233,51 @@ public class StaticArrayDatabase extends AbstractDatabase {
     eventManager.fireObjectsInserted(ids);
   }
 
+  /**
+   * Store a column of {@link DoubleVector} or {@link FloatVector} packed into
+   * contiguous arrays, if enabled.
+   *
+   * @param bundle Data bundle
+   * @param col Column number
+   * @param it Iterator
+   * @return Packed relation, or {@code null} if not applicable
+   */
+  private Relation<?> packVectors(MultipleObjectsBundle bundle, int col, DBIDArrayIter it) {
+    SimpleTypeInformation<?> meta = bundle.meta(col);
+    if(vectorStorage == VectorStorage.OBJECTS || !(meta instanceof VectorFieldTypeInformation) //
+        || (meta.getRestrictionClass() != DoubleVector.class && meta.getRestrictionClass() != FloatVector.class)) {
+      return null;
+    }
+    if(!(ids instanceof DBIDRange)) {
+      LOG.warning("Packed vector storage requires a DBID range, using object storage instead.");
+      return null;
+    }
+    final VectorFieldTypeInformation<?> vmeta = (VectorFieldTypeInformation<?>) meta;
+    final int dim = vmeta.getDimensionality();
+    String[] labels = null;
+    for(int d = 0; d < dim; d++) {
+      final String label = vmeta.getLabel(d);
+      if(label != null) {
+        if(labels == null) {
+          labels = new String[dim];
+        }
+        labels[d] = label;
+      }
+    }
+    if(vectorStorage == VectorStorage.PACKED_FLOAT) {
+      PackedFloatVectorRelation rel = new PackedFloatVectorRelation(null, (DBIDRange) ids, dim, labels);
+      for(it.seek(0); it.valid(); it.advance()) {
+        rel.set(it, (NumberVector) bundle.data(it.getOffset(), col));
+      }
+      return rel;
+    }
+    PackedDoubleVectorRelation rel = new PackedDoubleVectorRelation(null, (DBIDRange) ids, dim, labels);
+    for(it.seek(0); it.valid(); it.advance()) {
+      rel.set(it, (NumberVector) bundle.data(it.getOffset(), col));
+    }
+    return rel;
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -196,11 +294,21 @@ public class StaticArrayDatabase extends AbstractDatabase {
      */
     protected DatabaseConnection databaseConnection = null;
 
+    /**
+     * Option to store dense vector fields packed into contiguous arrays.
+     */
+    public static final OptionID VECTOR_STORAGE_ID = new OptionID("db.vectors", "Storage of double and float vectors: as loaded, or packed into contiguous double or float arrays. This reduces the memory after loading, but not while loading.");
+
     /**
      * Indexes to add.
      */
     private Collection<? extends IndexFactory<?>> indexFactories;
 
+    /**
+     * Storage mode for dense vector fields.
+     */
+    protected VectorStorage vectorStorage;
+
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
@@ -211,11 +319,13 @@ public class StaticArrayDatabase extends AbstractDatabase {
       new ObjectListParameter<IndexFactory<?>>(INDEX_ID, IndexFactory.class) //
           .setOptional(true) //
           .grab(config, x -> indexFactories = x);
+      new EnumParameter<VectorStorage>(VECTOR_STORAGE_ID, VectorStorage.class, VectorStorage.OBJECTS) //
+          .grab(config, x -> vectorStorage = x);
     }
 
     @Override
     public StaticArrayDatabase make() {
-      return new StaticArrayDatabase(databaseConnection, indexFactories);
+      return new StaticArrayDatabase(databaseConnection, indexFactories, vectorStorage);
     }
   }
 }
@@ -0,0 +1,428 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query;
+
+import java.util.concurrent.RecursiveAction;
+
+import elki.data.NumberVector;
+import elki.data.SparseNumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.PackedDoubleVectorRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.distance.PrimitiveDistance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.parallel.ParallelCore;
+
+/**
+ * Cache-blocked linear scan for batch queries.
+ * <p>
+ * Queries are processed in blocks; each block of queries is compared to all
+ * data objects in a single scan, so every data object is only loaded once per
+ * block instead of once per query. For primitive distances, blocks are
+ * processed in parallel.
+ * <p>
+ * For (squared) Euclidean distance on dense vectors, the data is scanned in
+ * contiguous arrays (of a {@link PackedDoubleVectorRelation}, else the data is
+ * copied once per searcher), and distances are bounded using
+ * \(\|x-y\|^2=\|x\|^2+\|y\|^2-2\langle x,y\rangle\) with precomputed norms,
+ * computing the dot products of four queries at once. Because this is
+ * numerically not exact, the bound is widened by the floating point error,
+ * and candidates are verified with the exact distance, so the results are
+ * identical to a regular linear scan.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> relation object type
+ */
+public abstract class AbstractBlockedLinearScan<O> implements LinearScanQuery {
+  /**
+   * Number of queries processed in one block.
+   */
+  protected static final int QUERY_BLOCK = 64;
+
+  /**
+   * Distance query.
+   */
+  protected final DistanceQuery<O> distanceQuery;
+
+  /**
+   * Relation to scan.
+   */
+  protected final Relation<? extends O> relation;
+
+  /**
+   * Data object ids, in scan order.
+   */
+  protected final ArrayDBIDs ids;
+
+  /**
+   * Primitive distance function, or {@code null}.
+   */
+  protected final PrimitiveDistance<? super O> primitive;
+
+  /**
+   * Use the Euclidean distance, and take the square root of the squared
+   * distances computed.
+   */
+  protected final boolean sqrt;
+
+  /**
+   * Dimensionality of the packed data, 0 if not packed.
+   */
+  protected int dim;
+
+  /**
+   * Packed data vectors, for Euclidean distance, in one or more segments.
+   */
+  protected double[][] data;
+
+  /**
+   * Squared norms of the packed data vectors.
+   */
+  protected double[] norms;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance query
+   */
+  @SuppressWarnings("unchecked")
+  public AbstractBlockedLinearScan(DistanceQuery<O> distanceQuery) {
+    super();
+    this.distanceQuery = distanceQuery;
+    this.relation = distanceQuery.getRelation();
+    this.ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    this.primitive = distanceQuery instanceof PrimitiveDistanceQuery ? ((PrimitiveDistanceQuery<O>) distanceQuery).getDistance() : null;
+    final boolean euclidean = EuclideanDistance.STATIC.equals(primitive);
+    this.sqrt = euclidean;
+    if(euclidean || SquaredEuclideanDistance.STATIC.equals(primitive)) {
+      pack((Relation<? extends NumberVector>) relation);
+    }
+  }
+
+  /**
+   * Use the packed storage of the relation, or copy dense vectors into a
+   * contiguous array, if possible.
+   *
+   * @param relation Data relation
+   */
+  private void pack(Relation<? extends NumberVector> relation) {
+    if(relation instanceof PackedDoubleVectorRelation) {
+      final PackedDoubleVectorRelation prel = (PackedDoubleVectorRelation) relation;
+      if(prel.getDimensionality() > 0) {
+        this.dim = prel.getDimensionality();
+        this.data = prel.getSegments();
+        this.norms = computeNorms(data, dim, ids.size());
+      }
+      return;
+    }
+    if(!TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(relation.getDataTypeInformation()) //
+        || SparseNumberVector.class.isAssignableFrom(relation.getDataTypeInformation().getRestrictionClass())) {
+      return;
+    }
+    final int dim = RelationUtil.dimensionality(relation);
+    if(dim <= 0 || (long) dim * ids.size() > Integer.MAX_VALUE - 8) {
+      return;
+    }
+    double[] data = new double[dim * ids.size()];
+    int off = 0;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final NumberVector v = relation.get(it);
+      for(int d = 0; d < dim; d++, off++) {
+        data[off] = v.doubleValue(d);
+      }
+    }
+    this.dim = dim;
+    this.data = new double[][] { data };
+    this.norms = computeNorms(this.data, dim, ids.size());
+  }
+
+  /**
+   * Compute the squared norms of packed vectors.
+   *
+   * @param data Data segments
+   * @param dim Dimensionality
+   * @param size Number of vectors
+   * @return Squared norms
+   */
+  private static double[] computeNorms(double[][] data, int dim, int size) {
+    double[] norms = new double[size];
+    int j = 0;
+    for(double[] seg : data) {
+      for(int off = 0; off < seg.length; j++) {
+        double n = 0.;
+        for(int d = 0; d < dim; d++, off++) {
+          n += seg[off] * seg[off];
+        }
+        norms[j] = n;
+      }
+    }
+    return norms;
+  }
+
+  /**
+   * Test whether the data was packed; the scan then uses squared Euclidean
+   * distances, also for Euclidean distance.
+   *
+   * @return {@code true} when the data was packed
+   */
+  protected boolean isPacked() {
+    return data != null;
+  }
+
+  /**
+   * Process all queries, in blocks, possibly in parallel.
+   *
+   * @param size Number of queries
+   * @param block Block processor
+   */
+  protected void processBlocks(int size, BlockProcessor block) {
+    final int nblocks = (size + QUERY_BLOCK - 1) / QUERY_BLOCK;
+    if(primitive == null || nblocks <= 1) {
+      // Non-primitive distance queries may not be thread safe.
+      for(int b = 0; b < nblocks; b++) {
+        block.process(b * QUERY_BLOCK, Math.min(size, (b + 1) * QUERY_BLOCK));
+      }
+      return;
+    }
+    ParallelCore.getCore().getForkJoinPool().invoke(new BlockTask(block, size, 0, nblocks));
+  }
+
+  /**
+   * Scan the data for one block of queries.
+   *
+   * @param qobj Query objects
+   * @param qiter Query ids, for non-primitive distances, may be {@code null}
+   * @param qstart Offset of the first query in qiter
+   * @param bounds Current distance bound of each query, updated
+   * @param visitor Visitor for candidates
+   */
+  protected void scan(O[] qobj, DBIDArrayIter qiter, int qstart, double[] bounds, Visitor visitor) {
+    if(data != null) {
+      scanPacked(qobj, bounds, visitor);
+      return;
+    }
+    final int b = qobj.length;
+    if(primitive != null) {
+      final PrimitiveDistance<? super O> primitive = this.primitive;
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final O o = relation.get(it);
+        for(int i = 0; i < b; i++) {
+          final double dist = primitive.distance(qobj[i], o);
+          if(dist <= bounds[i]) {
+            bounds[i] = visitor.accept(i, dist, it);
+          }
+        }
+      }
+      return;
+    }
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      for(int i = 0; i < b; i++) {
+        final double dist = qiter != null ? distanceQuery.distance(qiter.seek(qstart + i), it) : distanceQuery.distance(qobj[i], it);
+        if(dist <= bounds[i]) {
+          bounds[i] = visitor.accept(i, dist, it);
+        }
+      }
+    }
+  }
+
+  /**
+   * Scan the packed data for one block of queries, using squared Euclidean
+   * distances.
+   *
+   * @param qobj Query objects
+   * @param bounds Current squared distance bound of each query, updated
+   * @param visitor Visitor for candidates
+   */
+  private void scanPacked(O[] qobj, double[] bounds, Visitor visitor) {
+    final int dim = this.dim, b = qobj.length;
+    final double[] norms = this.norms;
+    final double[] q = new double[b * dim], qn = new double[b];
+    for(int i = 0, qoff = 0; i < b; i++) {
+      final NumberVector v = (NumberVector) qobj[i];
+      if(v.getDimensionality() != dim) {
+        throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+      }
+      double n = 0.;
+      for(int d = 0; d < dim; d++, qoff++) {
+        final double x = q[qoff] = v.doubleValue(d);
+        n += x * x;
+      }
+      qn[i] = n;
+    }
+    // Relative error bound of the dot product approach, with a safety margin:
+    final double eps = (dim + 2) * 0x1p-50;
+    final int b4 = b & ~3;
+    final DBIDArrayIter it = ids.iter();
+    int j = 0;
+    for(double[] data : this.data) {
+      for(int off = 0; off < data.length; it.advance(), j++, off += dim) {
+        final double xn = norms[j];
+        int i = 0;
+        // Four queries at a time, to reuse each data value loaded.
+        for(; i < b4; i += 4) {
+          final int o0 = i * dim, o1 = o0 + dim, o2 = o1 + dim, o3 = o2 + dim;
+          double d0 = 0., d1 = 0., d2 = 0., d3 = 0.;
+          for(int d = 0; d < dim; d++) {
+            final double x = data[off + d];
+            d0 += x * q[o0 + d];
+            d1 += x * q[o1 + d];
+            d2 += x * q[o2 + d];
+            d3 += x * q[o3 + d];
+          }
+          candidate(q, qn, i, d0, xn, eps, data, off, bounds, visitor, it);
+          candidate(q, qn, i + 1, d1, xn, eps, data, off, bounds, visitor, it);
+          candidate(q, qn, i + 2, d2, xn, eps, data, off, bounds, visitor, it);
+          candidate(q, qn, i + 3, d3, xn, eps, data, off, bounds, visitor, it);
+        }
+        for(; i < b; i++) {
+          final int o0 = i * dim;
+          double d0 = 0.;
+          for(int d = 0; d < dim; d++) {
+            d0 += data[off + d] * q[o0 + d];
+          }
+          candidate(q, qn, i, d0, xn, eps, data, off, bounds, visitor, it);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test a candidate using the dot product bound, and verify with the exact
+   * squared distance.
+   *
+   * @param q Packed queries
+   * @param qn Query norms
+   * @param i Query number
+   * @param dot Dot product
+   * @param xn Data norm
+   * @param eps Relative error bound
+   * @param data Data segment
+   * @param off Data offset
+   * @param bounds Query bounds
+   * @param visitor Visitor
+   * @param it Data iterator
+   */
+  private void candidate(double[] q, double[] qn, int i, double dot, double xn, double eps, double[] data, int off, double[] bounds, Visitor visitor, DBIDRef it) {
+    final double sum = qn[i] + xn;
+    if(sum - 2 * dot - eps * sum > bounds[i]) {
+      return;
+    }
+    double dist = 0.;
+    for(int d = 0, qoff = i * dim; d < dim; d++) {
+      final double delta = q[qoff + d] - data[off + d];
+      dist += delta * delta;
+    }
+    if(dist <= bounds[i]) {
+      bounds[i] = visitor.accept(i, dist, it);
+    }
+  }
+
+  /**
+   * Process a block of queries.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  protected interface BlockProcessor {
+    /**
+     * Process queries start (inclusive) to end (exclusive).
+     *
+     * @param start First query
+     * @param end End of block
+     */
+    void process(int start, int end);
+  }
+
+  /**
+   * Visitor for candidates found by the scan.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  protected interface Visitor {
+    /**
+     * Accept a candidate.
+     *
+     * @param i Query number in block
+     * @param dist Distance (squared, for packed data)
+     * @param id Data object
+     * @return New distance bound for this query
+     */
+    double accept(int i, double dist, DBIDRef id);
+  }
+
+  /**
+   * Fork-join task to process a range of query blocks.
+   *
+   * @author Erich Schubert
+   */
+  private static class BlockTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Block processor.
+     */
+    private final BlockProcessor block;
+
+    /**
+     * Number of queries, first and last block.
+     */
+    private final int size, start, end;
+
+    /**
+     * Constructor.
+     *
+     * @param block Block processor
+     * @param size Number of queries
+     * @param start First block
+     * @param end End of blocks
+     */
+    BlockTask(BlockProcessor block, int size, int start, int end) {
+      this.block = block;
+      this.size = size;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start > 1) {
+        final int mid = (start + end) >>> 1;
+        invokeAll(new BlockTask(block, size, start, mid), new BlockTask(block, size, mid, end));
+        return;
+      }
+      block.process(start * QUERY_BLOCK, Math.min(size, end * QUERY_BLOCK));
+    }
+  }
+}
@@ -426,6 +426,20 @@ public class QueryBuilder<O> {
     return new LinearScanKNNByDBID<>(distanceQuery);
   }
 
+  /**
+   * Build a batch k-nearest-neighbors query, for answering many queries at
+   * once. If no index is available, this uses a blocked, parallel linear scan.
+   *
+   * @param maxk Maximum k that will be used later.
+   * @return batch knn query
+   */
+  public BatchKNNSearcher<O> kNNBatch(int maxk) {
+    KNNSearcher<DBIDRef> q = kNNByDBID(maxk);
+    return q == null ? null : q instanceof LinearScanQuery ? //
+        new LinearScanBatchKNN<>(distanceQuery()) : //
+        new WrappedBatchKNN<>(q, () -> kNNByObject(maxk));
+  }
+
   /**
    * Build a range query; if possible also give a maximum query radius.
    *
@@ -534,6 +548,20 @@ public class QueryBuilder<O> {
     return new LinearScanDistanceRangeByDBID<>(distanceQuery);
   }
 
+  /**
+   * Build a batch range query, for answering many queries at once. If no index
+   * is available, this uses a blocked, parallel linear scan.
+   *
+   * @param maxrange Maximum radius that will be used.
+   * @return batch range query
+   */
+  public BatchRangeSearcher<O> rangeBatch(double maxrange) {
+    RangeSearcher<DBIDRef> q = rangeByDBID(maxrange);
+    return q == null ? null : q instanceof LinearScanQuery ? //
+        new LinearScanBatchRange<>(distanceQuery()) : //
+        new WrappedBatchRange<>(q, () -> rangeByObject(maxrange));
+  }
+
   /**
    * Build a similarity range query; if possible also specify the least
    * selective
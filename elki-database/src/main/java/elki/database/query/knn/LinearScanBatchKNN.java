@@ -0,0 +1,98 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import java.util.List;
+
+import elki.database.ids.*;
+import elki.database.query.AbstractBlockedLinearScan;
+import elki.database.query.distance.DistanceQuery;
+
+/**
+ * Cache-blocked, parallel linear scan for batches of kNN queries.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - DistanceQuery
+ *
+ * @param <O> relation object type
+ */
+public class LinearScanBatchKNN<O> extends AbstractBlockedLinearScan<O> implements BatchKNNSearcher<O> {
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public LinearScanBatchKNN(DistanceQuery<O> distanceQuery) {
+    super(distanceQuery);
+  }
+
+  @Override
+  public KNNList[] getKNN(DBIDs queries, int k) {
+    final ArrayDBIDs aq = DBIDUtil.ensureArray(queries);
+    final KNNList[] result = new KNNList[aq.size()];
+    processBlocks(result.length, (start, end) -> {
+      @SuppressWarnings("unchecked")
+      final O[] qobj = (O[]) new Object[end - start];
+      DBIDArrayIter qiter = aq.iter();
+      for(int i = 0; i < qobj.length; i++) {
+        qobj[i] = relation.get(qiter.seek(start + i));
+      }
+      knnBlock(qobj, primitive == null ? qiter : null, start, k, result);
+    });
+    return result;
+  }
+
+  @Override
+  public KNNList[] getKNN(List<? extends O> queries, int k) {
+    final KNNList[] result = new KNNList[queries.size()];
+    processBlocks(result.length, (start, end) -> {
+      @SuppressWarnings("unchecked")
+      final O[] qobj = (O[]) queries.subList(start, end).toArray();
+      knnBlock(qobj, null, start, k, result);
+    });
+    return result;
+  }
+
+  /**
+   * Process one block of queries.
+   *
+   * @param qobj Query objects
+   * @param qiter Query ids, may be {@code null}
+   * @param start Offset of the first query
+   * @param k Number of neighbors requested
+   * @param result Output array
+   */
+  private void knnBlock(O[] qobj, DBIDArrayIter qiter, int start, int k, KNNList[] result) {
+    final KNNHeap[] heaps = new KNNHeap[qobj.length];
+    final double[] bounds = new double[qobj.length];
+    for(int i = 0; i < heaps.length; i++) {
+      heaps[i] = DBIDUtil.newHeap(k);
+      bounds[i] = Double.POSITIVE_INFINITY;
+    }
+    scan(qobj, qiter, start, bounds, (i, dist, id) -> heaps[i].insert(dist, id));
+    final boolean sqrt = this.sqrt && isPacked();
+    for(int i = 0; i < heaps.length; i++) {
+      result[start + i] = sqrt ? heaps[i].toKNNListSqrt() : heaps[i].toKNNList();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.range;
+
+import java.util.List;
+
+import elki.database.ids.*;
+import elki.database.query.AbstractBlockedLinearScan;
+import elki.database.query.distance.DistanceQuery;
+
+/**
+ * Cache-blocked, parallel linear scan for batches of range queries.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - DistanceQuery
+ *
+ * @param <O> relation object type
+ */
+public class LinearScanBatchRange<O> extends AbstractBlockedLinearScan<O> implements BatchRangeSearcher<O> {
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public LinearScanBatchRange(DistanceQuery<O> distanceQuery) {
+    super(distanceQuery);
+  }
+
+  @Override
+  public DoubleDBIDList[] getRange(DBIDs queries, double range) {
+    final ArrayDBIDs aq = DBIDUtil.ensureArray(queries);
+    final DoubleDBIDList[] result = new DoubleDBIDList[aq.size()];
+    processBlocks(result.length, (start, end) -> {
+      @SuppressWarnings("unchecked")
+      final O[] qobj = (O[]) new Object[end - start];
+      DBIDArrayIter qiter = aq.iter();
+      for(int i = 0; i < qobj.length; i++) {
+        qobj[i] = relation.get(qiter.seek(start + i));
+      }
+      rangeBlock(qobj, primitive == null ? qiter : null, start, range, result);
+    });
+    return result;
+  }
+
+  @Override
+  public DoubleDBIDList[] getRange(List<? extends O> queries, double range) {
+    final DoubleDBIDList[] result = new DoubleDBIDList[queries.size()];
+    processBlocks(result.length, (start, end) -> {
+      @SuppressWarnings("unchecked")
+      final O[] qobj = (O[]) queries.subList(start, end).toArray();
+      rangeBlock(qobj, null, start, range, result);
+    });
+    return result;
+  }
+
+  /**
+   * Process one block of queries.
+   *
+   * @param qobj Query objects
+   * @param qiter Query ids, may be {@code null}
+   * @param start Offset of the first query
+   * @param range Query radius
+   * @param result Output array
+   */
+  private void rangeBlock(O[] qobj, DBIDArrayIter qiter, int start, double range, DoubleDBIDList[] result) {
+    final boolean sqrt = this.sqrt && isPacked();
+    final ModifiableDoubleDBIDList[] lists = new ModifiableDoubleDBIDList[qobj.length];
+    final double[] bounds = new double[qobj.length];
+    // Slightly widened, to not lose results to rounding in the square root.
+    final double up = Math.nextUp(range), bound = sqrt ? up * up : range;
+    for(int i = 0; i < lists.length; i++) {
+      lists[i] = DBIDUtil.newDistanceDBIDList();
+      bounds[i] = bound;
+    }
+    scan(qobj, qiter, start, bounds, (i, dist, id) -> {
+      final double d = sqrt ? Math.sqrt(dist) : dist;
+      if(d <= range) {
+        lists[i].add(d, id);
+      }
+      return bound;
+    });
+    for(int i = 0; i < lists.length; i++) {
+      result[start + i] = lists[i].sort();
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import elki.data.NumberVector;
+import elki.data.PackedFloatVector;
+import elki.data.type.SimpleTypeInformation;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+
+/**
+ * Relation storing all vectors of a DBID range in contiguous {@code float[]}
+ * blocks, without per-vector objects. For very large data sets, the storage is
+ * split into multiple segments, each containing a power of two many vectors.
+ * <p>
+ * {@link #get} returns light-weight {@link PackedFloatVector} views into the
+ * shared blocks.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - PackedFloatVector
+ */
+public class PackedFloatVectorRelation implements Relation<PackedFloatVector> {
+  /**
+   * Maximum number of values in a single segment.
+   */
+  private static final int MAX_SEGMENT_BITS = 27;
+
+  /**
+   * Type information.
+   */
+  private final VectorFieldTypeInformation<PackedFloatVector> type;
+
+  /**
+   * The DBIDs this is defined for.
+   */
+  private final DBIDRange ids;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Number of vectors per segment (bits).
+   */
+  private final int shift;
+
+  /**
+   * Bit mask for the vector index within a segment.
+   */
+  private final int mask;
+
+  /**
+   * Data segments.
+   */
+  private final float[][] data;
+
+  /**
+   * The relation name.
+   */
+  private String name;
+
+  /**
+   * Constructor.
+   *
+   * @param name Relation name
+   * @param ids DBIDs
+   * @param dim Dimensionality
+   * @param labels Column labels, may be {@code null}
+   */
+  public PackedFloatVectorRelation(String name, DBIDRange ids, int dim, String[] labels) {
+    super();
+    this.name = name;
+    this.ids = ids;
+    this.dim = dim;
+    this.type = new VectorFieldTypeInformation<>(PackedFloatVector.FACTORY, dim, labels);
+    final int size = ids.size();
+    // Largest power of two many vectors that fit into a segment:
+    int s = MAX_SEGMENT_BITS - (32 - Integer.numberOfLeadingZeros(Math.max(dim, 1) - 1));
+    this.shift = s < 0 ? 0 : s < 31 ? s : 30;
+    this.mask = (1 << shift) - 1;
+    final int nseg = size > 0 ? ((size - 1) >>> shift) + 1 : 0;
+    this.data = new float[nseg][];
+    for(int i = 0; i < nseg; i++) {
+      data[i] = new float[Math.min(mask + 1, size - (i << shift)) * dim];
+    }
+  }
+
+  /**
+   * Store a vector.
+   *
+   * @param id Object id
+   * @param vec Vector to store
+   */
+  public void set(DBIDRef id, NumberVector vec) {
+    assert vec.getDimensionality() == dim : "Dimensionality mismatch.";
+    final int off = ids.getOffset(id);
+    final float[] seg = data[off >>> shift];
+    final int start = (off & mask) * dim;
+    for(int d = 0; d < dim; d++) {
+      seg[start + d] = vec.floatValue(d);
+    }
+  }
+
+  @Override
+  public PackedFloatVector get(DBIDRef id) {
+    final int off = ids.getOffset(id);
+    return new PackedFloatVector(data[off >>> shift], (off & mask) * dim, dim);
+  }
+
+  /**
+   * Get the dimensionality.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  /**
+   * Get the memory usage of the data blocks.
+   *
+   * @return Number of bytes
+   */
+  public long getStorageSize() {
+    return (long) ids.size() * dim * 4;
+  }
+
+  @Override
+  public SimpleTypeInformation<PackedFloatVector> getDataTypeInformation() {
+    return type;
+  }
+
+  @Override
+  public DBIDs getDBIDs() {
+    return ids;
+  }
+
+  @Override
+  public DBIDIter iterDBIDs() {
+    return ids.iter();
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public String getLongName() {
+    return name != null ? name : type.toString();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.StaticArrayDatabase.VectorStorage;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.ManhattanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Test the blocked batch kNN scan against the regular linear scan.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class LinearScanBatchKNNTest {
+  /**
+   * Build a random data set, with duplicate values to produce ties.
+   *
+   * @param storage Vector storage
+   * @return Relation
+   */
+  private static Relation<NumberVector> makeRelation(VectorStorage storage) {
+    Random rnd = new Random(0L);
+    double[][] data = new double[333][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextInt(10), rnd.nextGaussian() * 100, rnd.nextInt(3), rnd.nextDouble() };
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, storage);
+    db.initialize();
+    return db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  @Test
+  public void testEuclidean() {
+    testDistance(EuclideanDistance.STATIC);
+  }
+
+  @Test
+  public void testSquaredEuclidean() {
+    testDistance(SquaredEuclideanDistance.STATIC);
+  }
+
+  @Test
+  public void testManhattan() {
+    testDistance(ManhattanDistance.STATIC);
+  }
+
+  @Test
+  public void testPackedEuclidean() {
+    testDistance(EuclideanDistance.STATIC, VectorStorage.PACKED_DOUBLE);
+  }
+
+  @Test
+  public void testPackedManhattan() {
+    testDistance(ManhattanDistance.STATIC, VectorStorage.PACKED_DOUBLE);
+  }
+
+  /**
+   * Compare batch and single queries.
+   *
+   * @param distance Distance function
+   */
+  private void testDistance(Distance<? super NumberVector> distance) {
+    testDistance(distance, VectorStorage.OBJECTS);
+  }
+
+  /**
+   * Compare batch and single queries.
+   *
+   * @param distance Distance function
+   * @param storage Vector storage
+   */
+  private void testDistance(Distance<? super NumberVector> distance, VectorStorage storage) {
+    Relation<NumberVector> rel = makeRelation(storage);
+    final int k = 7;
+    KNNSearcher<DBIDRef> single = new QueryBuilder<>(rel, distance).linearOnly().kNNByDBID(k);
+    BatchKNNSearcher<NumberVector> batch = new QueryBuilder<>(rel, distance).linearOnly().kNNBatch(k);
+    assertTrue("Not using the blocked scan.", batch instanceof LinearScanBatchKNN);
+    KNNList[] res = batch.getKNN(rel.getDBIDs(), k);
+    assertEquals("Wrong number of results", rel.size(), res.length);
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      assertSameKNN(single.getKNN(it, k), res[i]);
+    }
+    // Object queries, including queries not in the data set
+    List<NumberVector> queries = new ArrayList<>();
+    Random rnd = new Random(1L);
+    for(int j = 0; j < 70; j++) {
+      queries.add(DoubleVector.wrap(new double[] { rnd.nextDouble(), rnd.nextInt(10), rnd.nextGaussian() * 100, rnd.nextInt(3), rnd.nextDouble() }));
+    }
+    KNNSearcher<NumberVector> osingle = new QueryBuilder<>(rel, distance).linearOnly().kNNByObject(k);
+    res = batch.getKNN(queries, k);
+    for(int j = 0; j < queries.size(); j++) {
+      assertSameKNN(osingle.getKNN(queries.get(j), k), res[j]);
+    }
+  }
+
+  /**
+   * Compare two kNN results.
+   *
+   * @param exp Expected result
+   * @param act Actual result
+   */
+  private static void assertSameKNN(KNNList exp, KNNList act) {
+    assertEquals("Result size differs.", exp.size(), act.size());
+    assertEquals("kNN distance differs.", exp.getKNNDistance(), act.getKNNDistance(), 1e-15 * exp.getKNNDistance());
+    assertTrue("Neighbors differ.", DBIDUtil.intersectionSize(DBIDUtil.newHashSet(exp), act) == exp.size());
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.range;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.ManhattanDistance;
+
+/**
+ * Test the blocked batch range scan against the regular linear scan.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class LinearScanBatchRangeTest {
+  @Test
+  public void testEuclidean() {
+    testDistance(EuclideanDistance.STATIC, 0.5);
+  }
+
+  @Test
+  public void testManhattan() {
+    testDistance(ManhattanDistance.STATIC, 1.);
+  }
+
+  /**
+   * Compare batch and single queries.
+   *
+   * @param distance Distance function
+   * @param range Query radius
+   */
+  private void testDistance(Distance<? super NumberVector> distance, double range) {
+    Random rnd = new Random(0L);
+    double[][] data = new double[257][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextInt(2) };
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    RangeSearcher<DBIDRef> single = new QueryBuilder<>(rel, distance).linearOnly().rangeByDBID(range);
+    BatchRangeSearcher<NumberVector> batch = new QueryBuilder<>(rel, distance).linearOnly().rangeBatch(range);
+    assertTrue("Not using the blocked scan.", batch instanceof LinearScanBatchRange);
+    DoubleDBIDList[] res = batch.getRange(rel.getDBIDs(), range);
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      DoubleDBIDList exp = single.getRange(it, range);
+      assertEquals("Result size differs.", exp.size(), res[i].size());
+      DoubleDBIDListIter e = exp.iter(), a = res[i].iter();
+      for(; e.valid(); e.advance(), a.advance()) {
+        assertEquals("Distance differs.", e.doubleValue(), a.doubleValue(), 1e-15);
+      }
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.FloatVector;
+import elki.data.IntegerVector;
+import elki.data.NumberVector;
+import elki.data.PackedDoubleVector;
+import elki.data.PackedFloatVector;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.StaticArrayDatabase.VectorStorage;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Unit test for the packed vector storage of the static array database.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class PackedVectorRelationTest {
+  /**
+   * Generate a random data set.
+   *
+   * @return Data
+   */
+  private static double[][] makeData() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[1000][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextInt(100), rnd.nextGaussian() };
+    }
+    return data;
+  }
+
+  @Test
+  public void testPackedDouble() {
+    double[][] data = makeData();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, VectorStorage.PACKED_DOUBLE);
+    db.initialize();
+    Relation<? extends NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertTrue("Not packed.", rel instanceof PackedDoubleVectorRelation);
+    assertEquals("Dimensionality", 3, RelationUtil.dimensionality(rel));
+    DBIDArrayIter it = ((DBIDRange) rel.getDBIDs()).iter();
+    for(; it.valid(); it.advance()) {
+      NumberVector v = rel.get(it);
+      assertTrue("Not a packed vector.", v instanceof PackedDoubleVector);
+      double[] exp = data[it.getOffset()];
+      for(int d = 0; d < exp.length; d++) {
+        assertEquals("Value differs", exp[d], v.doubleValue(d), 0.);
+      }
+    }
+  }
+
+  @Test
+  public void testPackedFloat() {
+    double[][] data = makeData();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, VectorStorage.PACKED_FLOAT);
+    db.initialize();
+    Relation<? extends NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertTrue("Not packed.", rel instanceof PackedFloatVectorRelation);
+    DBIDArrayIter it = ((DBIDRange) rel.getDBIDs()).iter();
+    for(; it.valid(); it.advance()) {
+      NumberVector v = rel.get(it);
+      assertTrue("Not a packed vector.", v instanceof PackedFloatVector);
+      double[] exp = data[it.getOffset()];
+      for(int d = 0; d < exp.length; d++) {
+        assertEquals("Value differs", (float) exp[d], v.floatValue(d), 0.f);
+      }
+    }
+  }
+
+  @Test
+  public void testOtherVectorsNotPacked() {
+    List<IntegerVector> vecs = new ArrayList<>();
+    for(int i = 0; i < 10; i++) {
+      vecs.add(new IntegerVector(new int[] { i, -i, 2 * i }));
+    }
+    Database db = new StaticArrayDatabase(() -> MultipleObjectsBundle.makeSimple(new VectorFieldTypeInformation<>(IntegerVector.STATIC, 3), vecs), null, VectorStorage.PACKED_DOUBLE);
+    db.initialize();
+    Relation<? extends NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertFalse("Integer vectors were packed.", rel instanceof PackedDoubleVectorRelation);
+    assertTrue("Integer vectors were converted.", rel.get(rel.iterDBIDs()) instanceof IntegerVector);
+  }
+
+  @Test
+  public void testPackedFloatDistance() {
+    float[] block = { 1f, 1e-8f, 3e7f, 1f };
+    PackedFloatVector a = new PackedFloatVector(block, 0, 2), b = new PackedFloatVector(block, 2, 2);
+    double exp = SquaredEuclideanDistance.STATIC.distance(new FloatVector(new float[] { 1f, 1e-8f }), new FloatVector(new float[] { 3e7f, 1f }));
+    assertEquals("Packed distance differs", exp, SquaredEuclideanDistance.STATIC.distance(a, b), 0.);
+  }
+}
@@ -23,11 +23,14 @@ package elki.index.tree.metrical.mtreevariants;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 
 import elki.database.ids.DBID;
 import elki.database.ids.DBIDRef;
 import elki.database.ids.DBIDUtil;
 import elki.index.tree.DirectoryEntry;
+import elki.utilities.io.ByteArrayUtil;
+import elki.utilities.io.ByteBufferSerializer;
 
 /**
  * Represents an entry in a directory node of an M-Tree. A MTreeDirectoryEntry
@@ -44,6 +47,11 @@ public class MTreeDirectoryEntry implements DirectoryEntry, MTreeEntry {
    */
   private static final long serialVersionUID = 3;
 
+  /**
+   * Binary serializer, for pages stored in a byte buffer.
+   */
+  public static final ByteBufferSerializer<MTreeDirectoryEntry> SERIALIZER = new Serializer();
+
   /**
    * Holds the id of the object (node or data object) represented by this entry.
    */
@@ -207,4 +215,35 @@ public class MTreeDirectoryEntry implements DirectoryEntry, MTreeEntry {
   public int hashCode() {
     return id;
   }
+
+  /**
+   * Binary serialization: page id, routing object id, parent distance,
+   * covering radius.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - serializes - MTreeDirectoryEntry
+   */
+  public static class Serializer implements ByteBufferSerializer<MTreeDirectoryEntry> {
+    @Override
+    public MTreeDirectoryEntry fromByteBuffer(ByteBuffer buffer) throws IOException {
+      final int id = buffer.getInt();
+      final DBID routingObjectID = DBIDUtil.importInteger(buffer.getInt());
+      final double parentDistance = buffer.getDouble();
+      return new MTreeDirectoryEntry(routingObjectID, parentDistance, id, buffer.getDouble());
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, MTreeDirectoryEntry entry) throws IOException {
+      buffer.putInt(entry.id);
+      buffer.putInt(DBIDUtil.asInteger(entry.routingObjectID));
+      buffer.putDouble(entry.parentDistance);
+      buffer.putDouble(entry.coveringRadius);
+    }
+
+    @Override
+    public int getByteSize(MTreeDirectoryEntry entry) {
+      return 2 * ByteArrayUtil.SIZE_INT + 2 * ByteArrayUtil.SIZE_DOUBLE;
+    }
+  }
 }
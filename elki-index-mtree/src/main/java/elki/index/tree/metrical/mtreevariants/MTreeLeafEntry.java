@@ -23,10 +23,13 @@ package elki.index.tree.metrical.mtreevariants;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 
 import elki.database.ids.DBID;
 import elki.database.ids.DBIDUtil;
 import elki.index.tree.LeafEntry;
+import elki.utilities.io.ByteArrayUtil;
+import elki.utilities.io.ByteBufferSerializer;
 
 /**
  * Represents an entry in a leaf node of an M-Tree. A MTreeLeafEntry consists of
@@ -43,6 +46,11 @@ public class MTreeLeafEntry implements LeafEntry, MTreeEntry {
    */
   private static final long serialVersionUID = 3;
 
+  /**
+   * Binary serializer, for pages stored in a byte buffer.
+   */
+  public static final ByteBufferSerializer<MTreeLeafEntry> SERIALIZER = new Serializer();
+
   /**
    * Holds the id of the object (node or data object) represented by this entry.
    */
@@ -173,4 +181,30 @@ public class MTreeLeafEntry implements LeafEntry, MTreeEntry {
   public int hashCode() {
     return id.hashCode();
   }
+
+  /**
+   * Binary serialization: object id, parent distance.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - serializes - MTreeLeafEntry
+   */
+  public static class Serializer implements ByteBufferSerializer<MTreeLeafEntry> {
+    @Override
+    public MTreeLeafEntry fromByteBuffer(ByteBuffer buffer) throws IOException {
+      final DBID id = DBIDUtil.importInteger(buffer.getInt());
+      return new MTreeLeafEntry(id, buffer.getDouble());
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, MTreeLeafEntry entry) throws IOException {
+      buffer.putInt(DBIDUtil.asInteger(entry.id));
+      buffer.putDouble(entry.parentDistance);
+    }
+
+    @Override
+    public int getByteSize(MTreeLeafEntry entry) {
+      return ByteArrayUtil.SIZE_INT + ByteArrayUtil.SIZE_DOUBLE;
+    }
+  }
 }
@@ -20,8 +20,14 @@
  */
 package elki.index.tree.metrical.mtreevariants.mtree;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import elki.index.tree.metrical.mtreevariants.AbstractMTreeNode;
+import elki.index.tree.metrical.mtreevariants.MTreeDirectoryEntry;
 import elki.index.tree.metrical.mtreevariants.MTreeEntry;
+import elki.index.tree.metrical.mtreevariants.MTreeLeafEntry;
+import elki.persistent.ByteBufferPage;
 
 /**
  * Represents a node in an M-Tree.
@@ -30,7 +36,7 @@ import elki.index.tree.metrical.mtreevariants.MTreeEntry;
  * @since 0.1
  * @param <O> Object type
  */
-public class MTreeNode<O> extends AbstractMTreeNode<O, MTreeNode<O>, MTreeEntry> {
+public class MTreeNode<O> extends AbstractMTreeNode<O, MTreeNode<O>, MTreeEntry> implements ByteBufferPage {
   /**
    * Serial version
    */
@@ -53,4 +59,19 @@ public class MTreeNode<O> extends AbstractMTreeNode<O, MTreeNode<O>, MTreeEntry>
   public MTreeNode(int capacity, boolean isLeaf) {
     super(capacity, isLeaf);
   }
+
+  @Override
+  public void writeToBuffer(ByteBuffer buffer) throws IOException {
+    writeToBuffer(buffer, MTreeLeafEntry.class, MTreeLeafEntry.SERIALIZER, MTreeDirectoryEntry.class, MTreeDirectoryEntry.SERIALIZER);
+  }
+
+  @Override
+  public int getByteSize() throws IOException {
+    return getByteSize(MTreeLeafEntry.class, MTreeLeafEntry.SERIALIZER, MTreeDirectoryEntry.class, MTreeDirectoryEntry.SERIALIZER);
+  }
+
+  @Override
+  public void readFromBuffer(ByteBuffer buffer) throws IOException {
+    readFromBuffer(buffer, MTreeLeafEntry.SERIALIZER, MTreeDirectoryEntry.SERIALIZER);
+  }
 }
\ No newline at end of file
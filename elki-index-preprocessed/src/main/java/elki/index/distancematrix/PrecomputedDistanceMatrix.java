@@ -21,6 +21,7 @@
 package elki.index.distancematrix;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.RecursiveAction;
 
 import elki.data.type.TypeInformation;
 import elki.database.ids.*;
@@ -36,12 +37,17 @@ import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelCore;
 import elki.utilities.datastructures.QuickSelect;
+import elki.utilities.datastructures.arraylike.DoubleBigArray;
+import elki.utilities.datastructures.arraylike.SegmentedDoubleBigArray;
+import elki.utilities.datastructures.arraylike.SegmentedFloatBigArray;
 import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import elki.utilities.exceptions.AbortException;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -49,10 +55,12 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * <p>
  * This class uses a linear memory layout (not a ragged array), and assumes
  * symmetry as well as strictness. This way, it only stores the upper triangle
- * matrix with double precision. It has to store (n-1) * (n-2) distance values
- * in memory, requiring 8 * (n-1) * (n-2) bytes. Since Java has a size limit of
- * arrays of 31 bits (signed integer), we can store at most \(2^{16}\) objects
- * (precisely, 65536 objects) in a single array, which needs about 16 GB of RAM.
+ * matrix. It has to store n * (n-1) / 2 distance values in memory, requiring
+ * 4 * n * (n-1) bytes with double precision, or half of this with single
+ * precision. The values are stored in segmented arrays with long indexes, so
+ * the matrix is not limited by the maximum Java array size.
+ * <p>
+ * The matrix is computed in parallel, in cache-friendly blocks of objects.
  *
  * @author Erich Schubert
  * @since 0.7.0
@@ -79,10 +87,20 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    */
   protected final Distance<? super O> distance;
 
+  /**
+   * Block size for computing the matrix.
+   */
+  private static final int BLOCKSIZE = 128;
+
   /**
    * Distance matrix.
    */
-  private double[] matrix = null;
+  private DoubleBigArray matrix = null;
+
+  /**
+   * Store with single precision only.
+   */
+  private boolean singlePrecision;
 
   /**
    * DBID range.
@@ -97,10 +115,23 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    * @param distance Distance function
    */
   public PrecomputedDistanceMatrix(Relation<O> relation, DBIDRange range, Distance<? super O> distance) {
+    this(relation, range, distance, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param range DBID range
+   * @param distance Distance function
+   * @param singlePrecision Store with single precision only
+   */
+  public PrecomputedDistanceMatrix(Relation<O> relation, DBIDRange range, Distance<? super O> distance, boolean singlePrecision) {
     super();
     this.refrelation = new WeakReference<>(relation);
     this.ids = range;
     this.distance = distance;
+    this.singlePrecision = singlePrecision;
 
     if(!distance.isSymmetric()) {
       throw new AbortException("Distance matrixes currently only support symmetric distance functions (Patches welcome).");
@@ -109,29 +140,78 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
 
   @Override
   public void initialize() {
-    if(ids.size() > 65536) {
-      throw new AbortException("Distance matrixes currently have a limit of 65536 objects (~16 GB). After this, the array size exceeds the Java integer range, and a different data structure needs to be used.");
-    }
-    DistanceQuery<O> distanceQuery = distance.instantiate(refrelation.get());
-
-    final int msize = triangleSize(ids.size());
-    matrix = new double[msize];
-    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+    final long msize = triangleSize(ids.size());
+    matrix = singlePrecision ? new SegmentedFloatBigArray(msize) : new SegmentedDoubleBigArray(msize);
+    final int nblocks = (ids.size() + BLOCKSIZE - 1) / BLOCKSIZE;
 
     Duration timer = LOG.newDuration(getClass().getName() + ".precomputation-time").begin();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", msize, LOG) : null;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      // y < x -- must match {@link #getOffset}!
-      for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
-        matrix[pos++] = distanceQuery.distance(ix, iy);
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", (nblocks * (nblocks + 1)) >>> 1, LOG) : null;
+    ParallelCore.getCore().getForkJoinPool().invoke(new BlockTask(0, nblocks, prog));
+    LOG.ensureCompleted(prog);
+    LOG.statistics(timer.end());
+  }
+
+  /**
+   * Task to compute a range of block rows of the matrix.
+   *
+   * @author Erich Schubert
+   */
+  private class BlockTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Block rows to process.
+     */
+    private final int start, end;
+
+    /**
+     * Progress, may be {@code null}.
+     */
+    private final FiniteProgress prog;
+
+    /**
+     * Constructor.
+     *
+     * @param start First block row
+     * @param end End block row (exclusive)
+     * @param prog Progress
+     */
+    BlockTask(int start, int end, FiniteProgress prog) {
+      this.start = start;
+      this.end = end;
+      this.prog = prog;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start > 1) {
+        // Block row b has b+1 tiles; split such that both halves have
+        // about the same number of tiles:
+        final int mid = Math.max(start + 1, Math.min(end - 1, (int) Math.sqrt(((double) start * start + (double) end * end) * .5)));
+        invokeAll(new BlockTask(start, mid, prog), new BlockTask(mid, end, prog));
+        return;
       }
-      if(prog != null) {
-        prog.setProcessed(prog.getProcessed() + ix.getOffset(), LOG);
+      DistanceQuery<O> distanceQuery = distance.instantiate(refrelation.get());
+      DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+      final int size = ids.size(), x0 = start * BLOCKSIZE, x1 = Math.min(x0 + BLOCKSIZE, size);
+      // Process the tiles of this block row, each fitting into the cache.
+      for(int y0 = 0; y0 < x1; y0 += BLOCKSIZE) {
+        for(ix.seek(x0); ix.getOffset() < x1; ix.advance()) {
+          final int x = ix.getOffset(), y1 = Math.min(y0 + BLOCKSIZE, x);
+          // y < x -- must match {@link #getOffset}!
+          long pos = triangleSize(x) + y0;
+          for(iy.seek(y0); iy.getOffset() < y1; iy.advance()) {
+            matrix.set(pos++, distanceQuery.distance(ix, iy));
+          }
+        }
+        if(prog != null) {
+          prog.incrementProcessed(LOG);
+        }
       }
     }
-    LOG.ensureCompleted(prog);
-    LOG.statistics(timer.end());
   }
 
   /**
@@ -140,8 +220,8 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    * @param x Offset
    * @return Size of complete triangle
    */
-  protected static int triangleSize(int x) {
-    return (x * (x - 1)) >>> 1;
+  protected static long triangleSize(int x) {
+    return ((long) x * (x - 1)) >>> 1;
   }
 
   /**
@@ -151,14 +231,15 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    * @param y Y parameter
    * @return Array offset
    */
-  private int getOffset(int x, int y) {
+  private long getOffset(int x, int y) {
     return (y < x) ? (triangleSize(x) + y) : (triangleSize(y) + x);
   }
 
   @Override
   public void logStatistics() {
     if(matrix != null) {
-      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", matrix.length));
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", matrix.size()));
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-bytes", matrix.size() * matrix.bytesPerEntry()));
     }
   }
 
@@ -206,7 +287,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
     @Override
     public double distance(DBIDRef id1, DBIDRef id2) {
       final int x = ids.getOffset(id1), y = ids.getOffset(id2);
-      return (x != y) ? matrix[getOffset(x, y)] : 0.;
+      return (x != y) ? matrix.get(getOffset(x, y)) : 0.;
     }
 
     @Override
@@ -236,9 +317,9 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       result.add(0., id);
       final int x = ids.getOffset(id);
       // Case y < x: triangleSize(x) + y
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       for(int y = 0; y < x; y++, pos++) {
-        final double dist = matrix[pos];
+        final double dist = matrix.get(pos);
         if(dist <= range) {
           result.add(dist, it.seek(y));
         }
@@ -247,7 +328,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       // Case y > x: triangleSize(y) + x
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = ids.size(); y < size; pos += y++) {
-        final double dist = matrix[pos];
+        final double dist = matrix.get(pos);
         if(dist <= range) {
           result.add(dist, it.seek(y));
         }
@@ -274,16 +355,16 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       double max = Double.POSITIVE_INFINITY;
       final int x = ids.getOffset(id);
       // Case y < x: triangleSize(x) + y
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       for(int y = 0; y < x; y++, pos++) {
-        final double dist = matrix[pos];
+        final double dist = matrix.get(pos);
         max = dist <= max ? heap.insert(dist, it.seek(y)) : max;
       }
       assert (pos == triangleSize(x + 1));
       // Case y > x: triangleSize(y) + x
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = ids.size(); y < size; pos += y++) {
-        final double dist = matrix[pos];
+        final double dist = matrix.get(pos);
         max = dist <= max ? heap.insert(dist, it.seek(y)) : max;
       }
       return heap.toKNNList();
@@ -336,7 +417,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       off = 0;
       threshold = Double.POSITIVE_INFINITY;
       int x = ids.getOffset(query);
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       // Initialize ids:
       idx[0] = x;
       for(int y = 0; y < x; y++) {
@@ -347,10 +428,10 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       }
       // Initialize distances:
       dists[0] = 0;
-      System.arraycopy(matrix, pos, dists, 1, x);
+      matrix.get(pos, dists, 1, x);
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = dists.length; y < size; pos += y++) {
-        dists[y] = matrix[pos];
+        dists[y] = matrix.get(pos);
       }
       sorted = 1;
       return this;
@@ -470,14 +551,30 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
      */
     protected final Distance<? super O> distance;
 
+    /**
+     * Store with single precision only.
+     */
+    protected final boolean singlePrecision;
+
     /**
      * Constructor.
      *
      * @param distance Distance function
      */
     public Factory(Distance<? super O> distance) {
+      this(distance, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance function
+     * @param singlePrecision Store with single precision only
+     */
+    public Factory(Distance<? super O> distance, boolean singlePrecision) {
       super();
       this.distance = distance;
+      this.singlePrecision = singlePrecision;
     }
 
     @Override
@@ -486,7 +583,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       if(!(rids instanceof DBIDRange)) {
         throw new AbortException("Distance matrixes are currently only supported for DBID ranges (as used by static databases; not on modifiable databases) for performance reasons (Patches welcome).");
       }
-      return new PrecomputedDistanceMatrix<>(relation, (DBIDRange) rids, distance);
+      return new PrecomputedDistanceMatrix<>(relation, (DBIDRange) rids, distance, singlePrecision);
     }
 
     @Override
@@ -509,20 +606,31 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
        */
       public static final OptionID DISTANCE_ID = new OptionID("matrix.distance", "Distance function for the precomputed distance matrix.");
 
+      /**
+       * Flag to store the matrix with single precision only.
+       */
+      public static final OptionID FLOAT_ID = new OptionID("matrix.float", "Store the distances with single (float) precision only, to halve the memory requirements.");
+
       /**
        * Nested distance function.
        */
       protected Distance<? super O> distanceFunction;
 
+      /**
+       * Store with single precision only.
+       */
+      protected boolean singlePrecision;
+
       @Override
       public void configure(Parameterization config) {
         new ObjectParameter<Distance<? super O>>(DISTANCE_ID, Distance.class) //
             .grab(config, x -> distanceFunction = x);
+        new Flag(FLOAT_ID).grab(config, x -> singlePrecision = x);
       }
 
       @Override
       public Factory<O> make() {
-        return new Factory<>(distanceFunction);
+        return new Factory<>(distanceFunction, singlePrecision);
       }
     }
   }
@@ -23,9 +23,11 @@ package elki.index.preprocessed.knn;
 import javax.swing.event.EventListenerList;
 
 import elki.database.ids.*;
+import elki.database.query.LinearScanQuery;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
 import elki.database.query.knn.KNNSearcher;
+import elki.database.query.knn.LinearScanBatchKNN;
 import elki.database.query.knn.PreprocessorKNNQuery;
 import elki.database.relation.Relation;
 import elki.distance.Distance;
@@ -114,6 +116,22 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     }
     Duration duration = log.isStatistics() ? log.newDuration(this.getClass().getName() + ".precomputation-time").begin() : null;
     FiniteProgress progress = getLogger().isVerbose() ? new FiniteProgress("Materializing k nearest neighbors (k=" + k + ")", ids.size(), getLogger()) : null;
+    // Without an index, use a blocked batch scan for all objects at once.
+    if(knnQuery instanceof LinearScanQuery) {
+      KNNList[] knns = new LinearScanBatchKNN<>(distanceQuery).getKNN(ids, k);
+      int i = 0;
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        storage.put(iter, knns[i++]);
+      }
+      if(progress != null) {
+        progress.setProcessed(ids.size(), log);
+      }
+      log.ensureCompleted(progress);
+      if(duration != null) {
+        log.statistics(duration.end());
+      }
+      return;
+    }
     // Try bulk
     final boolean ismetric = getDistanceQuery().getDistance().isMetric();
     for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
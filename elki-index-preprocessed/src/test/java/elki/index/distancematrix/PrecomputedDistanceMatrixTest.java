@@ -20,6 +20,7 @@
  */
 package elki.index.distancematrix;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -29,9 +30,11 @@ import elki.data.DoubleVector;
 import elki.data.type.TypeUtil;
 import elki.database.Database;
 import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDRef;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
 import elki.database.relation.Relation;
 import elki.distance.CosineDistance;
 import elki.distance.minkowski.EuclideanDistance;
@@ -82,6 +85,28 @@ public class PrecomputedDistanceMatrixTest extends AbstractIndexStructureTest {
     }
   }
 
+  /**
+   * Single precision storage should give the same neighbors, with distances
+   * rounded to float.
+   */
+  @Test
+  public void testSinglePrecision() {
+    ListParameterization inputparams = new ListParameterization() //
+        .addParameter(StaticArrayDatabase.Par.INDEX_ID, PrecomputedDistanceMatrix.Factory.class) //
+        .addParameter(PrecomputedDistanceMatrix.Factory.Par.DISTANCE_ID, EuclideanDistance.class) //
+        .addFlag(PrecomputedDistanceMatrix.Factory.Par.FLOAT_ID);
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds, inputparams);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = new QueryBuilder<>(relation, EuclideanDistance.STATIC).cheapOnly().distanceQuery();
+    assertTrue("Not using the distance matrix.", dq instanceof PrecomputedDistanceMatrix.PrecomputedDistanceQuery);
+    for(DBIDIter a = relation.iterDBIDs(); a.valid(); a.advance()) {
+      for(DBIDIter b = relation.iterDBIDs(); b.valid(); b.advance()) {
+        double exact = EuclideanDistance.STATIC.distance(relation.get(a), relation.get(b));
+        assertEquals("Distance not stored with float precision.", (float) exact, dq.distance(a, b), 0.);
+      }
+    }
+  }
+
   @Test
   public void testCosine() {
     PrecomputedDistanceMatrix.Factory<?> factory = new ELKIBuilder<>(PrecomputedDistanceMatrix.Factory.class) //
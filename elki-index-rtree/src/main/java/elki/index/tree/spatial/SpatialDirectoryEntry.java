@@ -23,10 +23,13 @@ package elki.index.tree.spatial;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 
 import elki.data.ModifiableHyperBoundingBox;
 import elki.data.spatial.SpatialComparable;
 import elki.index.tree.DirectoryEntry;
+import elki.utilities.io.ByteArrayUtil;
+import elki.utilities.io.ByteBufferSerializer;
 
 /**
  * Represents an entry in a directory node of a spatial index.
@@ -44,6 +47,11 @@ public class SpatialDirectoryEntry implements DirectoryEntry, SpatialEntry {
    */
   private static final long serialVersionUID = 2;
 
+  /**
+   * Binary serializer, for pages stored in a byte buffer.
+   */
+  public static final ByteBufferSerializer<SpatialDirectoryEntry> SERIALIZER = new Serializer();
+
   /**
    * Holds the id of the object (node or data object) represented by this entry.
    */
@@ -173,4 +181,46 @@ public class SpatialDirectoryEntry implements DirectoryEntry, SpatialEntry {
   public int hashCode() {
     return id;
   }
+
+  /**
+   * Binary serialization: page id, dimensionality (as varint), minima, maxima.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - serializes - SpatialDirectoryEntry
+   */
+  public static class Serializer implements ByteBufferSerializer<SpatialDirectoryEntry> {
+    @Override
+    public SpatialDirectoryEntry fromByteBuffer(ByteBuffer buffer) throws IOException {
+      final int id = buffer.getInt();
+      final int dim = ByteArrayUtil.readUnsignedVarint(buffer);
+      final double[] min = new double[dim], max = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        min[d] = buffer.getDouble();
+      }
+      for(int d = 0; d < dim; d++) {
+        max[d] = buffer.getDouble();
+      }
+      return new SpatialDirectoryEntry(id, new ModifiableHyperBoundingBox(min, max));
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, SpatialDirectoryEntry entry) throws IOException {
+      final double[] min = entry.mbr.getMinRef(), max = entry.mbr.getMaxRef();
+      buffer.putInt(entry.id);
+      ByteArrayUtil.writeUnsignedVarint(buffer, min.length);
+      for(double v : min) {
+        buffer.putDouble(v);
+      }
+      for(double v : max) {
+        buffer.putDouble(v);
+      }
+    }
+
+    @Override
+    public int getByteSize(SpatialDirectoryEntry entry) {
+      final int dim = entry.getDimensionality();
+      return ByteArrayUtil.SIZE_INT + ByteArrayUtil.getUnsignedVarintSize(dim) + 2 * ByteArrayUtil.SIZE_DOUBLE * dim;
+    }
+  }
 }
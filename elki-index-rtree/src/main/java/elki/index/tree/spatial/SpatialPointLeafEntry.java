@@ -23,11 +23,14 @@ package elki.index.tree.spatial;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 
 import elki.data.NumberVector;
 import elki.database.ids.DBID;
 import elki.database.ids.DBIDUtil;
 import elki.index.tree.LeafEntry;
+import elki.utilities.io.ByteArrayUtil;
+import elki.utilities.io.ByteBufferSerializer;
 
 /**
  * Represents an entry in a leaf node of a spatial index. A SpatialLeafEntry
@@ -43,6 +46,11 @@ public class SpatialPointLeafEntry implements LeafEntry, SpatialEntry, NumberVec
    */
   private static final long serialVersionUID = 2;
 
+  /**
+   * Binary serializer, for pages stored in a byte buffer.
+   */
+  public static final ByteBufferSerializer<SpatialPointLeafEntry> SERIALIZER = new Serializer();
+
   /**
    * Holds the id of the object (node or data object) represented by this entry.
    */
@@ -125,7 +133,7 @@ public class SpatialPointLeafEntry implements LeafEntry, SpatialEntry, NumberVec
    */
   @Override
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-    id = DBIDUtil.importInteger(in.read());
+    id = DBIDUtil.importInteger(in.readInt());
     values = new double[in.readInt()];
     for(int d = 0; d < values.length; d++) {
       values[d] = in.readDouble();
@@ -158,4 +166,37 @@ public class SpatialPointLeafEntry implements LeafEntry, SpatialEntry, NumberVec
   public int hashCode() {
     return id.hashCode();
   }
+
+  /**
+   * Binary serialization: object id, dimensionality (as varint), values.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - serializes - SpatialPointLeafEntry
+   */
+  public static class Serializer implements ByteBufferSerializer<SpatialPointLeafEntry> {
+    @Override
+    public SpatialPointLeafEntry fromByteBuffer(ByteBuffer buffer) throws IOException {
+      final DBID id = DBIDUtil.importInteger(buffer.getInt());
+      final double[] values = new double[ByteArrayUtil.readUnsignedVarint(buffer)];
+      for(int d = 0; d < values.length; d++) {
+        values[d] = buffer.getDouble();
+      }
+      return new SpatialPointLeafEntry(id, values);
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, SpatialPointLeafEntry entry) throws IOException {
+      buffer.putInt(DBIDUtil.asInteger(entry.id));
+      ByteArrayUtil.writeUnsignedVarint(buffer, entry.values.length);
+      for(double v : entry.values) {
+        buffer.putDouble(v);
+      }
+    }
+
+    @Override
+    public int getByteSize(SpatialPointLeafEntry entry) {
+      return ByteArrayUtil.SIZE_INT + ByteArrayUtil.getUnsignedVarintSize(entry.values.length) + ByteArrayUtil.SIZE_DOUBLE * entry.values.length;
+    }
+  }
 }
@@ -20,8 +20,14 @@
  */
 package elki.index.tree.spatial.rstarvariants.rstar;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import elki.index.tree.spatial.SpatialDirectoryEntry;
 import elki.index.tree.spatial.SpatialEntry;
+import elki.index.tree.spatial.SpatialPointLeafEntry;
 import elki.index.tree.spatial.rstarvariants.AbstractRStarTreeNode;
+import elki.persistent.ByteBufferPage;
 
 /**
  * Represents a node in an R*-Tree.
@@ -29,7 +35,7 @@ import elki.index.tree.spatial.rstarvariants.AbstractRStarTreeNode;
  * @author Elke Achtert
  * @since 0.1
  */
-public class RStarTreeNode extends AbstractRStarTreeNode<RStarTreeNode, SpatialEntry> {
+public class RStarTreeNode extends AbstractRStarTreeNode<RStarTreeNode, SpatialEntry> implements ByteBufferPage {
   private static final long serialVersionUID = 1;
 
   /**
@@ -49,4 +55,19 @@ public class RStarTreeNode extends AbstractRStarTreeNode<RStarTreeNode, SpatialE
   public RStarTreeNode(int capacity, boolean isLeaf) {
     super(capacity, isLeaf);
   }
+
+  @Override
+  public void writeToBuffer(ByteBuffer buffer) throws IOException {
+    writeToBuffer(buffer, SpatialPointLeafEntry.class, SpatialPointLeafEntry.SERIALIZER, SpatialDirectoryEntry.class, SpatialDirectoryEntry.SERIALIZER);
+  }
+
+  @Override
+  public int getByteSize() throws IOException {
+    return getByteSize(SpatialPointLeafEntry.class, SpatialPointLeafEntry.SERIALIZER, SpatialDirectoryEntry.class, SpatialDirectoryEntry.SERIALIZER);
+  }
+
+  @Override
+  public void readFromBuffer(ByteBuffer buffer) throws IOException {
+    readFromBuffer(buffer, SpatialPointLeafEntry.SERIALIZER, SpatialDirectoryEntry.SERIALIZER);
+  }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ package elki.index.tree;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +34,7 @@ import elki.logging.LoggingConfiguration;
 import elki.persistent.AbstractExternalizablePage;
 import elki.utilities.datastructures.BitsUtil;
 import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.ByteBufferSerializer;
 
 /**
  * Abstract superclass for nodes in an tree based index structure.
@@ -147,6 +149,88 @@ public abstract class AbstractNode<E> extends AbstractExternalizablePage impleme
     // Entries will be read in subclasses
   }
 
+  /**
+   * Write the header and the entries of this node to a buffer, for pages
+   * implementing {@link elki.persistent.ByteBufferPage}.
+   *
+   * <p>
+   * The serializers only encode entries of exactly the given classes; entries
+   * of subclasses (which may carry additional fields) are rejected.
+   *
+   * @param buffer Buffer to write to
+   * @param leafclass Class of leaf entries
+   * @param leafser Serializer for leaf entries
+   * @param dirclass Class of directory entries
+   * @param dirser Serializer for directory entries
+   * @throws IOException on encoding errors
+   */
+  @SuppressWarnings("unchecked")
+  protected void writeToBuffer(ByteBuffer buffer, Class<?> leafclass, ByteBufferSerializer<?> leafser, Class<?> dirclass, ByteBufferSerializer<?> dirser) throws IOException {
+    checkEntryClass(isLeaf ? leafclass : dirclass);
+    buffer.put(isLeaf ? (byte) 1 : (byte) 0);
+    buffer.putInt(numEntries);
+    buffer.putInt(entries.length);
+    final ByteBufferSerializer<Object> ser = (ByteBufferSerializer<Object>) (isLeaf ? leafser : dirser);
+    for(int i = 0; i < numEntries; i++) {
+      ser.toByteBuffer(buffer, entries[i]);
+    }
+  }
+
+  /**
+   * Size of this node in the binary page format, for pages implementing
+   * {@link elki.persistent.ByteBufferPage}.
+   *
+   * @param leafclass Class of leaf entries
+   * @param leafser Serializer for leaf entries
+   * @param dirclass Class of directory entries
+   * @param dirser Serializer for directory entries
+   * @return Size in bytes
+   * @throws IOException on encoding errors
+   */
+  @SuppressWarnings("unchecked")
+  protected int getByteSize(Class<?> leafclass, ByteBufferSerializer<?> leafser, Class<?> dirclass, ByteBufferSerializer<?> dirser) throws IOException {
+    checkEntryClass(isLeaf ? leafclass : dirclass);
+    final ByteBufferSerializer<Object> ser = (ByteBufferSerializer<Object>) (isLeaf ? leafser : dirser);
+    int size = 1 + 2 * Integer.BYTES;
+    for(int i = 0; i < numEntries; i++) {
+      size += ser.getByteSize(entries[i]);
+    }
+    return size;
+  }
+
+  /**
+   * Ensure all entries are of exactly the given class.
+   *
+   * @param cls Entry class
+   * @throws IOException if an entry is of a different class
+   */
+  private void checkEntryClass(Class<?> cls) throws IOException {
+    for(int i = 0; i < numEntries; i++) {
+      if(entries[i].getClass() != cls) {
+        throw new IOException("Entries of class " + entries[i].getClass().getName() + " cannot be written in the binary page format of " + getClass().getName());
+      }
+    }
+  }
+
+  /**
+   * Read the header and the entries of this node from a buffer, for pages
+   * implementing {@link elki.persistent.ByteBufferPage}.
+   *
+   * @param buffer Buffer to read from
+   * @param leafser Serializer for leaf entries
+   * @param dirser Serializer for directory entries
+   * @throws IOException on decoding errors
+   */
+  protected void readFromBuffer(ByteBuffer buffer, ByteBufferSerializer<?> leafser, ByteBufferSerializer<?> dirser) throws IOException {
+    isLeaf = buffer.get() != 0;
+    numEntries = buffer.getInt();
+    entries = new Object[buffer.getInt()];
+    final ByteBufferSerializer<?> ser = isLeaf ? leafser : dirser;
+    for(int i = 0; i < numEntries; i++) {
+      entries[i] = ser.fromByteBuffer(buffer);
+    }
+  }
+
   /**
    * Returns a string representation of this node.
    *
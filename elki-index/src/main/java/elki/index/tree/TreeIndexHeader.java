@@ -217,6 +217,20 @@ public class TreeIndexHeader extends DefaultPageHeader {
    * @throws IOException thrown on IO errors
    */
   public void writeEmptyPages(IntegerArray emptyPages, FileChannel file) throws IOException {
+    writeEmptyPages(emptyPages, file, file.size());
+  }
+
+  /**
+   * Write the indices of empty pages at the given position of
+   * <code>file</code>, usually just after the last page. Calling this method
+   * should be followed by a {@link #writeHeader(FileChannel)}.
+   * 
+   * @param emptyPages the stack of empty page ids which remain to be filled
+   * @param file File to work with
+   * @param position File position to write to
+   * @throws IOException thrown on IO errors
+   */
+  public void writeEmptyPages(IntegerArray emptyPages, FileChannel file, long position) throws IOException {
     if(emptyPages.isEmpty()) {
       this.emptyPagesSize = 0;
       return; // nothing to write
@@ -225,7 +239,9 @@ public class TreeIndexHeader extends DefaultPageHeader {
     this.emptyPagesSize = emptyPages.size * Integer.BYTES;
     ByteBuffer buf = ByteBuffer.allocateDirect(this.emptyPagesSize);
     buf.asIntBuffer().put(emptyPages.data, 0, emptyPages.size);
-    file.write(buf, file.size());
+    while(buf.hasRemaining()) {
+      file.write(buf, position + buf.position());
+    }
   }
 
   /**
@@ -238,6 +254,20 @@ public class TreeIndexHeader extends DefaultPageHeader {
    *         correctly read from file
    */
   public IntegerArray readEmptyPages(FileChannel file) throws IOException, ClassNotFoundException {
+    return readEmptyPages(file, file.size() - emptyPagesSize);
+  }
+
+  /**
+   * Read the empty pages from the given position of <code>file</code>.
+   * 
+   * @param file File to work with
+   * @param position File position the empty pages were written to
+   * @return a stack of empty pages in <code>file</code>
+   * @throws IOException thrown on IO errors
+   * @throws ClassNotFoundException if the stack of empty pages could not be
+   *         correctly read from file
+   */
+  public IntegerArray readEmptyPages(FileChannel file, long position) throws IOException, ClassNotFoundException {
     IntegerArray emptyPages = new IntegerArray();
     if(emptyPagesSize > 0) {
       int n = emptyPagesSize / Integer.BYTES;
@@ -245,8 +275,14 @@ public class TreeIndexHeader extends DefaultPageHeader {
         emptyPages.data = new int[n];
       }
       ByteBuffer buf = ByteBuffer.allocateDirect(emptyPagesSize);
-      file.read(buf, file.size() - emptyPagesSize);
+      while(buf.hasRemaining()) {
+        if(file.read(buf, position + buf.position()) < 0) {
+          throw new IOException("Incomplete read of the empty pages at position " + position);
+        }
+      }
+      buf.flip();
       buf.asIntBuffer().get(emptyPages.data, 0, n);
+      emptyPages.size = n;
     }
     return emptyPages;
   }
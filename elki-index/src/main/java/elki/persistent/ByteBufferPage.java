@@ -0,0 +1,63 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Pages with an explicit binary encoding, which can be written to and read
+ * from a byte buffer (e.g., a memory-mapped region of a page file) directly,
+ * without going through Java serialization.
+ * <p>
+ * Page files should prefer this encoding when available, and fall back to
+ * {@link java.io.Externalizable} otherwise.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public interface ByteBufferPage extends ExternalizablePage {
+  /**
+   * Write the contents of this page to a buffer. The page id is not written,
+   * as it is implied by the position in the page file.
+   *
+   * @param buffer Buffer to write to, limited to the page size
+   * @throws IOException on encoding errors
+   * @throws java.nio.BufferOverflowException if the page does not fit
+   */
+  void writeToBuffer(ByteBuffer buffer) throws IOException;
+
+  /**
+   * Number of bytes {@link #writeToBuffer} will write.
+   *
+   * @return Size in bytes
+   * @throws IOException on encoding errors
+   */
+  int getByteSize() throws IOException;
+
+  /**
+   * Read the contents of this page from a buffer.
+   *
+   * @param buffer Buffer to read from
+   * @throws IOException on decoding errors
+   */
+  void readFromBuffer(ByteBuffer buffer) throws IOException;
+}
@@ -32,6 +32,7 @@ import elki.datasource.bundle.MultipleObjectsBundle;
 import elki.logging.Logging;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -56,16 +57,23 @@ public class ConvertToBundleApplication extends AbstractApplication {
    */
   private Path outfile;
 
+  /**
+   * Store the data by column.
+   */
+  private boolean columns;
+
   /**
    * Constructor.
    *
    * @param input Data source configuration
    * @param outfile Output filename
+   * @param columns Store the data by column
    */
-  public ConvertToBundleApplication(DatabaseConnection input, Path outfile) {
+  public ConvertToBundleApplication(DatabaseConnection input, Path outfile, boolean columns) {
     super();
     this.input = input;
     this.outfile = outfile;
+    this.columns = columns;
   }
 
   @Override
@@ -77,10 +85,9 @@ public class ConvertToBundleApplication extends AbstractApplication {
     if(LOG.isVerbose()) {
       LOG.verbose("Serializing to output file: " + outfile.toString());
     }
-    // TODO: make configurable?
     try (FileChannel channel = FileChannel.open(outfile, //
-        StandardOpenOption.WRITE)) {
-      new BundleWriter().writeBundleStream(bundle.asStream(), channel);
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      new BundleWriter().writeBundleStream(bundle.asStream(), channel, columns, BundleWriter.DEFAULT_BLOCKSIZE);
     }
     catch(IOException e) {
       LOG.exception("IO Error", e);
@@ -98,6 +105,11 @@ public class ConvertToBundleApplication extends AbstractApplication {
      */
     public static final OptionID DATABASE_CONNECTION_ID = new OptionID("dbc", "Database connection class.");
 
+    /**
+     * Flag to store the data by column.
+     */
+    public static final OptionID COLUMNS_ID = new OptionID("bundle.columns", "Store the bundle by column, such that numerical vectors can be loaded in bulk.");
+
     /**
      * The data input step.
      */
@@ -108,17 +120,23 @@ public class ConvertToBundleApplication extends AbstractApplication {
      */
     private Path outfile;
 
+    /**
+     * Store the data by column.
+     */
+    private boolean columns;
+
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
       new ObjectParameter<DatabaseConnection>(DATABASE_CONNECTION_ID, DatabaseConnection.class, FileBasedDatabaseConnection.class) //
           .grab(config, x -> input = x);
       outfile = super.getParameterOutputFile(config, "File name to serialize the bundle to.");
+      new Flag(COLUMNS_ID).grab(config, x -> columns = x);
     }
 
     @Override
     public ConvertToBundleApplication make() {
-      return new ConvertToBundleApplication(input, outfile);
+      return new ConvertToBundleApplication(input, outfile, columns);
     }
   }
 
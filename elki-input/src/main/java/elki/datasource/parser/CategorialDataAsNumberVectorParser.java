@@ -113,9 +113,8 @@ public class CategorialDataAsNumberVectorParser<V extends NumberVector> extends
             attributes.add(Double.NaN);
             continue;
           }
-          if(!warnedPrecision && (e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW)) {
+          if((e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW) && warnedPrecision.compareAndSet(false, true)) {
             getLogger().warning("Too many digits in what looked like a double number - treating as string: " + tokenizer.getSubstring());
-            warnedPrecision = true;
           }
           int id = unique.getInt(s);
           if(id == unique.defaultReturnValue()) {
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 import elki.data.DoubleVector;
@@ -135,7 +136,7 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
   /**
    * Emit a double-precision limit warning once.
    */
-  boolean warnedPrecision = false;
+  final AtomicBoolean warnedPrecision = new AtomicBoolean();
 
   /**
    * Emit a dimensionality change warning once.
@@ -212,24 +213,7 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
     try {
       while(reader.nextLineExceptComments()) {
         if(parseLineInternal()) {
-          final int curdim = curvec.getDimensionality();
-          if(curdim > maxdim || mindim > curdim) {
-            mindim = (curdim < mindim) ? curdim : mindim;
-            maxdim = (curdim > maxdim) ? curdim : maxdim;
-            if(!warnedDim && mindim != maxdim && LOG.isVerbose()) {
-              LOG.verbose("Non-uniform column width detected in input line " + reader.getLineNumber() + ", widening data type to " + mindim + "-" + maxdim + " dimensions.");
-              warnedDim = true;
-            }
-            buildMeta();
-            nextevent = Event.NEXT_OBJECT;
-            return Event.META_CHANGED;
-          }
-          else if(curlbl != null && meta != null && haslabels && meta.size() == 1) {
-            buildMeta();
-            nextevent = Event.NEXT_OBJECT;
-            return Event.META_CHANGED;
-          }
-          return Event.NEXT_OBJECT;
+          return nextObjectEvent(reader.getLineNumber());
         }
       }
       if(maxdim == 0) {
@@ -248,6 +232,35 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
     unique.clear();
   }
 
+  /**
+   * Update the dimensionality range with the current vector, and determine the
+   * event to report for it.
+   *
+   * @param line Input line number, for diagnostics
+   * @return {@link Event#META_CHANGED} (followed by
+   *         {@link Event#NEXT_OBJECT}) or {@link Event#NEXT_OBJECT}
+   */
+  protected Event nextObjectEvent(int line) {
+    final int curdim = curvec.getDimensionality();
+    if(curdim > maxdim || mindim > curdim) {
+      mindim = (curdim < mindim) ? curdim : mindim;
+      maxdim = (curdim > maxdim) ? curdim : maxdim;
+      if(!warnedDim && mindim != maxdim && getLogger().isVerbose()) {
+        getLogger().verbose("Non-uniform column width detected in input line " + line + ", widening data type to " + mindim + "-" + maxdim + " dimensions.");
+        warnedDim = true;
+      }
+      buildMeta();
+      nextevent = Event.NEXT_OBJECT;
+      return Event.META_CHANGED;
+    }
+    else if(curlbl != null && meta != null && haslabels && meta.size() == 1) {
+      buildMeta();
+      nextevent = Event.NEXT_OBJECT;
+      return Event.META_CHANGED;
+    }
+    return Event.NEXT_OBJECT;
+  }
+
   /**
    * Update the meta element.
    */
@@ -289,9 +302,8 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
           continue;
         }
         catch(NumberFormatException e) {
-          if(!warnedPrecision && (e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW)) {
+          if((e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW) && warnedPrecision.compareAndSet(false, true)) {
             getLogger().warning("Too many digits in what looked like a double number - treating as string: " + tokenizer.getSubstring());
-            warnedPrecision = true;
           }
           // Ignore attempt, add to labels below.
         }
@@ -327,6 +339,18 @@ public class NumberVectorLabelParser<V extends NumberVector> extends AbstractStr
    * @return a vector of type V containing the given attribute values
    */
   protected V createVector() {
+    return createVector(attributes);
+  }
+
+  /**
+   * Creates a database object of type V from the given attributes.
+   * <p>
+   * This may be called concurrently, by parsers that parse blocks in parallel.
+   *
+   * @param attributes Numerical attributes
+   * @return a vector of type V containing the given attribute values
+   */
+  protected V createVector(DoubleArray attributes) {
     return factory.newNumberVector(attributes, attributes);
   }
 
@@ -0,0 +1,482 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+
+import elki.data.LabelList;
+import elki.data.NumberVector;
+import elki.logging.Logging;
+import elki.parallel.ParallelCore;
+import elki.utilities.datastructures.arraylike.DoubleArray;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.ParseUtil;
+import elki.utilities.io.Tokenizer;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+/**
+ * Multi-threaded variant of the {@link NumberVectorLabelParser}.
+ * <p>
+ * The input is read sequentially in large blocks of bytes, which are cut at
+ * the last line break. Each block is then tokenized and converted to vectors
+ * by a worker thread of the {@link ParallelCore}, while the next blocks are
+ * being read. The parsed blocks are consumed in input order, so the resulting
+ * bundle has the same rows in the same order as with the serial parser, and
+ * supports the same column separators, quotes, comments and label columns.
+ * <p>
+ * The input must use a character encoding where the line feed byte does not
+ * occur within multi-byte characters, such as UTF-8 or any single-byte
+ * encoding.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> the type of NumberVector used
+ */
+public class ParallelNumberVectorLabelParser<V extends NumberVector> extends NumberVectorLabelParser<V> {
+  /**
+   * Logging class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelNumberVectorLabelParser.class);
+
+  /**
+   * Default block size.
+   */
+  public static final int DEFAULT_BLOCKSIZE = 1 << 22;
+
+  /**
+   * Input format.
+   */
+  protected CSVReaderFormat format;
+
+  /**
+   * Block size in bytes.
+   */
+  protected int blocksize;
+
+  /**
+   * Character set for decoding.
+   */
+  private Charset charset = Charset.defaultCharset();
+
+  /**
+   * Input stream.
+   */
+  private InputStream in;
+
+  /**
+   * Incomplete last line of the previous block.
+   */
+  private byte[] carry;
+
+  /**
+   * Length of the incomplete last line.
+   */
+  private int carrylen;
+
+  /**
+   * End of input reached.
+   */
+  private boolean eof;
+
+  /**
+   * Number of blocks submitted.
+   */
+  private int numblocks;
+
+  /**
+   * Blocks submitted for parsing, in input order.
+   */
+  private ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+
+  /**
+   * Block currently being consumed.
+   */
+  private Block current;
+
+  /**
+   * Position in the current block.
+   */
+  private int pos;
+
+  /**
+   * Line number of the first line in the current block, minus one.
+   */
+  private int lineoffset;
+
+  /**
+   * Whether we are connected to the parallel core.
+   */
+  private boolean connected;
+
+  /**
+   * Constructor.
+   *
+   * @param format Input format
+   * @param labelIndices Column indexes that are not numeric.
+   * @param factory Vector factory
+   * @param blocksize Block size in bytes
+   */
+  public ParallelNumberVectorLabelParser(CSVReaderFormat format, long[] labelIndices, NumberVector.Factory<V> factory, int blocksize) {
+    super(format, labelIndices, factory);
+    this.format = format;
+    this.blocksize = blocksize;
+  }
+
+  /**
+   * Constructor with defaults.
+   *
+   * @param factory Vector factory
+   */
+  public ParallelNumberVectorLabelParser(NumberVector.Factory<V> factory) {
+    this(CSVReaderFormat.DEFAULT_FORMAT, null, factory, DEFAULT_BLOCKSIZE);
+  }
+
+  @Override
+  public void initStream(InputStream in) {
+    super.initStream(in);
+    this.in = in;
+    carry = null;
+    carrylen = 0;
+    eof = false;
+    numblocks = 0;
+    pending.clear();
+    current = null;
+    pos = 0;
+    lineoffset = 0;
+    if(!connected) {
+      ParallelCore.getCore().connect();
+      connected = true;
+    }
+  }
+
+  @Override
+  public Event nextEvent() {
+    if(nextevent != null) {
+      Event ret = nextevent;
+      nextevent = null;
+      return ret;
+    }
+    while(true) {
+      if(current == null || pos >= current.size) {
+        if(current != null) {
+          lineoffset += current.lines;
+        }
+        if((current = nextBlock()) == null) {
+          disconnect();
+          if(maxdim == 0) {
+            throw new AbortException("No numeric data was read in line " + lineoffset + ". Verify the column separator; for textual data use other parsers.");
+          }
+          return Event.END_OF_STREAM;
+        }
+        pos = 0;
+        continue;
+      }
+      final int i = pos++;
+      V vec = current.vecs[i];
+      LabelList lbl = current.lbls[i];
+      if(vec == null) {
+        // Maybe a label row?
+        if(curvec == null) {
+          columnnames = new ArrayList<>(lbl.size());
+          for(int j = 0; j < lbl.size(); j++) {
+            columnnames.add(lbl.get(j));
+          }
+          haslabels = false;
+          continue;
+        }
+        vec = createVector(new DoubleArray(0));
+      }
+      haslabels |= lbl.size() > 0;
+      curvec = vec;
+      curlbl = lbl;
+      return nextObjectEvent(lineoffset + current.lineno[i]);
+    }
+  }
+
+  /**
+   * Get the next parsed block, reading and submitting further blocks.
+   *
+   * @return Next block, or {@code null} at the end of the input
+   */
+  private Block nextBlock() {
+    try {
+      submitBlocks();
+      Future<Block> next = pending.poll();
+      return next != null ? next.get() : null;
+    }
+    catch(IOException e) {
+      throw new IllegalArgumentException("Error while reading block " + numblocks + ".", e);
+    }
+    catch(ExecutionException e) {
+      Throwable cause = e.getCause();
+      if(cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException("Parsing failed.", e);
+    }
+    catch(InterruptedException e) {
+      throw new RuntimeException("Parallel parsing interrupted.");
+    }
+  }
+
+  /**
+   * Read blocks from the input, and submit them for parsing, until enough
+   * blocks are in progress to keep all threads busy.
+   *
+   * @throws IOException on read errors
+   */
+  private void submitBlocks() throws IOException {
+    final ParallelCore core = ParallelCore.getCore();
+    final int maxpending = core.getParallelism() << 1;
+    while(!eof && pending.size() < maxpending) {
+      byte[] buf = new byte[Math.max(blocksize, carrylen << 1)];
+      int len = carrylen;
+      if(carrylen > 0) {
+        System.arraycopy(carry, 0, buf, 0, carrylen);
+      }
+      while(len < buf.length) {
+        final int r = in.read(buf, len, buf.length - len);
+        if(r < 0) {
+          eof = true;
+          break;
+        }
+        len += r;
+      }
+      int cut = len;
+      if(!eof) {
+        while(cut > 0 && buf[cut - 1] != '\n') {
+          --cut;
+        }
+        if(cut == 0) { // Line longer than the buffer
+          carry = buf;
+          carrylen = len;
+          continue;
+        }
+      }
+      carrylen = len - cut;
+      carry = carrylen > 0 ? Arrays.copyOfRange(buf, cut, len) : null;
+      if(cut > 0) {
+        pending.add(core.submit(new Block(buf, cut)));
+        ++numblocks;
+      }
+    }
+  }
+
+  /**
+   * Disconnect from the parallel core.
+   */
+  private void disconnect() {
+    if(connected) {
+      ParallelCore.getCore().disconnect();
+      connected = false;
+    }
+  }
+
+  @Override
+  public void cleanup() {
+    for(Future<Block> f : pending) {
+      f.cancel(false);
+    }
+    pending.clear();
+    current = null;
+    carry = null;
+    in = null;
+    disconnect();
+    super.cleanup();
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * A block of input lines, parsed by a worker thread.
+   *
+   * @author Erich Schubert
+   */
+  private class Block implements Callable<Block> {
+    /**
+     * Raw input data.
+     */
+    private byte[] data;
+
+    /**
+     * Length of the input data.
+     */
+    private int len;
+
+    /**
+     * Parsed vectors; {@code null} for rows without numeric values.
+     */
+    V[] vecs;
+
+    /**
+     * Parsed labels.
+     */
+    LabelList[] lbls;
+
+    /**
+     * Line numbers within the block.
+     */
+    int[] lineno;
+
+    /**
+     * Number of rows parsed.
+     */
+    int size;
+
+    /**
+     * Number of lines in the block.
+     */
+    int lines;
+
+    /**
+     * Constructor.
+     *
+     * @param data Raw data
+     * @param len Data length
+     */
+    Block(byte[] data, int len) {
+      this.data = data;
+      this.len = len;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Block call() {
+      final String input = new String(data, 0, len, charset);
+      data = null;
+      final Tokenizer tokenizer = new Tokenizer(format.colSep, format.quoteChars);
+      final Matcher comment = format.comment != null ? format.comment.matcher(input) : null;
+      final DoubleArray attributes = new DoubleArray(11);
+      final ArrayList<String> labels = new ArrayList<>();
+      final ObjectOpenHashSet<String> unique = new ObjectOpenHashSet<>();
+      int cap = 64;
+      vecs = (V[]) new NumberVector[cap];
+      lbls = new LabelList[cap];
+      lineno = new int[cap];
+      for(int start = 0, end; start < input.length(); start = end + 1) {
+        end = input.indexOf('\n', start);
+        end = end < 0 ? input.length() : end;
+        ++lines;
+        // Strip the line terminator only, not carriage returns within quotes:
+        int lend = end;
+        while(lend > start && input.charAt(lend - 1) == '\r') {
+          --lend;
+        }
+        if(lend == start || (comment != null && comment.region(start, lend).matches())) {
+          continue;
+        }
+        tokenizer.initialize(input, start, lend);
+        parseLine(tokenizer, attributes, labels, unique);
+        if(size == cap) {
+          cap <<= 1;
+          vecs = Arrays.copyOf(vecs, cap);
+          lbls = Arrays.copyOf(lbls, cap);
+          lineno = Arrays.copyOf(lineno, cap);
+        }
+        vecs[size] = attributes.size > 0 ? createVector(attributes) : null;
+        lbls[size] = LabelList.make(labels);
+        lineno[size++] = lines;
+        attributes.clear();
+        labels.clear();
+      }
+      tokenizer.cleanup();
+      return this;
+    }
+
+    /**
+     * Split a single line into numerical attributes and labels.
+     *
+     * @param tokenizer Tokenizer, initialized with the line
+     * @param attributes Output numerical attributes
+     * @param labels Output labels
+     * @param unique String unification
+     */
+    private void parseLine(Tokenizer tokenizer, DoubleArray attributes, ArrayList<String> labels, ObjectOpenHashSet<String> unique) {
+      for(int i = 0; tokenizer.valid(); tokenizer.advance(), i++) {
+        if(!isLabelColumn(i) && !tokenizer.isQuoted()) {
+          try {
+            attributes.add(tokenizer.getDouble());
+            continue;
+          }
+          catch(NumberFormatException e) {
+            if((e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW) && warnedPrecision.compareAndSet(false, true)) {
+              LOG.warning("Too many digits in what looked like a double number - treating as string: " + tokenizer.getSubstring());
+            }
+            // Ignore attempt, add to labels below.
+          }
+        }
+        // Else: labels.
+        String lbl = tokenizer.getStrippedSubstring();
+        if(lbl.length() > 0) {
+          labels.add(unique.addOrGet(lbl));
+        }
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends NumberVectorLabelParser.Par<V> {
+    /**
+     * Size of the blocks to parse in parallel.
+     */
+    public static final OptionID BLOCKSIZE_ID = new OptionID("parser.blocksize", "Size of the input blocks (in bytes) that are parsed in parallel.");
+
+    /**
+     * Block size in bytes.
+     */
+    protected int blocksize = DEFAULT_BLOCKSIZE;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(BLOCKSIZE_ID, DEFAULT_BLOCKSIZE) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> blocksize = x);
+    }
+
+    @Override
+    public ParallelNumberVectorLabelParser<V> make() {
+      return new ParallelNumberVectorLabelParser<>(format, labelIndices, factory, blocksize);
+    }
+  }
+}
@@ -163,9 +163,8 @@ public class SparseNumberVectorLabelParser<V extends SparseNumberVector> extends
           }
         }
         catch(NumberFormatException e) {
-          if(!warnedPrecision && (e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW)) {
+          if((e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW) && warnedPrecision.compareAndSet(false, true)) {
             getLogger().warning("Too many digits in what looked like a double number - treating as string: " + tokenizer.getSubstring());
-            warnedPrecision = true;
           }
           // continue with fallback below.
         }
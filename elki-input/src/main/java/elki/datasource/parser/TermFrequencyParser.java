@@ -153,9 +153,8 @@ public class TermFrequencyParser<V extends SparseNumberVector> extends NumberVec
         curterm = null;
       }
       catch(NumberFormatException e) {
-        if(!warnedPrecision && (e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW)) {
+        if((e == ParseUtil.PRECISION_OVERFLOW || e == ParseUtil.EXPONENT_OVERFLOW) && warnedPrecision.compareAndSet(false, true)) {
           getLogger().warning("Too many digits in what looked like a double number - treating as string: " + tokenizer.getSubstring());
-          warnedPrecision = true;
         }
         labels.add(curterm);
         curterm = tokenizer.getSubstring();
@@ -0,0 +1,240 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.LabelList;
+import elki.data.NumberVector;
+import elki.data.PackedDoubleVector;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDVar;
+import elki.datasource.parser.NumberVectorLabelParser;
+
+/**
+ * Test the bundle reader and writer, in both formats.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class BundleReaderWriterTest {
+  /**
+   * Build a test bundle.
+   *
+   * @param size Number of rows
+   * @param dim Dimensionality
+   * @param ids Include DBIDs
+   * @return Bundle
+   */
+  private static MultipleObjectsBundle makeBundle(int size, int dim, boolean ids) {
+    return makeBundle(size, dim, ids, DoubleVector.FACTORY);
+  }
+
+  /**
+   * Make a test bundle.
+   *
+   * @param size Size
+   * @param dim Dimensionality
+   * @param ids Include DBIDs
+   * @param factory Vector factory
+   * @return Bundle
+   */
+  private static <V extends NumberVector> MultipleObjectsBundle makeBundle(int size, int dim, boolean ids, NumberVector.Factory<V> factory) {
+    Random r = new Random(0L);
+    List<V> vecs = new ArrayList<>(size);
+    List<LabelList> lbls = new ArrayList<>(size);
+    for(int i = 0; i < size; i++) {
+      double[] v = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        v[d] = r.nextGaussian();
+      }
+      vecs.add(factory.newNumberVector(v));
+      List<String> l = new ArrayList<>();
+      l.add("label" + (i % 7));
+      lbls.add(LabelList.make(l));
+    }
+    MultipleObjectsBundle bundle = MultipleObjectsBundle.makeSimple(new VectorFieldTypeInformation<>(factory, dim), vecs, TypeUtil.LABELLIST, lbls);
+    if(ids) {
+      bundle.setDBIDs(DBIDUtil.generateStaticDBIDRange(size));
+    }
+    return bundle;
+  }
+
+  /**
+   * Compare two bundles.
+   *
+   * @param expected Expected bundle
+   * @param actual Bundle read
+   */
+  private static void assertBundleEquals(MultipleObjectsBundle expected, MultipleObjectsBundle actual) {
+    assertEquals("Number of columns", expected.metaLength(), actual.metaLength());
+    assertEquals("Number of rows", expected.dataLength(), actual.dataLength());
+    assertTrue("Vector type", TypeUtil.NUMBER_VECTOR_VARIABLE_LENGTH.isAssignableFromType(actual.meta(0)));
+    assertEquals("Vector type", TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(expected.meta(0)), TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(actual.meta(0)));
+    DBIDVar v1 = DBIDUtil.newVar(), v2 = DBIDUtil.newVar();
+    for(int i = 0; i < expected.dataLength(); i++) {
+      if(expected.assignDBID(i, v1)) {
+        assertTrue("DBIDs missing", actual.assignDBID(i, v2));
+        assertTrue("DBIDs differ", DBIDUtil.equal(v1, v2));
+      }
+      NumberVector e = (NumberVector) expected.data(i, 0), a = (NumberVector) actual.data(i, 0);
+      assertTrue("Vector type", e.getClass().isInstance(a));
+      assertEquals("Dimensionality", e.getDimensionality(), a.getDimensionality());
+      for(int d = 0; d < e.getDimensionality(); d++) {
+        assertEquals("Value differs", e.doubleValue(d), a.doubleValue(d), 0.);
+      }
+      assertEquals("Labels differ", expected.data(i, 1).toString(), actual.data(i, 1).toString());
+    }
+  }
+
+  /**
+   * Read a bundle file.
+   *
+   * @param file File
+   * @param window Window size
+   * @return Bundle
+   */
+  private static MultipleObjectsBundle read(File file, int window) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath())) {
+      return new BundleReader(channel, window).asMultipleObjectsBundle();
+    }
+  }
+
+  @Test
+  public void testOriginalFormat() throws IOException {
+    MultipleObjectsBundle bundle = makeBundle(1000, 5, true);
+    File file = File.createTempFile("elki-bundle", ".bundle");
+    file.deleteOnExit();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      new BundleWriter().writeBundleStream(bundle.asStream(), channel);
+    }
+    assertBundleEquals(bundle, read(file, BundleReader.WINDOW_SIZE));
+    // Small windows, to test remapping:
+    assertBundleEquals(bundle, read(file, 1000));
+  }
+
+  @Test
+  public void testRowBlocks() throws IOException {
+    MultipleObjectsBundle bundle = makeBundle(1000, 5, true);
+    File file = File.createTempFile("elki-bundle", ".bundle");
+    file.deleteOnExit();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      new BundleWriter().writeBundleStream(bundle.asStream(), channel, false, 128);
+    }
+    assertBundleEquals(bundle, read(file, BundleReader.WINDOW_SIZE));
+    assertBundleEquals(bundle, read(file, 1000));
+  }
+
+  @Test
+  public void testColumnBlocks() throws IOException {
+    for(int dim : new int[] { 0, 1, 17 }) {
+      MultipleObjectsBundle bundle = makeBundle(1000, dim, false);
+      File file = File.createTempFile("elki-bundle", ".bundle");
+      file.deleteOnExit();
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+        new BundleWriter().writeBundleStream(bundle.asStream(), channel, true, 300);
+      }
+      assertBundleEquals(bundle, read(file, BundleReader.WINDOW_SIZE));
+      assertBundleEquals(bundle, read(file, 1000));
+    }
+  }
+
+  @Test
+  public void testPackedColumnBlocks() throws IOException {
+    final int dim = 17;
+    MultipleObjectsBundle bundle = makeBundle(1000, dim, false, PackedDoubleVector.FACTORY);
+    File file = File.createTempFile("elki-bundle", ".bundle");
+    file.deleteOnExit();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      new BundleWriter().writeBundleStream(bundle.asStream(), channel, true, 300);
+    }
+    MultipleObjectsBundle result = read(file, 1000);
+    assertBundleEquals(bundle, result);
+    // Vectors of a block are views on a shared array:
+    PackedDoubleVector first = (PackedDoubleVector) result.data(0, 0);
+    PackedDoubleVector last = (PackedDoubleVector) result.data(299, 0);
+    assertTrue("Block not shared", first.getData() == last.getData());
+    assertEquals("Offset in block", 299 * dim, last.getStart());
+  }
+
+  @Test
+  public void testMetaChanges() throws IOException {
+    // The dimensionality changes after the first blocks:
+    StringBuilder buf = new StringBuilder();
+    for(int i = 0; i < 50; i++) {
+      buf.append(i).append(' ').append(-i).append(' ').append(i * .5);
+      if(i >= 5) {
+        buf.append(' ').append(i * i);
+      }
+      buf.append(" label").append(i % 3).append('\n');
+    }
+    final byte[] input = buf.toString().getBytes(StandardCharsets.UTF_8);
+    NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+    parser.initStream(new ByteArrayInputStream(input));
+    MultipleObjectsBundle expected = parser.asMultipleObjectsBundle();
+    for(boolean columns : new boolean[] { false, true }) {
+      File file = File.createTempFile("elki-bundle", ".bundle");
+      file.deleteOnExit();
+      parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+      parser.initStream(new ByteArrayInputStream(input));
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+        new BundleWriter().writeBundleStream(parser, channel, columns, 4);
+      }
+      assertBundleEquals(expected, read(file, BundleReader.WINDOW_SIZE));
+    }
+  }
+
+  @Test
+  public void testIncrementalWrites() throws IOException {
+    MultipleObjectsBundle bundle = makeBundle(100, 3, false);
+    File file = File.createTempFile("elki-bundle", ".bundle");
+    file.deleteOnExit();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+      BundleWriter.BlockWriter writer = new BundleWriter.BlockWriter(channel, bundle.meta(), false, true);
+      writer.writeBlock(bundle);
+      assertEquals("Rows in the first batch", 100, read(file, BundleReader.WINDOW_SIZE).dataLength());
+      writer.writeBlock(bundle);
+      assertEquals("Rows written", 200, writer.size());
+      // Incomplete data after the last block must be ignored.
+      channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 100, 1, 2, 3 }));
+    }
+    MultipleObjectsBundle result = read(file, BundleReader.WINDOW_SIZE);
+    assertEquals("Rows read", 200, result.dataLength());
+    assertEquals("Value differs", ((NumberVector) bundle.data(42, 0)).doubleValue(2), ((NumberVector) result.data(142, 0)).doubleValue(2), 0.);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.datasource.AbstractDataSourceTest;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.utilities.datastructures.arraylike.DoubleArray;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel number vector parser against the serial parser.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelNumberVectorLabelParserTest extends AbstractDataSourceTest {
+  @Test
+  public void compareToSerial() {
+    StringBuilder buf = new StringBuilder(1 << 16);
+    buf.append("# Comment\r\nx y z class\r\n");
+    Random r = new Random(0L);
+    for(int i = 0; i < 2000; i++) {
+      buf.append(r.nextGaussian()).append(' ').append(r.nextInt(100)).append(',').append(r.nextDouble() * 1e-5);
+      buf.append(' ').append(i % 3 == 0 ? "a" : "\"b c\"").append(i % 7 == 0 ? "\n\n" : "\r\n");
+      if(i % 100 == 0) {
+        buf.append("// Another comment\n");
+      }
+    }
+    byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+    MultipleObjectsBundle serial = parse(new NumberVectorLabelParser<>(DoubleVector.FACTORY), data);
+    // Tiny blocks, to test the block boundaries.
+    for(int blocksize : new int[] { 1, 100, 1000, 1 << 20 }) {
+      Parser parser = new ELKIBuilder<>(ParallelNumberVectorLabelParser.class) //
+          .with(ParallelNumberVectorLabelParser.Par.BLOCKSIZE_ID, blocksize) //
+          .build();
+      MultipleObjectsBundle parallel = parse(parser, data);
+      assertEquals("Number of columns", serial.metaLength(), parallel.metaLength());
+      assertEquals("Number of rows", 2000, parallel.dataLength());
+      assertEquals("Number of rows", serial.dataLength(), parallel.dataLength());
+      assertTrue("Not labeled", TypeUtil.LABELLIST.isAssignableFromType(parallel.meta(1)));
+      VectorFieldTypeInformation<?> type = (VectorFieldTypeInformation<?>) parallel.meta(0);
+      assertEquals("Dimensionality", 3, type.getDimensionality());
+      assertEquals("Column names", "y", type.getLabel(1));
+      for(int i = 0; i < serial.dataLength(); i++) {
+        NumberVector v1 = (NumberVector) serial.data(i, 0), v2 = (NumberVector) parallel.data(i, 0);
+        assertEquals("Dimensionality", v1.getDimensionality(), v2.getDimensionality());
+        for(int d = 0; d < v1.getDimensionality(); d++) {
+          assertEquals("Value mismatch", v1.doubleValue(d), v2.doubleValue(d), 0.);
+        }
+        assertEquals("Label mismatch", serial.data(i, 1).toString(), parallel.data(i, 1).toString());
+      }
+    }
+  }
+
+  @Test
+  public void varyingDimensionality() {
+    byte[] data = "1 2\n3 4 5\n6\n".getBytes(StandardCharsets.UTF_8);
+    Parser parser = new ELKIBuilder<>(ParallelNumberVectorLabelParser.class) //
+        .with(ParallelNumberVectorLabelParser.Par.BLOCKSIZE_ID, 4) //
+        .build();
+    MultipleObjectsBundle bundle = parse(parser, data);
+    assertEquals("Number of columns", 1, bundle.metaLength());
+    assertEquals("Number of rows", 3, bundle.dataLength());
+    assertTrue("Not variable length", TypeUtil.NUMBER_VECTOR_VARIABLE_LENGTH.isAssignableFromType(bundle.meta(0)));
+    assertEquals("Dimensionality", 3, ((NumberVector) bundle.data(1, 0)).getDimensionality());
+    assertEquals("Value", 6., ((NumberVector) bundle.data(2, 0)).doubleValue(0), 0.);
+  }
+
+  @Test
+  public void labelIndices() {
+    Parser parser = new ELKIBuilder<>(ParallelNumberVectorLabelParser.class) //
+        .with(NumberVectorLabelParser.Par.LABEL_INDICES_ID, 0) //
+        .with(ParallelNumberVectorLabelParser.Par.BLOCKSIZE_ID, 8) //
+        .build();
+    MultipleObjectsBundle bundle = parse(parser, "1 2 3\n4 5 6\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals("Dimensionality", 2, ((NumberVector) bundle.data(1, 0)).getDimensionality());
+    assertEquals("Label", "4", bundle.data(1, 1).toString());
+  }
+
+  @Test
+  public void quotedCarriageReturn() {
+    Parser parser = new ELKIBuilder<>(ParallelNumberVectorLabelParser.class) //
+        .with(ParallelNumberVectorLabelParser.Par.BLOCKSIZE_ID, 8) //
+        .build();
+    MultipleObjectsBundle bundle = parse(parser, "1 2 \"a\rb\"\r\n3 4 c\r\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals("Number of rows", 2, bundle.dataLength());
+    assertEquals("Label", "a\rb", bundle.data(0, 1).toString());
+    assertEquals("Label", "c", bundle.data(1, 1).toString());
+  }
+
+  @Test
+  public void createVectorOverride() {
+    Parser parser = new ParallelNumberVectorLabelParser<DoubleVector>(CSVReaderFormat.DEFAULT_FORMAT, null, DoubleVector.FACTORY, 8) {
+      @Override
+      protected DoubleVector createVector(DoubleArray attributes) {
+        return new DoubleVector(new double[] { attributes.size });
+      }
+    };
+    MultipleObjectsBundle bundle = parse(parser, "1 2 3\n4 5\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals("Number of rows", 2, bundle.dataLength());
+    assertEquals("Value", 3., ((NumberVector) bundle.data(0, 0)).doubleValue(0), 0.);
+    assertEquals("Value", 2., ((NumberVector) bundle.data(1, 0)).doubleValue(0), 0.);
+  }
+
+  /**
+   * Parse a byte array.
+   *
+   * @param parser Parser
+   * @param data Data
+   * @return Bundle
+   */
+  private static MultipleObjectsBundle parse(Parser parser, byte[] data) {
+    try (InputStream in = new ByteArrayInputStream(data)) {
+      return parser.parse(in);
+    }
+    catch(IOException e) {
+      throw new AssertionError(e);
+    }
+    finally {
+      parser.cleanup();
+    }
+  }
+}
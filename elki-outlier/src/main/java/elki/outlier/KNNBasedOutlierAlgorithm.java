@@ -0,0 +1,47 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier;
+
+import elki.distance.Distance;
+
+/**
+ * Outlier detection algorithm that is based on the k nearest neighbors of each
+ * object. Ensembles use this to compute the neighbors only once for all
+ * members with the same distance.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public interface KNNBasedOutlierAlgorithm extends OutlierAlgorithm {
+  /**
+   * Get the distance function used for the neighbors.
+   *
+   * @return Distance function
+   */
+  Distance<?> getDistance();
+
+  /**
+   * Get the number of neighbors queried, including the query point.
+   *
+   * @return Number of neighbors
+   */
+  int getKNNSize();
+}
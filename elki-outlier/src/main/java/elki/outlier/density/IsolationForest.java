@@ -0,0 +1,699 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.density;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.*;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.math.DoubleMinMax;
+import elki.outlier.OutlierAlgorithm;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.result.outlier.BasicOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.utilities.documentation.Reference;
+import elki.utilities.documentation.Title;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.FastNonThreadsafeRandom;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Isolation Forest outlier detection.
+ * <p>
+ * An ensemble of random trees is built on small random samples of the data;
+ * each tree splits on a random attribute at a random value, until all objects
+ * are isolated or a maximum depth is reached. Outliers are isolated earlier,
+ * and the average path length is normalized to the score
+ * \(2^{-E[h(x)]/c(\psi)}\), where values close to 1 indicate outliers.
+ * <p>
+ * Optionally, the extended variant splits on random hyperplanes instead of
+ * axis-parallel cuts, which avoids the artifacts of axis-parallel splits.
+ * <p>
+ * The trees are built in parallel, and stored compactly in arrays. The
+ * resulting {@link Forest} can also be used to score other objects, without
+ * memory allocations. The run time is linear in the data set size, and no
+ * neighbor queries are needed.
+ * <p>
+ * Reference:
+ * <p>
+ * F. T. Liu, K. M. Ting, Z.-H. Zhou<br>
+ * Isolation Forest<br>
+ * Proc. 8th IEEE Int. Conf. on Data Mining (ICDM 2008)
+ * <p>
+ * S. Hariri, M. Carrasco Kind, R. J. Brunner<br>
+ * Extended Isolation Forest<br>
+ * IEEE Transactions on Knowledge and Data Engineering 33(4)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Forest
+ */
+@Title("Isolation Forest")
+@Reference(authors = "F. T. Liu, K. M. Ting, Z.-H. Zhou", //
+    title = "Isolation Forest", //
+    booktitle = "Proc. 8th IEEE Int. Conf. on Data Mining (ICDM 2008)", //
+    url = "https://doi.org/10.1109/ICDM.2008.17", //
+    bibkey = "DBLP:conf/icdm/LiuTZ08")
+@Reference(authors = "S. Hariri, M. Carrasco Kind, R. J. Brunner", //
+    title = "Extended Isolation Forest", //
+    booktitle = "IEEE Transactions on Knowledge and Data Engineering 33(4)", //
+    url = "https://doi.org/10.1109/TKDE.2019.2947676", //
+    bibkey = "DBLP:journals/tkde/HaririKB21")
+public class IsolationForest implements OutlierAlgorithm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(IsolationForest.class);
+
+  /**
+   * Number of trees.
+   */
+  protected int numtrees;
+
+  /**
+   * Subsample size.
+   */
+  protected int subsample;
+
+  /**
+   * Use random hyperplanes (extended isolation forest).
+   */
+  protected boolean extended;
+
+  /**
+   * Random generator.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param numtrees Number of trees
+   * @param subsample Subsample size
+   * @param extended Use random hyperplanes (extended isolation forest)
+   * @param rnd Random generator
+   */
+  public IsolationForest(int numtrees, int subsample, boolean extended, RandomFactory rnd) {
+    super();
+    this.numtrees = numtrees;
+    this.subsample = subsample;
+    this.extended = extended;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Run the isolation forest.
+   *
+   * @param relation Data relation
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<? extends NumberVector> relation) {
+    Forest forest = fit(relation);
+    DBIDs ids = relation.getDBIDs();
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax = forest.score(relation, ids, scores);
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Isolation Forest", ids, scores);
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., 1., .5);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Build the trees, in parallel.
+   *
+   * @param relation Data relation
+   * @return Forest
+   */
+  public Forest fit(Relation<? extends NumberVector> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int dim = RelationUtil.dimensionality(relation);
+    final int psi = Math.min(subsample, ids.size());
+    // Draw the seeds serially, for reproducible results:
+    final Random random = rnd.getSingleThreadedRandom();
+    final long[] seeds = new long[numtrees];
+    for(int t = 0; t < numtrees; t++) {
+      seeds[t] = random.nextLong();
+    }
+    final Tree[] trees = new Tree[numtrees];
+    final DBIDRange range = DBIDUtil.generateStaticDBIDRange(numtrees);
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building isolation trees", numtrees, LOG) : null;
+    ParallelExecutor.run(range, prog, LOG, new Processor() {
+      @Override
+      public Processor.Instance instantiate(Executor executor) {
+        final TreeBuilder builder = new TreeBuilder(psi, dim, extended);
+        return id -> {
+          final int t = range.getOffset(id);
+          trees[t] = builder.build(relation, ids, new FastNonThreadsafeRandom(seeds[t]));
+        };
+      }
+
+      @Override
+      public void cleanup(Processor.Instance inst) {
+        // Nothing to do.
+      }
+    });
+    LOG.ensureCompleted(prog);
+    return new Forest(trees, dim, psi);
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  /**
+   * Average path length of an unsuccessful search in a binary search tree.
+   *
+   * @param n Number of objects
+   * @return Average path length
+   */
+  protected static double c(int n) {
+    return n > 2 ? 2 * (Math.log(n - 1) + 0.5772156649015329) - 2. * (n - 1) / n : n == 2 ? 1. : 0.;
+  }
+
+  /**
+   * A single isolation tree, stored in arrays in depth-first order; the left
+   * child of an inner node is always the next node.
+   *
+   * @author Erich Schubert
+   */
+  private static class Tree {
+    /**
+     * Right child of each node, -1 for leaves.
+     */
+    final int[] right;
+
+    /**
+     * Split dimension of each node, for axis-parallel splits.
+     */
+    final int[] dims;
+
+    /**
+     * Normal vectors of each node, for hyperplane splits.
+     */
+    final double[] normals;
+
+    /**
+     * Split value of inner nodes, path length estimate of leaves.
+     */
+    final double[] values;
+
+    /**
+     * Constructor.
+     *
+     * @param right Right children
+     * @param dims Split dimensions, or {@code null}
+     * @param normals Normal vectors, or {@code null}
+     * @param values Split values and path lengths
+     */
+    Tree(int[] right, int[] dims, double[] normals, double[] values) {
+      this.right = right;
+      this.dims = dims;
+      this.normals = normals;
+      this.values = values;
+    }
+
+    /**
+     * Path length of an object.
+     *
+     * @param v Object
+     * @param dim Dimensionality
+     * @return Path length estimate
+     */
+    double pathLength(NumberVector v, int dim) {
+      int n = 0;
+      if(dims != null) {
+        while(right[n] >= 0) {
+          n = v.doubleValue(dims[n]) < values[n] ? n + 1 : right[n];
+        }
+        return values[n];
+      }
+      while(right[n] >= 0) {
+        double dot = 0.;
+        for(int d = 0, o = n * dim; d < dim; d++, o++) {
+          dot += v.doubleValue(d) * normals[o];
+        }
+        n = dot <= values[n] ? n + 1 : right[n];
+      }
+      return values[n];
+    }
+  }
+
+  /**
+   * Builder for isolation trees, reusing its buffers for multiple trees.
+   *
+   * @author Erich Schubert
+   */
+  private static class TreeBuilder {
+    /**
+     * Subsample size.
+     */
+    final int psi;
+
+    /**
+     * Dimensionality.
+     */
+    final int dim;
+
+    /**
+     * Maximum depth.
+     */
+    final int maxdepth;
+
+    /**
+     * Use random hyperplanes.
+     */
+    final boolean extended;
+
+    /**
+     * Sample data, row-major.
+     */
+    final double[] data;
+
+    /**
+     * Object order, partitioned recursively.
+     */
+    final int[] idx;
+
+    /**
+     * Bounding box of the current partition.
+     */
+    final double[] min, max;
+
+    /**
+     * Node storage of the current tree.
+     */
+    int[] right, dims;
+
+    /**
+     * Node storage of the current tree.
+     */
+    double[] normals, values;
+
+    /**
+     * Number of nodes.
+     */
+    int size;
+
+    /**
+     * Random generator.
+     */
+    Random random;
+
+    /**
+     * Constructor.
+     *
+     * @param psi Subsample size
+     * @param dim Dimensionality
+     * @param extended Use random hyperplanes
+     */
+    TreeBuilder(int psi, int dim, boolean extended) {
+      this.psi = psi;
+      this.dim = dim;
+      this.maxdepth = (int) Math.ceil(Math.log(Math.max(psi, 2)) / Math.log(2));
+      this.extended = extended;
+      this.data = new double[psi * dim];
+      this.idx = new int[psi];
+      this.min = new double[dim];
+      this.max = new double[dim];
+    }
+
+    /**
+     * Build a tree.
+     *
+     * @param relation Data relation
+     * @param ids Object ids
+     * @param random Random generator
+     * @return Tree
+     */
+    Tree build(Relation<? extends NumberVector> relation, ArrayDBIDs ids, Random random) {
+      this.random = random;
+      int i = 0;
+      for(DBIDIter it = DBIDUtil.randomSample(ids, psi, random).iter(); it.valid(); it.advance(), i++) {
+        final NumberVector v = relation.get(it);
+        for(int d = 0, o = i * dim; d < dim; d++, o++) {
+          data[o] = v.doubleValue(d);
+        }
+        idx[i] = i;
+      }
+      final int maxnodes = (psi << 1) - 1;
+      right = new int[maxnodes];
+      values = new double[maxnodes];
+      dims = extended ? null : new int[maxnodes];
+      normals = extended ? new double[maxnodes * dim] : null;
+      size = 0;
+      build(0, psi, 0);
+      return new Tree(Arrays.copyOf(right, size), //
+          dims != null ? Arrays.copyOf(dims, size) : null, //
+          normals != null ? Arrays.copyOf(normals, size * dim) : null, //
+          Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Build a subtree recursively.
+     *
+     * @param start First object
+     * @param end End of objects (exclusive)
+     * @param depth Depth
+     * @return Node number
+     */
+    private int build(int start, int end, int depth) {
+      final int node = size++;
+      if(end - start <= 1 || depth >= maxdepth || !bounds(start, end)) {
+        right[node] = -1;
+        values[node] = depth + c(end - start);
+        return node;
+      }
+      final int mid = extended ? splitHyperplane(node, start, end) : splitAxis(node, start, end);
+      build(start, mid, depth + 1);
+      right[node] = build(mid, end, depth + 1);
+      return node;
+    }
+
+    /**
+     * Compute the bounding box of a partition.
+     *
+     * @param start First object
+     * @param end End of objects (exclusive)
+     * @return {@code false} if all objects are identical
+     */
+    private boolean bounds(int start, int end) {
+      Arrays.fill(min, Double.POSITIVE_INFINITY);
+      Arrays.fill(max, Double.NEGATIVE_INFINITY);
+      for(int i = start; i < end; i++) {
+        for(int d = 0, o = idx[i] * dim; d < dim; d++, o++) {
+          final double v = data[o];
+          min[d] = v < min[d] ? v : min[d];
+          max[d] = v > max[d] ? v : max[d];
+        }
+      }
+      for(int d = 0; d < dim; d++) {
+        if(min[d] < max[d]) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Split at a random value of a random non-constant attribute.
+     *
+     * @param node Node number
+     * @param start First object
+     * @param end End of objects (exclusive)
+     * @return Partition boundary
+     */
+    private int splitAxis(int node, int start, int end) {
+      int nonconst = 0;
+      for(int d = 0; d < dim; d++) {
+        nonconst += min[d] < max[d] ? 1 : 0;
+      }
+      // Choose the r-th non-constant attribute:
+      int q = 0;
+      for(int r = random.nextInt(nonconst);; q++) {
+        if(min[q] < max[q] && r-- == 0) {
+          break;
+        }
+      }
+      final double p = min[q] + random.nextDouble() * (max[q] - min[q]);
+      dims[node] = q;
+      values[node] = p;
+      int l = start, r = end;
+      while(l < r) {
+        if(data[idx[l] * dim + q] < p) {
+          l++;
+        }
+        else {
+          swap(l, --r);
+        }
+      }
+      return l;
+    }
+
+    /**
+     * Split at a random hyperplane through a random point of the bounding box.
+     *
+     * @param node Node number
+     * @param start First object
+     * @param end End of objects (exclusive)
+     * @return Partition boundary
+     */
+    private int splitHyperplane(int node, int start, int end) {
+      final int off = node * dim;
+      double offset = 0.;
+      for(int d = 0; d < dim; d++) {
+        final double n = normals[off + d] = random.nextGaussian();
+        offset += n * (min[d] + random.nextDouble() * (max[d] - min[d]));
+      }
+      values[node] = offset;
+      int l = start, r = end;
+      while(l < r) {
+        double dot = 0.;
+        for(int d = 0, o = idx[l] * dim; d < dim; d++, o++) {
+          dot += data[o] * normals[off + d];
+        }
+        if(dot <= offset) {
+          l++;
+        }
+        else {
+          swap(l, --r);
+        }
+      }
+      return l;
+    }
+
+    /**
+     * Swap two objects.
+     *
+     * @param i First position
+     * @param j Second position
+     */
+    private void swap(int i, int j) {
+      final int t = idx[i];
+      idx[i] = idx[j];
+      idx[j] = t;
+    }
+  }
+
+  /**
+   * A trained isolation forest, which can be used to score arbitrary objects.
+   *
+   * @author Erich Schubert
+   */
+  public static class Forest {
+    /**
+     * The trees.
+     */
+    private final Tree[] trees;
+
+    /**
+     * Dimensionality.
+     */
+    private final int dim;
+
+    /**
+     * Normalization: average path length of the subsample size.
+     */
+    private final double norm;
+
+    /**
+     * Constructor.
+     *
+     * @param trees Trees
+     * @param dim Dimensionality
+     * @param psi Subsample size
+     */
+    Forest(Tree[] trees, int dim, int psi) {
+      this.trees = trees;
+      this.dim = dim;
+      this.norm = c(psi);
+    }
+
+    /**
+     * Compute the outlier score of an object. This does not allocate memory,
+     * and is safe to use from multiple threads.
+     *
+     * @param v Object
+     * @return Outlier score, values close to 1 indicate outliers
+     */
+    public double score(NumberVector v) {
+      assert v.getDimensionality() == dim : "Dimensionality mismatch";
+      double sum = 0.;
+      for(Tree tree : trees) {
+        sum += tree.pathLength(v, dim);
+      }
+      return norm > 0 ? Math.pow(2, -sum / (trees.length * norm)) : .5;
+    }
+
+    /**
+     * Score a batch of objects, in parallel.
+     *
+     * @param relation Data relation
+     * @param ids Objects to score
+     * @param scores Output storage
+     * @return Minimum and maximum score
+     */
+    public DoubleMinMax score(Relation<? extends NumberVector> relation, DBIDs ids, WritableDoubleDataStore scores) {
+      final DoubleMinMax minmax = new DoubleMinMax();
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Isolation forest scores", ids.size(), LOG) : null;
+      ParallelExecutor.run(ids, prog, LOG, new Processor() {
+        @Override
+        public Processor.Instance instantiate(Executor executor) {
+          return new Scorer(relation, scores);
+        }
+
+        @Override
+        public void cleanup(Processor.Instance inst) {
+          synchronized(minmax) {
+            minmax.put(((Scorer) inst).minmax);
+          }
+        }
+      });
+      LOG.ensureCompleted(prog);
+      return minmax;
+    }
+
+    /**
+     * Score objects of a relation.
+     *
+     * @author Erich Schubert
+     */
+    private class Scorer implements Processor.Instance {
+      /**
+       * Data relation.
+       */
+      private final Relation<? extends NumberVector> relation;
+
+      /**
+       * Output storage.
+       */
+      private final WritableDoubleDataStore scores;
+
+      /**
+       * Minimum and maximum.
+       */
+      final DoubleMinMax minmax = new DoubleMinMax();
+
+      /**
+       * Constructor.
+       *
+       * @param relation Data relation
+       * @param scores Output storage
+       */
+      Scorer(Relation<? extends NumberVector> relation, WritableDoubleDataStore scores) {
+        this.relation = relation;
+        this.scores = scores;
+      }
+
+      @Override
+      public void map(DBIDRef id) {
+        final double s = score(relation.get(id));
+        scores.putDouble(id, s);
+        minmax.put(s);
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Number of trees.
+     */
+    public static final OptionID NUM_TREES_ID = new OptionID("iforest.numtrees", "Number of trees to use.");
+
+    /**
+     * Subsample size.
+     */
+    public static final OptionID SUBSAMPLE_SIZE_ID = new OptionID("iforest.subsample", "Subsampling size.");
+
+    /**
+     * Use random hyperplanes.
+     */
+    public static final OptionID EXTENDED_ID = new OptionID("iforest.extended", "Use random hyperplanes instead of axis-parallel splits (extended isolation forest).");
+
+    /**
+     * Random seed.
+     */
+    public static final OptionID SEED_ID = new OptionID("iforest.seed", "Random seed.");
+
+    /**
+     * Number of trees.
+     */
+    protected int numtrees = 100;
+
+    /**
+     * Subsample size.
+     */
+    protected int subsample = 256;
+
+    /**
+     * Use random hyperplanes.
+     */
+    protected boolean extended = false;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    public void configure(Parameterization config) {
+      new IntParameter(NUM_TREES_ID, 100) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> numtrees = x);
+      new IntParameter(SUBSAMPLE_SIZE_ID, 256) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> subsample = x);
+      new Flag(EXTENDED_ID).grab(config, x -> extended = x);
+      new RandomParameter(SEED_ID).grab(config, x -> rnd = x);
+    }
+
+    @Override
+    public IsolationForest make() {
+      return new IsolationForest(numtrees, subsample, extended, rnd);
+    }
+  }
+}
@@ -38,7 +38,7 @@ import elki.distance.minkowski.EuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.math.DoubleMinMax;
-import elki.outlier.OutlierAlgorithm;
+import elki.outlier.KNNBasedOutlierAlgorithm;
 import elki.result.outlier.BasicOutlierScoreMeta;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
@@ -88,7 +88,7 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
     bibkey = "DBLP:conf/sigmod/RamaswamyRS00")
 @Alias({ "knno" })
 @Priority(Priority.RECOMMENDED)
-public class KNNOutlier<O> implements OutlierAlgorithm {
+public class KNNOutlier<O> implements KNNBasedOutlierAlgorithm {
   /**
    * The logger for this class.
    */
@@ -121,6 +121,16 @@ public class KNNOutlier<O> implements OutlierAlgorithm {
     return TypeUtil.array(distance.getInputTypeRestriction());
   }
 
+  @Override
+  public Distance<? super O> getDistance() {
+    return distance;
+  }
+
+  @Override
+  public int getKNNSize() {
+    return kplus;
+  }
+
   /**
    * Runs the algorithm in the timed evaluation part.
    *
@@ -37,7 +37,7 @@ import elki.distance.minkowski.EuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.math.DoubleMinMax;
-import elki.outlier.OutlierAlgorithm;
+import elki.outlier.KNNBasedOutlierAlgorithm;
 import elki.result.outlier.BasicOutlierScoreMeta;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
@@ -90,7 +90,7 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
     url = "https://doi.org/10.1007/3-540-45681-3_2", //
     bibkey = "DBLP:conf/pkdd/AngiulliP02")
 @Alias({ "knnw" })
-public class KNNWeightOutlier<O> implements OutlierAlgorithm {
+public class KNNWeightOutlier<O> implements KNNBasedOutlierAlgorithm {
   /**
    * The logger for this class.
    */
@@ -123,6 +123,16 @@ public class KNNWeightOutlier<O> implements OutlierAlgorithm {
     return TypeUtil.array(distance.getInputTypeRestriction());
   }
 
+  @Override
+  public Distance<? super O> getDistance() {
+    return distance;
+  }
+
+  @Override
+  public int getKNNSize() {
+    return kplus;
+  }
+
   /**
    * Runs the algorithm in the timed evaluation part.
    *
@@ -35,7 +35,7 @@ import elki.database.relation.Relation;
 import elki.distance.Distance;
 import elki.distance.minkowski.EuclideanDistance;
 import elki.math.DoubleMinMax;
-import elki.outlier.OutlierAlgorithm;
+import elki.outlier.KNNBasedOutlierAlgorithm;
 import elki.outlier.distance.KNNWeightOutlier;
 import elki.parallel.ParallelExecutor;
 import elki.parallel.processor.DoubleMinMaxProcessor;
@@ -82,7 +82,7 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
     booktitle = "Data Mining and Knowledge Discovery 28(1)", //
     url = "https://doi.org/10.1007/s10618-012-0300-z", //
     bibkey = "DBLP:journals/datamine/SchubertZK14")
-public class ParallelKNNWeightOutlier<O> implements OutlierAlgorithm {
+public class ParallelKNNWeightOutlier<O> implements KNNBasedOutlierAlgorithm {
   /**
    * Distance function used.
    */
@@ -110,6 +110,16 @@ public class ParallelKNNWeightOutlier<O> implements OutlierAlgorithm {
     return TypeUtil.array(distance.getInputTypeRestriction());
   }
 
+  @Override
+  public Distance<? super O> getDistance() {
+    return distance;
+  }
+
+  @Override
+  public int getKNNSize() {
+    return kplus;
+  }
+
   /**
    * Run the parallel kNN weight outlier detector.
    *
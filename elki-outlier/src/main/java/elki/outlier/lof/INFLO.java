@@ -137,6 +137,18 @@ public class INFLO<O> implements OutlierAlgorithm {
    * @return Outlier result
    */
   public OutlierResult run(Relation<O> relation) {
+    return run(relation, null);
+  }
+
+  /**
+   * Run the algorithm, using precomputed k-distances if available, e.g.,
+   * the scores of {@link elki.outlier.distance.KNNOutlier} with the same k.
+   *
+   * @param relation Relation to process
+   * @param kdists k-distances of all objects, may be {@code null}
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<O> relation, DoubleRelation kdists) {
     StepProgress stepprog = LOG.isVerbose() ? new StepProgress("INFLO", 3) : null;
 
     // Step one: find the kNN
@@ -167,7 +179,7 @@ public class INFLO<O> implements OutlierAlgorithm {
     // Calculate INFLO for any Object
     DoubleMinMax inflominmax = new DoubleMinMax();
     WritableDoubleDataStore inflos = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
-    computeINFLO(relation, pruned, knnq, rnnMinusKNNs, inflos, inflominmax);
+    computeINFLO(relation, pruned, knnq, kdists, rnnMinusKNNs, inflos, inflominmax);
     LOG.setCompleted(stepprog);
     LOG.statistics(new LongStatistic(INFLO.class.getName() + ".pruned", pruned.size()));
 
@@ -228,11 +240,12 @@ public class INFLO<O> implements OutlierAlgorithm {
    * @param relation Data relation
    * @param pruned Pruned objects
    * @param knnq kNN query
+   * @param kdists Precomputed k-distances, may be {@code null}
    * @param rNNminuskNNs reverse kNN storage
    * @param inflos INFLO score storage
    * @param inflominmax Output of minimum and maximum
    */
-  protected void computeINFLO(Relation<O> relation, ModifiableDBIDs pruned, KNNSearcher<DBIDRef> knnq, WritableDataStore<ModifiableDBIDs> rNNminuskNNs, WritableDoubleDataStore inflos, DoubleMinMax inflominmax) {
+  protected void computeINFLO(Relation<O> relation, ModifiableDBIDs pruned, KNNSearcher<DBIDRef> knnq, DoubleRelation kdists, WritableDataStore<ModifiableDBIDs> rNNminuskNNs, WritableDoubleDataStore inflos, DoubleMinMax inflominmax) {
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Computing INFLOs", relation.size(), LOG) : null;
     HashSetModifiableDBIDs set = DBIDUtil.newHashSet();
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
@@ -258,7 +271,7 @@ public class INFLO<O> implements OutlierAlgorithm {
         if(DBIDUtil.equal(iter, niter)) {
           continue;
         }
-        final double kdist = knnq.getKNN(niter, kplus).getKNNDistance();
+        final double kdist = kdists != null ? kdists.doubleValue(niter) : knnq.getKNN(niter, kplus).getKNNDistance();
         if(kdist <= 0) {
           sum = Double.POSITIVE_INFINITY;
           c++;
@@ -145,6 +145,18 @@ public class LDF<O extends NumberVector> implements OutlierAlgorithm {
    * @return LOF outlier result
    */
   public OutlierResult run(Relation<O> relation) {
+    return run(relation, null);
+  }
+
+  /**
+   * Run the LDF algorithm, using precomputed k-distances if available, e.g.,
+   * the scores of {@link elki.outlier.distance.KNNOutlier} with the same k.
+   *
+   * @param relation Data to process
+   * @param kdists k-distances of all objects, may be {@code null}
+   * @return LOF outlier result
+   */
+  public OutlierResult run(Relation<O> relation, DoubleRelation kdists) {
     StepProgress stepprog = LOG.isVerbose() ? new StepProgress("LDF", 3) : null;
     final int dim = RelationUtil.dimensionality(relation);
     DBIDs ids = relation.getDBIDs();
@@ -164,7 +176,7 @@ public class LDF<O extends NumberVector> implements OutlierAlgorithm {
         if(DBIDUtil.equal(neighbor, it)) {
           continue;
         }
-        final double nkdist = knnq.getKNN(neighbor, kplus).getKNNDistance();
+        final double nkdist = kdists != null ? kdists.doubleValue(neighbor) : knnq.getKNN(neighbor, kplus).getKNNDistance();
         if(!(nkdist > 0.) || nkdist == Double.POSITIVE_INFINITY) {
           sum = Double.POSITIVE_INFINITY;
           count++;
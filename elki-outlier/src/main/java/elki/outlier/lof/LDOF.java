@@ -39,7 +39,7 @@ import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.math.DoubleMinMax;
 import elki.math.Mean;
-import elki.outlier.OutlierAlgorithm;
+import elki.outlier.KNNBasedOutlierAlgorithm;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
 import elki.result.outlier.QuotientOutlierScoreMeta;
@@ -79,7 +79,7 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
     booktitle = "Proc. 13th Pacific-Asia Conf. Adv. Knowledge Discovery and Data Mining (PAKDD 2009)", //
     url = "https://doi.org/10.1007/978-3-642-01307-2_84", //
     bibkey = "DBLP:conf/pakdd/ZhangHJ09")
-public class LDOF<O> implements OutlierAlgorithm {
+public class LDOF<O> implements KNNBasedOutlierAlgorithm {
   /**
    * The logger for this class.
    */
@@ -118,6 +118,16 @@ public class LDOF<O> implements OutlierAlgorithm {
     return TypeUtil.array(distance.getInputTypeRestriction());
   }
 
+  @Override
+  public Distance<? super O> getDistance() {
+    return distance;
+  }
+
+  @Override
+  public int getKNNSize() {
+    return kplus;
+  }
+
   /**
    * Run the algorithm
    *
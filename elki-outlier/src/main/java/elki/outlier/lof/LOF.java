@@ -40,7 +40,7 @@ import elki.logging.progress.FiniteProgress;
 import elki.logging.progress.StepProgress;
 import elki.math.DoubleMinMax;
 import elki.math.MathUtil;
-import elki.outlier.OutlierAlgorithm;
+import elki.outlier.KNNBasedOutlierAlgorithm;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
 import elki.result.outlier.QuotientOutlierScoreMeta;
@@ -87,7 +87,7 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
     url = "https://doi.org/10.1145/342009.335388", //
     bibkey = "DBLP:conf/sigmod/BreunigKNS00")
 @Priority(Priority.RECOMMENDED)
-public class LOF<O> implements OutlierAlgorithm {
+public class LOF<O> implements KNNBasedOutlierAlgorithm {
   /**
    * The logger for this class.
    */
@@ -121,6 +121,16 @@ public class LOF<O> implements OutlierAlgorithm {
     return TypeUtil.array(distance.getInputTypeRestriction());
   }
 
+  @Override
+  public Distance<? super O> getDistance() {
+    return distance;
+  }
+
+  @Override
+  public int getKNNSize() {
+    return kplus;
+  }
+
   /**
    * Runs the LOF algorithm on the given database.
    *
@@ -128,6 +138,18 @@ public class LOF<O> implements OutlierAlgorithm {
    * @return LOF outlier result
    */
   public OutlierResult run(Relation<O> relation) {
+    return run(relation, null);
+  }
+
+  /**
+   * Runs the LOF algorithm, using precomputed k-distances if available, e.g.,
+   * the scores of {@link elki.outlier.distance.KNNOutlier} with the same k.
+   *
+   * @param relation Data to process
+   * @param kdists k-distances of all objects, may be {@code null}
+   * @return LOF outlier result
+   */
+  public OutlierResult run(Relation<O> relation, DoubleRelation kdists) {
     StepProgress stepprog = LOG.isVerbose() ? new StepProgress("LOF", 3) : null;
     DBIDs ids = relation.getDBIDs();
 
@@ -137,7 +159,7 @@ public class LOF<O> implements OutlierAlgorithm {
     // Compute LRDs
     LOG.beginStep(stepprog, 2, "Computing Local Reachability Densities (LRD).");
     WritableDoubleDataStore lrds = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
-    computeLRDs(knnq, ids, lrds);
+    computeLRDs(knnq, ids, kdists, lrds);
 
     // compute LOF_SCORE of each db object
     LOG.beginStep(stepprog, 3, "Computing Local Outlier Factors (LOF).");
@@ -159,13 +181,14 @@ public class LOF<O> implements OutlierAlgorithm {
    * 
    * @param knnq KNN query
    * @param ids IDs to process
+   * @param kdists Precomputed k-distances, may be {@code null}
    * @param lrds Reachability storage
    */
-  private void computeLRDs(KNNSearcher<DBIDRef> knnq, DBIDs ids, WritableDoubleDataStore lrds) {
+  private void computeLRDs(KNNSearcher<DBIDRef> knnq, DBIDs ids, DoubleRelation kdists, WritableDoubleDataStore lrds) {
     FiniteProgress lrdsProgress = LOG.isVerbose() ? new FiniteProgress("Local Reachability Densities (LRD)", ids.size(), LOG) : null;
     double lrd;
     for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      lrd = computeLRD(knnq, iter);
+      lrd = computeLRD(knnq, iter, kdists);
       lrds.putDouble(iter, lrd);
       LOG.incrementProcessed(lrdsProgress);
     }
@@ -180,6 +203,18 @@ public class LOF<O> implements OutlierAlgorithm {
    * @return Local Reachability Density
    */
   protected double computeLRD(KNNSearcher<DBIDRef> knnq, DBIDIter curr) {
+    return computeLRD(knnq, curr, null);
+  }
+
+  /**
+   * Compute a single local reachability distance.
+   * 
+   * @param knnq kNN Query
+   * @param curr Current object
+   * @param kdists Precomputed k-distances, may be {@code null}
+   * @return Local Reachability Density
+   */
+  protected double computeLRD(KNNSearcher<DBIDRef> knnq, DBIDIter curr, DoubleRelation kdists) {
     final KNNList neighbors = knnq.getKNN(curr, kplus);
     double sum = 0.0;
     int count = 0;
@@ -187,8 +222,8 @@ public class LOF<O> implements OutlierAlgorithm {
       if(DBIDUtil.equal(curr, neighbor)) {
         continue;
       }
-      KNNList neighborsNeighbors = knnq.getKNN(neighbor, kplus);
-      sum += MathUtil.max(neighbor.doubleValue(), neighborsNeighbors.getKNNDistance());
+      final double kdist = kdists != null ? kdists.doubleValue(neighbor) : knnq.getKNN(neighbor, kplus).getKNNDistance();
+      sum += MathUtil.max(neighbor.doubleValue(), kdist);
       count++;
     }
     // Avoid division by 0
@@ -114,6 +114,18 @@ public class SimpleKernelDensityLOF<O extends NumberVector> implements OutlierAl
    * @return LOF outlier result
    */
   public OutlierResult run(Relation<O> relation) {
+    return run(relation, null);
+  }
+
+  /**
+   * Run the naive kernel density LOF algorithm, using precomputed k-distances if available, e.g.,
+   * the scores of {@link elki.outlier.distance.KNNOutlier} with the same k.
+   *
+   * @param relation Data to process
+   * @param kdists k-distances of all objects, may be {@code null}
+   * @return LOF outlier result
+   */
+  public OutlierResult run(Relation<O> relation, DoubleRelation kdists) {
     StepProgress stepprog = LOG.isVerbose() ? new StepProgress("KernelDensityLOF", 3) : null;
     final int dim = RelationUtil.dimensionality(relation);
     DBIDs ids = relation.getDBIDs();
@@ -134,7 +146,7 @@ public class SimpleKernelDensityLOF<O extends NumberVector> implements OutlierAl
         if(DBIDUtil.equal(neighbor, it)) {
           continue;
         }
-        double max = knnq.getKNN(neighbor, kplus).getKNNDistance();
+        double max = kdists != null ? kdists.doubleValue(neighbor) : knnq.getKNN(neighbor, kplus).getKNNDistance();
         if(max == 0) {
           sum = Double.POSITIVE_INFINITY;
           break;
@@ -0,0 +1,748 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof;
+
+import java.util.Arrays;
+import java.util.Queue;
+
+import elki.Algorithm;
+import elki.data.type.TypeInformation;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.distance.PrimitiveDistance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.LongStatistic;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.LongParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Streaming variant of the {@link LOF} algorithm over a sliding window.
+ * <p>
+ * Objects arrive from a {@link BundleStreamSource} (such as a streaming
+ * parser), from an in-process queue, or through {@link #insert}. The most
+ * recent objects are kept in a window of bounded size, optionally also limited
+ * by a time horizon; older objects expire. The kNN lists, reverse kNN lists,
+ * local reachability densities, and LOF scores of the window are maintained
+ * incrementally under both insertions and expirations: only the objects whose
+ * neighborhoods are affected by a change are updated.
+ * <p>
+ * Every new object is reported with its LOF score and its k-distance (the kNN
+ * outlier score) immediately after insertion. An insertion needs one distance
+ * computation to each object of the window, the expiration of an object at
+ * most one linear scan for each of its reverse nearest neighbors, so the cost
+ * per event is bounded by the window size. Throughput and latency are reported as
+ * statistics.
+ * <p>
+ * As in the static {@link LOF}, the kNN lists contain all objects within the
+ * k-distance, so ties at the k-distance are kept and a list can contain more
+ * than k neighbors.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> Object type
+ */
+public class SlidingWindowLOF<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(SlidingWindowLOF.class);
+
+  /**
+   * Distance function.
+   */
+  protected PrimitiveDistance<? super O> distance;
+
+  /**
+   * Number of neighbors.
+   */
+  protected int k;
+
+  /**
+   * Maximum number of objects in the window.
+   */
+  protected int window;
+
+  /**
+   * Time horizon, 0 for no expiration by time.
+   */
+  protected long horizon;
+
+  /**
+   * Objects in the window, as ring buffer.
+   */
+  private Object[] objs;
+
+  /**
+   * Arrival times.
+   */
+  private long[] times;
+
+  /**
+   * First (oldest) slot, and number of objects in the window.
+   */
+  private int head, size;
+
+  /**
+   * Nearest neighbors of each slot, sorted by distance, including ties.
+   */
+  private int[][] nn;
+
+  /**
+   * Distances to the nearest neighbors.
+   */
+  private double[][] nd;
+
+  /**
+   * Number of nearest neighbors of each slot.
+   */
+  private int[] nncnt;
+
+  /**
+   * Reverse nearest neighbors of each slot.
+   */
+  private int[][] rnn;
+
+  /**
+   * Number of reverse nearest neighbors of each slot.
+   */
+  private int[] rnncnt;
+
+  /**
+   * Local reachability densities and LOF scores.
+   */
+  private double[] lrd, lof;
+
+  /**
+   * Objects with changed neighborhoods, and objects with changed scores.
+   */
+  private int[] affected, changed;
+
+  /**
+   * Size of the affected and changed sets.
+   */
+  private int numaff, numchg;
+
+  /**
+   * Markers for the affected and changed sets, and for neighbors.
+   */
+  private int[] affmark, chgmark, nnmark;
+
+  /**
+   * Scratch buffer for tied candidates when refilling a neighbor list.
+   */
+  private int[] ties;
+
+  /**
+   * Current marker values.
+   */
+  private int stamp, nnstamp;
+
+  /**
+   * Number of insertions and expirations.
+   */
+  private long events, expired;
+
+  /**
+   * Total and maximum processing time of insertions in nanoseconds.
+   */
+  private long totalnanos, maxnanos;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k Number of neighbors (not including the query point)
+   * @param window Maximum number of objects in the window
+   * @param horizon Time horizon, 0 for no expiration by time
+   */
+  public SlidingWindowLOF(PrimitiveDistance<? super O> distance, int k, int window, long horizon) {
+    super();
+    this.distance = distance;
+    this.k = k;
+    this.window = window;
+    this.horizon = horizon;
+    objs = new Object[window];
+    times = new long[window];
+    nn = new int[window][k];
+    nd = new double[window][k];
+    nncnt = new int[window];
+    rnn = new int[window][k];
+    rnncnt = new int[window];
+    lrd = new double[window];
+    lof = new double[window];
+    affected = new int[window];
+    changed = new int[window];
+    affmark = new int[window];
+    chgmark = new int[window];
+    nnmark = new int[window];
+    ties = new int[window];
+  }
+
+  /**
+   * Process all objects of a stream, using the arrival time as time stamp.
+   * Statistics are logged at the end of the stream.
+   *
+   * @param source Data source
+   * @param out Output for the scores of each new object
+   * @return Number of objects processed
+   */
+  @SuppressWarnings("unchecked")
+  public long run(BundleStreamSource source, Listener<? super O> out) {
+    final TypeInformation type = distance.getInputTypeRestriction();
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Processing stream", LOG) : null;
+    long count = 0;
+    int col = -1;
+    for(BundleStreamSource.Event ev = source.nextEvent(); ev != BundleStreamSource.Event.END_OF_STREAM; ev = source.nextEvent()) {
+      switch(ev){
+      case META_CHANGED:
+        // The column layout may change within a stream:
+        col = -1;
+        BundleMeta meta = source.getMeta();
+        for(int i = 0; i < meta.size(); i++) {
+          if(type.isAssignableFromType(meta.get(i))) {
+            col = i;
+            break;
+          }
+        }
+        break;
+      case NEXT_OBJECT:
+        if(col < 0) {
+          throw new AbortException("No suitable data field in the input stream.");
+        }
+        insert((O) source.data(col), System.currentTimeMillis(), out);
+        ++count;
+        LOG.incrementProcessed(prog);
+        break;
+      default:
+        LOG.warning("Unknown event: " + ev);
+      }
+    }
+    LOG.setCompleted(prog);
+    logStatistics();
+    return count;
+  }
+
+  /**
+   * Process all objects currently in a queue, using the current time as time
+   * stamp.
+   *
+   * @param queue Queue to drain
+   * @param out Output for the scores of each new object
+   * @return Number of objects processed
+   */
+  public int drain(Queue<? extends O> queue, Listener<? super O> out) {
+    int count = 0;
+    for(O obj = queue.poll(); obj != null; obj = queue.poll()) {
+      insert(obj, System.currentTimeMillis(), out);
+      ++count;
+    }
+    return count;
+  }
+
+  /**
+   * Insert a new object, expiring old objects as necessary.
+   * <p>
+   * Time stamps must not decrease.
+   *
+   * @param obj New object
+   * @param time Time stamp
+   * @param out Output for the scores of the new object, may be {@code null}
+   */
+  public void insert(O obj, long time, Listener<? super O> out) {
+    final long start = System.nanoTime();
+    expire(time);
+    if(size == window) {
+      removeOldest();
+    }
+    final int p = slot(size);
+    objs[p] = obj;
+    times[p] = time;
+    nncnt[p] = rnncnt[p] = 0;
+    lrd[p] = Double.NaN;
+    ++stamp;
+    numaff = numchg = 0;
+    for(int i = 0; i < size; i++) {
+      final int q = slot(i);
+      final double d = distance.distance(obj, get(q));
+      if(nncnt[p] < k || d <= nd[p][k - 1]) {
+        insertNeighbor(p, q, d);
+      }
+      if(nncnt[q] < k || d <= nd[q][k - 1]) {
+        final int dropped = insertNeighbor(q, p, d);
+        // Dropped neighbors remain behind the new end of the list:
+        for(int j = nncnt[q], e = j + dropped; j < e; j++) {
+          removeReverse(nn[q][j], q);
+        }
+        addReverse(p, q);
+        addAffected(q);
+      }
+    }
+    ++size;
+    for(int j = 0; j < nncnt[p]; j++) {
+      addReverse(nn[p][j], p);
+    }
+    addAffected(p);
+    updateScores();
+    final long elapsed = System.nanoTime() - start;
+    ++events;
+    totalnanos += elapsed;
+    maxnanos = elapsed > maxnanos ? elapsed : maxnanos;
+    if(out != null) {
+      out.scored(obj, time, lof[p], kdist(p));
+    }
+  }
+
+  /**
+   * Expire all objects older than the time horizon.
+   *
+   * @param time Current time
+   */
+  public void expire(long time) {
+    if(horizon > 0) {
+      while(size > 0 && times[head] <= time - horizon) {
+        removeOldest();
+      }
+    }
+  }
+
+  /**
+   * Remove the oldest object from the window.
+   */
+  private void removeOldest() {
+    final int x = head;
+    head = slot(1);
+    --size;
+    objs[x] = null;
+    ++stamp;
+    numaff = numchg = 0;
+    for(int j = 0; j < nncnt[x]; j++) {
+      removeReverse(nn[x][j], x);
+    }
+    // Reverse neighbors without remaining ties need replacement neighbors:
+    for(int j = 0; j < rnncnt[x]; j++) {
+      final int q = rnn[x][j];
+      removeNeighbor(q, x);
+      if(nncnt[q] < k) {
+        refill(q);
+      }
+      addAffected(q);
+    }
+    nncnt[x] = rnncnt[x] = 0;
+    ++expired;
+    updateScores();
+  }
+
+  /**
+   * Add the nearest objects not yet in the neighbor list, including all ties.
+   *
+   * @param q Slot
+   */
+  private void refill(int q) {
+    final int m = ++nnstamp;
+    nnmark[q] = m;
+    for(int j = 0; j < nncnt[q]; j++) {
+      nnmark[nn[q][j]] = m;
+    }
+    final O obj = get(q);
+    int numties = 0;
+    double bestd = Double.POSITIVE_INFINITY;
+    for(int i = 0; i < size; i++) {
+      final int s = slot(i);
+      if(nnmark[s] != m) {
+        final double d = distance.distance(obj, get(s));
+        if(d < bestd || numties == 0) {
+          numties = 0;
+          bestd = d;
+        }
+        if(d == bestd) {
+          ties[numties++] = s;
+        }
+      }
+    }
+    for(int i = 0; i < numties; i++) {
+      insertNeighbor(q, ties[i], bestd);
+      addReverse(ties[i], q);
+    }
+  }
+
+  /**
+   * Update the scores after a change of the neighborhoods of the affected
+   * objects.
+   */
+  private void updateScores() {
+    // The lrd also depends on the k-distances of the neighbors:
+    final int na = numaff;
+    for(int i = 0; i < na; i++) {
+      final int s = affected[i];
+      for(int j = 0; j < rnncnt[s]; j++) {
+        addAffected(rnn[s][j]);
+      }
+    }
+    for(int i = 0; i < numaff; i++) {
+      final int s = affected[i];
+      final double l = computeLRD(s);
+      addChanged(s);
+      if(!(l == lrd[s])) { // Also for NaN
+        lrd[s] = l;
+        for(int j = 0; j < rnncnt[s]; j++) {
+          addChanged(rnn[s][j]);
+        }
+      }
+    }
+    for(int i = 0; i < numchg; i++) {
+      final int s = changed[i];
+      lof[s] = computeLOF(s);
+    }
+  }
+
+  /**
+   * Compute the local reachability density of an object.
+   *
+   * @param s Slot
+   * @return Local reachability density
+   */
+  private double computeLRD(int s) {
+    final int c = nncnt[s];
+    final int[] ns = nn[s];
+    final double[] ds = nd[s];
+    double sum = 0.;
+    for(int j = 0; j < c; j++) {
+      final double kd = kdist(ns[j]);
+      sum += ds[j] > kd ? ds[j] : kd;
+    }
+    // Avoid division by 0
+    return (sum > 0) ? (c / sum) : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Compute the LOF score of an object.
+   *
+   * @param s Slot
+   * @return LOF score
+   */
+  private double computeLOF(int s) {
+    final double lrdp = lrd[s];
+    final int c = nncnt[s];
+    if(Double.isInfinite(lrdp) || c == 0) {
+      return 1.0;
+    }
+    final int[] ns = nn[s];
+    double sum = 0.;
+    for(int j = 0; j < c; j++) {
+      sum += lrd[ns[j]];
+    }
+    return sum / (lrdp * c);
+  }
+
+  /**
+   * Insert a neighbor into a sorted neighbor list, and drop the neighbors
+   * beyond the new k-distance. The caller must ensure the new neighbor belongs
+   * into the list.
+   *
+   * @param s Slot
+   * @param o New neighbor
+   * @param d Distance
+   * @return Number of dropped neighbors, which remain in the array directly
+   *         after the new end of the list
+   */
+  private int insertNeighbor(int s, int o, double d) {
+    final int c = nncnt[s];
+    if(c == nn[s].length) {
+      nn[s] = Arrays.copyOf(nn[s], c << 1);
+      nd[s] = Arrays.copyOf(nd[s], c << 1);
+    }
+    final int[] ns = nn[s];
+    final double[] ds = nd[s];
+    int i = c;
+    for(; i > 0 && ds[i - 1] > d; --i) {
+      ns[i] = ns[i - 1];
+      ds[i] = ds[i - 1];
+    }
+    ns[i] = o;
+    ds[i] = d;
+    int n = c + 1;
+    if(n > k) {
+      // Keep ties at the k-distance only:
+      final double kd = ds[k - 1];
+      while(ds[n - 1] > kd) {
+        --n;
+      }
+    }
+    nncnt[s] = n;
+    return c + 1 - n;
+  }
+
+  /**
+   * Remove a neighbor from a neighbor list.
+   *
+   * @param s Slot
+   * @param o Neighbor to remove
+   */
+  private void removeNeighbor(int s, int o) {
+    final int[] ns = nn[s];
+    final double[] ds = nd[s];
+    final int c = nncnt[s];
+    for(int j = 0; j < c; j++) {
+      if(ns[j] == o) {
+        System.arraycopy(ns, j + 1, ns, j, c - j - 1);
+        System.arraycopy(ds, j + 1, ds, j, c - j - 1);
+        nncnt[s] = c - 1;
+        return;
+      }
+    }
+    throw new IllegalStateException("Neighbor not found.");
+  }
+
+  /**
+   * Add a reverse neighbor.
+   *
+   * @param s Slot
+   * @param r New reverse neighbor of s
+   */
+  private void addReverse(int s, int r) {
+    final int c = rnncnt[s];
+    if(c == rnn[s].length) {
+      rnn[s] = Arrays.copyOf(rnn[s], c << 1);
+    }
+    rnn[s][c] = r;
+    rnncnt[s] = c + 1;
+  }
+
+  /**
+   * Remove a reverse neighbor.
+   *
+   * @param s Slot
+   * @param r Reverse neighbor to remove
+   */
+  private void removeReverse(int s, int r) {
+    final int[] rs = rnn[s];
+    final int c = rnncnt[s] - 1;
+    for(int j = 0; j <= c; j++) {
+      if(rs[j] == r) {
+        rs[j] = rs[c];
+        rnncnt[s] = c;
+        return;
+      }
+    }
+    throw new IllegalStateException("Reverse neighbor not found.");
+  }
+
+  /**
+   * Add an object to the affected set.
+   *
+   * @param s Slot
+   */
+  private void addAffected(int s) {
+    if(affmark[s] != stamp) {
+      affmark[s] = stamp;
+      affected[numaff++] = s;
+    }
+  }
+
+  /**
+   * Add an object to the set of changed scores.
+   *
+   * @param s Slot
+   */
+  private void addChanged(int s) {
+    if(chgmark[s] != stamp) {
+      chgmark[s] = stamp;
+      changed[numchg++] = s;
+    }
+  }
+
+  /**
+   * Get the k-distance of an object.
+   *
+   * @param s Slot
+   * @return k-distance
+   */
+  private double kdist(int s) {
+    final int c = nncnt[s];
+    return c > 0 ? nd[s][c - 1] : 0.;
+  }
+
+  /**
+   * Slot of the i-th object of the window.
+   *
+   * @param i Position, 0 is the oldest object
+   * @return Slot
+   */
+  private int slot(int i) {
+    final int s = head + i;
+    return s < window ? s : s - window;
+  }
+
+  /**
+   * Get the object in a slot.
+   *
+   * @param s Slot
+   * @return Object
+   */
+  @SuppressWarnings("unchecked")
+  private O get(int s) {
+    return (O) objs[s];
+  }
+
+  /**
+   * Get the number of objects in the window.
+   *
+   * @return Window size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get an object of the window.
+   *
+   * @param i Position, 0 is the oldest object
+   * @return Object
+   */
+  public O getObject(int i) {
+    return get(slot(i));
+  }
+
+  /**
+   * Get the current LOF score of an object of the window.
+   *
+   * @param i Position, 0 is the oldest object
+   * @return LOF score
+   */
+  public double getLOF(int i) {
+    return lof[slot(i)];
+  }
+
+  /**
+   * Get the current k-distance of an object of the window.
+   *
+   * @param i Position, 0 is the oldest object
+   * @return k-distance
+   */
+  public double getKNNDistance(int i) {
+    return kdist(slot(i));
+  }
+
+  /**
+   * Log the throughput and latency statistics.
+   */
+  public void logStatistics() {
+    final String key = SlidingWindowLOF.class.getName();
+    LOG.statistics(new LongStatistic(key + ".inserted", events));
+    LOG.statistics(new LongStatistic(key + ".expired", expired));
+    if(events > 0) {
+      LOG.statistics(new DoubleStatistic(key + ".throughput", events * 1e9 / Math.max(totalnanos, 1)));
+      LOG.statistics(new DoubleStatistic(key + ".latency.mean-ms", totalnanos * 1e-6 / events));
+      LOG.statistics(new DoubleStatistic(key + ".latency.max-ms", maxnanos * 1e-6));
+    }
+  }
+
+  /**
+   * Listener for the scores of new objects.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  @FunctionalInterface
+  public interface Listener<O> {
+    /**
+     * Called for every new object, after insertion into the window.
+     *
+     * @param obj Object
+     * @param time Time stamp
+     * @param lof LOF score
+     * @param kdist k-distance (kNN outlier score)
+     */
+    void scored(O obj, long time, double lof, double kdist);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * Maximum number of objects in the window.
+     */
+    public static final OptionID WINDOW_ID = new OptionID("slidinglof.window", "Maximum number of objects in the sliding window.");
+
+    /**
+     * Time horizon of the window.
+     */
+    public static final OptionID HORIZON_ID = new OptionID("slidinglof.horizon", "Time horizon of the sliding window in milliseconds, 0 to expire by window size only.");
+
+    /**
+     * The distance function to use.
+     */
+    protected PrimitiveDistance<? super O> distance;
+
+    /**
+     * The neighborhood size to use.
+     */
+    protected int k = 2;
+
+    /**
+     * Window size.
+     */
+    protected int window;
+
+    /**
+     * Time horizon.
+     */
+    protected long horizon;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<PrimitiveDistance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, PrimitiveDistance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(LOF.Par.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+      new IntParameter(WINDOW_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT) //
+          .grab(config, x -> window = x);
+      new LongParameter(HORIZON_ID, 0L) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> horizon = x);
+    }
+
+    @Override
+    public SlidingWindowLOF<O> make() {
+      return new SlidingWindowLOF<>(distance, k, window, horizon);
+    }
+  }
+}
@@ -21,6 +21,7 @@
 package elki.outlier.meta;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import elki.data.NumberVector;
@@ -30,6 +31,7 @@ import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDs;
 import elki.database.relation.DoubleRelation;
 import elki.database.relation.MaterializedDoubleRelation;
 import elki.database.relation.Relation;
@@ -97,12 +99,12 @@ public class FeatureBagging implements OutlierAlgorithm {
   /**
    * Random number generator for subspace choice.
    */
-  private RandomFactory rnd;
+  protected RandomFactory rnd;
 
   /**
    * The parameters k for LOF.
    */
-  private int k;
+  protected int k;
 
   /**
    * Constructor.
@@ -153,43 +155,7 @@ public class FeatureBagging implements OutlierAlgorithm {
     WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
     DoubleMinMax minmax = new DoubleMinMax();
     if(breadth) {
-      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Combining results", relation.size(), LOG) : null;
-      @SuppressWarnings("unchecked")
-      Pair<DBIDIter, DoubleRelation>[] IDVectorOntoScoreVector = (Pair<DBIDIter, DoubleRelation>[]) new Pair[results.size()];
-
-      // Mapping score-sorted DBID-Iterators onto their corresponding scores.
-      // We need to initialize them now be able to iterate them "in parallel".
-      {
-        int i = 0;
-        for(OutlierResult r : results) {
-          IDVectorOntoScoreVector[i] = new Pair<DBIDIter, DoubleRelation>(r.getOrdering().order(relation.getDBIDs()).iter(), r.getScores());
-          i++;
-        }
-      }
-
-      // Iterating over the *lines* of the AS_t(i)-matrix.
-      for(int i = 0; i < relation.size(); i++) {
-        // Iterating over the elements of a line (breadth-first).
-        for(Pair<DBIDIter, DoubleRelation> pair : IDVectorOntoScoreVector) {
-          DBIDIter iter = pair.first;
-          // Always true if every algorithm returns a complete result (one score
-          // for every DBID).
-          if(iter.valid()) {
-            double score = pair.second.doubleValue(iter);
-            if(Double.isNaN(scores.doubleValue(iter))) {
-              scores.putDouble(iter, score);
-              minmax.put(score);
-            }
-            iter.advance();
-          }
-          else {
-            LOG.warning("Incomplete result: Iterator does not contain |DB| DBIDs");
-          }
-        }
-        // Progress does not take the initial mapping into account.
-        LOG.incrementProcessed(cprog);
-      }
-      LOG.ensureCompleted(cprog);
+      combineBreadthFirst(relation.getDBIDs(), results, scores, minmax);
     }
     else {
       FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Combining results", relation.size(), LOG) : null;
@@ -212,6 +178,55 @@ public class FeatureBagging implements OutlierAlgorithm {
     return new OutlierResult(meta, scoreres);
   }
 
+  /**
+   * Combine the results breadth first: each object gets the score of the
+   * first result that ranks it, iterating over the rankings in parallel.
+   *
+   * @param ids Object ids
+   * @param results Results of the ensemble members
+   * @param scores Output scores
+   * @param minmax Output score range
+   */
+  protected void combineBreadthFirst(DBIDs ids, List<OutlierResult> results, WritableDoubleDataStore scores, DoubleMinMax minmax) {
+    FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Combining results", ids.size(), LOG) : null;
+    @SuppressWarnings("unchecked")
+    Pair<DBIDIter, DoubleRelation>[] IDVectorOntoScoreVector = (Pair<DBIDIter, DoubleRelation>[]) new Pair[results.size()];
+
+    // Mapping score-sorted DBID-Iterators onto their corresponding scores.
+    // We need to initialize them now be able to iterate them "in parallel".
+    {
+      int i = 0;
+      for(OutlierResult r : results) {
+        IDVectorOntoScoreVector[i] = new Pair<DBIDIter, DoubleRelation>(r.getOrdering().order(ids).iter(), r.getScores());
+        i++;
+      }
+    }
+
+    // Iterating over the *lines* of the AS_t(i)-matrix.
+    for(int i = 0; i < ids.size(); i++) {
+      // Iterating over the elements of a line (breadth-first).
+      for(Pair<DBIDIter, DoubleRelation> pair : IDVectorOntoScoreVector) {
+        DBIDIter iter = pair.first;
+        // Always true if every algorithm returns a complete result (one score
+        // for every DBID).
+        if(iter.valid()) {
+          double score = pair.second.doubleValue(iter);
+          if(Double.isNaN(scores.doubleValue(iter))) {
+            scores.putDouble(iter, score);
+            minmax.put(score);
+          }
+          iter.advance();
+        }
+        else {
+          LOG.warning("Incomplete result: Iterator does not contain |DB| DBIDs");
+        }
+      }
+      // Progress does not take the initial mapping into account.
+      LOG.incrementProcessed(cprog);
+    }
+    LOG.ensureCompleted(cprog);
+  }
+
   /**
    * Choose a random subspace.
    *
@@ -220,7 +235,7 @@ public class FeatureBagging implements OutlierAlgorithm {
    * @param maxdim Maximum number to choose
    * @return Subspace as bits.
    */
-  private long[] randomSubspace(final int alldim, final int mindim, final int maxdim, final Random rand) {
+  protected long[] randomSubspace(final int alldim, final int mindim, final int maxdim, final Random rand) {
     long[] dimset = BitsUtil.zero(alldim);
     // Fill with all dimensions
     int[] dims = new int[alldim];
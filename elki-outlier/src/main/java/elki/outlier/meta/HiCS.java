@@ -21,6 +21,7 @@
 package elki.outlier.meta;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import elki.data.NumberVector;
 import elki.data.VectorUtil;
@@ -96,37 +97,37 @@ public class HiCS implements OutlierAlgorithm {
   /**
    * Maximum number of retries.
    */
-  private static final int MAX_RETRIES = 100;
+  protected static final int MAX_RETRIES = 100;
 
   /**
    * Monte-Carlo iterations.
    */
-  private int m;
+  protected int m;
 
   /**
    * Alpha threshold.
    */
-  private double alpha;
+  protected double alpha;
 
   /**
    * Outlier detection algorithm.
    */
-  private OutlierAlgorithm outlierAlgorithm;
+  protected OutlierAlgorithm outlierAlgorithm;
 
   /**
    * Statistical test to use.
    */
-  private GoodnessOfFitTest statTest;
+  protected GoodnessOfFitTest statTest;
 
   /**
    * Candidates limit.
    */
-  private int cutoff;
+  protected int cutoff;
 
   /**
    * Random generator.
    */
-  private RandomFactory rnd;
+  protected RandomFactory rnd;
 
   /**
    * Constructor.
@@ -163,8 +164,7 @@ public class HiCS implements OutlierAlgorithm {
   public OutlierResult run(Relation<? extends NumberVector> relation) {
     final DBIDs ids = relation.getDBIDs();
 
-    ArrayList<ArrayDBIDs> subspaceIndex = buildOneDimIndexes(relation);
-    Set<HiCSSubspace> subspaces = calculateSubspaces(relation, subspaceIndex, rnd.getSingleThreadedRandom());
+    Set<HiCSSubspace> subspaces = calculateSubspaces(relation, contrastEstimator(relation));
 
     if(LOG.isVerbose()) {
       LOG.verbose("Number of high-contrast subspaces: " + subspaces.size());
@@ -233,14 +233,31 @@ public class HiCS implements OutlierAlgorithm {
     return subspaceIndex;
   }
 
+  /**
+   * Build the contrast estimation for a relation, which computes the contrast
+   * of each subspace in a batch of candidates.
+   * 
+   * @param relation the relation the HiCS should be evaluated for
+   * @return Contrast estimation
+   */
+  protected Consumer<List<HiCSSubspace>> contrastEstimator(Relation<? extends NumberVector> relation) {
+    final ArrayList<ArrayDBIDs> subspaceIndex = buildOneDimIndexes(relation);
+    final Random random = rnd.getSingleThreadedRandom();
+    return candidates -> {
+      for(HiCSSubspace subspace : candidates) {
+        calculateContrast(relation, subspace, subspaceIndex, random);
+      }
+    };
+  }
+
   /**
    * Identifies high contrast subspaces in a given full-dimensional database.
    * 
    * @param relation the relation the HiCS should be evaluated for
-   * @param subspaceIndex Subspace indexes
+   * @param contrast Contrast estimation for candidate subspaces
    * @return a set of high contrast subspaces
    */
-  private Set<HiCSSubspace> calculateSubspaces(Relation<? extends NumberVector> relation, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
+  protected Set<HiCSSubspace> calculateSubspaces(Relation<? extends NumberVector> relation, Consumer<List<HiCSSubspace>> contrast) {
     final int dbdim = RelationUtil.dimensionality(relation);
 
     FiniteProgress dprog = LOG.isVerbose() ? new FiniteProgress("Subspace dimensionality", dbdim, LOG) : null;
@@ -252,14 +269,17 @@ public class HiCS implements OutlierAlgorithm {
     Heap<HiCSSubspace> dDimensionalList = new Heap<>(cutoff, HiCSSubspace.SORT_BY_CONTRAST_ASC);
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Generating two-element subsets", (dbdim * (dbdim - 1)) >> 1, LOG) : null;
     // compute two-element sets of subspaces
+    ArrayList<HiCSSubspace> pairs = new ArrayList<>((dbdim * (dbdim - 1)) >> 1);
     for(int i = 0; i < dbdim; i++) {
       for(int j = i + 1; j < dbdim; j++) {
-        HiCSSubspace ts = new HiCSSubspace(dbdim).set(i).set(j);
-        calculateContrast(relation, ts, subspaceIndex, random);
-        dDimensionalList.add(ts, cutoff);
-        LOG.incrementProcessed(prog);
+        pairs.add(new HiCSSubspace(dbdim).set(i).set(j));
       }
     }
+    contrast.accept(pairs);
+    for(HiCSSubspace ts : pairs) {
+      dDimensionalList.add(ts, cutoff);
+      LOG.incrementProcessed(prog);
+    }
     LOG.ensureCompleted(prog);
 
     IndefiniteProgress qprog = LOG.isVerbose() ? new IndefiniteProgress("Testing subspace candidates", LOG) : null;
@@ -279,19 +299,21 @@ public class HiCS implements OutlierAlgorithm {
       Collections.sort(candidateList, HiCSSubspace.SORT_BY_SUBSPACE);
 
       // TODO: optimize APRIORI style, by not even computing the bit set or?
+      ArrayList<HiCSSubspace> joined = new ArrayList<>();
       for(int i = 0; i < candidateList.size() - 1; i++) {
         for(int j = i + 1; j < candidateList.size(); j++) {
           HiCSSubspace joinedSet = new HiCSSubspace(candidateList.get(i)) //
               .or(candidateList.get(j));
-          if(joinedSet.dimensionality() != d) {
-            continue;
+          if(joinedSet.dimensionality() == d) {
+            joined.add(joinedSet);
           }
-
-          calculateContrast(relation, joinedSet, subspaceIndex, random);
-          dDimensionalList.add(joinedSet, cutoff);
-          LOG.incrementProcessed(qprog);
         }
       }
+      contrast.accept(joined);
+      for(HiCSSubspace joinedSet : joined) {
+        dDimensionalList.add(joinedSet, cutoff);
+        LOG.incrementProcessed(qprog);
+      }
       // Prune
       for(HiCSSubspace cand : candidateList) {
         for(Heap<HiCSSubspace>.UnorderedIter it = dDimensionalList.unorderedIter(); it.valid(); it.advance()) {
@@ -469,6 +491,24 @@ public class HiCS implements OutlierAlgorithm {
       return buf.append(']').toString();
     }
 
+    /**
+     * Get the contrast of this subspace.
+     * 
+     * @return Contrast
+     */
+    public double getContrast() {
+      return contrast;
+    }
+
+    /**
+     * Set the contrast of this subspace.
+     * 
+     * @param contrast Contrast
+     */
+    public void setContrast(double contrast) {
+      this.contrast = contrast;
+    }
+
     /**
      * Get the next set bit.
      *
@@ -566,32 +606,32 @@ public class HiCS implements OutlierAlgorithm {
     /**
      * Holds the value of {@link #M_ID}.
      */
-    private int m = 50;
+    protected int m = 50;
 
     /**
      * Holds the value of {@link #ALPHA_ID}.
      */
-    private double alpha = 0.1;
+    protected double alpha = 0.1;
 
     /**
      * Holds the value of {@link #ALGO_ID}.
      */
-    private OutlierAlgorithm outlierAlgorithm;
+    protected OutlierAlgorithm outlierAlgorithm;
 
     /**
      * Holds the value of {@link #TEST_ID}.
      */
-    private GoodnessOfFitTest statTest;
+    protected GoodnessOfFitTest statTest;
 
     /**
      * Holds the value of {@link #LIMIT_ID}.
      */
-    private int cutoff = 400;
+    protected int cutoff = 400;
 
     /**
      * Random generator.
      */
-    private RandomFactory rnd;
+    protected RandomFactory rnd;
 
     @Override
     public void configure(Parameterization config) {
@@ -34,6 +34,7 @@ import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.relation.DoubleRelation;
 import elki.database.relation.MaterializedDoubleRelation;
@@ -70,12 +71,12 @@ public class SimpleOutlierEnsemble implements OutlierAlgorithm {
   /**
    * The algorithms to run.
    */
-  private List<? extends OutlierAlgorithm> algorithms;
+  protected List<? extends OutlierAlgorithm> algorithms;
 
   /**
    * The voting in use.
    */
-  private EnsembleVoting voting;
+  protected EnsembleVoting voting;
 
   /**
    * Constructor.
@@ -103,18 +104,29 @@ public class SimpleOutlierEnsemble implements OutlierAlgorithm {
     int num = algorithms.size();
     // Run inner outlier algorithms
     ModifiableDBIDs ids = DBIDUtil.newHashSet();
-    ArrayList<OutlierResult> results = new ArrayList<>(num);
+    ArrayList<DoubleRelation> results = new ArrayList<>(num);
     {
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Inner outlier algorithms", num, LOG) : null;
       for(OutlierAlgorithm alg : algorithms) {
         OutlierResult or = alg.autorun(database);
-        results.add(or);
+        results.add(or.getScores());
         ids.addDBIDs(or.getScores().getDBIDs());
         LOG.incrementProcessed(prog);
       }
       LOG.ensureCompleted(prog);
     }
-    // Combine
+    return combine(ids, results);
+  }
+
+  /**
+   * Combine the scores of the ensemble members.
+   *
+   * @param ids Objects scored by any member
+   * @param results Scores of the ensemble members
+   * @return Combined result
+   */
+  protected OutlierResult combine(DBIDs ids, List<DoubleRelation> results) {
+    final int num = results.size();
     WritableDoubleDataStore sumscore = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
     DoubleMinMax minmax = new DoubleMinMax();
     {
@@ -122,8 +134,8 @@ public class SimpleOutlierEnsemble implements OutlierAlgorithm {
       for(DBIDIter id = ids.iter(); id.valid(); id.advance()) {
         double[] scores = new double[num];
         int i = 0;
-        for(OutlierResult r : results) {
-          double score = r.getScores().doubleValue(id);
+        for(DoubleRelation r : results) {
+          double score = r.doubleValue(id);
           if(!Double.isNaN(score)) {
             scores[i] = score;
             i++;
@@ -167,12 +179,12 @@ public class SimpleOutlierEnsemble implements OutlierAlgorithm {
     /**
      * The algorithms to run.
      */
-    private List<? extends OutlierAlgorithm> algorithms;
+    protected List<? extends OutlierAlgorithm> algorithms;
 
     /**
      * The voting in use.
      */
-    private EnsembleVoting voting;
+    protected EnsembleVoting voting;
 
     @Override
     public void configure(Parameterization config) {
@@ -0,0 +1,120 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.meta.parallel;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import elki.logging.Logging;
+import elki.parallel.ParallelCore;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Runs the members of an ensemble on a bounded number of threads.
+ * <p>
+ * Members are started in the order of submission, and their results should be
+ * consumed in that order, too, so that results do not depend on the scheduling.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+class EnsembleExecutor implements AutoCloseable {
+  /**
+   * Thread pool.
+   */
+  private final ExecutorService pool;
+
+  /**
+   * Constructor.
+   *
+   * @param parallel Maximum number of members to run concurrently
+   */
+  EnsembleExecutor(int parallel) {
+    this.pool = Executors.newFixedThreadPool(parallel);
+  }
+
+  /**
+   * Submit an ensemble member.
+   *
+   * @param member Member to run
+   * @param <T> Result type
+   * @return Future result
+   */
+  <T> Future<T> submit(Callable<T> member) {
+    return pool.submit(member);
+  }
+
+  /**
+   * Wait for the result of an ensemble member.
+   *
+   * @param future Future result
+   * @param <T> Result type
+   * @return Result
+   */
+  static <T> T get(Future<T> future) {
+    try {
+      return future.get();
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AbortException("Interrupted while waiting for the ensemble members.", e);
+    }
+    catch(ExecutionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new AbortException("Ensemble member failed.", e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    pool.shutdownNow();
+  }
+
+  /**
+   * Choose the number of concurrent members.
+   *
+   * @param parallel Maximum requested, 0 for the number of processors
+   * @param num Number of members
+   * @param permember Estimated memory of each member in bytes, 0 if unknown
+   * @param log Logger
+   * @return Number of members to run concurrently
+   */
+  static int parallelism(int parallel, int num, long permember, Logging log) {
+    int p = Math.min(parallel > 0 ? parallel : ParallelCore.getCore().getParallelism(), num);
+    if(permember > 0) {
+      final Runtime rt = Runtime.getRuntime();
+      final long free = rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
+      final long fit = (long) (0.8 * free / permember);
+      if(fit < p) {
+        p = (int) Math.max(1, fit);
+        if(log.isVerbose()) {
+          log.verbose("Running only " + p + " ensemble members concurrently because of the available memory.");
+        }
+      }
+    }
+    return Math.max(1, p);
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.meta.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.distance.subspace.SubspaceEuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.math.DoubleMinMax;
+import elki.outlier.lof.LOF;
+import elki.outlier.meta.FeatureBagging;
+import elki.result.outlier.BasicOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.datastructures.BitsUtil;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel version of {@link FeatureBagging}.
+ * <p>
+ * The random subspaces are chosen in the same order as in the serial version,
+ * then the LOF members run concurrently. The number of concurrent members is
+ * limited such that the estimated memory of the members fits into the
+ * available heap. Members with the same subspace are computed only once.
+ * <p>
+ * Results are combined in the order of the members, and hence are identical
+ * to the serial version. Members are only started when they are at most as
+ * many members ahead of the combination as may run concurrently, so finished
+ * results do not pile up while an earlier member is still running. With the
+ * cumulative sum, the scores of a member are added as soon as all previous
+ * members are done, and the member result is released (unless the same
+ * subspace is used again later).
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelFeatureBagging extends FeatureBagging {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFeatureBagging.class);
+
+  /**
+   * Maximum number of concurrent members, 0 for the number of processors.
+   */
+  protected int parallel;
+
+  /**
+   * Constructor.
+   *
+   * @param k k Parameter for LOF
+   * @param num Number of subspaces to use
+   * @param breadth Flag for breadth-first merging
+   * @param rnd Random generator
+   * @param parallel Maximum number of concurrent members, 0 for the number of
+   *        processors
+   */
+  public ParallelFeatureBagging(int k, int num, boolean breadth, RandomFactory rnd, int parallel) {
+    super(k, num, breadth, rnd);
+    this.parallel = parallel;
+  }
+
+  @Override
+  public OutlierResult run(Relation<NumberVector> relation) {
+    final int dbdim = RelationUtil.dimensionality(relation);
+    final int mindim = dbdim >> 1;
+    final int maxdim = dbdim - 1;
+    final Random rand = rnd.getSingleThreadedRandom();
+
+    // Choose all subspaces first, and find duplicates:
+    long[][] dimsets = new long[num][];
+    int[] first = new int[num], last = new int[num];
+    for(int i = 0; i < num; i++) {
+      dimsets[i] = randomSubspace(dbdim, mindim, maxdim, rand);
+      first[i] = i;
+      for(int j = 0; j < i; j++) {
+        if(first[j] == j && BitsUtil.equal(dimsets[i], dimsets[j])) {
+          first[i] = j;
+          break;
+        }
+      }
+      last[first[i]] = i;
+    }
+
+    // Per object: the kNN list (object, two arrays with their headers, and
+    // k+1 entries of 12 bytes) and its reference, the lrd, and the score:
+    final long permember = relation.size() * (12L * (k + 1) + 64L + 8L + 16L);
+    final int p = EnsembleExecutor.parallelism(parallel, num, permember, LOG);
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC, breadth ? Double.NaN : 0.);
+    DoubleMinMax minmax = new DoubleMinMax();
+    ArrayList<OutlierResult> results = breadth ? new ArrayList<>(num) : null;
+    try (EnsembleExecutor exec = new EnsembleExecutor(p)) {
+      List<Future<OutlierResult>> futures = new ArrayList<>(num);
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("LOF iterations", num, LOG) : null;
+      for(int i = 0; i < num; i++) {
+        // Start the members at most p ahead of the one consumed next:
+        for(int next = futures.size(); next < num && next < i + p; next++) {
+          if(first[next] != next) {
+            futures.add(null); // Shares the result of an earlier member
+            continue;
+          }
+          final SubspaceEuclideanDistance df = new SubspaceEuclideanDistance(dimsets[next]);
+          futures.add(exec.submit(() -> new LOF<>(k, df).run(relation)));
+        }
+        final int f = first[i];
+        OutlierResult r = EnsembleExecutor.get(futures.get(f));
+        if(last[f] == i) {
+          futures.set(f, null); // Release
+        }
+        if(breadth) {
+          results.add(r);
+        }
+        else {
+          final DoubleRelation rs = r.getScores();
+          for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+            final double s = rs.doubleValue(iter);
+            if(!Double.isNaN(s)) {
+              scores.increment(iter, s);
+            }
+          }
+        }
+        LOG.incrementProcessed(prog);
+      }
+      LOG.ensureCompleted(prog);
+    }
+
+    if(breadth) {
+      combineBreadthFirst(relation.getDBIDs(), results, scores, minmax);
+    }
+    else {
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        minmax.put(scores.doubleValue(iter));
+      }
+    }
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Feature bagging", relation.getDBIDs(), scores);
+    return new OutlierResult(new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax()), scoreres);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   */
+  public static class Par extends FeatureBagging.Par {
+    /**
+     * Maximum number of concurrent members.
+     */
+    protected int parallel;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(ParallelSimpleOutlierEnsemble.Par.PARALLEL_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> parallel = x);
+    }
+
+    @Override
+    public ParallelFeatureBagging make() {
+      return new ParallelFeatureBagging(k, num, breadth, rnd, parallel);
+    }
+  }
+}
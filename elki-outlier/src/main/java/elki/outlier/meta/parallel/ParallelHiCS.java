@@ -0,0 +1,339 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.meta.parallel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import elki.data.NumberVector;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.logging.Logging;
+import elki.math.statistics.tests.GoodnessOfFitTest;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.meta.HiCS;
+import elki.parallel.Executor;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.Processor;
+import elki.utilities.datastructures.arrays.IntegerArrayQuickSort;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.random.FastNonThreadsafeRandom;
+import elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of {@link HiCS}.
+ * <p>
+ * All candidate subspaces of one level of the Apriori-style search are
+ * evaluated concurrently. The Monte-Carlo iterations of each candidate run in
+ * a single task, which shares the retry budget for too small samples among all
+ * iterations, as in the serial version. Each candidate uses its own random
+ * generator, seeded from the configured random source in a fixed order. Hence,
+ * the results are reproducible, and do not depend on the number of threads;
+ * they differ from the serial version, which uses a single random stream.
+ * <p>
+ * The per-dimension sort orders, ranks, and sorted values are precomputed in
+ * primitive arrays, and shared read-only by all threads. The conditional
+ * samples are obtained by scanning the index block of one attribute and
+ * checking the ranks in the others, instead of intersecting sets of DBIDs.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelHiCS extends HiCS {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHiCS.class);
+
+  /**
+   * Number of threads, 0 for the number of processors.
+   */
+  protected int parallel;
+
+  /**
+   * Constructor.
+   *
+   * @param m value of m
+   * @param alpha value of alpha
+   * @param outlierAlgorithm Inner outlier detection algorithm
+   * @param statTest Test to use
+   * @param cutoff Candidate limit
+   * @param rnd Random generator
+   * @param parallel Number of threads, 0 for the number of processors
+   */
+  public ParallelHiCS(int m, double alpha, OutlierAlgorithm outlierAlgorithm, GoodnessOfFitTest statTest, int cutoff, RandomFactory rnd, int parallel) {
+    super(m, alpha, outlierAlgorithm, statTest, cutoff, rnd);
+    this.parallel = parallel;
+  }
+
+  @Override
+  protected Consumer<List<HiCSSubspace>> contrastEstimator(Relation<? extends NumberVector> relation) {
+    return new MonteCarlo(relation, rnd.getSingleThreadedRandom())::evaluate;
+  }
+
+  /**
+   * Parallel Monte-Carlo contrast estimation.
+   *
+   * @author Erich Schubert
+   */
+  private class MonteCarlo implements Processor {
+    /**
+     * Number of objects.
+     */
+    private final int size;
+
+    /**
+     * Attribute values, by attribute and object.
+     */
+    private final double[][] values;
+
+    /**
+     * Objects sorted by each attribute.
+     */
+    private final int[][] order;
+
+    /**
+     * Rank of each object in each attribute.
+     */
+    private final int[][] rank;
+
+    /**
+     * Sorted values of each attribute.
+     */
+    private final double[][] sorted;
+
+    /**
+     * Random generator for the seeds.
+     */
+    private final Random random;
+
+    /**
+     * Current candidates.
+     */
+    private List<HiCSSubspace> candidates;
+
+    /**
+     * Task range.
+     */
+    private DBIDRange range;
+
+    /**
+     * Seed of each candidate.
+     */
+    private long[] seeds;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param random Random generator for the seeds
+     */
+    MonteCarlo(Relation<? extends NumberVector> relation, Random random) {
+      final int dim = RelationUtil.dimensionality(relation);
+      this.size = relation.size();
+      this.random = random;
+      values = new double[dim][size];
+      int o = 0;
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance(), o++) {
+        final NumberVector v = relation.get(it);
+        for(int d = 0; d < dim; d++) {
+          values[d][o] = v.doubleValue(d);
+        }
+      }
+      order = new int[dim][];
+      rank = new int[dim][size];
+      sorted = new double[dim][size];
+      for(int d = 0; d < dim; d++) {
+        final double[] vd = values[d];
+        final int[] od = order[d] = new int[size];
+        for(int i = 0; i < size; i++) {
+          od[i] = i;
+        }
+        IntegerArrayQuickSort.sort(od, (a, b) -> Double.compare(vd[a], vd[b]));
+        final int[] rd = rank[d];
+        final double[] sd = sorted[d];
+        for(int i = 0; i < size; i++) {
+          rd[od[i]] = i;
+          sd[i] = vd[od[i]];
+        }
+      }
+    }
+
+    /**
+     * Compute the contrast of all candidates.
+     *
+     * @param candidates Candidate subspaces
+     */
+    void evaluate(List<HiCSSubspace> candidates) {
+      final int ntasks = candidates.size();
+      if(ntasks == 0) {
+        return;
+      }
+      this.candidates = candidates;
+      seeds = new long[ntasks];
+      for(int t = 0; t < ntasks; t++) {
+        seeds[t] = random.nextLong();
+      }
+      range = DBIDUtil.generateStaticDBIDRange(ntasks);
+      ParallelExecutor.run(parallel, range, null, LOG, this);
+      this.candidates = null;
+    }
+
+    @Override
+    public Processor.Instance instantiate(Executor executor) {
+      return new Worker();
+    }
+
+    @Override
+    public void cleanup(Processor.Instance inst) {
+      // Nothing to do.
+    }
+
+    /**
+     * Worker, with scratch buffers.
+     *
+     * @author Erich Schubert
+     */
+    private class Worker implements Processor.Instance {
+      /**
+       * Start of the index block of each attribute.
+       */
+      private final int[] starts = new int[values.length];
+
+      /**
+       * Buffer for the full sample.
+       */
+      private final double[] full = new double[size];
+
+      /**
+       * Buffer for the conditional sample.
+       */
+      private final double[] sample = new double[size];
+
+      @Override
+      public void map(DBIDRef id) {
+        final int t = range.getOffset(id);
+        final HiCSSubspace subspace = candidates.get(t);
+        final Random rand = new FastNonThreadsafeRandom(seeds[t]);
+        final int card = subspace.dimensionality();
+        final double alpha1 = FastMath.pow(alpha, (1.0 / card));
+        final int windowsize = (int) (size * alpha1);
+
+        int retries = 0;
+        double deviationSum = 0.0;
+        for(int i = 0; i < m; i++) {
+          // Choose a random set bit.
+          int chosen = -1;
+          for(int tmp = rand.nextInt(card); tmp >= 0; tmp--) {
+            chosen = subspace.nextSetBit(chosen + 1);
+          }
+          // Choose the index blocks of the other attributes.
+          int first = -1;
+          for(int j = subspace.nextSetBit(0); j >= 0; j = subspace.nextSetBit(j + 1)) {
+            if(j != chosen) {
+              starts[j] = rand.nextInt(size - windowsize);
+              first = first < 0 ? j : first;
+            }
+          }
+          // Conditional sample: scan one index block, check the others.
+          final int[] ord = order[first];
+          final double[] val = values[chosen];
+          int n = 0;
+          scan: for(int p = starts[first], end = p + windowsize; p < end; p++) {
+            final int o = ord[p];
+            for(int j = subspace.nextSetBit(first + 1); j >= 0; j = subspace.nextSetBit(j + 1)) {
+              if(j != chosen) {
+                final int r = rank[j][o] - starts[j];
+                if(r < 0 || r >= windowsize) {
+                  continue scan;
+                }
+              }
+            }
+            sample[n++] = val[o];
+          }
+          if(n < 10) {
+            retries++;
+            if(retries >= MAX_RETRIES) {
+              LOG.warning("Too many retries, for small samples: " + retries);
+            }
+            else {
+              i--;
+              continue;
+            }
+          }
+          // The tests may modify their input, so we use copies.
+          System.arraycopy(sorted[chosen], 0, full, 0, size);
+          double contrast = statTest.deviation(full, Arrays.copyOf(sample, n));
+          if(Double.isNaN(contrast)) {
+            i--;
+            LOG.warning("Contrast was NaN");
+            continue;
+          }
+          deviationSum += contrast;
+        }
+        subspace.setContrast(deviationSum / m);
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   */
+  public static class Par extends HiCS.Par {
+    /**
+     * Number of threads for the contrast estimation.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("hics.parallel", "Number of threads for the contrast estimation, 0 for the number of processors.");
+
+    /**
+     * Number of threads.
+     */
+    protected int parallel;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(PARALLEL_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> parallel = x);
+    }
+
+    @Override
+    public ParallelHiCS make() {
+      return new ParallelHiCS(m, alpha, outlierAlgorithm, statTest, cutoff, rnd, parallel);
+    }
+  }
+}
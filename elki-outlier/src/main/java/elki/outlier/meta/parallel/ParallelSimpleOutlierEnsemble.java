@@ -0,0 +1,192 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.meta.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import elki.database.Database;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.ModifiableDBIDs;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.outlier.KNNBasedOutlierAlgorithm;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.meta.SimpleOutlierEnsemble;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ensemble.EnsembleVoting;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Parallel version of {@link SimpleOutlierEnsemble}, running the member
+ * algorithms concurrently.
+ * <p>
+ * Only the score relations of the members are kept for voting; the remainder
+ * of each member result is released as soon as the member has finished. As
+ * the memory needs of arbitrary members are not known, the number of
+ * concurrent members is limited by a parameter only. Members are only started
+ * when they are at most that many members ahead of the first unfinished one,
+ * so the number of pending results is bounded, too.
+ * <p>
+ * Concurrent members would not see the kNN preprocessors built by each other.
+ * Hence, for members that are {@link KNNBasedOutlierAlgorithm}s with the same
+ * distance, the nearest neighbors are precomputed once with the largest k
+ * before the members are started, and then shared by the members.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelSimpleOutlierEnsemble extends SimpleOutlierEnsemble {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelSimpleOutlierEnsemble.class);
+
+  /**
+   * Maximum number of concurrent members, 0 for the number of processors.
+   */
+  protected int parallel;
+
+  /**
+   * Constructor.
+   *
+   * @param algorithms Algorithms to run
+   * @param voting Voting method
+   * @param parallel Maximum number of concurrent members, 0 for the number of
+   *        processors
+   */
+  public ParallelSimpleOutlierEnsemble(List<? extends OutlierAlgorithm> algorithms, EnsembleVoting voting, int parallel) {
+    super(algorithms, voting);
+    this.parallel = parallel;
+  }
+
+  @Override
+  public OutlierResult autorun(Database database) throws IllegalStateException {
+    final int num = algorithms.size();
+    ModifiableDBIDs ids = DBIDUtil.newHashSet();
+    ArrayList<DoubleRelation> results = new ArrayList<>(num);
+    // Keep the shared kNN indexes referenced until all members are done:
+    List<KNNSearcher<DBIDRef>> shared = precomputeSharedKNN(database);
+    final int p = EnsembleExecutor.parallelism(parallel, num, 0, LOG);
+    try (EnsembleExecutor exec = new EnsembleExecutor(p)) {
+      List<Future<DoubleRelation>> futures = new ArrayList<>(num);
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Inner outlier algorithms", num, LOG) : null;
+      for(int i = 0; i < num; i++) {
+        // Start the members at most p ahead of the one consumed next:
+        for(int next = futures.size(); next < num && next < i + p; next++) {
+          final OutlierAlgorithm alg = algorithms.get(next);
+          futures.add(exec.submit(() -> alg.autorun(database).getScores()));
+        }
+        DoubleRelation scores = EnsembleExecutor.get(futures.get(i));
+        futures.set(i, null);
+        results.add(scores);
+        ids.addDBIDs(scores.getDBIDs());
+        LOG.incrementProcessed(prog);
+      }
+      LOG.ensureCompleted(prog);
+    }
+    shared.clear();
+    return combine(ids, results);
+  }
+
+  /**
+   * Precompute the nearest neighbors for all kNN-based members that share
+   * their distance with another member, with the largest k of these members.
+   * The kNN preprocessors are attached to the relation, where the members will
+   * find them.
+   *
+   * @param database Database
+   * @return kNN queries of the shared preprocessors
+   */
+  protected List<KNNSearcher<DBIDRef>> precomputeSharedKNN(Database database) {
+    final int num = algorithms.size();
+    List<KNNSearcher<DBIDRef>> shared = new ArrayList<>();
+    boolean[] grouped = new boolean[num];
+    for(int i = 0; i < num; i++) {
+      if(grouped[i] || !(algorithms.get(i) instanceof KNNBasedOutlierAlgorithm)) {
+        continue;
+      }
+      final KNNBasedOutlierAlgorithm first = (KNNBasedOutlierAlgorithm) algorithms.get(i);
+      int maxk = first.getKNNSize(), size = 1;
+      for(int j = i + 1; j < num; j++) {
+        if(algorithms.get(j) instanceof KNNBasedOutlierAlgorithm) {
+          final KNNBasedOutlierAlgorithm other = (KNNBasedOutlierAlgorithm) algorithms.get(j);
+          if(first.getDistance().equals(other.getDistance())) {
+            grouped[j] = true;
+            maxk = Math.max(maxk, other.getKNNSize());
+            ++size;
+          }
+        }
+      }
+      if(size > 1) {
+        LOG.verbose("Precomputing the " + maxk + " nearest neighbors for " + size + " ensemble members.");
+        // Bind the relation the same way as the members do:
+        Relation<Object> relation = database.getRelation(first.getInputTypeRestriction()[0]);
+        @SuppressWarnings("unchecked")
+        final Distance<? super Object> distance = (Distance<? super Object>) first.getDistance();
+        shared.add(new QueryBuilder<>(relation, distance).precomputed().kNNByDBID(maxk));
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   */
+  public static class Par extends SimpleOutlierEnsemble.Par {
+    /**
+     * Maximum number of ensemble members to run concurrently.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("ensemble.parallel", "Maximum number of ensemble members to run concurrently, 0 for the number of processors.");
+
+    /**
+     * Maximum number of concurrent members.
+     */
+    protected int parallel;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(PARALLEL_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> parallel = x);
+    }
+
+    @Override
+    public ParallelSimpleOutlierEnsemble make() {
+      return new ParallelSimpleOutlierEnsemble(algorithms, voting, parallel);
+    }
+  }
+}
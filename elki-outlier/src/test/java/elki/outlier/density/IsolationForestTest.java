@@ -0,0 +1,87 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.density;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.DBIDIter;
+import elki.database.relation.Relation;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the Isolation Forest algorithm.
+ * <p>
+ * The trees are random, so the results are for a fixed seed; they also must
+ * be reproducible with this seed.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class IsolationForestTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testIsolationForest() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<IsolationForest>(IsolationForest.class) //
+        .with(IsolationForest.Par.SEED_ID, 0L) //
+        .build().autorun(db);
+    assertSingleScore(result, 945, 0.4757382933263397);
+    assertAUC(db, "Noise", result, 0.9637037037037037);
+    OutlierResult result2 = new ELKIBuilder<IsolationForest>(IsolationForest.class) //
+        .with(IsolationForest.Par.SEED_ID, 0L) //
+        .build().autorun(db);
+    for(DBIDIter it = result.getScores().iterDBIDs(); it.valid(); it.advance()) {
+      assertEquals("Not reproducible.", result.getScores().doubleValue(it), result2.getScores().doubleValue(it), 0.);
+    }
+  }
+
+  @Test
+  public void testExtendedIsolationForest() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<IsolationForest>(IsolationForest.class) //
+        .with(IsolationForest.Par.SEED_ID, 0L) //
+        .with(IsolationForest.Par.EXTENDED_ID) //
+        .build().autorun(db);
+    assertSingleScore(result, 945, 0.4436164955299737);
+    assertAUC(db, "Noise", result, 0.9604259259259259);
+  }
+
+  @Test
+  public void testScoreObjects() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    IsolationForest.Forest forest = new ELKIBuilder<IsolationForest>(IsolationForest.class) //
+        .with(IsolationForest.Par.SEED_ID, 0L) //
+        .with(IsolationForest.Par.NUM_TREES_ID, 20) //
+        .build().fit(rel);
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      final double s = forest.score(rel.get(it));
+      assertTrue("Score out of range: " + s, s > 0 && s < 1);
+    }
+  }
+}
@@ -24,7 +24,11 @@ import org.junit.Test;
 
 import elki.outlier.AbstractOutlierAlgorithmTest;
 import elki.data.DoubleVector;
+import elki.data.type.TypeUtil;
 import elki.database.Database;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.outlier.distance.KNNOutlier;
 import elki.result.outlier.OutlierResult;
 import elki.utilities.ELKIBuilder;
 
@@ -43,4 +47,14 @@ public class LOFTest extends AbstractOutlierAlgorithmTest {
     assertSingleScore(result, 1293, 1.1945314199156365);
     assertAUC(db, "Noise", result, 0.8921680672268908);
   }
+
+  @Test
+  public void testLOFSharedKDistances() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    OutlierResult knn = new KNNOutlier<DoubleVector>(EuclideanDistance.STATIC, 10).run(rel);
+    OutlierResult result = new LOF<DoubleVector>(10, EuclideanDistance.STATIC).run(rel, knn.getScores());
+    assertSingleScore(result, 1293, 1.1945314199156365);
+    assertAUC(db, "Noise", result, 0.8921680672268908);
+  }
 }
@@ -0,0 +1,241 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDVar;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+
+/**
+ * Tests the sliding window LOF by comparing it to the static LOF algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class SlidingWindowLOFTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testFullWindow() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    final int k = 10;
+    DoubleRelation scores = new LOF<NumberVector>(k, EuclideanDistance.STATIC).run(rel).getScores();
+    SlidingWindowLOF<NumberVector> slof = new SlidingWindowLOF<>(EuclideanDistance.STATIC, k, rel.size(), 0);
+    long time = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      slof.insert(rel.get(it), ++time, null);
+    }
+    assertEquals("Window size", rel.size(), slof.size());
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      assertEquals("LOF score differs.", scores.doubleValue(it), slof.getLOF(i), 1e-10);
+    }
+  }
+
+  @Test
+  public void testExpiration() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    final int k = 10, window = 300;
+    SlidingWindowLOF<NumberVector> slof = new SlidingWindowLOF<>(EuclideanDistance.STATIC, k, window, 0);
+    // Time-based window of the same size, in the last 300 "milliseconds":
+    SlidingWindowLOF<NumberVector> tlof = new SlidingWindowLOF<>(EuclideanDistance.STATIC, k, rel.size(), window);
+    long time = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      ++time;
+      slof.insert(rel.get(it), time, null);
+      tlof.insert(rel.get(it), time, null);
+    }
+    assertEquals("Window size", window, slof.size());
+    assertEquals("Window size", window, tlof.size());
+    // Compare with a fresh window containing only the last objects:
+    SlidingWindowLOF<NumberVector> fresh = new SlidingWindowLOF<>(EuclideanDistance.STATIC, k, window, 0);
+    for(int i = 0; i < window; i++) {
+      fresh.insert(slof.getObject(i), i, null);
+    }
+    for(int i = 0; i < window; i++) {
+      assertEquals("k-distance differs.", fresh.getKNNDistance(i), slof.getKNNDistance(i), 1e-10);
+      assertEquals("LOF score differs.", fresh.getLOF(i), slof.getLOF(i), 1e-10);
+      assertEquals("LOF score differs.", fresh.getLOF(i), tlof.getLOF(i), 1e-10);
+    }
+  }
+
+  /**
+   * On a coarse grid, many distances are tied at the k-distance. As in the
+   * static LOF, all tied neighbors must be used, also after expirations.
+   */
+  @Test
+  public void testTies() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[300][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextInt(6), rnd.nextInt(6) };
+    }
+    final int k = 5, window = 100;
+    SlidingWindowLOF<NumberVector> full = new SlidingWindowLOF<>(EuclideanDistance.STATIC, k, data.length, 0);
+    SlidingWindowLOF<NumberVector> slof = new SlidingWindowLOF<>(EuclideanDistance.STATIC, k, window, 0);
+    for(int i = 0; i < data.length; i++) {
+      full.insert(DoubleVector.wrap(data[i]), i, null);
+      slof.insert(DoubleVector.wrap(data[i]), i, null);
+    }
+    assertSameAsLOF(data, k, full);
+    assertSameAsLOF(Arrays.copyOfRange(data, data.length - window, data.length), k, slof);
+  }
+
+  /**
+   * Compare the window to the static LOF on the same data.
+   *
+   * @param data Data in the window
+   * @param k Number of neighbors
+   * @param slof Sliding window LOF
+   */
+  private static void assertSameAsLOF(double[][] data, int k, SlidingWindowLOF<NumberVector> slof) {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null);
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DoubleRelation scores = new LOF<NumberVector>(k, EuclideanDistance.STATIC).run(rel).getScores();
+    assertEquals("Window size", data.length, slof.size());
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      assertEquals("LOF score differs.", scores.doubleValue(it), slof.getLOF(i), 1e-10);
+    }
+  }
+
+  /**
+   * The data column must be located again when the stream metadata changes.
+   */
+  @Test
+  public void testMetaChanged() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<DoubleVector> first = new ArrayList<>(), second = new ArrayList<>();
+    List<String> labels = new ArrayList<>();
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      if(first.size() < 500) {
+        first.add(DoubleVector.FACTORY.newNumberVector(rel.get(it)));
+        labels.add("label");
+      }
+      else {
+        second.add(DoubleVector.FACTORY.newNumberVector(rel.get(it)));
+      }
+    }
+    VectorFieldTypeInformation<DoubleVector> type = new VectorFieldTypeInformation<>(DoubleVector.FACTORY, 3);
+    // Label in the first column, then no label column at all:
+    BundleStreamSource source = new ConcatenatedStream( //
+        MultipleObjectsBundle.makeSimple(TypeUtil.STRING, labels, type, first).asStream(), //
+        MultipleObjectsBundle.makeSimple(type, second).asStream());
+    final int k = 10, window = 300;
+    SlidingWindowLOF<NumberVector> ref = new SlidingWindowLOF<>(EuclideanDistance.STATIC, k, window, 0);
+    List<NumberVector> expected = new ArrayList<>(first);
+    expected.addAll(second);
+    double[] lofs = new double[expected.size()];
+    for(int i = 0; i < lofs.length; i++) {
+      final int j = i;
+      ref.insert(expected.get(i), i, (o, t, lof, kdist) -> lofs[j] = lof);
+    }
+    SlidingWindowLOF<NumberVector> slof = new SlidingWindowLOF<>(EuclideanDistance.STATIC, k, window, 0);
+    int[] count = new int[1];
+    assertEquals("Objects processed", lofs.length, slof.run(source, (o, t, lof, kdist) -> {
+      assertEquals("Wrong object.", expected.get(count[0]), o);
+      assertEquals("LOF score differs.", lofs[count[0]++], lof, 1e-10);
+    }));
+  }
+
+  /**
+   * Stream that reads two streams one after another.
+   *
+   * @author Erich Schubert
+   */
+  private static class ConcatenatedStream implements BundleStreamSource {
+    /**
+     * Current and next stream.
+     */
+    BundleStreamSource cur, next;
+
+    /**
+     * Constructor.
+     *
+     * @param first First stream
+     * @param second Second stream
+     */
+    ConcatenatedStream(BundleStreamSource first, BundleStreamSource second) {
+      this.cur = first;
+      this.next = second;
+    }
+
+    @Override
+    public BundleMeta getMeta() {
+      return cur.getMeta();
+    }
+
+    @Override
+    public Object data(int rnum) {
+      return cur.data(rnum);
+    }
+
+    @Override
+    public boolean hasDBIDs() {
+      return false;
+    }
+
+    @Override
+    public boolean assignDBID(DBIDVar var) {
+      return false;
+    }
+
+    @Override
+    public Event nextEvent() {
+      Event ev = cur.nextEvent();
+      if(ev == Event.END_OF_STREAM && next != null) {
+        cur = next;
+        next = null;
+        ev = cur.nextEvent();
+      }
+      return ev;
+    }
+
+    @Override
+    public MultipleObjectsBundle asMultipleObjectsBundle() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
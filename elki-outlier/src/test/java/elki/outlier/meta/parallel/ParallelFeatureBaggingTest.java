@@ -0,0 +1,65 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.meta.parallel;
+
+import org.junit.Test;
+
+import elki.database.Database;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+import elki.outlier.lof.LOF;
+import elki.outlier.meta.FeatureBagging;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the parallel Feature Bagging algorithm, which must give the same
+ * results as the serial version.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelFeatureBaggingTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testFeatureBaggingSum() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    OutlierResult result = new ELKIBuilder<>(ParallelFeatureBagging.class) //
+        .with(LOF.Par.K_ID, 10) //
+        .with(FeatureBagging.Par.NUM_ID, 10) //
+        .with(FeatureBagging.Par.SEED_ID, 5) //
+        .build().autorun(db);
+    assertAUC(db, "Noise", result, 0.952952);
+    assertSingleScore(result, 1293, 12.43078);
+  }
+
+  @Test
+  public void testFeatureBaggingBreadth() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    OutlierResult result = new ELKIBuilder<>(ParallelFeatureBagging.class) //
+        .with(LOF.Par.K_ID, 10) //
+        .with(FeatureBagging.Par.NUM_ID, 10) //
+        .with(FeatureBagging.Par.SEED_ID, 2) //
+        .with(FeatureBagging.Par.BREADTH_ID) //
+        .with(ParallelSimpleOutlierEnsemble.Par.PARALLEL_ID, 3) //
+        .build().autorun(db);
+    assertAUC(db, "Noise", result, 0.94244);
+    assertSingleScore(result, 1293, 1.7582);
+  }
+}
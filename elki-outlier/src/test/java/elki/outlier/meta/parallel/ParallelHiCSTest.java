@@ -0,0 +1,82 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.meta.parallel;
+
+import org.junit.Test;
+
+import elki.database.Database;
+import elki.math.statistics.tests.KolmogorovSmirnovTest;
+import elki.math.statistics.tests.WelchTTest;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+import elki.outlier.lof.LOF;
+import elki.outlier.meta.HiCS;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the parallel HiCS algorithm.
+ * <p>
+ * The random streams differ from the serial version, but the results must not
+ * depend on the number of threads.
+ * <p>
+ * The outlier scores only depend on the set of subspaces selected, and on this
+ * data set, the noisy contrast estimates select one of a few sets, depending
+ * on the random stream: {0,1,2,3,4}, {0,1,3,4}, {0,2,3,4} and {0,3,4} give an
+ * AUC of 0.8534 (as the serial version with KS and seed 3), dropping {0,3,4}
+ * gives 0.8804 (serial with Welch and seed 5), {0,2,3,4} and {0,3,4} gives
+ * 0.6255 (serial with Welch and seed 3), and {0,2,3,4} and {0,3} gives 0.6637.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelHiCSTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testHiCSKS() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    for(int parallel : new int[] { 1, 4 }) {
+      OutlierResult result = new ELKIBuilder<>(ParallelHiCS.class) //
+          .with(LOF.Par.K_ID, 10) //
+          .with(HiCS.Par.LIMIT_ID, 10) //
+          .with(HiCS.Par.SEED_ID, 3) //
+          .with(HiCS.Par.TEST_ID, KolmogorovSmirnovTest.STATIC) //
+          .with(ParallelHiCS.Par.PARALLEL_ID, parallel) //
+          .build().autorun(db);
+      assertAUC(db, "Noise", result, 0.6637086834733894);
+      assertSingleScore(result, 1293, 2.3942526904863355);
+    }
+  }
+
+  @Test
+  public void testHiCSWelch() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    for(int parallel : new int[] { 1, 4 }) {
+      OutlierResult result = new ELKIBuilder<>(ParallelHiCS.class) //
+          .with(LOF.Par.K_ID, 10) //
+          .with(HiCS.Par.LIMIT_ID, 10) //
+          .with(HiCS.Par.SEED_ID, 5) //
+          .with(HiCS.Par.TEST_ID, WelchTTest.STATIC) //
+          .with(ParallelHiCS.Par.PARALLEL_ID, parallel) //
+          .build().autorun(db);
+      assertAUC(db, "Noise", result, 0.8534005602240896);
+      assertSingleScore(result, 1293, 4.935802453368435);
+    }
+  }
+}
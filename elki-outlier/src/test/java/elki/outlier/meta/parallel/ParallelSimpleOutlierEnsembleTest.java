@@ -0,0 +1,91 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.meta.parallel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import elki.Algorithm;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.index.preprocessed.knn.MaterializeKNNPreprocessor;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+import elki.outlier.distance.KNNOutlier;
+import elki.outlier.lof.LOF;
+import elki.outlier.lof.SimplifiedLOF;
+import elki.outlier.meta.SimpleOutlierEnsemble;
+import elki.result.Metadata;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+import elki.utilities.datastructures.iterator.It;
+import elki.utilities.ensemble.EnsembleVotingMedian;
+import elki.utilities.ensemble.EnsembleVotingMin;
+
+/**
+ * Tests the parallel outlier ensemble, which must give the same results as
+ * the serial version.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelSimpleOutlierEnsembleTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testEnsembleMin() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<>(ParallelSimpleOutlierEnsemble.class) //
+        .with(Algorithm.Utils.ALGORITHM_ID, LOF.class.getName() + "," + KNNOutlier.class.getName()) //
+        .with(SimpleOutlierEnsemble.Par.VOTING_ID, EnsembleVotingMin.class) //
+        .with(KNNOutlier.Par.K_ID, 1).with(LOF.Par.K_ID, 10).build().autorun(db);
+    assertAUC(db, "Noise", result, 0.99134);
+  }
+
+  @Test
+  public void testEnsembleMedian() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<>(ParallelSimpleOutlierEnsemble.class) //
+        .with(Algorithm.Utils.ALGORITHM_ID, LOF.class.getName() + "," + KNNOutlier.class.getName()) //
+        .with(SimpleOutlierEnsemble.Par.VOTING_ID, EnsembleVotingMedian.class) //
+        .with(ParallelSimpleOutlierEnsemble.Par.PARALLEL_ID, 1) //
+        .with(KNNOutlier.Par.K_ID, 1).with(LOF.Par.K_ID, 10).build().autorun(db);
+    assertAUC(db, "Noise", result, 0.98631);
+  }
+
+  @Test
+  public void testSharedKNN() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    // The member with the smaller k comes first, so it cannot be reused:
+    OutlierResult result = new ParallelSimpleOutlierEnsemble(Arrays.asList( //
+        new SimplifiedLOF<>(EuclideanDistance.STATIC, 5), new LOF<>(10, EuclideanDistance.STATIC)), //
+        new EnsembleVotingMin(), 2).autorun(db);
+    assertAUC(db, "Noise", result, 0.91609);
+    // Both members must have used a single kNN preprocessor:
+    int count = 0;
+    for(It<MaterializeKNNPreprocessor<?>> it = Metadata.hierarchyOf(db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD)).iterChildren().filter(MaterializeKNNPreprocessor.class); it.valid(); it.advance()) {
+      assertEquals("Wrong k of the shared preprocessor", 11, it.get().getK());
+      ++count;
+    }
+    assertEquals("kNN not shared", 1, count);
+  }
+}
@@ -100,7 +100,7 @@ public abstract class AbstractStoringPageFile<P extends Page> extends AbstractPa
    * @return the next empty page id
    */
   private int getNextEmptyPageID() {
-    return emptyPages.isEmpty() ? -1 : emptyPages.get(--emptyPages.size);
+    return emptyPages.isEmpty() ? -1 : emptyPages.data[--emptyPages.size];
   }
 
   /**
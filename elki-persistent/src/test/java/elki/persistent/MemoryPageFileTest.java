@@ -0,0 +1,133 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Test the memory page file under concurrent access.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class MemoryPageFileTest {
+  /**
+   * Minimal page implementation.
+   */
+  private static class TestPage implements Page {
+    /**
+     * Page id.
+     */
+    int id = -1;
+
+    /**
+     * Dirty flag.
+     */
+    boolean dirty = true;
+
+    @Override
+    public int getPageID() {
+      return id;
+    }
+
+    @Override
+    public void setPageID(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public boolean isDirty() {
+      return dirty;
+    }
+
+    @Override
+    public void setDirty(boolean dirty) {
+      this.dirty = dirty;
+    }
+  }
+
+  @Test
+  public void testConcurrentReadWrite() throws InterruptedException {
+    final int writers = 4, readers = 4, perwriter = 5000;
+    final MemoryPageFile<TestPage> file = new MemoryPageFile<>(100);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread[] threads = new Thread[writers + readers];
+    for(int t = 0; t < writers; t++) {
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+          for(int i = 0; i < perwriter; i++) {
+            TestPage page = new TestPage();
+            int id = file.writePage(page);
+            assertEquals("Page id not assigned.", id, page.getPageID());
+            assertFalse("Page still dirty.", page.isDirty());
+          }
+        }
+        catch(Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      });
+    }
+    for(int t = writers; t < threads.length; t++) {
+      final long seed = t;
+      threads[t] = new Thread(() -> {
+        try {
+          start.await();
+          Random rnd = new Random(seed);
+          for(int i = 0; i < perwriter * 2; i++) {
+            int id = rnd.nextInt(writers * perwriter);
+            // Pages may not have been written yet, but must never be wrong.
+            TestPage page = file.readPage(id);
+            if(page != null) {
+              assertEquals("Wrong page returned.", id, page.getPageID());
+            }
+          }
+        }
+        catch(Throwable e) {
+          failure.compareAndSet(null, e);
+        }
+      });
+    }
+    for(Thread t : threads) {
+      t.start();
+    }
+    start.countDown();
+    for(Thread t : threads) {
+      t.join();
+    }
+    if(failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertEquals("Page ids not unique.", writers * perwriter, file.getNextPageID());
+    for(int id = 0; id < writers * perwriter; id++) {
+      TestPage page = file.readPage(id);
+      assertNotNull("Page missing: " + id, page);
+      assertEquals("Wrong page returned.", id, page.getPageID());
+    }
+  }
+}
@@ -20,14 +20,16 @@
  */
 package elki.application.benchmark;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import elki.application.AbstractDistanceBasedApplication;
 import elki.data.type.TypeInformation;
 import elki.database.Database;
 import elki.database.ids.*;
 import elki.database.query.QueryBuilder;
-import elki.database.query.knn.KNNSearcher;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.relation.Relation;
 import elki.datasource.DatabaseConnection;
 import elki.datasource.bundle.MultipleObjectsBundle;
@@ -65,7 +67,7 @@ import elki.workflow.InputStep;
  *
  * @param <O> Object type
  *
- * @assoc - - - KNNSearcher
+ * @assoc - - - BatchKNNSearcher
  */
 public class KNNBenchmark<O> extends AbstractDistanceBasedApplication<O> {
   /**
@@ -124,12 +126,12 @@ public class KNNBenchmark<O> extends AbstractDistanceBasedApplication<O> {
     MeanVariance mv = new MeanVariance(), mvdist = new MeanVariance();
     // No query set - use original database.
     if(queries == null) {
-      KNNSearcher<DBIDRef> knnQuery = new QueryBuilder<>(relation, distance).kNNByDBID(k);
+      BatchKNNSearcher<O> knnQuery = new QueryBuilder<>(relation, distance).kNNBatch(k);
       logIndexStatistics(database);
       hash = run(knnQuery, relation, dur, mv, mvdist);
     }
     else { // Separate query set.
-      KNNSearcher<O> knnQuery = new QueryBuilder<>(relation, distance).kNNByObject(k);
+      BatchKNNSearcher<O> knnQuery = new QueryBuilder<>(relation, distance).kNNBatch(k);
       logIndexStatistics(database);
       hash = run(knnQuery, dur, mv, mvdist);
     }
@@ -166,13 +168,12 @@ public class KNNBenchmark<O> extends AbstractDistanceBasedApplication<O> {
    * @param mvdist statistics collector
    * @return hash code of the results
    */
-  private int run(KNNSearcher<DBIDRef> knnQuery, Relation<O> relation, Duration dur, MeanVariance mv, MeanVariance mvdist) {
+  private int run(BatchKNNSearcher<O> knnQuery, Relation<O> relation, Duration dur, MeanVariance mv, MeanVariance mvdist) {
     int hash = 0;
     final DBIDs sample = DBIDUtil.randomSample(relation.getDBIDs(), sampling, random);
     FiniteProgress prog = LOG.isVeryVerbose() ? new FiniteProgress("kNN queries", sample.size(), LOG) : null;
     dur.begin();
-    for(DBIDIter iditer = sample.iter(); iditer.valid(); iditer.advance()) {
-      KNNList knns = knnQuery.getKNN(iditer, k);
+    for(KNNList knns : knnQuery.getKNN(sample, k)) {
       int ichecksum = 0;
       for(DBIDIter it = knns.iter(); it.valid(); it.advance()) {
         ichecksum += DBIDUtil.asInteger(it);
@@ -196,7 +197,7 @@ public class KNNBenchmark<O> extends AbstractDistanceBasedApplication<O> {
    * @param mvdist statistics collector
    * @return hash code of the results
    */
-  private int run(KNNSearcher<O> knnQuery, Duration dur, MeanVariance mv, MeanVariance mvdist) {
+  private int run(BatchKNNSearcher<O> knnQuery, Duration dur, MeanVariance mv, MeanVariance mvdist) {
     int hash = 0;
     TypeInformation res = distance.getInputTypeRestriction();
     MultipleObjectsBundle bundle = queries.loadData();
@@ -215,12 +216,15 @@ public class KNNBenchmark<O> extends AbstractDistanceBasedApplication<O> {
     int samplesize = (int) (sampling <= 1 ? sampling * sample.length : sampling);
     ArrayUtil.randomShuffle(sample, random.getSingleThreadedRandom(), samplesize);
     sample = Arrays.copyOf(sample, samplesize);
-    FiniteProgress prog = LOG.isVeryVerbose() ? new FiniteProgress("kNN queries", sample.length, LOG) : null;
-    dur.begin();
+    List<O> objs = new ArrayList<>(sample.length);
     for(int off : sample) {
       @SuppressWarnings("unchecked")
       O o = (O) bundle.data(off, col);
-      KNNList knns = knnQuery.getKNN(o, k);
+      objs.add(o);
+    }
+    FiniteProgress prog = LOG.isVeryVerbose() ? new FiniteProgress("kNN queries", sample.length, LOG) : null;
+    dur.begin();
+    for(KNNList knns : knnQuery.getKNN(objs, k)) {
       int ichecksum = 0;
       for(DBIDIter it = knns.iter(); it.valid(); it.advance()) {
         ichecksum += DBIDUtil.asInteger(it);
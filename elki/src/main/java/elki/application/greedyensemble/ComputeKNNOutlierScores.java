@@ -24,8 +24,17 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
-import java.util.function.BiConsumer;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.IntFunction;
 import java.util.regex.Pattern;
 
@@ -65,6 +74,7 @@ import elki.utilities.documentation.Reference;
 import elki.utilities.exceptions.AbortException;
 import elki.utilities.io.FormatUtil;
 import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.*;
 import elki.utilities.scaling.IdentityScaling;
@@ -72,6 +82,7 @@ import elki.utilities.scaling.ScalingFunction;
 import elki.utilities.scaling.outlier.OutlierScaling;
 import elki.workflow.InputStep;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.jafama.FastMath;
 
 /**
@@ -88,6 +99,18 @@ import net.jafama.FastMath;
  * For methods where k=1 does not make sense, this value will be skipped, and
  * the procedure will commence at 1+stepsize.
  * <p>
+ * The methods are run by increasing k, i.e., all methods for the smallest k
+ * first. The k-distances of each k are computed once (as the scores of the kNN
+ * outlier method), shared by the methods that use the k-distances of the
+ * neighbors (LOF, LDF, INFLO, KDLOF), and released once these are done.
+ * <p>
+ * With <tt>-threads</tt>, the combinations of method and k are run
+ * concurrently, sharing the materialized kNN lists (algorithms only obtain
+ * prefix views of these lists, not copies). Score vectors completed out of
+ * order are buffered, so the output lines are in the same order as in a
+ * serial run. At most twice the number of threads runs are started ahead of
+ * the output, which bounds the buffered score vectors and k-distances.
+ * <p>
  * Reference:
  * <p>
  * Erich Schubert, Remigius Wojdanowski, Arthur Zimek, Hans-Peter Kriegel<br>
@@ -145,6 +168,11 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
    */
   long timelimit;
 
+  /**
+   * Number of (method, k) combinations to run concurrently.
+   */
+  int threads = 1;
+
   /**
    * Constructor.
    *
@@ -157,8 +185,9 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
    * @param disable Pattern for disabling methods
    * @param ksquarestop Maximum k for O(k^2) methods
    * @param timelimit Time limit in seconds
+   * @param threads Number of (method, k) combinations to run concurrently
    */
-  public ComputeKNNOutlierScores(InputStep inputstep, Distance<? super O> distance, IntGenerator krange, ByLabelOutlier bylabel, Path outfile, ScalingFunction scaling, Pattern disable, int ksquarestop, long timelimit) {
+  public ComputeKNNOutlierScores(InputStep inputstep, Distance<? super O> distance, IntGenerator krange, ByLabelOutlier bylabel, Path outfile, ScalingFunction scaling, Pattern disable, int ksquarestop, long timelimit, int threads) {
     super(inputstep, distance);
     this.krange = krange;
     this.bylabel = bylabel;
@@ -167,6 +196,7 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
     this.disable = disable;
     this.ksquarestop = ksquarestop;
     this.timelimit = timelimit * 1000;
+    this.threads = threads;
   }
 
   @Override
@@ -199,6 +229,11 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
     }
 
     final DBIDs ids = relation.getDBIDs();
+    // Methods to run for each k:
+    final List<KMethod> methods = new ArrayList<>();
+    // k-distances, shared by the methods with the same k:
+    final SharedKDistances<O> kdists = new SharedKDistances<>(relation, distance);
+    final ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
 
     try (BufferedWriter fout = Files.newBufferedWriter(outfile)) {
       // Control: print the DBIDs in case we are seeing an odd iteration
@@ -208,106 +243,108 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
       // Label outlier result (reference)
       writeResult(fout, ids, bylabel.autorun(database), new IdentityScaling(), "bylabel");
 
-      // Output function:
-      BiConsumer<String, OutlierResult> out = (kstr, result) -> writeResult(fout, ids, result, scaling, kstr);
-
       // KNN
-      runForEachK("KNN", 0, maxk, //
-          k -> new KNNOutlier<O>(distance, k) //
-              .run(relation), out);
+      addMethod("KNN", 0, maxk, //
+          kdists::getResult, true, methods);
       // KNN Weight
-      runForEachK("KNNW", 0, maxk, //
+      addMethod("KNNW", 0, maxk, //
           k -> new KNNWeightOutlier<O>(distance, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run LOF
-      runForEachK("LOF", 0, maxk, //
+      addMethod("LOF", 0, maxk, //
           k -> new LOF<O>(k, distance) //
-              .run(relation), out);
+              .run(relation, kdists.get(k)), true, methods);
       // Run Simplified-LOF
-      runForEachK("SimplifiedLOF", 0, maxk, //
+      addMethod("SimplifiedLOF", 0, maxk, //
           k -> new SimplifiedLOF<O>(distance, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // LoOP
-      runForEachK("LoOP", 0, maxk, //
+      addMethod("LoOP", 0, maxk, //
           k -> new LoOP<O>(k, k, distance, distance, 1.0) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // LDOF
-      runForEachK("LDOF", 2, maxksq, //
+      addMethod("LDOF", 2, maxksq, //
           k -> new LDOF<O>(distance, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run ODIN
-      runForEachK("ODIN", 0, maxk, //
+      addMethod("ODIN", 0, maxk, //
           k -> new ODIN<O>(distance, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run KDEOS with intrinsic dimensionality 2.
-      runForEachK("KDEOS", 2, maxk, //
+      addMethod("KDEOS", 2, maxk, //
           k -> new KDEOS<O>(distance, k, k, GaussianKernelDensityFunction.KERNEL, 0., //
               .5 * GaussianKernelDensityFunction.KERNEL.canonicalBandwidth(), 2)//
-                  .run(relation), out);
+                  .run(relation), false, methods);
       // Run LDF
-      runForEachK("LDF", 0, maxk, //
+      addMethod("LDF", 0, maxk, //
           k -> new LDF<O>(k, distance, GaussianKernelDensityFunction.KERNEL, 1., .1) //
-              .run(relation), out);
+              .run(relation, kdists.get(k)), true, methods);
       // Run INFLO
-      runForEachK("INFLO", 0, maxk, //
+      addMethod("INFLO", 0, maxk, //
           k -> new INFLO<O>(distance, 1.0, k) //
-              .run(relation), out);
+              .run(relation, kdists.get(k)), true, methods);
       // Run COF
-      runForEachK("COF", 0, maxksq, //
+      addMethod("COF", 0, maxksq, //
           k -> new COF<O>(distance, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run simple Intrinsic dimensionality
-      runForEachK("LID", 2, maxk, //
+      addMethod("LID", 2, maxk, //
           k -> new LID<O>(distance, k, AggregatedHillEstimator.STATIC) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run IDOS
-      runForEachK("IDOS", 2, maxk, //
+      addMethod("IDOS", 2, maxk, //
           k -> new IDOS<O>(distance, AggregatedHillEstimator.STATIC, k, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run simple kernel-density LOF variant
-      runForEachK("KDLOF", 2, maxk, //
+      addMethod("KDLOF", 2, maxk, //
           k -> new SimpleKernelDensityLOF<O>(k, distance, GaussianKernelDensityFunction.KERNEL) //
-              .run(relation), out);
+              .run(relation, kdists.get(k)), true, methods);
       // Run DWOF (need pairwise distances, too)
-      runForEachK("DWOF", 2, maxksq, //
+      addMethod("DWOF", 2, maxksq, //
           k -> new DWOF<O>(distance, k, 1.1) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run LIC
-      runForEachK("LIC", 0, maxk, //
+      addMethod("LIC", 0, maxk, //
           k -> new LocalIsolationCoefficient<O>(distance, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run VOV (requires a vector field).
       if(TypeUtil.DOUBLE_VECTOR_FIELD.isAssignableFromType(relation.getDataTypeInformation())) {
         @SuppressWarnings("unchecked")
         final Distance<? super DoubleVector> df = (Distance<? super DoubleVector>) distance;
         @SuppressWarnings("unchecked")
         final Relation<DoubleVector> rel = (Relation<DoubleVector>) (Relation<?>) relation;
-        runForEachK("VOV", 0, maxk, //
+        addMethod("VOV", 0, maxk, //
             k -> new VarianceOfVolume<DoubleVector>(k, df) //
-                .run(rel), out);
+                .run(rel), false, methods);
       }
       // Run KNN DD
-      runForEachK("KNNDD", 0, maxk, //
+      addMethod("KNNDD", 0, maxk, //
           k -> new KNNDD<O>(distance, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run KNN SOS
-      runForEachK("KNNSOS", 0, maxk, //
+      addMethod("KNNSOS", 0, maxk, //
           k -> new KNNSOS<O>(distance, k) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run ISOS
-      runForEachK("ISOS", 2, maxk, //
+      addMethod("ISOS", 2, maxk, //
           k -> new ISOS<O>(distance, k, AggregatedHillEstimator.STATIC) //
-              .run(relation), out);
+              .run(relation), false, methods);
       // Run FastABOD
       if(EuclideanDistance.STATIC.equals(distance) || SquaredEuclideanDistance.STATIC.equals(distance)) {
-        runForEachK("FastABOD", 3, maxksq, //
+        addMethod("FastABOD", 3, maxksq, //
             k -> new FastABOD<O>(LinearKernel.STATIC, k) //
-                .run(relation), out);
+                .run(relation), false, methods);
       }
+      runByK(methods, kdists, new OrderedOutput(fout, ids), pool);
     }
     catch(IOException e) {
       throw new AbortException("IO error writing output file.", e);
     }
+    finally {
+      if(pool != null) {
+        pool.shutdownNow();
+      }
+    }
     // Prevent garbage collection
     if(!(knnq instanceof PreprocessorKNNQuery)) {
       LOG.warning("Not using preprocessor knn query. Runtime is suboptimal.");
@@ -345,73 +382,385 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
   }
 
   /**
-   * Iterate over the k range.
+   * Add a method to run for each k.
    *
    * @param prefix Prefix string
    * @param mink Minimum value of k for this method
    * @param maxk Maximum value of k for this method
    * @param runner Runner to run
-   * @param out Output function
+   * @param shared Flag to indicate the runner uses the shared k-distances
+   * @param methods Methods to run
    */
-  private void runForEachK(String prefix, int mink, int maxk, IntFunction<OutlierResult> runner, BiConsumer<String, OutlierResult> out) {
+  private void addMethod(String prefix, int mink, int maxk, IntFunction<OutlierResult> runner, boolean shared, List<KMethod> methods) {
     if(isDisabled(prefix)) {
       LOG.verbose("Skipping (disabled): " + prefix);
       return; // Disabled
     }
-    LOG.verbose("Running " + prefix);
+    methods.add(new KMethod(prefix, mink, maxk, runner, shared));
+  }
+
+  /**
+   * Run all methods, by increasing k. The shared k-distances of each k are
+   * released as soon as the last method using them is done.
+   *
+   * @param methods Methods to run
+   * @param kdists Shared k-distances
+   * @param out Output
+   * @param pool Thread pool, {@code null} to run serially
+   */
+  private void runByK(List<KMethod> methods, SharedKDistances<O> kdists, OrderedOutput out, ExecutorService pool) {
+    IntArrayList krangeList = new IntArrayList();
+    krange.forEach(krangeList::add);
+    final int[] ks = krangeList.toIntArray();
+    Arrays.sort(ks);
     final int digits = (int) FastMath.ceil(FastMath.log10(krange.getMax() + 1));
     final String format = "%s-%0" + digits + "d";
-    try {
-      krange.forEach(k -> {
-        if(k >= mink && k <= maxk) {
-          Duration time = LOG.newDuration(this.getClass().getCanonicalName() + "." + prefix + ".k" + k + ".runtime").begin();
-          OutlierResult result = runner.apply(k);
-          LOG.statistics(time.end());
-          if(result != null) {
-            out.accept(String.format(Locale.ROOT, format, prefix, k), result);
-            ResultUtil.removeRecursive(result);
-          }
-          if(timelimit > 0 && time.getDuration() > timelimit) {
-            throw new TimeoutException("Timeout in " + prefix + " at k=" + k + ": " + time.getDuration());
+    final List<Future<?>> futures = new ArrayList<>();
+    final List<Runnable> jobs = new ArrayList<>(methods.size());
+    for(int k : ks) {
+      LOG.verbose("Running k=" + k);
+      // Register all uses of this k first, so the k-distances are kept.
+      for(KMethod method : methods) {
+        if(k >= method.mink && k <= method.maxk) {
+          final int seq = out.reserve();
+          if(method.shared) {
+            kdists.register(k);
           }
+          jobs.add(() -> runMethod(method, k, seq, format, method.shared ? kdists : null, out));
+        }
+      }
+      final int first = out.reserved - jobs.size();
+      for(int i = 0; i < jobs.size(); i++) {
+        if(pool == null) {
+          jobs.get(i).run();
+          continue;
         }
-      });
+        // Bound the number of buffered lines and live k-distances:
+        out.awaitWritten(first + i - 2 * threads);
+        futures.add(pool.submit(jobs.get(i)));
+      }
+      jobs.clear();
+    }
+    awaitAll(futures);
+  }
+
+  /**
+   * Run a single method for a single k.
+   *
+   * @param method Method
+   * @param k Neighborhood size
+   * @param seq Output line number
+   * @param format Label format
+   * @param kdists Shared k-distances used by the method, may be {@code null}
+   * @param out Output
+   */
+  private void runMethod(KMethod method, int k, int seq, String format, SharedKDistances<O> kdists, OrderedOutput out) {
+    String line = null;
+    try {
+      if(method.timeout.get()) {
+        return;
+      }
+      Duration time = LOG.newDuration(this.getClass().getCanonicalName() + "." + method.prefix + ".k" + k + ".runtime").begin();
+      OutlierResult result = method.runner.apply(k);
+      LOG.statistics(time.end());
+      if(result != null) {
+        StringBuilder buf = new StringBuilder();
+        writeResult(buf, out.ids, result, scaling, String.format(Locale.ROOT, format, method.prefix, k));
+        line = buf.toString();
+        ResultUtil.removeRecursive(result);
+      }
+      if(timelimit > 0 && time.getDuration() > timelimit && !method.timeout.getAndSet(true)) {
+        LOG.error("Timeout in " + method.prefix + " at k=" + k + ": " + time.getDuration());
+      }
+    }
+    finally {
+      if(kdists != null) {
+        kdists.release(k);
+      }
+      out.write(seq, line);
     }
-    catch(TimeoutException e) {
-      LOG.error(e.getMessage()); // The stack trace is not helpful.
+  }
+
+  /**
+   * Wait for all scheduled runs to complete.
+   *
+   * @param jobs Scheduled runs
+   */
+  private static void awaitAll(List<Future<?>> jobs) {
+    try {
+      for(Future<?> job : jobs) {
+        job.get();
+      }
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AbortException("Interrupted while waiting for the outlier detectors.", e);
+    }
+    catch(ExecutionException e) {
+      if(e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new AbortException("Outlier detector failed.", e.getCause());
+    }
+  }
+
+  /**
+   * Test if a given algorithm is disabled.
+   *
+   * @param name Algorithm name
+   * @return {@code true} if disabled
+   */
+  protected boolean isDisabled(String name) {
+    return disable != null && disable.matcher(name).matches();
+  }
+
+  /**
+   * A method to run for each k.
+   *
+   * @author Erich Schubert
+   */
+  private static class KMethod {
+    /**
+     * Prefix string.
+     */
+    final String prefix;
+
+    /**
+     * Minimum and maximum value of k.
+     */
+    final int mink, maxk;
+
+    /**
+     * Runner to run.
+     */
+    final IntFunction<OutlierResult> runner;
+
+    /**
+     * Flag to indicate the runner uses the shared k-distances.
+     */
+    final boolean shared;
+
+    /**
+     * Once a run exceeds the time limit, larger k are skipped.
+     */
+    final AtomicBoolean timeout = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param prefix Prefix string
+     * @param mink Minimum value of k
+     * @param maxk Maximum value of k
+     * @param runner Runner to run
+     * @param shared Flag to indicate the runner uses the shared k-distances
+     */
+    KMethod(String prefix, int mink, int maxk, IntFunction<OutlierResult> runner, boolean shared) {
+      this.prefix = prefix;
+      this.mink = mink;
+      this.maxk = maxk;
+      this.runner = runner;
+      this.shared = shared;
     }
   }
 
   /**
-   * Exception used in timeout logic.
+   * Output of the score vectors in the order the runs were scheduled. Lines
+   * completed out of order are buffered until their predecessors are written.
    *
    * @author Erich Schubert
    */
-  private static class TimeoutException extends RuntimeException {
+  private static class OrderedOutput {
+    /**
+     * Output destination.
+     */
+    private final Appendable out;
+
+    /**
+     * DBIDs, in output order.
+     */
+    final DBIDs ids;
+
+    /**
+     * Number of reserved lines.
+     */
+    int reserved = 0;
+
+    /**
+     * Next line to write.
+     */
+    private int next = 0;
+
     /**
-     * Serialization version
+     * Flag to indicate that writing failed.
      */
-    private static final long serialVersionUID = 1L;
+    private boolean failed = false;
+
+    /**
+     * Completed lines, not yet written. Skipped runs store an empty string.
+     */
+    private final Map<Integer, String> pending = new HashMap<>();
 
     /**
      * Constructor.
      *
-     * @param msg Message
+     * @param out Output destination
+     * @param ids DBIDs, in output order
      */
-    public TimeoutException(String msg) {
-      super(msg);
+    OrderedOutput(Appendable out, DBIDs ids) {
+      this.out = out;
+      this.ids = ids;
     }
 
+    /**
+     * Reserve the next output line.
+     *
+     * @return Line number
+     */
+    synchronized int reserve() {
+      return reserved++;
+    }
+
+    /**
+     * Wait until an output line has been written.
+     *
+     * @param seq Line number
+     */
+    synchronized void awaitWritten(int seq) {
+      try {
+        while(next <= seq && !failed) {
+          wait();
+        }
+      }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AbortException("Interrupted while waiting for the outlier detectors.", e);
+      }
+    }
+
+    /**
+     * Complete an output line, and write all lines that are due.
+     *
+     * @param seq Line number
+     * @param line Line, or {@code null} if the run was skipped
+     */
+    synchronized void write(int seq, String line) {
+      pending.put(seq, line != null ? line : "");
+      try {
+        for(String cur; (cur = pending.remove(next)) != null; next++) {
+          out.append(cur);
+        }
+      }
+      catch(IOException e) {
+        failed = true;
+        throw new AbortException("IO Error writing to file", e);
+      }
+      finally {
+        notifyAll();
+      }
+    }
   }
 
   /**
-   * Test if a given algorithm is disabled.
+   * k-distances shared by the methods with the same k. These are the scores of
+   * {@link KNNOutlier}, computed when first needed, and released after the
+   * last registered use.
    *
-   * @param name Algorithm name
-   * @return {@code true} if disabled
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
    */
-  protected boolean isDisabled(String name) {
-    return disable != null && disable.matcher(name).matches();
+  private static class SharedKDistances<O> {
+    /**
+     * Data relation.
+     */
+    private final Relation<O> relation;
+
+    /**
+     * Distance function.
+     */
+    private final Distance<? super O> distance;
+
+    /**
+     * Shared results, by k.
+     */
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param distance Distance function
+     */
+    SharedKDistances(Relation<O> relation, Distance<? super O> distance) {
+      this.relation = relation;
+      this.distance = distance;
+    }
+
+    /**
+     * Register a use of the k-distances.
+     *
+     * @param k Neighborhood size
+     */
+    synchronized void register(int k) {
+      entries.computeIfAbsent(k, x -> new Entry()).users++;
+    }
+
+    /**
+     * Release a use of the k-distances.
+     *
+     * @param k Neighborhood size
+     */
+    synchronized void release(int k) {
+      if(--entries.get(k).users == 0) {
+        entries.remove(k);
+      }
+    }
+
+    /**
+     * Get the kNN outlier result, computing it on first use.
+     *
+     * @param k Neighborhood size
+     * @return kNN outlier result
+     */
+    OutlierResult getResult(int k) {
+      final Entry entry;
+      synchronized(this) {
+        entry = entries.get(k);
+      }
+      synchronized(entry) {
+        if(entry.result == null) {
+          entry.result = new KNNOutlier<O>(distance, k).run(relation);
+        }
+        return entry.result;
+      }
+    }
+
+    /**
+     * Get the k-distances, computing them on first use.
+     *
+     * @param k Neighborhood size
+     * @return k-distances
+     */
+    DoubleRelation get(int k) {
+      return getResult(k).getScores();
+    }
+
+    /**
+     * Shared result of a single k.
+     *
+     * @author Erich Schubert
+     */
+    private static class Entry {
+      /**
+       * Number of registered uses not yet released.
+       */
+      int users;
+
+      /**
+       * kNN outlier result.
+       */
+      OutlierResult result;
+    }
   }
 
   /**
@@ -445,6 +794,11 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
      */
     public static final OptionID TIMELIMIT_ID = new OptionID("timelimit", "Maximum run time per iteration in seconds (NOT strictly enforced).");
 
+    /**
+     * Option ID for the number of concurrent runs.
+     */
+    public static final OptionID THREADS_ID = new OptionID("threads", "Number of (method, k) combinations to run concurrently.");
+
     /**
      * k step size
      */
@@ -480,6 +834,11 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
      */
     long timelimit = -1;
 
+    /**
+     * Number of concurrent runs
+     */
+    int threads = 1;
+
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
@@ -498,11 +857,14 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
           .grab(config, x -> ksquarestop = x);
       new LongParameter(TIMELIMIT_ID, 12 * 60 * 60) //
           .grab(config, x -> timelimit = x);
+      new IntParameter(THREADS_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> threads = x);
     }
 
     @Override
     public ComputeKNNOutlierScores<O> make() {
-      return new ComputeKNNOutlierScores<>(inputstep, distance, krange, bylabel, outfile, scaling, disable, ksquarestop, timelimit);
+      return new ComputeKNNOutlierScores<>(inputstep, distance, krange, bylabel, outfile, scaling, disable, ksquarestop, timelimit, threads);
     }
   }
 
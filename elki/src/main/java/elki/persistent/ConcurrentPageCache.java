@@ -0,0 +1,745 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.util.ArrayList;
+
+import elki.index.tree.Node;
+import elki.logging.Logging;
+import elki.logging.statistics.AtomicLongCounter;
+import elki.logging.statistics.Counter;
+import elki.logging.statistics.LongStatistic;
+import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+/**
+ * Concurrent page cache, using lock striping and the scan-resistant 2Q
+ * replacement policy.
+ * <p>
+ * Pages are distributed over independently locked segments by their page id,
+ * so concurrent readers (e.g., parallel kNN queries) only contend when they
+ * access the same segment. Within each segment, pages seen once enter a small
+ * FIFO queue; only pages accessed again while still cached, or shortly after
+ * being evicted (as remembered by a queue of "ghost" page ids), are promoted to
+ * the main LRU queue. A linear scan hence only cycles through the FIFO queue,
+ * and does not evict the working set.
+ * <p>
+ * Directory pages of tree indexes (i.e., the upper levels of the tree) can be
+ * pinned, up to half of the cache size, and are then never evicted.
+ * <p>
+ * The backing file is not accessed while holding a segment lock: a page being
+ * read is represented by a placeholder, on which other readers of the same
+ * page wait, and evicted pages are written back after releasing the lock.
+ * Until their write-back begins, evicted pages can be taken back into the
+ * cache; while a page is being written, other accesses to it wait, so the
+ * write cannot clear the dirty flag of a newer modification.
+ * <p>
+ * Reference:
+ * <p>
+ * T. Johnson, D. Shasha<br>
+ * 2Q: A Low Overhead High Performance Buffer Management Replacement
+ * Algorithm<br>
+ * Proc. 20th Int. Conf. on Very Large Data Bases (VLDB'94)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - PageFile
+ *
+ * @param <P> Page type
+ */
+@Reference(authors = "T. Johnson, D. Shasha", //
+    title = "2Q: A Low Overhead High Performance Buffer Management Replacement Algorithm", //
+    booktitle = "Proc. 20th Int. Conf. on Very Large Data Bases (VLDB'94)", //
+    url = "http://www.vldb.org/conf/1994/P439.PDF", //
+    bibkey = "DBLP:conf/vldb/JohnsonS94")
+public class ConcurrentPageCache<P extends Page> extends AbstractPageFile<P> {
+  /**
+   * Our class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ConcurrentPageCache.class);
+
+  /**
+   * Minimum number of pages per segment.
+   */
+  private static final int MIN_SEGMENT_SIZE = 16;
+
+  /**
+   * Cache size in bytes.
+   */
+  protected int cacheSizeBytes;
+
+  /**
+   * The underlying file of this cache. If a page is dropped it is written to
+   * the file.
+   */
+  protected PageFile<P> file;
+
+  /**
+   * Pin directory pages.
+   */
+  protected boolean pinDirectory;
+
+  /**
+   * Cache segments.
+   */
+  private Segment[] segments;
+
+  /**
+   * Shift for segment selection.
+   */
+  private int shift;
+
+  /**
+   * Cache statistics.
+   */
+  private final Counter hits, misses, evictions;
+
+  /**
+   * Initializes this cache with the specified parameters.
+   *
+   * @param cacheSizeBytes the maximum number of bytes for this cache
+   * @param file the underlying file of this cache, if a page is dropped it is
+   *        written to the file
+   * @param pinDirectory pin directory pages of tree indexes
+   */
+  public ConcurrentPageCache(int cacheSizeBytes, PageFile<P> file, boolean pinDirectory) {
+    super();
+    this.file = file;
+    this.cacheSizeBytes = cacheSizeBytes;
+    this.pinDirectory = pinDirectory;
+    final String prefix = this.getClass().getName();
+    this.hits = LOG.isStatistics() ? new AtomicLongCounter(prefix + ".hits") : null;
+    this.misses = LOG.isStatistics() ? new AtomicLongCounter(prefix + ".misses") : null;
+    this.evictions = LOG.isStatistics() ? new AtomicLongCounter(prefix + ".evictions") : null;
+  }
+
+  /**
+   * Get the segment responsible for a page.
+   *
+   * @param pageID Page id
+   * @return Segment
+   */
+  private Segment segment(int pageID) {
+    // Fibonacci hashing, using the high bits (the hash maps use the low bits)
+    return shift < Integer.SIZE ? segments[(pageID * 0x9E3779B9) >>> shift] : segments[0];
+  }
+
+  @Override
+  public P readPage(int pageID) {
+    countRead();
+    return segment(pageID).read(pageID);
+  }
+
+  @Override
+  public void writePage(int pageID, P page) {
+    countWrite();
+    segment(pageID).write(pageID, page);
+  }
+
+  @Override
+  public void deletePage(int pageID) {
+    countWrite();
+    segment(pageID).remove(pageID);
+    file.deletePage(pageID);
+  }
+
+  @Override
+  public int setPageID(P page) {
+    return file.setPageID(page);
+  }
+
+  @Override
+  public int getNextPageID() {
+    return file.getNextPageID();
+  }
+
+  @Override
+  public void setNextPageID(int nextPageID) {
+    file.setNextPageID(nextPageID);
+  }
+
+  @Override
+  public int getPageSize() {
+    return file.getPageSize();
+  }
+
+  @Override
+  public boolean initialize(PageHeader header) {
+    boolean created = file.initialize(header);
+    // Compute the actual cache size.
+    final int cacheSize = cacheSizeBytes / header.getPageSize();
+    if(cacheSize <= 0) {
+      throw new AbortException("Invalid cache size: " + cacheSizeBytes + " / " + header.getPageSize() + " = " + cacheSize);
+    }
+    // Number of segments: a power of two, up to four per processor.
+    final int maxseg = Integer.highestOneBit(Math.max(1, cacheSize / MIN_SEGMENT_SIZE));
+    final int numseg = Math.min(maxseg, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() << 2));
+    shift = Integer.SIZE - Integer.numberOfTrailingZeros(numseg);
+    segments = newSegments(numseg);
+    for(int i = 0; i < numseg; i++) {
+      // Distribute the remainder
+      segments[i] = new Segment(cacheSize / numseg + (i < cacheSize % numseg ? 1 : 0));
+    }
+    if(LOG.isDebugging()) {
+      LOG.debug("Cache size is " + cacheSize + " pages in " + numseg + " segments.");
+    }
+    return created;
+  }
+
+  @Override
+  public void close() {
+    flush();
+    file.close();
+  }
+
+  /**
+   * Allocate the segment array.
+   *
+   * @param numseg Number of segments
+   * @return Array
+   */
+  @SuppressWarnings("unchecked")
+  private Segment[] newSegments(int numseg) {
+    return (Segment[]) new ConcurrentPageCache<?>.Segment[numseg];
+  }
+
+  /**
+   * Flushes this cache by writing any entry to the underlying file.
+   */
+  public void flush() {
+    for(Segment seg : segments) {
+      seg.flush();
+    }
+  }
+
+  /**
+   * Clears this cache.
+   */
+  @Override
+  public void clear() {
+    for(Segment seg : segments) {
+      seg.clear();
+    }
+  }
+
+  /**
+   * Write page through to disk.
+   *
+   * @param page page
+   */
+  protected void expirePage(P page) {
+    if(LOG.isDebuggingFine()) {
+      LOG.debugFine("Write to backing:" + page.getPageID());
+    }
+    if(page.isDirty()) {
+      file.writePage(page);
+    }
+  }
+
+  @Override
+  public void logStatistics() {
+    super.logStatistics();
+    if(hits != null) {
+      LOG.statistics(hits);
+      LOG.statistics(misses);
+      LOG.statistics(evictions);
+      int pinned = 0;
+      for(Segment seg : segments) {
+        pinned += seg.pinned.size;
+      }
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".pinned", pinned));
+    }
+    file.logStatistics();
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(" + cacheSizeBytes + " bytes, " + file + ")";
+  }
+
+  /**
+   * Queue a cached page is in; ghosts are recently evicted pages, and loading
+   * pages are being read from the backing file.
+   */
+  private static final byte IN = 0, MAIN = 1, PINNED = 2, GHOST = 3, LOADING = 4;
+
+  /**
+   * Cached page, in a doubly linked queue.
+   *
+   * @param <P> Page type
+   */
+  private static final class Entry<P> {
+    /**
+     * Page id
+     */
+    final int id;
+
+    /**
+     * Cached page
+     */
+    P page;
+
+    /**
+     * Queue the page is in
+     */
+    byte queue;
+
+    /**
+     * Neighbors in the queue
+     */
+    Entry<P> prev, next;
+
+    /**
+     * Constructor.
+     *
+     * @param id Page id
+     * @param page Page
+     */
+    Entry(int id, P page) {
+      this.id = id;
+      this.page = page;
+    }
+  }
+
+  /**
+   * Doubly linked queue, with the most recent page first.
+   *
+   * @param <P> Page type
+   */
+  private static final class Queue<P> {
+    /**
+     * Sentinel
+     */
+    final Entry<P> head = new Entry<>(-1, null);
+
+    /**
+     * Queue length
+     */
+    int size;
+
+    /**
+     * Constructor.
+     */
+    Queue() {
+      head.prev = head.next = head;
+    }
+
+    /**
+     * Add an entry at the front.
+     *
+     * @param e Entry
+     */
+    void addFirst(Entry<P> e) {
+      e.prev = head;
+      e.next = head.next;
+      head.next.prev = e;
+      head.next = e;
+      size++;
+    }
+
+    /**
+     * Unlink an entry.
+     *
+     * @param e Entry
+     */
+    void remove(Entry<P> e) {
+      e.prev.next = e.next;
+      e.next.prev = e.prev;
+      e.prev = e.next = null;
+      size--;
+    }
+
+    /**
+     * Get the oldest entry.
+     *
+     * @return Last entry, or {@code null}
+     */
+    Entry<P> last() {
+      return head.prev != head ? head.prev : null;
+    }
+
+    /**
+     * Clear the queue.
+     */
+    void clear() {
+      head.prev = head.next = head;
+      size = 0;
+    }
+  }
+
+  /**
+   * A cache segment, which is locked independently.
+   *
+   * @author Erich Schubert
+   */
+  private final class Segment {
+    /**
+     * Map of cached pages, and of recently evicted pages (ghosts).
+     */
+    final Int2ObjectOpenHashMap<Entry<P>> map;
+
+    /**
+     * Queues for pages seen once, frequently used pages, and pinned pages.
+     */
+    final Queue<P> in = new Queue<>(), main = new Queue<>(), pinned = new Queue<>();
+
+    /**
+     * Ids of recently evicted pages, in order of eviction (ring buffer).
+     */
+    final int[] ghostRing;
+
+    /**
+     * Number of ghosts added, for the ring buffer.
+     */
+    long ghostCount;
+
+    /**
+     * Pages evicted from the cache, but not yet written to the backing file.
+     */
+    final Int2ObjectOpenHashMap<P> writing = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * Pages currently being written to the backing file.
+     */
+    final IntOpenHashSet flushing = new IntOpenHashSet();
+
+    /**
+     * Segment capacity, maximum length of the FIFO queue, maximum number of
+     * pinned pages.
+     */
+    final int capacity, maxIn, maxPinned;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Capacity
+     */
+    Segment(int capacity) {
+      this.capacity = Math.max(1, capacity);
+      this.maxIn = Math.max(1, capacity >> 2);
+      this.maxPinned = capacity >> 1;
+      this.ghostRing = new int[Math.max(1, capacity >> 1)];
+      this.map = new Int2ObjectOpenHashMap<>(this.capacity + ghostRing.length);
+    }
+
+    /**
+     * Read a page, from the cache or the backing file.
+     * <p>
+     * The backing file is accessed without holding the segment lock. Other
+     * threads reading the same page meanwhile wait for this read to complete.
+     *
+     * @param pageID Page id
+     * @return Page
+     */
+    P read(int pageID) {
+      final ArrayList<P> writeback = new ArrayList<>();
+      final Entry<P> e;
+      final boolean recent;
+      P page = null;
+      synchronized(this) {
+        Entry<P> c = map.get(pageID);
+        while(c != null && c.queue == LOADING || flushing.contains(pageID)) {
+          awaitLoaded();
+          c = map.get(pageID);
+        }
+        if(c != null && c.queue != GHOST) {
+          if(hits != null) {
+            hits.increment();
+          }
+          touch(c);
+          return c.page;
+        }
+        recent = c != null;
+        if(c == null) {
+          map.put(pageID, c = new Entry<>(pageID, null));
+        }
+        e = c;
+        page = writing.remove(pageID);
+        if(page == null) {
+          if(misses != null) {
+            misses.increment();
+          }
+          e.queue = LOADING;
+        }
+        else {
+          // Evicted, but not yet written: take it back.
+          if(hits != null) {
+            hits.increment();
+          }
+          insert(e, pageID, page, recent, writeback);
+        }
+      }
+      if(page != null) {
+        writeBack(writeback);
+        return page;
+      }
+      try {
+        page = file.readPage(pageID);
+      }
+      finally {
+        synchronized(this) {
+          if(map.get(pageID) == e && e.queue == LOADING) {
+            if(page != null) {
+              insert(e, pageID, page, recent, writeback);
+            }
+            else {
+              map.remove(pageID);
+            }
+          }
+          notifyAll();
+        }
+      }
+      writeBack(writeback);
+      return page;
+    }
+
+    /**
+     * Store a page in the cache.
+     *
+     * @param pageID Page id
+     * @param page Page
+     */
+    void write(int pageID, P page) {
+      final ArrayList<P> writeback = new ArrayList<>();
+      synchronized(this) {
+        awaitFlushed(pageID);
+        page.setDirty(true);
+        writing.remove(pageID);
+        Entry<P> e = map.get(pageID);
+        if(e != null && e.queue != GHOST && e.queue != LOADING) {
+          e.page = page;
+          touch(e);
+          return;
+        }
+        // A new entry supersedes a concurrent read of the page.
+        insert(e != null && e.queue == GHOST ? e : null, pageID, page, e != null, writeback);
+        notifyAll();
+      }
+      writeBack(writeback);
+    }
+
+    /**
+     * Remove a page from the cache (without writing it).
+     *
+     * @param pageID Page id
+     */
+    synchronized void remove(int pageID) {
+      awaitFlushed(pageID);
+      writing.remove(pageID);
+      Entry<P> e = map.remove(pageID);
+      if(e != null && e.queue != GHOST && e.queue != LOADING) {
+        queue(e).remove(e);
+      }
+      notifyAll();
+    }
+
+    /**
+     * Wait for another thread to finish loading or writing a page. Must be
+     * called while holding the segment lock.
+     */
+    private void awaitLoaded() {
+      try {
+        wait();
+      }
+      catch(InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new AbortException("Interrupted while waiting for a page to be read.", ex);
+      }
+    }
+
+    /**
+     * Wait for the write-back of a page to complete. Must be called while
+     * holding the segment lock.
+     *
+     * @param pageID Page id
+     */
+    private void awaitFlushed(int pageID) {
+      while(flushing.contains(pageID)) {
+        awaitLoaded();
+      }
+    }
+
+    /**
+     * Write evicted pages to the backing file, without holding the segment
+     * lock. Pages taken back into the cache meanwhile are skipped.
+     *
+     * @param writeback Evicted pages
+     */
+    private void writeBack(ArrayList<P> writeback) {
+      assert writeback.isEmpty() || !Thread.holdsLock(this);
+      for(P page : writeback) {
+        final int pageID = page.getPageID();
+        synchronized(this) {
+          if(!writing.remove(pageID, page)) {
+            continue;
+          }
+          flushing.add(pageID);
+        }
+        try {
+          expirePage(page);
+        }
+        finally {
+          synchronized(this) {
+            flushing.remove(pageID);
+            notifyAll();
+          }
+        }
+      }
+    }
+
+    /**
+     * Update a page on access.
+     *
+     * @param e Cache entry
+     */
+    private void touch(Entry<P> e) {
+      if(e.queue == MAIN) {
+        // LRU: move to front
+        main.remove(e);
+        main.addFirst(e);
+      }
+      else if(e.queue == IN) {
+        // Second access: promote to the main queue.
+        in.remove(e);
+        e.queue = MAIN;
+        main.addFirst(e);
+      }
+    }
+
+    /**
+     * Insert a new page, evicting old pages if necessary.
+     *
+     * @param e Existing entry of the page (ghost or loading), or {@code null}
+     * @param pageID Page id
+     * @param page Page
+     * @param recent Page was evicted recently
+     * @param writeback Output of evicted pages to write to the backing file
+     */
+    private void insert(Entry<P> e, int pageID, P page, boolean recent, ArrayList<P> writeback) {
+      if(e == null) {
+        map.put(pageID, e = new Entry<>(pageID, page));
+      }
+      e.page = page;
+      if(pinDirectory && pinned.size < maxPinned && page instanceof Node && !((Node<?>) page).isLeaf()) {
+        e.queue = PINNED;
+        pinned.addFirst(e);
+        return;
+      }
+      // Recently evicted pages go to the main queue.
+      e.queue = recent ? MAIN : IN;
+      queue(e).addFirst(e);
+      while(in.size + main.size + pinned.size > capacity) {
+        evict(writeback);
+      }
+    }
+
+    /**
+     * Evict a page, preferably from the FIFO queue.
+     *
+     * @param writeback Output of evicted pages to write to the backing file
+     */
+    private void evict(ArrayList<P> writeback) {
+      final boolean fromIn = in.size > maxIn || main.size == 0;
+      Entry<P> e = fromIn ? in.last() : main.last();
+      if(e == null) {
+        return; // Only pinned pages, should not happen
+      }
+      queue(e).remove(e);
+      if(evictions != null) {
+        evictions.increment();
+      }
+      if(e.page.isDirty()) {
+        // Written later, without holding the lock.
+        writing.put(e.id, e.page);
+        writeback.add(e.page);
+      }
+      e.page = null;
+      if(!fromIn) {
+        map.remove(e.id);
+        return;
+      }
+      // Remember as ghost, forget the oldest ghost.
+      e.queue = GHOST;
+      final int pos = (int) (ghostCount++ % ghostRing.length);
+      if(ghostCount > ghostRing.length) {
+        Entry<P> old = map.get(ghostRing[pos]);
+        if(old != null && old.queue == GHOST) {
+          map.remove(old.id);
+        }
+      }
+      ghostRing[pos] = e.id;
+    }
+
+    /**
+     * Get the queue of an entry.
+     *
+     * @param e Entry
+     * @return Queue
+     */
+    private Queue<P> queue(Entry<P> e) {
+      return e.queue == IN ? in : e.queue == MAIN ? main : pinned;
+    }
+
+    /**
+     * Write all pages to the backing file, and clear the segment.
+     */
+    void flush() {
+      final ArrayList<P> writeback = new ArrayList<>();
+      synchronized(this) {
+        for(Entry<P> e : map.values()) {
+          if(e.queue != GHOST && e.queue != LOADING && e.page.isDirty()) {
+            writing.put(e.id, e.page);
+            writeback.add(e.page);
+          }
+        }
+        map.clear();
+        in.clear();
+        main.clear();
+        pinned.clear();
+        ghostCount = 0;
+        notifyAll();
+      }
+      writeBack(writeback);
+    }
+
+    /**
+     * Clear the segment.
+     */
+    synchronized void clear() {
+      writing.clear();
+      map.clear();
+      in.clear();
+      main.clear();
+      pinned.clear();
+      ghostCount = 0;
+      notifyAll();
+    }
+  }
+}
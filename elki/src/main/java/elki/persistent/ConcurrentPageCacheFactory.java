@@ -0,0 +1,135 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Page file factory for a concurrent page cache.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - ConcurrentPageCache
+ * @composed - - - PageFileFactory
+ *
+ * @param <P> Page type
+ */
+public class ConcurrentPageCacheFactory<P extends Page> implements PageFileFactory<P> {
+  /**
+   * Inner page file factory.
+   */
+  private PageFileFactory<P> pageFileFactory;
+
+  /**
+   * Cache size, in bytes.
+   */
+  private int cacheSize;
+
+  /**
+   * Pin directory pages.
+   */
+  private boolean pinDirectory;
+
+  /**
+   * Constructor.
+   *
+   * @param pageFileFactory Inner page file
+   * @param cacheSize Size of cache, in bytes.
+   * @param pinDirectory Pin directory pages
+   */
+  public ConcurrentPageCacheFactory(PageFileFactory<P> pageFileFactory, int cacheSize, boolean pinDirectory) {
+    super();
+    this.cacheSize = cacheSize;
+    this.pageFileFactory = pageFileFactory;
+    this.pinDirectory = pinDirectory;
+  }
+
+  @Override
+  public PageFile<P> newPageFile(Class<P> cls) {
+    PageFile<P> inner = pageFileFactory.newPageFile(cls);
+    return new ConcurrentPageCache<>(cacheSize, inner, pinDirectory);
+  }
+
+  @Override
+  public int getPageSize() {
+    return pageFileFactory.getPageSize();
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Parameter to specify the size of the cache in bytes, must be an integer
+     * equal to or greater than 0.
+     */
+    public static final OptionID CACHE_SIZE_ID = new OptionID("pagefile.cachesize", "The size of the cache in bytes.");
+
+    /**
+     * Parameter to specify the inner pagefile.
+     */
+    public static final OptionID PAGEFILE_ID = new OptionID("pagefile.pagefile", "The backing pagefile for the cache.");
+
+    /**
+     * Flag to not pin directory pages in the cache.
+     */
+    public static final OptionID NO_PIN_ID = new OptionID("pagefile.cache.nopin", "Do not keep directory pages of tree indexes pinned in the cache.");
+
+    /**
+     * Inner page file factory.
+     */
+    PageFileFactory<Page> pageFileFactory;
+
+    /**
+     * Cache size, in bytes.
+     */
+    protected int cacheSize;
+
+    /**
+     * Pin directory pages.
+     */
+    protected boolean pinDirectory;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<PageFileFactory<Page>>(PAGEFILE_ID, PageFileFactory.class, PersistentPageFileFactory.class) //
+          .grab(config, x -> pageFileFactory = x);
+      new IntParameter(CACHE_SIZE_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> cacheSize = x);
+      new Flag(NO_PIN_ID).grab(config, x -> pinDirectory = !x);
+    }
+
+    @Override
+    public ConcurrentPageCacheFactory<Page> make() {
+      return new ConcurrentPageCacheFactory<>(pageFileFactory, cacheSize, pinDirectory);
+    }
+  }
+}
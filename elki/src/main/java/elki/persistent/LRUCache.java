@@ -41,7 +41,10 @@ import elki.utilities.exceptions.AbortException;
  * @assoc - - - PageFile
  * 
  * @param <P> Page type
+ * @deprecated Use the {@link ConcurrentPageCache} instead, which does not
+ *             serialize all page accesses and is resistant to scans.
  */
+@Deprecated
 public class LRUCache<P extends Page> extends AbstractPageFile<P> {
   /**
    * Our class logger.
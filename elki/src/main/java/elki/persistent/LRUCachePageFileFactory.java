@@ -37,7 +37,9 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * @composed - - - PageFileFactory
  * 
  * @param <P> Page type
+ * @deprecated Use the {@link ConcurrentPageCacheFactory} instead.
  */
+@Deprecated
 public class LRUCachePageFileFactory<P extends Page> implements PageFileFactory<P> {
   /**
    * Inner page file factory.
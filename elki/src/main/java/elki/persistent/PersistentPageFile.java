@@ -22,25 +22,45 @@ package elki.persistent;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import elki.index.tree.TreeIndexHeader;
 import elki.logging.Logging;
 import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.ByteBufferInputStream;
 
 /**
  * A PersistentPageFile stores objects persistently that implement the
- * <code>Page</code> interface. For convenience each page is represented by a
- * single file. All pages are stored in a specified directory.
+ * <code>Page</code> interface. All pages are stored in a single file, at an
+ * offset given by their page id.
+ * <p>
+ * Pages implementing {@link ByteBufferPage} are stored in their binary
+ * encoding, all other pages are stored using Java serialization.
+ * <p>
+ * Optionally, the file can be memory-mapped (in regions of about 64 MB). Pages
+ * are then decoded directly from the mapped region when read, without copying
+ * them to a separate buffer first. Reads do not hold the monitor of this page
+ * file, but a read lock that {@link #clear()} and {@link #close()} acquire
+ * exclusively before the regions are released.
+ * <p>
+ * On {@link #close()} and {@link #clear()}, the file is truncated to the pages
+ * in use. Memory-mapped regions are forced (on close) and released first;
+ * where the operating system refuses to shrink a file that is still mapped
+ * (Windows, until the mapping is garbage collected), the remainder is kept as
+ * unused trailing space, which is ignored when the file is opened again.
  * 
  * @author Elke Achtert
  * @since 0.1
  * 
  * @composed - - - PageHeader
- * @composed - - - RandomAccessFile
+ * @composed - - - FileChannel
  * 
  * @param <P> Page type
  */
@@ -56,10 +76,26 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
   private static final int EMPTY_PAGE = 0;
 
   /**
-   * Indicates a filled page.
+   * Indicates a filled page, stored using Java serialization.
    */
   private static final int FILLED_PAGE = 1;
 
+  /**
+   * Indicates a filled page, stored in the {@link ByteBufferPage} encoding.
+   */
+  private static final int BUFFER_PAGE = 2;
+
+  /**
+   * Page files written by older versions stored the type within the object
+   * stream, which hence begins with the stream header.
+   */
+  private static final int LEGACY_PAGE = (ObjectStreamConstants.STREAM_MAGIC << 16) | ObjectStreamConstants.STREAM_VERSION;
+
+  /**
+   * Approximate size of memory-mapped regions.
+   */
+  private static final int REGION_SIZE = 1 << 26;
+
   /**
    * The file storing the pages.
    */
@@ -80,23 +116,67 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
    */
   private boolean existed;
 
+  /**
+   * Buffer reused for reading and writing pages, when not memory-mapped.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * Memory-mapped regions of the file, or {@code null} when not memory-mapped.
+   * Replaced (copy-on-write) when a region is added, for lock-free reads.
+   */
+  private volatile MappedByteBuffer[] regions;
+
+  /**
+   * Lock protecting the memory-mapped regions: held shared while pages are
+   * accessed, and exclusively while the regions are released.
+   */
+  private final ReentrantReadWriteLock regionLock = new ReentrantReadWriteLock();
+
+  /**
+   * Lock for mapping additional regions. Not the monitor of this object, which
+   * is acquired before {@link #regionLock} by writes.
+   */
+  private final Object mapLock = new Object();
+
+  /**
+   * Number of pages per memory-mapped region.
+   */
+  private final int regionPages;
+
   /**
    * Creates a new PersistentPageFile from an existing file.
    * 
    * @param pageSize the page size
+   * @param filename the file name
    * @param pageclass the class of pages to be used
    */
   public PersistentPageFile(int pageSize, Path filename, Class<P> pageclass) {
+    this(pageSize, filename, pageclass, false);
+  }
+
+  /**
+   * Creates a new PersistentPageFile, or opens an existing file.
+   * 
+   * @param pageSize the page size
+   * @param filename the file name
+   * @param pageclass the class of pages to be used
+   * @param mmap use memory-mapped I/O
+   */
+  public PersistentPageFile(int pageSize, Path filename, Class<P> pageclass, boolean mmap) {
     super(pageSize);
     this.pageclass = pageclass;
-    // create from existing file
-    existed = Files.exists(filename);
     try {
-      file = FileChannel.open(filename, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      // create from existing file
+      existed = Files.exists(filename) && Files.size(filename) > 0;
+      file = FileChannel.open(filename, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
     }
     catch(IOException e) {
       throw new AbortException("IO error in loading persistent page file.", e);
     }
+    this.regionPages = Math.max(1, REGION_SIZE / pageSize);
+    this.regions = mmap ? new MappedByteBuffer[16] : null;
+    this.buffer = mmap ? null : ByteBuffer.allocateDirect(pageSize);
   }
 
   /**
@@ -109,13 +189,25 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
   public P readPage(int pageID) {
     try {
       countRead();
-      long offset = ((long) (header.getReservedPages() + pageID)) * (long) pageSize;
-      byte[] buffer = new byte[pageSize];
-      int read = file.read(ByteBuffer.wrap(buffer), offset);
-      if(read != pageSize) {
-        throw new IOException("Incomplete read at offset " + offset + " read " + read + " bytes, expected " + pageSize);
+      P page;
+      if(buffer == null) {
+        regionLock.readLock().lock();
+        try {
+          page = bufferToPage(mappedPage(pageID));
+        }
+        finally {
+          regionLock.readLock().unlock();
+        }
+      }
+      else {
+        synchronized(this) {
+          page = bufferToPage(readBuffer(pageID));
+        }
       }
-      return byteArrayToPage(buffer);
+      if(page != null) {
+        page.setPageID(pageID);
+      }
+      return page;
     }
     catch(IOException e) {
       throw new RuntimeException("IOException occurred during reading of page " + pageID + "\n", e);
@@ -128,18 +220,17 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
    * @param pageID the id of the node to be deleted
    */
   @Override
-  public void deletePage(int pageID) {
+  public synchronized void deletePage(int pageID) {
     try {
       // / put id to empty pages list
       super.deletePage(pageID);
 
       // delete from file
       countWrite();
-      byte[] array = pageToByteArray(null);
-      long offset = (header.getReservedPages() + pageID) * (long) pageSize;
-      int written = file.write(ByteBuffer.wrap(array), offset);
-      if(written != pageSize) {
-        throw new IOException("Incomplete write at offset " + offset + " wrote " + written + " bytes, expected " + array.length);
+      ByteBuffer buf = buffer == null ? mappedPage(pageID) : clearBuffer();
+      buf.putInt(EMPTY_PAGE);
+      if(buffer != null) {
+        writeBuffer(pageID);
       }
     }
     catch(IOException e) {
@@ -154,15 +245,13 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
    * @param page the page which has to be written to disk
    */
   @Override
-  public void writePage(int pageID, P page) {
+  public synchronized void writePage(int pageID, P page) {
     try {
       countWrite();
-      byte[] array = pageToByteArray(page);
-      long offset = ((long) (header.getReservedPages() + pageID)) * (long) pageSize;
-      assert offset >= 0 : header.getReservedPages() + " " + pageID + " " + pageSize + " " + offset;
-      int written = file.write(ByteBuffer.wrap(array), offset);
-      if(written != pageSize) {
-        throw new IOException("Incomplete write at offset " + offset + " wrote " + written + " bytes, expected " + array.length);
+      ByteBuffer buf = buffer == null ? mappedPage(pageID) : clearBuffer();
+      pageToBuffer(page, buf);
+      if(buffer != null) {
+        writeBuffer(pageID);
       }
       page.setDirty(false);
     }
@@ -172,17 +261,133 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
   }
 
   /**
-   * Closes this file.
+   * Get the file offset of a page.
+   *
+   * @param pageID Page id
+   * @return Offset
+   */
+  private long offset(int pageID) {
+    return (header.getReservedPages() + (long) pageID) * pageSize;
+  }
+
+  /**
+   * Get the memory-mapped buffer of a page, mapping the region if necessary.
+   *
+   * @param pageID Page id
+   * @return Buffer, positioned at the page start and limited to the page
+   * @throws IOException on mapping errors
+   */
+  private ByteBuffer mappedPage(int pageID) throws IOException {
+    final long p = header.getReservedPages() + (long) pageID;
+    final int r = (int) (p / regionPages);
+    final MappedByteBuffer[] regs = regions;
+    if(regs == null) {
+      throw new IllegalStateException("Page file was closed.");
+    }
+    MappedByteBuffer region = r < regs.length ? regs[r] : null;
+    if(region == null) {
+      region = mapRegion(r);
+    }
+    final int start = (int) (p - r * (long) regionPages) * pageSize;
+    ByteBuffer view = region.duplicate();
+    view.limit(start + pageSize);
+    view.position(start);
+    return view.slice();
+  }
+
+  /**
+   * Map a region of the file into memory.
+   *
+   * @param r Region number
+   * @return Mapped region
+   * @throws IOException on mapping errors
+   */
+  private MappedByteBuffer mapRegion(int r) throws IOException {
+    synchronized(mapLock) {
+      MappedByteBuffer[] regs = regions;
+      if(r < regs.length && regs[r] != null) {
+        return regs[r]; // Mapped concurrently
+      }
+      final long size = regionPages * (long) pageSize;
+      regs = Arrays.copyOf(regs, Math.max(r + 1, regs.length));
+      regs[r] = file.map(MapMode.READ_WRITE, r * size, size);
+      regions = regs;
+      return regs[r];
+    }
+  }
+
+  /**
+   * Prepare the shared buffer for writing a page.
+   *
+   * @return Buffer
+   */
+  private ByteBuffer clearBuffer() {
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Read a page into the shared buffer.
+   *
+   * @param pageID Page id
+   * @return Buffer
+   * @throws IOException on read errors
+   */
+  private ByteBuffer readBuffer(int pageID) throws IOException {
+    final long offset = offset(pageID);
+    buffer.clear();
+    while(buffer.hasRemaining()) {
+      if(file.read(buffer, offset + buffer.position()) < 0) {
+        throw new IOException("Incomplete read at offset " + offset + " read " + buffer.position() + " bytes, expected " + pageSize);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Write the shared buffer as page.
+   *
+   * @param pageID Page id
+   * @throws IOException on write errors
+   */
+  private void writeBuffer(int pageID) throws IOException {
+    final long offset = offset(pageID);
+    // Always write full pages, to keep the file size a multiple of the page
+    buffer.clear();
+    while(buffer.hasRemaining()) {
+      file.write(buffer, offset + buffer.position());
+    }
+  }
+
+  /**
+   * Closes this file. The list of empty pages is stored directly after the
+   * last page, see the class documentation for the truncation policy.
    */
   @Override
-  public void close() {
+  public synchronized void close() {
     try {
-      super.close();
-      if(!emptyPages.isEmpty() && header instanceof TreeIndexHeader) {
-        // write the list of empty pages to the end of the file
-        ((TreeIndexHeader) header).writeEmptyPages(emptyPages, file);
+      // Note: do not call super.close(), which would clear the file.
+      final long size = offset(nextPageID);
+      if(buffer == null) {
+        regionLock.writeLock().lock();
+        try {
+          releaseRegions(true, null);
+          truncateMapped(size);
+        }
+        finally {
+          regionLock.writeLock().unlock();
+        }
+      }
+      else if(file.size() > size) {
+        // Drop trailing data (old empty page lists)
+        file.truncate(size);
+      }
+      if(header instanceof TreeIndexHeader) {
+        // write the list of empty pages after the last page
+        ((TreeIndexHeader) header).writeEmptyPages(emptyPages, file, size);
+        ((TreeIndexHeader) header).setLargestPageID(nextPageID);
       }
-      ((TreeIndexHeader) header).setLargestPageID(nextPageID);
       header.writeHeader(file);
       file.close();
     }
@@ -192,12 +397,26 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
   }
 
   /**
-   * Clears this PageFile.
+   * Clears this PageFile. Memory-mapped regions are released and mapped again
+   * on demand, see the class documentation for the truncation policy.
    */
   @Override
-  public void clear() {
+  public synchronized void clear() {
     try {
-      file.truncate(header.size());
+      nextPageID = 0;
+      emptyPages.clear();
+      if(buffer != null) {
+        file.truncate(header.size());
+        return;
+      }
+      regionLock.writeLock().lock();
+      try {
+        releaseRegions(false, new MappedByteBuffer[16]);
+        truncateMapped(header.size());
+      }
+      finally {
+        regionLock.writeLock().unlock();
+      }
     }
     catch(IOException e) {
       throw new RuntimeException(e);
@@ -205,84 +424,111 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
   }
 
   /**
-   * Reconstruct a serialized object from the specified byte array.
-   * 
-   * @param array the byte array from which the object should be reconstructed
-   * @return a serialized object from the specified byte array
+   * Release the memory-mapped regions, by dropping all references to them.
+   * Mappings cannot be closed explicitly, but the file will no longer be
+   * accessed through them.
+   *
+   * @param force Force the regions to disk first
+   * @param replacement New (empty) regions, or {@code null}
    */
-  private P byteArrayToPage(byte[] array) {
-    try {
-      ByteArrayInputStream bais = new ByteArrayInputStream(array);
-      ObjectInputStream ois = new ObjectInputStream(bais);
-      int type = ois.readInt();
-      if(type == EMPTY_PAGE) {
-        return null;
+  private void releaseRegions(boolean force, MappedByteBuffer[] replacement) {
+    final MappedByteBuffer[] regs = regions;
+    regions = replacement;
+    for(int i = 0; i < regs.length; i++) {
+      if(force && regs[i] != null) {
+        regs[i].force();
       }
-      else if(type == FILLED_PAGE) {
-        P page;
-        try {
-          page = pageclass.newInstance();
-          page.readExternal(ois);
-        }
-        catch(InstantiationException | IllegalAccessException
-            | ClassNotFoundException e) {
-          throw new AbortException("Error instanciating an index page", e);
-        }
-        return page;
-      }
-      else {
-        throw new IllegalArgumentException("Unknown type: " + type);
+      regs[i] = null;
+    }
+  }
+
+  /**
+   * Truncate a file that was memory-mapped, after releasing the regions.
+   *
+   * @param size New file size
+   */
+  private void truncateMapped(long size) {
+    try {
+      if(file.size() > size) {
+        file.truncate(size);
       }
     }
     catch(IOException e) {
-      throw new AbortException("IO Error in page file", e);
+      // Windows refuses to shrink files with an open mapping.
+      LOG.debug("Could not truncate the memory-mapped page file: " + e.getMessage());
     }
   }
 
   /**
-   * Serializes an object into a byte array.
+   * Reconstruct a page from the specified buffer.
    * 
-   * @param page the object to be serialized
-   * @return the byte array
+   * @param buf the buffer from which the page should be reconstructed
+   * @return the page, or {@code null} for empty pages
+   * @throws IOException on decoding errors
    */
-  private byte[] pageToByteArray(P page) {
+  private P bufferToPage(ByteBuffer buf) throws IOException {
+    final int start = buf.position();
+    int type = buf.getInt();
+    if(type == EMPTY_PAGE) {
+      return null;
+    }
     try {
-      if(page == null) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeInt(EMPTY_PAGE);
-        oos.close();
-        baos.close();
-        byte[] array = baos.toByteArray();
-        byte[] result = new byte[pageSize];
-        System.arraycopy(array, 0, result, 0, array.length);
-        return result;
+      P page = pageclass.newInstance();
+      if(type == BUFFER_PAGE) {
+        ((ByteBufferPage) page).readFromBuffer(buf);
+        return page;
       }
-      else {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeInt(FILLED_PAGE);
-        page.writeExternal(oos);
-        oos.close();
-        baos.close();
-        byte[] array = baos.toByteArray();
-        if(array.length > this.pageSize) {
-          throw new IllegalArgumentException("Size of page " + page + " is greater than specified" + " pagesize: " + array.length + " > " + pageSize);
+      if(type == LEGACY_PAGE) {
+        buf.position(start);
+        ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(buf));
+        type = ois.readInt();
+        if(type == EMPTY_PAGE) {
+          return null;
         }
-        else if(array.length == this.pageSize) {
-          return array;
+        if(type == FILLED_PAGE) {
+          page.readExternal(ois);
+          return page;
         }
+      }
+      else if(type == FILLED_PAGE) {
+        page.readExternal(new ObjectInputStream(new ByteBufferInputStream(buf)));
+        return page;
+      }
+    }
+    catch(InstantiationException | IllegalAccessException
+        | ClassNotFoundException e) {
+      throw new AbortException("Error instanciating an index page", e);
+    }
+    throw new IllegalArgumentException("Unknown type: " + type);
+  }
 
-        else {
-          byte[] result = new byte[pageSize];
-          System.arraycopy(array, 0, result, 0, array.length);
-          return result;
-        }
+  /**
+   * Serializes a page into a buffer.
+   * 
+   * @param page the page to be serialized
+   * @param buf the buffer to write to
+   * @throws IOException on encoding errors
+   */
+  private void pageToBuffer(P page, ByteBuffer buf) throws IOException {
+    if(page instanceof ByteBufferPage) {
+      // Check the size first, to not overwrite the old page partially.
+      final int size = ((ByteBufferPage) page).getByteSize() + Integer.BYTES;
+      if(size > pageSize) {
+        throw new IllegalArgumentException("Size of page " + page + " is greater than specified pagesize: " + size + " > " + pageSize);
       }
+      buf.putInt(BUFFER_PAGE);
+      ((ByteBufferPage) page).writeToBuffer(buf);
+      return;
     }
-    catch(IOException e) {
-      throw new RuntimeException("IOException occurred! ", e);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(baos);
+    page.writeExternal(oos);
+    oos.close();
+    byte[] array = baos.toByteArray();
+    if(array.length + Integer.BYTES > pageSize) {
+      throw new IllegalArgumentException("Size of page " + page + " is greater than specified pagesize: " + (array.length + Integer.BYTES) + " > " + pageSize);
     }
+    buf.putInt(FILLED_PAGE).put(array);
   }
 
   /** @return the random access file storing the pages. */
@@ -331,35 +577,38 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
           TreeIndexHeader tiHeader = (TreeIndexHeader) header;
           nextPageID = tiHeader.getLargestPageID();
           try {
-            emptyPages = tiHeader.readEmptyPages(file);
+            emptyPages = tiHeader.readEmptyPages(file, offset(nextPageID));
           }
           catch(ClassNotFoundException e) {
             throw new RuntimeException("ClassNotFoundException occurred when reading empty pages.", e);
           }
         }
-        else { // must scan complete file
-          int i = 0;
-          while(file.position() + pageSize <= file.size()) {
-            long offset = ((long) (header.getReservedPages() + i)) * (long) pageSize;
-            byte[] buffer = new byte[pageSize];
-            if(file.read(ByteBuffer.wrap(buffer), offset) != pageSize) {
-              throw new IOException("Incomplete read at position " + offset);
+        else { // must scan complete file, but only the page types
+          final long size = file.size();
+          ByteBuffer typebuf = ByteBuffer.allocate(Integer.BYTES);
+          for(int i = 0; offset(i) + pageSize <= size; i++) {
+            typebuf.clear();
+            while(typebuf.hasRemaining()) {
+              if(file.read(typebuf, offset(i) + typebuf.position()) < 0) {
+                throw new IOException("Incomplete read at position " + offset(i));
+              }
+            }
+            int type = typebuf.getInt(0);
+            if(type == LEGACY_PAGE) {
+              type = readPage(i) == null ? EMPTY_PAGE : FILLED_PAGE;
             }
-
-            ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
-            ObjectInputStream ois = new ObjectInputStream(bais);
-            int type = ois.readInt();
             if(type == EMPTY_PAGE) {
               emptyPages.add(i);
             }
-            else if(type == FILLED_PAGE) {
+            else if(type == FILLED_PAGE || type == BUFFER_PAGE) {
               nextPageID = i + 1;
             }
             else {
               throw new IllegalArgumentException("Unknown type: " + type);
             }
-            i++;
           }
+          // Drop trailing empty pages, e.g., of a memory-mapped region
+          setNextPageID(nextPageID);
         }
       }
       // create new file
@@ -27,6 +27,7 @@ import elki.utilities.exceptions.AbortException;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.Flag;
 
 /**
  * Page file factory for disk-based page files.
@@ -44,14 +45,32 @@ public class PersistentPageFileFactory<P extends ExternalizablePage> extends Abs
    */
   private Path fileName;
 
+  /**
+   * Use memory-mapped I/O.
+   */
+  private boolean mmap;
+
   /**
    * Constructor.
    * 
    * @param pageSize Page size
+   * @param fileName File name
    */
   public PersistentPageFileFactory(int pageSize, Path fileName) {
+    this(pageSize, fileName, false);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param pageSize Page size
+   * @param fileName File name
+   * @param mmap Use memory-mapped I/O
+   */
+  public PersistentPageFileFactory(int pageSize, Path fileName, boolean mmap) {
     super(pageSize);
     this.fileName = fileName;
+    this.mmap = mmap;
   }
 
   @Override
@@ -59,7 +78,7 @@ public class PersistentPageFileFactory<P extends ExternalizablePage> extends Abs
     if(fileName == null) {
       throw new AbortException("Disk-backed page file may only be instantiated once!");
     }
-    PersistentPageFile<P> pfile = new PersistentPageFile<>(pageSize, fileName, cls);
+    PersistentPageFile<P> pfile = new PersistentPageFile<>(pageSize, fileName, cls, mmap);
     fileName = null; // To avoid double instantiation.
     return pfile;
   }
@@ -77,21 +96,32 @@ public class PersistentPageFileFactory<P extends ExternalizablePage> extends Abs
      */
     private Path fileName;
 
+    /**
+     * Use memory-mapped I/O.
+     */
+    private boolean mmap;
+
     /**
      * Optional parameter that specifies the name of the file storing the index.
      */
     public static final OptionID FILE_ID = new OptionID("pagefile.file", "The name of the file storing the page file.");
 
+    /**
+     * Flag to access the file via memory-mapped I/O.
+     */
+    public static final OptionID MMAP_ID = new OptionID("pagefile.mmap", "Access the page file using memory-mapped I/O.");
+
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
       new FileParameter(FILE_ID, FileParameter.FileType.OUTPUT_FILE) //
           .grab(config, x -> fileName = Paths.get(x));
+      new Flag(MMAP_ID).grab(config, x -> mmap = x);
     }
 
     @Override
     public PersistentPageFileFactory<ExternalizablePage> make() {
-      return new PersistentPageFileFactory<>(pageSize, fileName);
+      return new PersistentPageFileFactory<>(pageSize, fileName, mmap);
     }
   }
 }
@@ -0,0 +1,280 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.index.AbstractIndexStructureTest;
+import elki.index.PagedIndexFactory;
+import elki.index.tree.TreeIndexHeader;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeNode;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the concurrent page cache.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ConcurrentPageCacheTest extends AbstractIndexStructureTest {
+  /**
+   * Page size used.
+   */
+  private static final int PAGESIZE = 300;
+
+  /**
+   * Backing page file counting the page reads.
+   */
+  private static class CountingPageFile extends MemoryPageFile<RStarTreeNode> {
+    /**
+     * Number of reads.
+     */
+    AtomicInteger reads = new AtomicInteger();
+
+    /**
+     * Constructor.
+     */
+    CountingPageFile() {
+      super(PAGESIZE);
+    }
+
+    @Override
+    public RStarTreeNode readPage(int pageID) {
+      reads.incrementAndGet();
+      return super.readPage(pageID);
+    }
+  }
+
+  /**
+   * Create a cache with the given number of pages, and fill the backing file.
+   *
+   * @param backing Backing file
+   * @param cachePages Cache size in pages
+   * @param numPages Number of pages to create
+   * @param numDir Number of directory pages
+   * @return Cache
+   */
+  private static ConcurrentPageCache<RStarTreeNode> makeCache(CountingPageFile backing, int cachePages, int numPages, int numDir) {
+    backing.initialize(new TreeIndexHeader(PAGESIZE, 5, 9, 2, 4));
+    for(int i = 0; i < numPages; i++) {
+      assertEquals(i, backing.writePage(new RStarTreeNode(5, i >= numDir)));
+    }
+    ConcurrentPageCache<RStarTreeNode> cache = new ConcurrentPageCache<>(cachePages * PAGESIZE, backing, true);
+    cache.initialize(new TreeIndexHeader(PAGESIZE, 5, 9, 2, 4));
+    return cache;
+  }
+
+  /**
+   * A linear scan must not evict the working set.
+   */
+  @Test
+  public void testScanResistance() {
+    CountingPageFile backing = new CountingPageFile();
+    ConcurrentPageCache<RStarTreeNode> cache = makeCache(backing, 256, 10000, 0);
+    // Working set, accessed repeatedly:
+    for(int rep = 0; rep < 3; rep++) {
+      for(int i = 0; i < 20; i++) {
+        assertEquals(i * 7, cache.readPage(i * 7).getPageID());
+      }
+    }
+    assertEquals("Working set not cached.", 20, backing.reads.get());
+    // Scan once over all pages
+    for(int i = 0; i < 10000; i++) {
+      assertEquals(i, cache.readPage(i).getPageID());
+    }
+    backing.reads.set(0);
+    for(int i = 0; i < 20; i++) {
+      cache.readPage(i * 7);
+    }
+    assertEquals("Working set was evicted by a scan.", 0, backing.reads.get());
+  }
+
+  /**
+   * Directory pages are pinned.
+   */
+  @Test
+  public void testPinning() {
+    CountingPageFile backing = new CountingPageFile();
+    ConcurrentPageCache<RStarTreeNode> cache = makeCache(backing, 256, 10000, 10);
+    for(int i = 0; i < 10000; i++) {
+      assertEquals(i, cache.readPage(i).getPageID());
+    }
+    backing.reads.set(0);
+    for(int i = 0; i < 10; i++) {
+      assertFalse(cache.readPage(i).isLeaf());
+    }
+    assertEquals("Directory pages not pinned.", 0, backing.reads.get());
+  }
+
+  /**
+   * Concurrent reads must return the correct pages.
+   */
+  @Test
+  public void testConcurrentReads() {
+    CountingPageFile backing = new CountingPageFile();
+    ConcurrentPageCache<RStarTreeNode> cache = makeCache(backing, 100, 1000, 5);
+    long errors = IntStream.range(0, 8).parallel().mapToLong(t -> {
+      Random r = new Random(t);
+      long err = 0;
+      for(int i = 0; i < 20000; i++) {
+        // Skewed access pattern
+        int p = r.nextInt(r.nextBoolean() ? 50 : 1000);
+        err += cache.readPage(p).getPageID() != p ? 1 : 0;
+      }
+      return err;
+    }).sum();
+    assertEquals("Incorrect pages returned.", 0, errors);
+    assertTrue("Cache did not cache.", backing.reads.get() < 8 * 20000);
+  }
+
+  /**
+   * A slow read must not block reads of other pages in the same segment, and
+   * concurrent reads of the same page read it only once.
+   */
+  @Test
+  public void testReadOutsideLock() throws InterruptedException {
+    final CountDownLatch reading = new CountDownLatch(1), release = new CountDownLatch(1);
+    CountingPageFile backing = new CountingPageFile() {
+      @Override
+      public RStarTreeNode readPage(int pageID) {
+        if(pageID == 1) {
+          reading.countDown();
+          try {
+            release.await();
+          }
+          catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.readPage(pageID);
+      }
+    };
+    // A single segment:
+    ConcurrentPageCache<RStarTreeNode> cache = makeCache(backing, 16, 100, 0);
+    Thread[] slow = new Thread[2];
+    for(int i = 0; i < slow.length; i++) {
+      (slow[i] = new Thread(() -> assertEquals(1, cache.readPage(1).getPageID()))).start();
+    }
+    assertTrue("Read did not start.", reading.await(10, TimeUnit.SECONDS));
+    // Not blocked by the pending read:
+    for(int i = 2; i < 100; i++) {
+      assertEquals(i, cache.readPage(i).getPageID());
+    }
+    release.countDown();
+    for(Thread t : slow) {
+      t.join();
+    }
+    assertEquals("Page read more than once.", 99, backing.reads.get());
+  }
+
+  /**
+   * Modified pages must be written back when evicted.
+   */
+  @Test
+  public void testWriteBack() {
+    CountingPageFile backing = new CountingPageFile();
+    ConcurrentPageCache<RStarTreeNode> cache = makeCache(backing, 16, 100, 0);
+    RStarTreeNode[] nodes = new RStarTreeNode[100];
+    for(int i = 0; i < 100; i++) {
+      nodes[i] = new RStarTreeNode(5, true);
+      nodes[i].setPageID(i);
+      cache.writePage(i, nodes[i]);
+    }
+    for(int i = 0; i < 100; i++) {
+      assertSame("Lost modification of page " + i, nodes[i], cache.readPage(i));
+    }
+  }
+
+  /**
+   * A page modified while its write-back is in progress must stay dirty.
+   */
+  @Test
+  public void testModifiedDuringWriteBack() throws InterruptedException {
+    final CountDownLatch writing = new CountDownLatch(1), release = new CountDownLatch(1);
+    final AtomicInteger writes = new AtomicInteger();
+    CountingPageFile backing = new CountingPageFile() {
+      @Override
+      protected void writePage(int pageID, RStarTreeNode page) {
+        // Block the first write-back, after the initial write
+        if(pageID == 0 && writes.incrementAndGet() == 2) {
+          writing.countDown();
+          try {
+            release.await();
+          }
+          catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.writePage(pageID, page);
+      }
+    };
+    // A single segment:
+    ConcurrentPageCache<RStarTreeNode> cache = makeCache(backing, 16, 100, 0);
+    RStarTreeNode node = new RStarTreeNode(5, true);
+    node.setPageID(0);
+    cache.writePage(0, node);
+    // Evict page 0, which blocks in its write-back:
+    Thread evict = new Thread(() -> IntStream.range(1, 100).forEach(cache::readPage));
+    evict.start();
+    assertTrue("Write-back did not start.", writing.await(10, TimeUnit.SECONDS));
+    Thread modify = new Thread(() -> cache.writePage(0, cache.readPage(0)));
+    modify.start();
+    modify.join(200);
+    release.countDown();
+    evict.join();
+    modify.join();
+    cache.flush();
+    assertEquals("Modification during write-back was lost.", 3, writes.get());
+  }
+
+  /**
+   * Test an R*-tree using the cache on a page file.
+   */
+  @Test
+  public void testRStarTree() throws IOException {
+    Path file = Files.createTempFile("elki-rstar", ".idx");
+    try {
+      PageFileFactory<?> inner = new PersistentPageFileFactory<>(PAGESIZE, file);
+      RStarTreeFactory<NumberVector> factory = new ELKIBuilder<>(RStarTreeFactory.class) //
+          .with(PagedIndexFactory.Par.PAGEFILE_ID, new ConcurrentPageCacheFactory<>(inner, 20 * PAGESIZE, true)) //
+          .build();
+      assertExactEuclidean(factory, RStarTreeKNNSearcher.class, RStarTreeRangeSearcher.class);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
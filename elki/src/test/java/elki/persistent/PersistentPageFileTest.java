@@ -0,0 +1,275 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.ModifiableHyperBoundingBox;
+import elki.data.NumberVector;
+import elki.database.ids.DBIDUtil;
+import elki.index.AbstractIndexStructureTest;
+import elki.index.PagedIndexFactory;
+import elki.index.tree.TreeIndexHeader;
+import elki.index.tree.metrical.mtreevariants.mtree.MTreeFactory;
+import elki.index.tree.metrical.mtreevariants.query.MTreeKNNByObject;
+import elki.index.tree.metrical.mtreevariants.query.MTreeRangeByObject;
+import elki.index.tree.spatial.SpatialDirectoryEntry;
+import elki.index.tree.spatial.SpatialPointLeafEntry;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeNode;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the disk-based page file, using the binary page encoding and
+ * memory-mapped I/O.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class PersistentPageFileTest extends AbstractIndexStructureTest {
+  /**
+   * Test an R*-tree stored in a page file.
+   */
+  @Test
+  public void testRStarTree() throws IOException {
+    for(boolean mmap : new boolean[] { false, true }) {
+      Path file = Files.createTempFile("elki-rstar", ".idx");
+      try {
+        RStarTreeFactory<NumberVector> factory = new ELKIBuilder<>(RStarTreeFactory.class) //
+            .with(PagedIndexFactory.Par.PAGEFILE_ID, new PersistentPageFileFactory<>(300, file, mmap)) //
+            .build();
+        assertExactEuclidean(factory, RStarTreeKNNSearcher.class, RStarTreeRangeSearcher.class);
+      }
+      finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  /**
+   * Test an M-tree stored in a page file.
+   */
+  @Test
+  public void testMTree() throws IOException {
+    for(boolean mmap : new boolean[] { false, true }) {
+      Path file = Files.createTempFile("elki-mtree", ".idx");
+      try {
+        MTreeFactory<DoubleVector> factory = new ELKIBuilder<>(MTreeFactory.class) //
+            .with(PagedIndexFactory.Par.PAGEFILE_ID, new PersistentPageFileFactory<>(300, file, mmap)) //
+            .build();
+        assertExactEuclidean(factory, MTreeKNNByObject.class, MTreeRangeByObject.class);
+      }
+      finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  /**
+   * Write pages, close the file, and read them back.
+   */
+  @Test
+  public void testReopen() throws IOException {
+    for(boolean mmap : new boolean[] { false, true }) {
+      Path file = Files.createTempFile("elki-pages", ".idx");
+      try {
+        PersistentPageFile<RStarTreeNode> pf = new PersistentPageFile<>(300, file, RStarTreeNode.class, mmap);
+        assertFalse("Empty file considered existing.", pf.initialize(new TreeIndexHeader(300, 5, 9, 2, 4)));
+        for(int i = 0; i < 10; i++) {
+          RStarTreeNode node = new RStarTreeNode(i < 5 ? 9 : 5, i < 5);
+          for(int j = 0; j <= i % 5; j++) {
+            node.addEntry(i < 5 ? new SpatialPointLeafEntry(DBIDUtil.importInteger(i * 10 + j), new double[] { i, j, -j }) //
+                : new SpatialDirectoryEntry(i * 10 + j, new ModifiableHyperBoundingBox(new double[] { j, 0, 0 }, new double[] { j, i, 1 })));
+          }
+          assertEquals(i, pf.writePage(node));
+        }
+        pf.deletePage(3);
+        final int reserved = pf.getHeader().getReservedPages();
+        pf.close();
+        // Pages, plus the list of empty pages
+        assertEquals("File size", (reserved + 10) * 300 + 4, Files.size(file));
+
+        pf = new PersistentPageFile<>(300, file, RStarTreeNode.class, mmap);
+        assertTrue("File not found.", pf.initialize(new TreeIndexHeader()));
+        assertNull(pf.readPage(3));
+        for(int i = 0; i < 10; i++) {
+          if(i == 3) {
+            continue;
+          }
+          RStarTreeNode node = pf.readPage(i);
+          assertEquals(i, node.getPageID());
+          assertEquals(i < 5, node.isLeaf());
+          assertEquals(i % 5 + 1, node.getNumEntries());
+          for(int j = 0; j <= i % 5; j++) {
+            if(i < 5) {
+              SpatialPointLeafEntry e = (SpatialPointLeafEntry) node.getEntry(j);
+              assertEquals(i * 10 + j, DBIDUtil.asInteger(e.getDBID()));
+              assertArrayEquals(new double[] { i, j, -j }, e.toArray(), 0.);
+            }
+            else {
+              SpatialDirectoryEntry e = (SpatialDirectoryEntry) node.getEntry(j);
+              assertEquals(i * 10 + j, e.getPageID());
+              assertEquals(i, e.getMax(1), 0.);
+            }
+          }
+        }
+        // The deleted page is reused first.
+        assertEquals(3, pf.writePage(new RStarTreeNode(9, true)));
+        pf.close();
+      }
+      finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  /**
+   * Clearing a memory-mapped file must release the pages.
+   */
+  @Test
+  public void testClearMapped() throws IOException {
+    Path file = Files.createTempFile("elki-pages", ".idx");
+    try {
+      PersistentPageFile<RStarTreeNode> pf = new PersistentPageFile<>(300, file, RStarTreeNode.class, true);
+      pf.initialize(new TreeIndexHeader(300, 5, 9, 2, 4));
+      for(int i = 0; i < 10; i++) {
+        pf.writePage(new RStarTreeNode(9, true));
+      }
+      pf.deletePage(4);
+      pf.clear();
+      assertEquals("Page ids not reset.", 0, pf.getNextPageID());
+      assertEquals("File not shrunk.", pf.getHeader().size(), Files.size(file));
+      RStarTreeNode node = new RStarTreeNode(9, true);
+      node.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(7), new double[] { 1, 2, 3 }));
+      assertEquals(0, pf.writePage(node));
+      assertEquals(1, pf.writePage(new RStarTreeNode(9, true)));
+      assertEquals(1, pf.readPage(0).getNumEntries());
+      final int reserved = pf.getHeader().getReservedPages();
+      pf.close();
+      assertEquals("File size", (reserved + 2) * 300, Files.size(file));
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Clear a memory-mapped file, write new pages, and reopen it.
+   */
+  @Test
+  public void testClearReopenMapped() throws IOException {
+    Path file = Files.createTempFile("elki-pages", ".idx");
+    try {
+      PersistentPageFile<RStarTreeNode> pf = new PersistentPageFile<>(300, file, RStarTreeNode.class, true);
+      pf.initialize(new TreeIndexHeader(300, 5, 9, 2, 4));
+      for(int i = 0; i < 10; i++) {
+        RStarTreeNode node = new RStarTreeNode(9, true);
+        node.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(i), new double[] { i, i, i }));
+        pf.writePage(node);
+      }
+      pf.clear();
+      for(int i = 0; i < 3; i++) {
+        RStarTreeNode node = new RStarTreeNode(9, true);
+        for(int j = 0; j <= i; j++) {
+          node.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(100 + j), new double[] { j, -j, 0 }));
+        }
+        assertEquals(i, pf.writePage(node));
+      }
+      pf.deletePage(1);
+      final int reserved = pf.getHeader().getReservedPages();
+      pf.close();
+      assertEquals("File size", (reserved + 3) * 300 + 4, Files.size(file));
+
+      pf = new PersistentPageFile<>(300, file, RStarTreeNode.class, true);
+      assertTrue("File not found.", pf.initialize(new TreeIndexHeader()));
+      assertEquals("Page ids", 3, pf.getNextPageID());
+      assertNull(pf.readPage(1));
+      for(int i = 0; i < 3; i += 2) {
+        RStarTreeNode node = pf.readPage(i);
+        assertEquals(i + 1, node.getNumEntries());
+        assertEquals(100 + i, DBIDUtil.asInteger(((SpatialPointLeafEntry) node.getEntry(i)).getDBID()));
+      }
+      // The deleted page is reused first.
+      assertEquals(1, pf.writePage(new RStarTreeNode(9, true)));
+      pf.close();
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Pages that cannot be written must not damage the previous page contents.
+   */
+  @Test
+  public void testRejectedWrite() throws IOException {
+    for(boolean mmap : new boolean[] { false, true }) {
+      Path file = Files.createTempFile("elki-pages", ".idx");
+      try {
+        PersistentPageFile<RStarTreeNode> pf = new PersistentPageFile<>(300, file, RStarTreeNode.class, mmap);
+        pf.initialize(new TreeIndexHeader(300, 5, 11, 2, 4));
+        RStarTreeNode node = new RStarTreeNode(11, true);
+        node.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(1), new double[] { 1, 2, 3 }));
+        assertEquals(0, pf.writePage(node));
+        // Too large for the page size:
+        RStarTreeNode large = new RStarTreeNode(11, true);
+        for(int j = 0; j < 11; j++) {
+          large.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(j), new double[] { j, j, j }));
+        }
+        try {
+          pf.writePage(0, large);
+          fail("Oversized page was written.");
+        }
+        catch(IllegalArgumentException e) {
+          // expected
+        }
+        // Subclassed entries cannot be stored in the binary format:
+        RStarTreeNode sub = new RStarTreeNode(11, true);
+        sub.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(2), new double[] { 4, 5, 6 }) {
+          private static final long serialVersionUID = 1L;
+        });
+        try {
+          pf.writePage(0, sub);
+          fail("Subclassed entry was written.");
+        }
+        catch(RuntimeException e) {
+          assertTrue(e.getCause() instanceof IOException);
+        }
+        RStarTreeNode read = pf.readPage(0);
+        assertEquals(1, read.getNumEntries());
+        assertArrayEquals(new double[] { 1, 2, 3 }, ((SpatialPointLeafEntry) read.getEntry(0)).toArray(), 0.);
+        pf.close();
+      }
+      finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+}